@@ -0,0 +1,106 @@
+// Copyright (c) Microsoft Corporation.
+// Licensed under the MIT license.
+
+package com.microsoft.maps.geojson;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Per-property indexes over the Features of a layer, mapping each property value to the set of
+ * Features (by position) that have it. An index is built in one pass the first time its property is
+ * used by a filter, so later filters on the same property cost a few BitSet operations instead of a
+ * walk over all Features.
+ */
+class FeatureIndex {
+
+  private static final BitSet EMPTY = new BitSet();
+
+  private final List<GeoJsonFeature> mFeatures;
+  private final HashMap<String, HashMap<Object, BitSet>> mValueIndexes = new HashMap<>();
+  private final HashMap<String, BitSet> mPresenceIndexes = new HashMap<>();
+
+  FeatureIndex(@NonNull List<GeoJsonFeature> features) {
+    mFeatures = features;
+  }
+
+  int getFeatureCount() {
+    return mFeatures.size();
+  }
+
+  /** Features whose property equals the value. The result must not be modified. */
+  @NonNull
+  BitSet getFeaturesWithValue(@NonNull String key, @Nullable Object value) {
+    BitSet features = getValueIndex(key).get(GeoJsonFeature.normalizeValue(value));
+    return features == null ? EMPTY : features;
+  }
+
+  /**
+   * Features that have the property, including with a null value. The result must not be modified.
+   */
+  @NonNull
+  BitSet getFeaturesWithProperty(@NonNull String key) {
+    getValueIndex(key);
+    return mPresenceIndexes.get(key);
+  }
+
+  /** Drops all indexes, which must be done whenever the Features change. */
+  void clear() {
+    mValueIndexes.clear();
+    mPresenceIndexes.clear();
+  }
+
+  @NonNull
+  private HashMap<Object, BitSet> getValueIndex(@NonNull String key) {
+    HashMap<Object, BitSet> index = mValueIndexes.get(key);
+    if (index != null) {
+      return index;
+    }
+    index = new HashMap<>();
+    BitSet presence = new BitSet(mFeatures.size());
+    for (int i = 0; i < mFeatures.size(); i++) {
+      Map<String, Object> properties = mFeatures.get(i).getProperties();
+      if (!properties.containsKey(key)) {
+        continue;
+      }
+      presence.set(i);
+      Object value = GeoJsonFeature.normalizeValue(properties.get(key));
+      BitSet features = index.get(value);
+      if (features == null) {
+        features = new BitSet();
+        index.put(value, features);
+      }
+      features.set(i);
+    }
+    mValueIndexes.put(key, index);
+    mPresenceIndexes.put(key, presence);
+    return index;
+  }
+
+  /**
+   * Returns the Features whose filter result differs between two match sets, where null stands for
+   * a match set containing every Feature.
+   */
+  @NonNull
+  static BitSet getChanged(@Nullable BitSet previous, @Nullable BitSet current, int featureCount) {
+    BitSet changed = new BitSet(featureCount);
+    if (previous == null && current == null) {
+      return changed;
+    }
+    if (previous == null) {
+      changed.set(0, featureCount);
+    } else {
+      changed.or(previous);
+    }
+    if (current == null) {
+      changed.flip(0, featureCount);
+    } else {
+      changed.xor(current);
+    }
+    return changed;
+  }
+}
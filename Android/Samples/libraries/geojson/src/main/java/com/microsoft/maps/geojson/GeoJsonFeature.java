@@ -0,0 +1,124 @@
+// Copyright (c) Microsoft Corporation.
+// Licensed under the MIT license.
+
+package com.microsoft.maps.geojson;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import com.microsoft.maps.GeoboundingBox;
+import com.microsoft.maps.Geoposition;
+import com.microsoft.maps.MapElement;
+import com.microsoft.maps.moduletools.GeoBounds;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A Feature read by GeoJsonParser when properties are captured: the elements created from its
+ * geometry and the captured members of its "properties" object. JSON objects and arrays in
+ * properties are represented as Maps and Lists, and JSON null as null.
+ */
+public class GeoJsonFeature {
+
+  private final Map<String, Object> mProperties;
+  private final ArrayList<MapElement> mElements = new ArrayList<>(1);
+  /* Position of the Feature in its layer, used by the layer's property indexes. */
+  private int mIndex = -1;
+  private GeoBounds mBounds;
+  private Geoposition mCentroid;
+  /* Values of mStyleValuesSource for this Feature, so the layer-wide setters of the layer do not
+   * evaluate the rules again. */
+  private GeoJsonStyle.Values mStyleValues = GeoJsonStyle.Values.NONE;
+  private GeoJsonStyle mStyleValuesSource;
+
+  GeoJsonFeature(@NonNull Map<String, Object> properties) {
+    mProperties = Collections.unmodifiableMap(properties);
+  }
+
+  /** Returns the captured properties of the Feature. */
+  @NonNull
+  public Map<String, Object> getProperties() {
+    return mProperties;
+  }
+
+  /** Returns the value of the given property, or null if it is null or was not captured. */
+  @Nullable
+  public Object getProperty(@NonNull String key) {
+    return mProperties.get(key);
+  }
+
+  /** Returns the elements created from the geometry of the Feature, in document order. */
+  @NonNull
+  public List<MapElement> getElements() {
+    return Collections.unmodifiableList(mElements);
+  }
+
+  /**
+   * Returns the bounds of the positions of the Feature, computed while it was parsed, or null if it
+   * has no positions. With ValidationLevel.TRUSTED, a "bbox" member of the Feature is used instead.
+   * Like GeoBounds, the bounds do not wrap across the antimeridian.
+   */
+  @Nullable
+  public GeoboundingBox getBounds() {
+    return mBounds == null ? null : mBounds.toGeoboundingBox();
+  }
+
+  /**
+   * Returns the average of the positions of the Feature, or null if it has none. This is a cheap
+   * point to label or center on the Feature, not the center of mass of its area; the closing
+   * position of each polygon ring is counted as well.
+   */
+  @Nullable
+  public Geoposition getCentroid() {
+    return mCentroid;
+  }
+
+  void setExtent(@NonNull GeoBounds bounds, @Nullable Geoposition centroid) {
+    mBounds = bounds;
+    mCentroid = centroid;
+  }
+
+  void addElement(@NonNull MapElement element) {
+    mElements.add(element);
+  }
+
+  /* Replaces the elements, when a layer update keeps the previous elements of the Feature. */
+  void setElements(@NonNull List<MapElement> elements) {
+    mElements.clear();
+    mElements.addAll(elements);
+  }
+
+  @NonNull
+  GeoJsonStyle.Values getStyleValues() {
+    return mStyleValues;
+  }
+
+  /* Whether the cached style values were evaluated with the given style, or there is none. */
+  boolean hasStyleValues(@Nullable GeoJsonStyle style) {
+    return mStyleValuesSource == style;
+  }
+
+  void setStyleValues(@Nullable GeoJsonStyle style, @NonNull GeoJsonStyle.Values values) {
+    mStyleValuesSource = style;
+    mStyleValues = values;
+  }
+
+  int getIndex() {
+    return mIndex;
+  }
+
+  void setIndex(int index) {
+    mIndex = index;
+  }
+
+  /* Maps property values to the key used to compare them, so numbers compare equal regardless of
+   * whether they were read as an Integer, Long or Double. */
+  @Nullable
+  static Object normalizeValue(@Nullable Object value) {
+    if (value instanceof Number) {
+      return ((Number) value).doubleValue();
+    }
+    return value;
+  }
+}
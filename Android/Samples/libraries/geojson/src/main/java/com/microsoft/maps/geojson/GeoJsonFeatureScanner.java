@@ -0,0 +1,370 @@
+// Copyright (c) Microsoft Corporation.
+// Licensed under the MIT license.
+
+package com.microsoft.maps.geojson;
+
+import androidx.annotation.NonNull;
+import com.microsoft.maps.moduletools.GeoBounds;
+import java.util.Arrays;
+
+/**
+ * Locates the "features" array of a top-level GeoJSON object and the boundaries of each element in
+ * it by bracket-depth scanning, without building any JSON objects. Only structural characters are
+ * inspected, so the scan is cheap compared to a full parse. Anything the scanner does not recognize
+ * makes scan() return false, and the caller is expected to fall back to a regular parse, which
+ * reports the error.
+ */
+class GeoJsonFeatureScanner {
+
+  private final CharSequence mJson;
+  private final int mLength;
+  private int mIndex;
+  private int mFeaturesStart = -1;
+  private int mFeaturesEnd = -1;
+  private int[] mFeatureBounds = new int[32];
+  private int mFeatureCount;
+
+  GeoJsonFeatureScanner(@NonNull CharSequence json) {
+    mJson = json;
+    mLength = json.length();
+  }
+
+  /**
+   * Scans the input. Returns true if the input is a single object with a "features" array member,
+   * in which case the array and feature boundaries are available from the getters.
+   */
+  boolean scan() {
+    mIndex = 0;
+    mFeatureCount = 0;
+    mFeaturesStart = -1;
+    mFeaturesEnd = -1;
+    skipWhitespace();
+    if (!consume('{')) {
+      return false;
+    }
+    skipWhitespace();
+    if (consume('}')) {
+      return false;
+    }
+    while (true) {
+      skipWhitespace();
+      int keyStart = mIndex;
+      if (!skipString()) {
+        return false;
+      }
+      boolean isFeatures = regionEquals(keyStart + 1, mIndex - 1, "features");
+      skipWhitespace();
+      if (!consume(':')) {
+        return false;
+      }
+      skipWhitespace();
+      if (isFeatures && peek() == '[') {
+        if (mFeaturesStart != -1 || !scanFeaturesArray()) {
+          return false;
+        }
+      } else if (!skipValue()) {
+        return false;
+      }
+      skipWhitespace();
+      if (consume('}')) {
+        break;
+      }
+      if (!consume(',')) {
+        return false;
+      }
+    }
+    skipWhitespace();
+    return mIndex == mLength && mFeaturesStart != -1;
+  }
+
+  /** Index of the '[' opening the features array. */
+  int getFeaturesStart() {
+    return mFeaturesStart;
+  }
+
+  /** Index just past the ']' closing the features array. */
+  int getFeaturesEnd() {
+    return mFeaturesEnd;
+  }
+
+  int getFeatureCount() {
+    return mFeatureCount;
+  }
+
+  /** Index of the first character of the feature at the given position in the array. */
+  int getFeatureStart(int feature) {
+    return mFeatureBounds[2 * feature];
+  }
+
+  /** Index just past the last character of the feature at the given position in the array. */
+  int getFeatureEnd(int feature) {
+    return mFeatureBounds[2 * feature + 1];
+  }
+
+  /**
+   * Extends the bounds by the positions of the GeoJSON object between start and end, which is a
+   * Feature or a geometry, by reading only the numbers of its "coordinates" members. Returns false
+   * if the object is not something the scanner recognizes.
+   */
+  boolean addBounds(int start, int end, @NonNull GeoBounds bounds) {
+    mIndex = start;
+    skipWhitespace();
+    return addObjectBounds(bounds) && mIndex <= end;
+  }
+
+  /* Reads the members of an object, adding the positions of its "coordinates" and those of the
+   * objects in its "geometry" and "geometries" members. Other members are skipped. */
+  private boolean addObjectBounds(@NonNull GeoBounds bounds) {
+    if (!consume('{')) {
+      return false;
+    }
+    skipWhitespace();
+    if (consume('}')) {
+      return true;
+    }
+    while (true) {
+      skipWhitespace();
+      int keyStart = mIndex;
+      if (!skipString()) {
+        return false;
+      }
+      int keyEnd = mIndex - 1;
+      skipWhitespace();
+      if (!consume(':')) {
+        return false;
+      }
+      skipWhitespace();
+      boolean isValid;
+      if (regionEquals(keyStart + 1, keyEnd, "coordinates") && peek() == '[') {
+        isValid = addPositionBounds(bounds);
+      } else if (regionEquals(keyStart + 1, keyEnd, "geometry") && peek() == '{') {
+        isValid = addObjectBounds(bounds);
+      } else if (regionEquals(keyStart + 1, keyEnd, "geometries") && peek() == '[') {
+        isValid = addGeometriesBounds(bounds);
+      } else {
+        isValid = skipValue();
+      }
+      if (!isValid) {
+        return false;
+      }
+      skipWhitespace();
+      if (consume('}')) {
+        return true;
+      }
+      if (!consume(',')) {
+        return false;
+      }
+    }
+  }
+
+  private boolean addGeometriesBounds(@NonNull GeoBounds bounds) {
+    mIndex++;
+    skipWhitespace();
+    if (consume(']')) {
+      return true;
+    }
+    while (true) {
+      skipWhitespace();
+      if (!addObjectBounds(bounds)) {
+        return false;
+      }
+      skipWhitespace();
+      if (consume(']')) {
+        return true;
+      }
+      if (!consume(',')) {
+        return false;
+      }
+    }
+  }
+
+  /* Reads a position, an array of longitude, latitude and optional altitude, or an array of nested
+   * arrays of positions. */
+  private boolean addPositionBounds(@NonNull GeoBounds bounds) {
+    mIndex++;
+    skipWhitespace();
+    if (consume(']')) {
+      return true;
+    }
+    if (peek() != '[') {
+      double longitude = readNumber();
+      skipWhitespace();
+      if (Double.isNaN(longitude) || !consume(',')) {
+        return false;
+      }
+      skipWhitespace();
+      double latitude = readNumber();
+      if (Double.isNaN(latitude)) {
+        return false;
+      }
+      bounds.extend(latitude, longitude);
+      while (true) {
+        skipWhitespace();
+        if (consume(']')) {
+          return true;
+        }
+        if (!consume(',')) {
+          return false;
+        }
+        skipWhitespace();
+        if (!skipValue()) {
+          return false;
+        }
+      }
+    }
+    while (true) {
+      skipWhitespace();
+      if (peek() != '[' || !addPositionBounds(bounds)) {
+        return false;
+      }
+      skipWhitespace();
+      if (consume(']')) {
+        return true;
+      }
+      if (!consume(',')) {
+        return false;
+      }
+    }
+  }
+
+  /* Reads a number token, returning NaN if it is not a number. */
+  private double readNumber() {
+    int start = mIndex;
+    while (mIndex < mLength && !isDelimiter(mJson.charAt(mIndex))) {
+      mIndex++;
+    }
+    try {
+      return Double.parseDouble(mJson.subSequence(start, mIndex).toString());
+    } catch (NumberFormatException e) {
+      return Double.NaN;
+    }
+  }
+
+  private boolean scanFeaturesArray() {
+    mFeaturesStart = mIndex;
+    mIndex++;
+    while (true) {
+      skipWhitespace();
+      if (consume(']')) {
+        mFeaturesEnd = mIndex;
+        return true;
+      }
+      int start = mIndex;
+      if (!skipValue()) {
+        return false;
+      }
+      addFeature(start, mIndex);
+      skipWhitespace();
+      if (consume(']')) {
+        mFeaturesEnd = mIndex;
+        return true;
+      }
+      if (!consume(',')) {
+        return false;
+      }
+    }
+  }
+
+  private void addFeature(int start, int end) {
+    if (2 * mFeatureCount + 1 >= mFeatureBounds.length) {
+      mFeatureBounds = Arrays.copyOf(mFeatureBounds, mFeatureBounds.length * 2);
+    }
+    mFeatureBounds[2 * mFeatureCount] = start;
+    mFeatureBounds[2 * mFeatureCount + 1] = end;
+    mFeatureCount++;
+  }
+
+  /* Skips an object or array by tracking bracket depth, or a string or primitive token. */
+  private boolean skipValue() {
+    char first = peek();
+    if (first == '"' || first == '\'') {
+      return skipString();
+    }
+    if (first != '{' && first != '[') {
+      int start = mIndex;
+      while (mIndex < mLength && !isDelimiter(mJson.charAt(mIndex))) {
+        mIndex++;
+      }
+      return mIndex > start;
+    }
+    int depth = 0;
+    while (mIndex < mLength) {
+      char c = mJson.charAt(mIndex);
+      switch (c) {
+        case '"':
+        case '\'':
+          if (!skipString()) {
+            return false;
+          }
+          continue;
+        case '{':
+        case '[':
+          depth++;
+          break;
+        case '}':
+        case ']':
+          depth--;
+          if (depth == 0) {
+            mIndex++;
+            return true;
+          }
+          break;
+        default:
+          break;
+      }
+      mIndex++;
+    }
+    return false;
+  }
+
+  private boolean skipString() {
+    char quote = peek();
+    if (quote != '"' && quote != '\'') {
+      return false;
+    }
+    mIndex++;
+    while (mIndex < mLength) {
+      char c = mJson.charAt(mIndex++);
+      if (c == '\\') {
+        mIndex++;
+      } else if (c == quote) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private boolean regionEquals(int start, int end, @NonNull String expected) {
+    if (end - start != expected.length()) {
+      return false;
+    }
+    for (int i = 0; i < expected.length(); i++) {
+      if (mJson.charAt(start + i) != expected.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private void skipWhitespace() {
+    while (mIndex < mLength && Character.isWhitespace(mJson.charAt(mIndex))) {
+      mIndex++;
+    }
+  }
+
+  private boolean consume(char expected) {
+    if (peek() == expected) {
+      mIndex++;
+      return true;
+    }
+    return false;
+  }
+
+  private char peek() {
+    return mIndex < mLength ? mJson.charAt(mIndex) : 0;
+  }
+
+  private static boolean isDelimiter(char c) {
+    return c == ',' || c == '}' || c == ']' || c == ':' || Character.isWhitespace(c);
+  }
+}
@@ -0,0 +1,134 @@
+// Copyright (c) Microsoft Corporation.
+// Licensed under the MIT license.
+
+package com.microsoft.maps.geojson;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+
+/**
+ * Filter expression over the captured properties of Features, used with
+ * MapGeoJsonLayer.setFilter(GeoJsonFilter) to show only the Features that match. Numeric values
+ * compare equal regardless of their Java type.
+ */
+public abstract class GeoJsonFilter {
+
+  GeoJsonFilter() {}
+
+  /* Returns a new set of the positions of the matching Features, which the caller may modify. */
+  @NonNull
+  abstract BitSet evaluate(@NonNull FeatureIndex index);
+
+  /** Matches Features whose property equals the value. A null value matches JSON null. */
+  @NonNull
+  public static GeoJsonFilter eq(@NonNull String key, @Nullable Object value) {
+    checkNotNull(key, "Key");
+    return new GeoJsonFilter() {
+      @NonNull
+      @Override
+      BitSet evaluate(@NonNull FeatureIndex index) {
+        return (BitSet) index.getFeaturesWithValue(key, value).clone();
+      }
+    };
+  }
+
+  /** Matches Features whose property equals any of the values. */
+  @NonNull
+  public static GeoJsonFilter in(@NonNull String key, @NonNull Collection<?> values) {
+    checkNotNull(key, "Key");
+    checkNotNull(values, "Values");
+    ArrayList<Object> copy = new ArrayList<>(values);
+    return new GeoJsonFilter() {
+      @NonNull
+      @Override
+      BitSet evaluate(@NonNull FeatureIndex index) {
+        BitSet matches = new BitSet(index.getFeatureCount());
+        for (Object value : copy) {
+          matches.or(index.getFeaturesWithValue(key, value));
+        }
+        return matches;
+      }
+    };
+  }
+
+  /** Matches Features that have the property, whatever its value. */
+  @NonNull
+  public static GeoJsonFilter has(@NonNull String key) {
+    checkNotNull(key, "Key");
+    return new GeoJsonFilter() {
+      @NonNull
+      @Override
+      BitSet evaluate(@NonNull FeatureIndex index) {
+        return (BitSet) index.getFeaturesWithProperty(key).clone();
+      }
+    };
+  }
+
+  /** Matches Features that match all the filters. */
+  @NonNull
+  public static GeoJsonFilter and(@NonNull GeoJsonFilter... filters) {
+    GeoJsonFilter[] copy = copyOf(filters);
+    return new GeoJsonFilter() {
+      @NonNull
+      @Override
+      BitSet evaluate(@NonNull FeatureIndex index) {
+        BitSet matches = new BitSet(index.getFeatureCount());
+        matches.set(0, index.getFeatureCount());
+        for (GeoJsonFilter filter : copy) {
+          matches.and(filter.evaluate(index));
+        }
+        return matches;
+      }
+    };
+  }
+
+  /** Matches Features that match any of the filters. */
+  @NonNull
+  public static GeoJsonFilter or(@NonNull GeoJsonFilter... filters) {
+    GeoJsonFilter[] copy = copyOf(filters);
+    return new GeoJsonFilter() {
+      @NonNull
+      @Override
+      BitSet evaluate(@NonNull FeatureIndex index) {
+        BitSet matches = new BitSet(index.getFeatureCount());
+        for (GeoJsonFilter filter : copy) {
+          matches.or(filter.evaluate(index));
+        }
+        return matches;
+      }
+    };
+  }
+
+  /** Matches Features that do not match the filter. */
+  @NonNull
+  public static GeoJsonFilter not(@NonNull GeoJsonFilter filter) {
+    checkNotNull(filter, "Filter");
+    return new GeoJsonFilter() {
+      @NonNull
+      @Override
+      BitSet evaluate(@NonNull FeatureIndex index) {
+        BitSet matches = filter.evaluate(index);
+        matches.flip(0, index.getFeatureCount());
+        return matches;
+      }
+    };
+  }
+
+  @NonNull
+  private static GeoJsonFilter[] copyOf(@NonNull GeoJsonFilter[] filters) {
+    checkNotNull(filters, "Filters");
+    for (GeoJsonFilter filter : filters) {
+      checkNotNull(filter, "Filter");
+    }
+    return filters.clone();
+  }
+
+  private static void checkNotNull(@Nullable Object value, @NonNull String name) {
+    if (value == null) {
+      throw new IllegalArgumentException(name + " cannot be null.");
+    }
+  }
+}
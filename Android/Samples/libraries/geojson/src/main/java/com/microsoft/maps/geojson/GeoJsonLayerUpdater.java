@@ -0,0 +1,231 @@
+// Copyright (c) Microsoft Corporation.
+// Licensed under the MIT license.
+
+package com.microsoft.maps.geojson;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+import com.microsoft.maps.MapElement;
+import com.microsoft.maps.MapElementLayer;
+import com.microsoft.maps.moduletools.LayerReconciler;
+import com.microsoft.maps.moduletools.LayerUpdateResult;
+import com.microsoft.maps.moduletools.MapFactories;
+import com.microsoft.maps.moduletools.ParseDiagnostic;
+import com.microsoft.maps.moduletools.ParseOptions;
+import java.util.ArrayList;
+import java.util.List;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Keeps a MapGeoJsonLayer in step with successive versions of a GeoJSON document, such as a feed
+ * that is fetched again periodically. Each call to update(String) compares the Features of the new
+ * version with the current ones:
+ *
+ * <ul>
+ *   <li>Features whose text is unchanged keep their elements, and are not parsed again.
+ *   <li>Changed Features with the same "id" as a current one update its elements in place, as long
+ *       as their geometry still creates elements of the same types.
+ *   <li>Other new Features add elements to the end of the layer, and the elements of Features that
+ *       are gone are removed.
+ * </ul>
+ *
+ * <p>Icon clustering and tiled layers are not supported, as they take over the elements of the
+ * layer.
+ */
+public class GeoJsonLayerUpdater {
+
+  private final MapFactories mFactory;
+  private final ParseOptions mOptions;
+  private final MapElementLayer mLayer;
+  private final LayerReconciler<GeoJsonFeature> mReconciler;
+
+  public GeoJsonLayerUpdater() {
+    this(new ParseOptions());
+  }
+
+  /**
+   * Creates an updater with an empty layer, which parses Features with the given options.
+   *
+   * @param options options controlling how the GeoJSON is parsed
+   */
+  public GeoJsonLayerUpdater(@NonNull ParseOptions options) {
+    this(GeoJsonParser.DEFAULT_MAP_FACTORIES, options);
+  }
+
+  @VisibleForTesting
+  GeoJsonLayerUpdater(@NonNull MapFactories factory, @NonNull ParseOptions options) {
+    if (options == null) {
+      throw new IllegalArgumentException("ParseOptions cannot be null.");
+    }
+    if (options.getIconClusterer() != null || options.getTiledLayer() != null) {
+      throw new IllegalArgumentException(
+          "GeoJsonLayerUpdater does not support icon clustering or tiled layers.");
+    }
+    mFactory = factory;
+    mOptions = options;
+    mLayer = factory.createMapElementLayer();
+    mReconciler = new LayerReconciler<>(mLayer);
+  }
+
+  /** Returns the layer holding the elements of the current version of the document. */
+  @NonNull
+  public MapGeoJsonLayer getLayer() {
+    return (MapGeoJsonLayer) mLayer;
+  }
+
+  @VisibleForTesting
+  @NonNull
+  MapElementLayer getElementLayer() {
+    return mLayer;
+  }
+
+  /**
+   * Updates the layer to a new version of the document. If the document cannot be parsed, the layer
+   * is left as it was.
+   *
+   * @param geojson String of GeoJSON to parse
+   * @return the number of Features added, updated, removed and left unchanged
+   * @throws GeoJsonParseException
+   */
+  @NonNull
+  public LayerUpdateResult update(@NonNull String geojson) throws GeoJsonParseException {
+    if (geojson == null) {
+      throw new IllegalArgumentException("Input String cannot be null.");
+    }
+    mReconciler.beginUpdate();
+    List<PendingFeature> features;
+    try {
+      features = parseChangedFeatures(geojson);
+    } catch (JSONException e) {
+      mReconciler.cancelUpdate();
+      throw new GeoJsonParseException(e.getMessage());
+    } catch (GeoJsonParseException e) {
+      mReconciler.cancelUpdate();
+      throw e;
+    }
+
+    ArrayList<GeoJsonFeature> geoJsonFeatures = new ArrayList<>(features.size());
+    ArrayList<MapElement> changedElements = new ArrayList<>();
+    for (PendingFeature pending : features) {
+      LayerReconciler.Feature<GeoJsonFeature> feature;
+      if (pending.mParser == null) {
+        feature = mReconciler.reuse(pending.mContentHash);
+      } else {
+        List<GeoJsonFeature> parsedFeatures = pending.mParser.getFeatures();
+        GeoJsonFeature data =
+            parsedFeatures == null || parsedFeatures.isEmpty() ? null : parsedFeatures.get(0);
+        feature =
+            mReconciler.put(
+                pending.mId, pending.mContentHash, pending.mParser.getDetachedElements(), data);
+        if (data != null) {
+          data.setElements(feature.getElements());
+        }
+        changedElements.addAll(feature.getElements());
+      }
+      if (feature.getData() != null) {
+        geoJsonFeatures.add(feature.getData());
+      }
+    }
+    LayerUpdateResult result = mReconciler.endUpdate();
+    if (mLayer instanceof MapGeoJsonLayer) {
+      GeoJsonStyle style =
+          mOptions instanceof GeoJsonParseOptions
+              ? ((GeoJsonParseOptions) mOptions).getStyle()
+              : null;
+      ((MapGeoJsonLayer) mLayer).replaceFeatures(geoJsonFeatures, style, changedElements);
+    }
+    return result;
+  }
+
+  /* Splits the document into Features and parses the ones that are not unchanged, without touching
+   * the layer. The features array of a FeatureCollection is split by scanning the raw text, so
+   * unchanged Features are not even read into JSON objects. */
+  @NonNull
+  private List<PendingFeature> parseChangedFeatures(@NonNull String geojson)
+      throws JSONException, GeoJsonParseException {
+    ArrayList<PendingFeature> features = new ArrayList<>();
+    GeoJsonFeatureScanner scanner = new GeoJsonFeatureScanner(geojson);
+    if (scanner.scan()) {
+      JSONObject envelope =
+          new JSONObject(
+              geojson.substring(0, scanner.getFeaturesStart())
+                  + "[]"
+                  + geojson.substring(scanner.getFeaturesEnd()));
+      if (envelope.optString("type").equals("FeatureCollection")) {
+        verifyFeatureCollection(envelope);
+        for (int i = 0; i < scanner.getFeatureCount(); i++) {
+          int start = scanner.getFeatureStart(i);
+          int end = scanner.getFeatureEnd(i);
+          long hash = LayerReconciler.hash(geojson, start, end);
+          features.add(
+              mReconciler.isUnchanged(hash)
+                  ? new PendingFeature(hash)
+                  : parseFeature(new JSONObject(geojson.substring(start, end)), hash, true));
+        }
+        return features;
+      }
+    }
+
+    JSONObject object = new JSONObject(geojson);
+    String type = object.getString("type");
+    if (type.equals("FeatureCollection")) {
+      verifyFeatureCollection(object);
+      JSONArray array = object.getJSONArray("features");
+      for (int i = 0; i < array.length(); i++) {
+        JSONObject feature = array.getJSONObject(i);
+        String text = feature.toString();
+        long hash = LayerReconciler.hash(text, 0, text.length());
+        features.add(
+            mReconciler.isUnchanged(hash)
+                ? new PendingFeature(hash)
+                : parseFeature(feature, hash, true));
+      }
+    } else {
+      // A lone Feature or geometry is a single feature of the layer.
+      boolean isFeature = type.equals("Feature");
+      if (isFeature && object.isNull("geometry")) {
+        throw new GeoJsonParseException(ParseDiagnostic.Code.NULL_GEOMETRY);
+      }
+      long hash = LayerReconciler.hash(geojson, 0, geojson.length());
+      features.add(
+          mReconciler.isUnchanged(hash)
+              ? new PendingFeature(hash)
+              : parseFeature(object, hash, isFeature));
+    }
+    return features;
+  }
+
+  @NonNull
+  private PendingFeature parseFeature(@NonNull JSONObject object, long hash, boolean isFeature)
+      throws JSONException, GeoJsonParseException {
+    GeoJsonParser parser = GeoJsonParser.parseDetached(mFactory, mOptions, object, isFeature);
+    String id = isFeature && !object.isNull("id") ? object.get("id").toString() : null;
+    return new PendingFeature(id, hash, parser);
+  }
+
+  private void verifyFeatureCollection(@NonNull JSONObject object)
+      throws JSONException, GeoJsonParseException {
+    GeoJsonParser.verifyNoMembers(
+        object, GeoJsonParser.FEATURE_COLLECTION_FORBIDDEN_MEMBERS, mOptions.getValidation());
+  }
+
+  /* A Feature of the new version: unchanged, or parsed into elements not added to the layer. */
+  private static final class PendingFeature {
+    private final String mId;
+    private final long mContentHash;
+    private final GeoJsonParser mParser;
+
+    PendingFeature(long contentHash) {
+      this(null, contentHash, null);
+    }
+
+    PendingFeature(@Nullable String id, long contentHash, @Nullable GeoJsonParser parser) {
+      mId = id;
+      mContentHash = contentHash;
+      mParser = parser;
+    }
+  }
+}
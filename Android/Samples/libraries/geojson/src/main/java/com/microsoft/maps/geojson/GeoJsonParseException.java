@@ -3,8 +3,72 @@
 
 package com.microsoft.maps.geojson;
 
+import androidx.annotation.NonNull;
+import com.microsoft.maps.moduletools.ParseDiagnostic;
+
 public class GeoJsonParseException extends Exception {
+
+  private final ParseDiagnostic.Code mCode;
+  /* Values of the message of mCode, or null if the message was given as text. */
+  private final Object[] mArguments;
+  private final int mRecordNumber;
+
   GeoJsonParseException(String errorMessage) {
+    this(errorMessage, ParseDiagnostic.Code.INVALID_INPUT, null, ParseDiagnostic.UNKNOWN);
+  }
+
+  /* The message is formatted from the code and arguments only when it is read. */
+  GeoJsonParseException(@NonNull ParseDiagnostic.Code code, @NonNull Object... arguments) {
+    this(null, code, arguments, ParseDiagnostic.UNKNOWN);
+  }
+
+  /* The error of a record of a GeoJSON sequence, with the code and message values of the error
+   * the record was rejected with. */
+  GeoJsonParseException(@NonNull GeoJsonParseException error, int recordNumber) {
+    this(error.getText(), error.mCode, error.mArguments, recordNumber);
+  }
+
+  private GeoJsonParseException(
+      String errorMessage,
+      @NonNull ParseDiagnostic.Code code,
+      Object[] arguments,
+      int recordNumber) {
     super(errorMessage);
+    mCode = code;
+    mArguments = arguments;
+    mRecordNumber = recordNumber;
+  }
+
+  /** The kind of error. Errors with no more specific code are INVALID_INPUT. */
+  @NonNull
+  public ParseDiagnostic.Code getCode() {
+    return mCode;
+  }
+
+  /**
+   * The number of the record of a GeoJSON sequence the error is in, counting from 1, or
+   * ParseDiagnostic.UNKNOWN if the error is not in a sequence.
+   */
+  public int getRecordNumber() {
+    return mRecordNumber;
+  }
+
+  @Override
+  public String getMessage() {
+    String message = mArguments == null ? getText() : mCode.format(mArguments);
+    if (mRecordNumber == ParseDiagnostic.UNKNOWN) {
+      return message;
+    }
+    return "Record " + mRecordNumber + ": " + message;
+  }
+
+  /* Values of the message, for a diagnostic made from this exception. */
+  @NonNull
+  Object[] getArguments() {
+    return mArguments == null ? new Object[] {getText()} : mArguments;
+  }
+
+  private String getText() {
+    return super.getMessage();
   }
 }
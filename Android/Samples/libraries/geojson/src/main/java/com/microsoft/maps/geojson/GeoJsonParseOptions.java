@@ -0,0 +1,70 @@
+// Copyright (c) Microsoft Corporation.
+// Licensed under the MIT license.
+
+package com.microsoft.maps.geojson;
+
+import androidx.annotation.Nullable;
+import com.microsoft.maps.moduletools.ParseOptions;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/** ParseOptions with settings that only apply to GeoJSON. */
+public class GeoJsonParseOptions extends ParseOptions {
+
+  private boolean mCaptureProperties;
+  private Set<String> mPropertyKeys;
+  private GeoJsonStyle mStyle;
+
+  public GeoJsonParseOptions() {
+    super();
+  }
+
+  /**
+   * Sets whether the "properties" member of each Feature is kept. Captured properties are available
+   * from MapGeoJsonLayer.getFeatures() and MapGeoJsonLayer.getFeature(MapElement). The default is
+   * false, which keeps no properties.
+   */
+  public void setCaptureProperties(boolean captureProperties) {
+    mCaptureProperties = captureProperties;
+  }
+
+  public boolean shouldCaptureProperties() {
+    return mCaptureProperties;
+  }
+
+  /**
+   * Sets which members of each Feature's "properties" are kept, and turns on capturing properties.
+   * Other members are dropped while parsing, so unused attributes cost no memory. Pass null to keep
+   * all members.
+   */
+  public void setPropertyKeys(@Nullable Collection<String> propertyKeys) {
+    if (propertyKeys == null) {
+      mPropertyKeys = null;
+    } else {
+      mPropertyKeys = Collections.unmodifiableSet(new HashSet<>(propertyKeys));
+      mCaptureProperties = true;
+    }
+  }
+
+  /** Returns the property keys to keep, or null if all keys are kept. */
+  @Nullable
+  public Set<String> getPropertyKeys() {
+    return mPropertyKeys;
+  }
+
+  /**
+   * Sets the data-driven style applied to each element as it is created. The properties the style
+   * rules read are captured even if capturing properties is otherwise off, so the style can be
+   * changed later with MapGeoJsonLayer.setStyle(GeoJsonStyle).
+   */
+  public void setStyle(@Nullable GeoJsonStyle style) {
+    mStyle = style;
+  }
+
+  @Nullable
+  public GeoJsonStyle getStyle() {
+    return mStyle;
+  }
+}
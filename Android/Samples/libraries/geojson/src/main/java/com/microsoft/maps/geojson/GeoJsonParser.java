@@ -10,15 +10,39 @@ import com.microsoft.maps.AltitudeReferenceSystem;
 import com.microsoft.maps.Geopath;
 import com.microsoft.maps.Geopoint;
 import com.microsoft.maps.Geoposition;
+import com.microsoft.maps.MapElement;
 import com.microsoft.maps.MapElementLayer;
 import com.microsoft.maps.MapIcon;
 import com.microsoft.maps.MapPolygon;
 import com.microsoft.maps.MapPolyline;
 import com.microsoft.maps.moduletools.AltitudeReferenceSystemWrapper;
+import com.microsoft.maps.moduletools.Antimeridian;
 import com.microsoft.maps.moduletools.DefaultMapFactories;
+import com.microsoft.maps.moduletools.GeoBounds;
 import com.microsoft.maps.moduletools.MapFactories;
+import com.microsoft.maps.moduletools.MapIconClusterer;
+import com.microsoft.maps.moduletools.MappedText;
+import com.microsoft.maps.moduletools.ParallelTasks;
+import com.microsoft.maps.moduletools.ParseDiagnostic;
+import com.microsoft.maps.moduletools.ParseOptions;
 import com.microsoft.maps.moduletools.ParsingHelpers;
+import com.microsoft.maps.moduletools.PolygonRings;
+import com.microsoft.maps.moduletools.TiledMapLayer;
+import com.microsoft.maps.moduletools.ValidationLevel;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
@@ -34,8 +58,51 @@ public class GeoJsonParser {
   private MapElementLayer mLayer;
   private MapFactories mFactory;
   private boolean mDidWarn;
+  private ValidationLevel mValidation = ValidationLevel.STRICT;
+  /* Factor of the coordinate precision, or 0 if coordinates are not rounded. */
+  private double mQuantizationScale;
+  private boolean mSplitAtAntimeridian;
+  private boolean mNormalizePolygons;
+  private boolean mSkipInvalidFeatures;
+  /* Non-null when invalid Features are skipped or a diagnostic listener is set, in document
+   * order. */
+  private ArrayList<ParseDiagnostic> mDiagnostics;
+  /* Position of the Feature being parsed, for its diagnostics. */
+  private int mFeatureIndex;
+  private int mFeatureOffset = ParseDiagnostic.UNKNOWN;
+  /* Non-null for parsers that parse a chunk of features on a worker thread. Elements are collected
+   * here and added to the layer by the parser that owns it, in document order. */
+  private ArrayList<MapElement> mChunkElements;
+  private GeoJsonParseOptions mGeoJsonOptions;
+  /* Non-null when properties are captured or a style is set. */
+  private ArrayList<GeoJsonFeature> mFeatures;
+  private GeoJsonFeature mCurrentFeature;
+  /* Bounds of the positions parsed, not counting Features that were skipped. */
+  private GeoBounds mBounds;
+  /* Bounds given by the "bbox" member of a FeatureCollection when TRUSTED, which are those of the
+   * layer. */
+  private GeoBounds mDeclaredBounds;
+  /* Bounds of the Feature being parsed, which are added to mBounds once it is complete. */
+  private GeoBounds mFeatureBounds;
+  /* Bounds that positions are added to as they are read: mFeatureBounds, mBounds outside a
+   * Feature, or null when bounds given by a "bbox" member stand in for them. */
+  private GeoBounds mCurrentBounds;
+  /* Sums of the positions of the Feature being parsed, for its centroid. */
+  private double mLatitudeSum;
+  private double mLongitudeSum;
+  private int mPositionCount;
+  /* Properties to capture, or null for all of them. */
+  private Set<String> mPropertyKeys;
+  private GeoJsonStyle mStyle;
+  private GeoJsonStyle.Values mCurrentStyleValues;
+  private MapIconClusterer mIconClusterer;
+  /* Icons held back for mIconClusterer, in document order. */
+  private ArrayList<MapIcon> mClusteredIcons;
+  private TiledMapLayer mTiledLayer;
+  /* Elements held back for mTiledLayer, in document order. */
+  private ArrayList<MapElement> mTiledElements;
 
-  private static final MapFactories DEFAULT_MAP_FACTORIES =
+  static final MapFactories DEFAULT_MAP_FACTORIES =
       new DefaultMapFactories() {
         @Override
         public MapGeoJsonLayer createMapElementLayer() {
@@ -43,6 +110,18 @@ public class GeoJsonParser {
         }
       };
 
+  private static final GeoJsonParseOptions DEFAULT_GEOJSON_OPTIONS = new GeoJsonParseOptions();
+
+  /* More chunks than threads keeps all threads busy when feature sizes vary widely. */
+  private static final int CHUNKS_PER_THREAD = 4;
+
+  /* Members that objects of each kind cannot have, shared so no array is allocated per object. */
+  static final String[] FEATURE_COLLECTION_FORBIDDEN_MEMBERS = {
+    "geometry", "properties", "coordinates", "geometries"
+  };
+  private static final String[] FEATURE_FORBIDDEN_MEMBERS = {"features"};
+  private static final String[] GEOMETRY_FORBIDDEN_MEMBERS = {"geometry", "properties", "features"};
+
   @VisibleForTesting
   GeoJsonParser() {}
 
@@ -55,13 +134,97 @@ public class GeoJsonParser {
    */
   @NonNull
   public static MapGeoJsonLayer parse(@NonNull String geojson) throws GeoJsonParseException {
+    return parse(geojson, new ParseOptions());
+  }
+
+  /**
+   * Parses geojson String and returns a MapGeoJsonLayer with all shapes from the geojson String,
+   * using the given options.
+   *
+   * @param geojson String of GeoJSON to parse
+   * @param options options controlling how the GeoJSON is parsed
+   * @return MapGeoJsonLayer containing all objects
+   * @throws GeoJsonParseException
+   */
+  @NonNull
+  public static MapGeoJsonLayer parse(@NonNull String geojson, @NonNull ParseOptions options)
+      throws GeoJsonParseException {
     if (geojson == null) {
       throw new IllegalArgumentException("Input String cannot be null.");
     }
+    if (options == null) {
+      throw new IllegalArgumentException("ParseOptions cannot be null.");
+    }
 
     GeoJsonParser instance = new GeoJsonParser();
     try {
-      return (MapGeoJsonLayer) instance.internalParse(geojson, DEFAULT_MAP_FACTORIES);
+      return (MapGeoJsonLayer) instance.internalParse(geojson, DEFAULT_MAP_FACTORIES, options);
+    } catch (JSONException e) {
+      throw new GeoJsonParseException(e.getMessage());
+    }
+  }
+
+  /**
+   * Parses a GeoJSON file and returns a MapGeoJsonLayer with all shapes from the file. The file is
+   * memory-mapped rather than read into a String, and the Features of a FeatureCollection are
+   * parsed one at a time, so the whole document is never held in the Java heap.
+   *
+   * @param file UTF-8 GeoJSON file to parse
+   * @return MapGeoJsonLayer containing all objects
+   * @throws GeoJsonParseException
+   * @throws IOException
+   */
+  @NonNull
+  public static MapGeoJsonLayer parseFile(@NonNull File file)
+      throws GeoJsonParseException, IOException {
+    return parseFile(file, new ParseOptions());
+  }
+
+  /**
+   * Parses a GeoJSON file with the given options and returns a MapGeoJsonLayer with all shapes from
+   * the file. The file is memory-mapped rather than read into a String, and the Features of a
+   * FeatureCollection are parsed one at a time, so the whole document is never held in the Java
+   * heap.
+   *
+   * @param file UTF-8 GeoJSON file to parse
+   * @param options options controlling how the GeoJSON is parsed
+   * @return MapGeoJsonLayer containing all objects
+   * @throws GeoJsonParseException
+   * @throws IOException
+   */
+  @NonNull
+  public static MapGeoJsonLayer parseFile(@NonNull File file, @NonNull ParseOptions options)
+      throws GeoJsonParseException, IOException {
+    return parseMapped(MappedText.map(file), options);
+  }
+
+  /**
+   * Parses the GeoJSON file of a channel with the given options and returns a MapGeoJsonLayer with
+   * all shapes from the file. The file is memory-mapped rather than read into a String. The channel
+   * is not closed.
+   *
+   * @param channel channel of a UTF-8 GeoJSON file, opened for reading
+   * @param options options controlling how the GeoJSON is parsed
+   * @return MapGeoJsonLayer containing all objects
+   * @throws GeoJsonParseException
+   * @throws IOException
+   */
+  @NonNull
+  public static MapGeoJsonLayer parseFile(
+      @NonNull FileChannel channel, @NonNull ParseOptions options)
+      throws GeoJsonParseException, IOException {
+    return parseMapped(MappedText.map(channel), options);
+  }
+
+  @NonNull
+  private static MapGeoJsonLayer parseMapped(
+      @NonNull MappedText geojson, @NonNull ParseOptions options) throws GeoJsonParseException {
+    if (options == null) {
+      throw new IllegalArgumentException("ParseOptions cannot be null.");
+    }
+    GeoJsonParser instance = new GeoJsonParser();
+    try {
+      return (MapGeoJsonLayer) instance.internalParse(geojson, DEFAULT_MAP_FACTORIES, options);
     } catch (JSONException e) {
       throw new GeoJsonParseException(e.getMessage());
     }
@@ -69,27 +232,293 @@ public class GeoJsonParser {
 
   @VisibleForTesting
   @NonNull
-  MapElementLayer internalParse(@NonNull String geojson, @NonNull MapFactories factory)
+  MapElementLayer internalParse(@NonNull CharSequence geojson, @NonNull MapFactories factory)
+      throws JSONException, GeoJsonParseException {
+    return internalParse(geojson, factory, new ParseOptions());
+  }
+
+  @VisibleForTesting
+  @NonNull
+  MapElementLayer internalParse(
+      @NonNull CharSequence geojson, @NonNull MapFactories factory, @NonNull ParseOptions options)
       throws JSONException, GeoJsonParseException {
     mLayer = factory.createMapElementLayer();
-    mFactory = factory;
+    setUp(factory, options);
+    mIconClusterer = options.getIconClusterer();
+    if (mIconClusterer != null) {
+      mClusteredIcons = new ArrayList<>();
+    }
+    mTiledLayer = options.getTiledLayer();
+    if (mTiledLayer != null) {
+      mTiledElements = new ArrayList<>();
+    }
+    mSkipInvalidFeatures = options.shouldSkipInvalidFeatures();
+    if (mSkipInvalidFeatures || options.getDiagnosticListener() != null) {
+      mDiagnostics = new ArrayList<>();
+    }
 
-    JSONObject object = new JSONObject(geojson);
-    String type = object.getString("type");
+    // Text that is not a String, such as a mapped file, is parsed one Feature at a time so it is
+    // never copied to the heap as a whole.
+    // Diagnostics are only located in the text by the chunked parse.
+    if ((options.getParallelism() > 1 || !(geojson instanceof String) || mDiagnostics != null)
+        && parseFeatureCollectionInChunks(geojson, options)) {
+      reportDiagnostics(geojson, options);
+      return mLayer;
+    }
+
+    if (mDiagnostics != null) {
+      // Warnings recorded before the chunked parse gave up are recorded again.
+      mDiagnostics.clear();
+    }
+    parseRoot(new JSONObject(geojson.toString()));
+    addFeaturesToLayer();
+    addHeldBackElements();
+    reportDiagnostics(geojson, options);
+    return mLayer;
+  }
+
+  private void reportDiagnostics(@NonNull CharSequence geojson, @NonNull ParseOptions options) {
+    if (mDiagnostics != null) {
+      ParsingHelpers.reportDiagnostics(mDiagnostics, geojson, options.getDiagnosticListener());
+    }
+  }
 
+  /* Parses a top-level GeoJSON object: a FeatureCollection, a Feature or a geometry. */
+  private void parseRoot(@NonNull JSONObject object) throws JSONException, GeoJsonParseException {
+    String type = object.getString("type");
     if (type.equals("FeatureCollection")) {
       parseFeatureCollection(object);
     } else {
       if (type.equals("Feature")) {
         if (object.isNull("geometry")) {
-          throw new GeoJsonParseException("Feature geometry cannot be null.");
+          throw new GeoJsonParseException(ParseDiagnostic.Code.NULL_GEOMETRY);
         }
-        verifyNoMembers(object, new String[] {"features"});
+        verifyNoMembers(object, FEATURE_FORBIDDEN_MEMBERS);
+        beginFeature(object);
         object = object.getJSONObject("geometry");
       }
       switchToType(object);
+      endFeature();
     }
-    return mLayer;
+  }
+
+  private void setUp(@NonNull MapFactories factory, @NonNull ParseOptions options) {
+    mFactory = factory;
+    mValidation = options.getValidation();
+    mQuantizationScale = ParsingHelpers.getQuantizationScale(options);
+    mSplitAtAntimeridian = options.shouldSplitAtAntimeridian();
+    mNormalizePolygons = options.shouldNormalizePolygons();
+    mBounds = new GeoBounds();
+    mCurrentBounds = mBounds;
+    mGeoJsonOptions =
+        options instanceof GeoJsonParseOptions
+            ? (GeoJsonParseOptions) options
+            : DEFAULT_GEOJSON_OPTIONS;
+    mStyle = mGeoJsonOptions.getStyle();
+    mPropertyKeys = mGeoJsonOptions.getPropertyKeys();
+    if (mStyle != null) {
+      Set<String> styleKeys = mStyle.getPropertyNames();
+      if (!mGeoJsonOptions.shouldCaptureProperties()) {
+        mPropertyKeys = styleKeys;
+      } else if (mPropertyKeys != null) {
+        HashSet<String> keys = new HashSet<>(mPropertyKeys);
+        keys.addAll(styleKeys);
+        mPropertyKeys = keys;
+      }
+    }
+    if (mGeoJsonOptions.shouldCaptureProperties() || mStyle != null) {
+      mFeatures = new ArrayList<>();
+    }
+  }
+
+  @VisibleForTesting
+  @Nullable
+  List<GeoJsonFeature> getFeatures() {
+    return mFeatures;
+  }
+
+  /* Bounds of the elements parsed, or those given by the "bbox" member of the FeatureCollection
+   * when TRUSTED. */
+  @NonNull
+  GeoBounds getBounds() {
+    return mDeclaredBounds != null ? mDeclaredBounds : mBounds;
+  }
+
+  /**
+   * Parses a single Feature, or a geometry if isFeature is false, into elements that are not added
+   * to any layer. Used by GeoJsonLayerUpdater for the Features that changed.
+   */
+  @NonNull
+  static GeoJsonParser parseDetached(
+      @NonNull MapFactories factory,
+      @NonNull ParseOptions options,
+      @NonNull JSONObject object,
+      boolean isFeature)
+      throws JSONException, GeoJsonParseException {
+    GeoJsonParser worker = new GeoJsonParser();
+    worker.setUp(factory, options);
+    worker.mChunkElements = new ArrayList<>();
+    if (isFeature) {
+      worker.parseFeature(object);
+    } else {
+      worker.switchToType(object);
+    }
+    return worker;
+  }
+
+  /**
+   * Parses a top-level GeoJSON text, such as a record of a GeoJSON text sequence, into elements
+   * that are not added to any layer. Used by GeoJsonSequenceParser.
+   */
+  @NonNull
+  static GeoJsonParser parseDetached(
+      @NonNull MapFactories factory, @NonNull ParseOptions options, @NonNull String geojson)
+      throws JSONException, GeoJsonParseException {
+    GeoJsonParser worker = new GeoJsonParser();
+    worker.setUp(factory, options);
+    worker.mChunkElements = new ArrayList<>();
+    worker.parseRoot(new JSONObject(geojson));
+    return worker;
+  }
+
+  /* Elements collected by a parser that does not own a layer. */
+  @NonNull
+  List<MapElement> getDetachedElements() {
+    return mChunkElements;
+  }
+
+  private void addFeaturesToLayer() {
+    if (mLayer instanceof MapGeoJsonLayer) {
+      if (mFeatures != null) {
+        ((MapGeoJsonLayer) mLayer).addFeatures(mFeatures, mStyle);
+      }
+      ((MapGeoJsonLayer) mLayer).extendBounds(getBounds());
+    }
+  }
+
+  /* Starts collecting the bounds of a Feature, and its elements if properties are captured or a
+   * style is set. A "bbox" member is used as the bounds when TRUSTED; the positions are then only
+   * added up for the centroid. When a FeatureCollection "bbox" gives the bounds of the layer and
+   * Features are not kept, no bounds are collected at all. */
+  private void beginFeature(@NonNull JSONObject feature) throws JSONException {
+    GeoBounds declaredBounds =
+        mValidation == ValidationLevel.TRUSTED ? readBoundingBox(feature) : null;
+    if (declaredBounds != null) {
+      mFeatureBounds = declaredBounds;
+      mCurrentBounds = null;
+    } else if (mDeclaredBounds != null && mFeatures == null) {
+      mFeatureBounds = null;
+      mCurrentBounds = null;
+    } else {
+      mFeatureBounds = new GeoBounds();
+      mCurrentBounds = mFeatureBounds;
+    }
+    mLatitudeSum = 0;
+    mLongitudeSum = 0;
+    mPositionCount = 0;
+    if (mFeatures == null) {
+      return;
+    }
+    mCurrentFeature = new GeoJsonFeature(captureProperties(feature.optJSONObject("properties")));
+    mFeatures.add(mCurrentFeature);
+    if (mStyle != null) {
+      mCurrentStyleValues = mStyle.evaluate(mCurrentFeature);
+      mCurrentFeature.setStyleValues(mStyle, mCurrentStyleValues);
+    }
+  }
+
+  /* Adds the bounds of the Feature to those of the layer, unless it was skipped, and gives the
+   * Feature its bounds and centroid. */
+  private void endFeature() {
+    if (mFeatureBounds != null) {
+      mBounds.extend(mFeatureBounds);
+      if (mCurrentFeature != null) {
+        mCurrentFeature.setExtent(
+            mFeatureBounds,
+            mPositionCount == 0
+                ? null
+                : new Geoposition(mLatitudeSum / mPositionCount, mLongitudeSum / mPositionCount));
+      }
+    }
+    mFeatureBounds = null;
+    mCurrentBounds = mBounds;
+    mCurrentFeature = null;
+    mCurrentStyleValues = null;
+  }
+
+  /* Returns the bounds given by the "bbox" member of the object, or null if it has none or they
+   * cross the antimeridian, which GeoBounds cannot hold. */
+  @Nullable
+  private static GeoBounds readBoundingBox(@NonNull JSONObject object) {
+    JSONArray bbox = object.optJSONArray("bbox");
+    if (bbox == null || (bbox.length() != 4 && bbox.length() != 6)) {
+      return null;
+    }
+    int dimensions = bbox.length() / 2;
+    double west = bbox.optDouble(0);
+    double south = bbox.optDouble(1);
+    double east = bbox.optDouble(dimensions);
+    double north = bbox.optDouble(dimensions + 1);
+    if (Double.isNaN(west + south + east + north) || west > east || south > north) {
+      return null;
+    }
+    GeoBounds bounds = new GeoBounds();
+    bounds.extend(north, west);
+    bounds.extend(south, east);
+    return bounds;
+  }
+
+  @NonNull
+  private Map<String, Object> captureProperties(@Nullable JSONObject properties)
+      throws JSONException {
+    if (properties == null) {
+      return Collections.emptyMap();
+    }
+    Set<String> keys = mPropertyKeys;
+    if (keys != null) {
+      HashMap<String, Object> captured = new HashMap<>();
+      for (String key : keys) {
+        if (properties.has(key)) {
+          captured.put(key, toPropertyValue(properties.get(key)));
+        }
+      }
+      return captured;
+    }
+    HashMap<String, Object> captured = new HashMap<>();
+    Iterator<String> iterator = properties.keys();
+    while (iterator.hasNext()) {
+      String key = iterator.next();
+      captured.put(key, toPropertyValue(properties.get(key)));
+    }
+    return captured;
+  }
+
+  /* Converts org.json values into plain Java values, so captured properties do not depend on
+   * org.json types. */
+  @Nullable
+  private static Object toPropertyValue(@Nullable Object value) throws JSONException {
+    if (value == null || value == JSONObject.NULL) {
+      return null;
+    }
+    if (value instanceof JSONObject) {
+      JSONObject object = (JSONObject) value;
+      LinkedHashMap<String, Object> map = new LinkedHashMap<>();
+      Iterator<String> iterator = object.keys();
+      while (iterator.hasNext()) {
+        String key = iterator.next();
+        map.put(key, toPropertyValue(object.get(key)));
+      }
+      return map;
+    }
+    if (value instanceof JSONArray) {
+      JSONArray array = (JSONArray) value;
+      ArrayList<Object> list = new ArrayList<>(array.length());
+      for (int i = 0; i < array.length(); i++) {
+        list.add(toPropertyValue(array.get(i)));
+      }
+      return list;
+    }
+    return value;
   }
 
   private void switchToType(@NonNull JSONObject object)
@@ -118,10 +547,9 @@ public class GeoJsonParser {
         parseGeometryCollection(object);
         break;
       default:
-        throw new GeoJsonParseException(
-            "Expected a GeoJSON Geometry type, instead saw: \"" + type + "\"");
+        throw new GeoJsonParseException(ParseDiagnostic.Code.UNKNOWN_GEOMETRY_TYPE, type);
     }
-    verifyNoMembers(object, new String[] {"geometry", "properties", "features"});
+    verifyNoMembers(object, GEOMETRY_FORBIDDEN_MEMBERS);
   }
 
   @NonNull
@@ -133,27 +561,76 @@ public class GeoJsonParser {
       @NonNull Geoposition position, AltitudeReferenceSystem altitudeReferenceSystem) {
     MapIcon icon = mFactory.createMapIcon();
     icon.setLocation(new Geopoint(position, altitudeReferenceSystem));
-    mLayer.getElements().add(icon);
+    addElement(icon);
   }
 
   private void createPolylineAndAddToLayer(
       @NonNull ArrayList<Geoposition> positions, AltitudeReferenceSystem altitudeReferenceSystem) {
-    MapPolyline line = mFactory.createMapPolyline();
-    line.setPath(new Geopath(positions, altitudeReferenceSystem));
-    mLayer.getElements().add(line);
+    List<ArrayList<Geoposition>> paths =
+        mSplitAtAntimeridian
+            ? Antimeridian.splitLine(positions)
+            : Collections.singletonList(positions);
+    for (ArrayList<Geoposition> path : paths) {
+      MapPolyline line = mFactory.createMapPolyline();
+      line.setPath(new Geopath(path, altitudeReferenceSystem));
+      addElement(line);
+    }
   }
 
   private void createPolygonAndAddToLayer(
       @NonNull ArrayList<ArrayList<Geoposition>> positionLists,
       AltitudeReferenceSystem altitudeReferenceSystem) {
-    ArrayList<Geopath> rings = new ArrayList<>(positionLists.size());
-    for (ArrayList<Geoposition> ring : positionLists) {
-      Geopath path = new Geopath(ring, altitudeReferenceSystem);
-      rings.add(path);
+    List<ArrayList<ArrayList<Geoposition>>> polygons =
+        mSplitAtAntimeridian
+            ? Antimeridian.splitPolygon(positionLists)
+            : Collections.singletonList(positionLists);
+    for (ArrayList<ArrayList<Geoposition>> polygonRings : polygons) {
+      ArrayList<Geopath> rings = new ArrayList<>(polygonRings.size());
+      for (ArrayList<Geoposition> ring : polygonRings) {
+        Geopath path = new Geopath(ring, altitudeReferenceSystem);
+        rings.add(path);
+      }
+      MapPolygon polygon = mFactory.createMapPolygon();
+      polygon.setPaths(rings);
+      addElement(polygon);
+    }
+  }
+
+  private void addElement(@NonNull MapElement element) {
+    if (mCurrentFeature != null) {
+      mCurrentFeature.addElement(element);
+    }
+    if (mCurrentStyleValues != null) {
+      mCurrentStyleValues.applyTo(element);
+    }
+    if (mChunkElements != null) {
+      mChunkElements.add(element);
+    } else {
+      addToLayer(element);
+    }
+  }
+
+  /* Adds the element to the layer, or holds it back for the clusterer or the tiled layer. */
+  private void addToLayer(@NonNull MapElement element) {
+    if (mClusteredIcons != null && element instanceof MapIcon) {
+      mClusteredIcons.add((MapIcon) element);
+    } else if (mTiledElements != null) {
+      mTiledElements.add(element);
+    } else {
+      mLayer.getElements().add(element);
+    }
+  }
+
+  private void addHeldBackElements() {
+    if (mClusteredIcons != null) {
+      if (mLayer instanceof MapGeoJsonLayer) {
+        ((MapGeoJsonLayer) mLayer).setIconClusterer(mIconClusterer);
+      }
+      mIconClusterer.setIcons(mLayer, mClusteredIcons, mFactory);
+    }
+    if (mTiledElements != null) {
+      mTiledLayer.addElements(mFactory, mTiledElements);
     }
-    MapPolygon polygon = mFactory.createMapPolygon();
-    polygon.setPaths(rings);
-    mLayer.getElements().add(polygon);
   }
 
   private void parseGeometryCollection(@NonNull JSONObject object)
@@ -167,19 +644,208 @@ public class GeoJsonParser {
 
   private void parseFeatureCollection(@NonNull JSONObject object)
       throws JSONException, GeoJsonParseException {
-    verifyNoMembers(object, new String[] {"geometry", "properties", "coordinates", "geometries"});
+    verifyNoMembers(object, FEATURE_COLLECTION_FORBIDDEN_MEMBERS);
+    if (mValidation == ValidationLevel.TRUSTED) {
+      mDeclaredBounds = readBoundingBox(object);
+    }
     JSONArray array = object.getJSONArray("features");
+    if (mDiagnostics == null) {
+      for (int i = 0; i < array.length(); i++) {
+        parseFeature(array.getJSONObject(i));
+      }
+      return;
+    }
+    // Elements are held back so those of a skipped Feature can be dropped.
+    boolean ownsLayer = mChunkElements == null;
+    if (ownsLayer) {
+      mChunkElements = new ArrayList<>();
+    }
     for (int i = 0; i < array.length(); i++) {
-      JSONObject element = array.getJSONObject(i);
-      String feature = element.getString("type");
-      if (!feature.equals("Feature")) {
-        throw new GeoJsonParseException(
-            "GeoJSON Features must have type \"Feature\" instead saw: " + feature);
+      int index = i;
+      parseFeatureOrSkip(() -> array.getJSONObject(index), index, ParseDiagnostic.UNKNOWN);
+    }
+    if (ownsLayer) {
+      for (MapElement element : mChunkElements) {
+        addToLayer(element);
       }
-      verifyNoMembers(element, new String[] {"features"});
-      JSONObject shape = element.getJSONObject("geometry");
-      switchToType(shape);
+      mChunkElements = null;
+    }
+  }
+
+  /* Parses a Feature of a FeatureCollection into mChunkElements, recording diagnostics at its
+   * position. If invalid Features are skipped and this one cannot be read or is not valid, whatever
+   * it added is removed and an error is recorded instead of its warnings. */
+  private void parseFeatureOrSkip(@NonNull FeatureSource source, int index, int offset)
+      throws JSONException, GeoJsonParseException {
+    mFeatureIndex = index;
+    mFeatureOffset = offset;
+    int elementCount = mChunkElements.size();
+    int featureCount = mFeatures == null ? 0 : mFeatures.size();
+    int diagnosticCount = mDiagnostics.size();
+    try {
+      parseFeature(source.read());
+    } catch (JSONException | GeoJsonParseException e) {
+      if (!mSkipInvalidFeatures) {
+        throw e;
+      }
+      mChunkElements.subList(elementCount, mChunkElements.size()).clear();
+      if (mFeatures != null) {
+        mFeatures.subList(featureCount, mFeatures.size()).clear();
+      }
+      mDiagnostics.subList(diagnosticCount, mDiagnostics.size()).clear();
+      mFeatureBounds = null;
+      endFeature();
+      mDiagnostics.add(
+          e instanceof GeoJsonParseException
+              ? new ParseDiagnostic(
+                  ((GeoJsonParseException) e).getCode(),
+                  ParseDiagnostic.Severity.ERROR,
+                  index,
+                  offset,
+                  ParseDiagnostic.UNKNOWN,
+                  ParseDiagnostic.UNKNOWN,
+                  ((GeoJsonParseException) e).getArguments())
+              : new ParseDiagnostic(
+                  ParseDiagnostic.Code.INVALID_INPUT,
+                  ParseDiagnostic.Severity.ERROR,
+                  index,
+                  offset,
+                  ParseDiagnostic.UNKNOWN,
+                  ParseDiagnostic.UNKNOWN,
+                  e.getMessage()));
+    }
+  }
+
+  /* Records a repair made to the Feature being parsed, if diagnostics are reported. */
+  private void warn(@NonNull ParseDiagnostic.Code code, @NonNull Object... arguments) {
+    if (mDiagnostics != null) {
+      mDiagnostics.add(
+          new ParseDiagnostic(
+              code,
+              ParseDiagnostic.Severity.WARNING,
+              mFeatureIndex,
+              mFeatureOffset,
+              ParseDiagnostic.UNKNOWN,
+              ParseDiagnostic.UNKNOWN,
+              arguments));
+    }
+  }
+
+  private void parseFeature(@NonNull JSONObject element)
+      throws JSONException, GeoJsonParseException {
+    String feature = element.getString("type");
+    if (!feature.equals("Feature")) {
+      throw new GeoJsonParseException(ParseDiagnostic.Code.NOT_A_FEATURE, feature);
+    }
+    verifyNoMembers(element, FEATURE_FORBIDDEN_MEMBERS);
+    JSONObject shape = element.getJSONObject("geometry");
+    beginFeature(element);
+    switchToType(shape);
+    endFeature();
+  }
+
+  /* Splits the features array of a FeatureCollection into chunks by scanning the raw text, and
+   * parses the chunks on a thread pool, or in order on this thread with a parallelism of 1. Each
+   * Feature is copied out of the text on its own. Returns false without adding anything to the
+   * layer if the input is not a FeatureCollection the scanner recognizes, so the caller can parse
+   * it sequentially. If any chunk fails, the whole document is parsed again sequentially so the
+   * exception thrown is exactly the one the sequential parser reports. */
+  private boolean parseFeatureCollectionInChunks(
+      @NonNull CharSequence geojson, @NonNull ParseOptions options)
+      throws JSONException, GeoJsonParseException {
+    GeoJsonFeatureScanner scanner = new GeoJsonFeatureScanner(geojson);
+    if (!scanner.scan() || scanner.getFeatureCount() < 2) {
+      return false;
+    }
+    JSONObject envelope =
+        new JSONObject(
+            geojson.subSequence(0, scanner.getFeaturesStart())
+                + "[]"
+                + geojson.subSequence(scanner.getFeaturesEnd(), geojson.length()));
+    if (!envelope.optString("type").equals("FeatureCollection")) {
+      return false;
     }
+    verifyNoMembers(envelope, FEATURE_COLLECTION_FORBIDDEN_MEMBERS);
+    if (mValidation == ValidationLevel.TRUSTED) {
+      mDeclaredBounds = readBoundingBox(envelope);
+    }
+
+    int featureCount = scanner.getFeatureCount();
+    List<GeoJsonParser> workers;
+    if (options.getParallelism() <= 1) {
+      try {
+        workers = Collections.singletonList(parseFeatureChunk(geojson, scanner, 0, featureCount));
+      } catch (JSONException | GeoJsonParseException e) {
+        return false;
+      }
+      addChunks(workers);
+      return true;
+    }
+    int chunkCount = Math.min(featureCount, options.getParallelism() * CHUNKS_PER_THREAD);
+    List<Callable<GeoJsonParser>> tasks = new ArrayList<>(chunkCount);
+    for (int chunk = 0; chunk < chunkCount; chunk++) {
+      int firstFeature = (int) ((long) featureCount * chunk / chunkCount);
+      int endFeature = (int) ((long) featureCount * (chunk + 1) / chunkCount);
+      tasks.add(() -> parseFeatureChunk(geojson, scanner, firstFeature, endFeature));
+    }
+
+    try {
+      workers = ParallelTasks.invokeAllInOrder(tasks, options.getParallelism());
+    } catch (ExecutionException e) {
+      return false;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new GeoJsonParseException("Parsing was interrupted.");
+    }
+    addChunks(workers);
+    return true;
+  }
+
+  private void addChunks(@NonNull List<GeoJsonParser> workers) {
+    for (GeoJsonParser worker : workers) {
+      for (MapElement element : worker.mChunkElements) {
+        addToLayer(element);
+      }
+      if (mFeatures != null) {
+        mFeatures.addAll(worker.mFeatures);
+      }
+      mBounds.extend(worker.mBounds);
+      if (mDiagnostics != null) {
+        mDiagnostics.addAll(worker.mDiagnostics);
+      }
+    }
+    addFeaturesToLayer();
+    addHeldBackElements();
+  }
+
+  @NonNull
+  private GeoJsonParser parseFeatureChunk(
+      @NonNull CharSequence geojson,
+      @NonNull GeoJsonFeatureScanner scanner,
+      int firstFeature,
+      int endFeature)
+      throws JSONException, GeoJsonParseException {
+    GeoJsonParser worker = new GeoJsonParser();
+    worker.setUp(mFactory, mGeoJsonOptions);
+    worker.mValidation = mValidation;
+    worker.mQuantizationScale = mQuantizationScale;
+    worker.mSplitAtAntimeridian = mSplitAtAntimeridian;
+    worker.mNormalizePolygons = mNormalizePolygons;
+    worker.mDeclaredBounds = mDeclaredBounds;
+    worker.mSkipInvalidFeatures = mSkipInvalidFeatures;
+    worker.mDiagnostics = mDiagnostics == null ? null : new ArrayList<>();
+    worker.mChunkElements = new ArrayList<>();
+    for (int i = firstFeature; i < endFeature; i++) {
+      int start = scanner.getFeatureStart(i);
+      int end = scanner.getFeatureEnd(i);
+      if (worker.mDiagnostics != null) {
+        worker.parseFeatureOrSkip(
+            () -> new JSONObject(geojson.subSequence(start, end).toString()), i, start);
+      } else {
+        worker.parseFeature(new JSONObject(geojson.subSequence(start, end).toString()));
+      }
+    }
+    return worker;
   }
 
   private void parsePolygon(@NonNull JSONArray jsonRings)
@@ -204,15 +870,68 @@ public class GeoJsonParser {
     for (int i = 0; i < jsonRings.length(); i++) {
       JSONArray pathArray = jsonRings.getJSONArray(i);
       ArrayList<Geoposition> path = parsePositionArray(pathArray, altitudeReferenceSystemWrapper);
-      String exceptionMessage = ParsingHelpers.getErrorMessageForPolygonRing(path);
-      if (exceptionMessage != null) {
-        throw new GeoJsonParseException(exceptionMessage);
+      if (mValidation == ValidationLevel.LENIENT && ParsingHelpers.closePolygonRing(path)) {
+        // The diagnostic names the last position the ring had before it was closed.
+        warn(
+            ParseDiagnostic.Code.RING_NOT_CLOSED,
+            ParsingHelpers.getPolygonRingArguments(
+                ParseDiagnostic.Code.RING_NOT_CLOSED, path.subList(0, path.size() - 1)));
+      }
+      if (mValidation != ValidationLevel.TRUSTED) {
+        ParseDiagnostic.Code code = ParsingHelpers.checkPolygonRing(path);
+        if (code != null) {
+          throw new GeoJsonParseException(code, ParsingHelpers.getPolygonRingArguments(code, path));
+        }
+      }
+      if (mQuantizationScale != 0) {
+        ParsingHelpers.removeRepeatedPositions(path, 4);
       }
       rings.add(path);
     }
+    if (mNormalizePolygons) {
+      normalizePolygon(rings);
+    }
     return rings;
   }
 
+  /* Unless TRUSTED, checks the rings of the polygon, outer ring first, then winds the outer ring
+   * counterclockwise and the holes clockwise. */
+  private void normalizePolygon(@NonNull ArrayList<ArrayList<Geoposition>> rings)
+      throws GeoJsonParseException {
+    if (mValidation != ValidationLevel.TRUSTED && !rings.isEmpty()) {
+      checkPolygon(rings);
+    }
+    for (int i = 0; i < rings.size(); i++) {
+      PolygonRings.orient(rings.get(i), i == 0);
+    }
+  }
+
+  /* Checks that no ring intersects itself and that each hole is inside the outer ring. Positions
+   * in messages are those of the input. LENIENT removes holes that are outside. */
+  private void checkPolygon(@NonNull ArrayList<ArrayList<Geoposition>> rings)
+      throws GeoJsonParseException {
+    for (int i = 0; i < rings.size(); i++) {
+      int[] edges = PolygonRings.findSelfIntersection(rings.get(i));
+      if (edges != null) {
+        if (mValidation == ValidationLevel.STRICT) {
+          throw new GeoJsonParseException(
+              ParseDiagnostic.Code.RING_SELF_INTERSECTION, i, edges[0], edges[1]);
+        }
+        warn(ParseDiagnostic.Code.RING_SELF_INTERSECTION, i, edges[0], edges[1]);
+      }
+    }
+    Iterator<ArrayList<Geoposition>> holes = rings.listIterator(1);
+    for (int i = 1; holes.hasNext(); i++) {
+      if (!PolygonRings.contains(rings.get(0), holes.next())) {
+        if (mValidation == ValidationLevel.STRICT) {
+          throw new GeoJsonParseException(ParseDiagnostic.Code.HOLE_OUTSIDE_POLYGON, i);
+        }
+        warn(ParseDiagnostic.Code.HOLE_OUTSIDE_POLYGON, i);
+        holes.remove();
+      }
+    }
+  }
+
   private void parseMultiPolygon(@NonNull JSONArray coordinates)
       throws JSONException, GeoJsonParseException {
     ArrayList<ArrayList> polygons = new ArrayList<>(coordinates.length());
@@ -264,9 +983,9 @@ public class GeoJsonParser {
       @NonNull JSONArray jsonArray,
       @NonNull AltitudeReferenceSystemWrapper altitudeReferenceSystemWrapper)
       throws GeoJsonParseException, JSONException {
-    if (jsonArray.length() < 2) {
+    if (jsonArray.length() < 2 && mValidation != ValidationLevel.TRUSTED) {
       throw new GeoJsonParseException(
-          "Linestring must contain at least 2 positions. Instead saw: " + jsonArray);
+          ParseDiagnostic.Code.TOO_FEW_POSITIONS, "Linestring", 2, jsonArray);
     }
     return parsePositionArray(jsonArray, altitudeReferenceSystemWrapper);
   }
@@ -276,6 +995,9 @@ public class GeoJsonParser {
     AltitudeReferenceSystemWrapper altitudeReferenceSystemWrapper =
         new AltitudeReferenceSystemWrapper(AltitudeReferenceSystem.ELLIPSOID);
     ArrayList<Geoposition> positions = parseLineArray(pathArray, altitudeReferenceSystemWrapper);
+    if (mQuantizationScale != 0) {
+      ParsingHelpers.removeRepeatedPositions(positions, 2);
+    }
     ParsingHelpers.setAltitudesToZeroIfAtSurface(
         positions, altitudeReferenceSystemWrapper.getAltitudeReferenceSystem());
     createPolylineAndAddToLayer(
@@ -289,7 +1011,11 @@ public class GeoJsonParser {
         new AltitudeReferenceSystemWrapper(AltitudeReferenceSystem.ELLIPSOID);
     for (int i = 0; i < coordinates.length(); i++) {
       JSONArray pathArray = coordinates.getJSONArray(i);
-      lines.add(parsePositionArray(pathArray, altitudeReferenceSystemWrapper));
+      ArrayList<Geoposition> line = parsePositionArray(pathArray, altitudeReferenceSystemWrapper);
+      if (mQuantizationScale != 0) {
+        ParsingHelpers.removeRepeatedPositions(line, 2);
+      }
+      lines.add(line);
     }
     for (ArrayList<Geoposition> line : lines) {
       ParsingHelpers.setAltitudesToZeroIfAtSurface(
@@ -299,12 +1025,32 @@ public class GeoJsonParser {
     }
   }
 
-  private static void verifyNoMembers(@NonNull JSONObject object, @NonNull String[] members)
+  /* Checks that the object has none of the members when STRICT, and reports the members ignored
+   * when LENIENT. */
+  private void verifyNoMembers(@NonNull JSONObject object, @NonNull String[] members)
+      throws JSONException, GeoJsonParseException {
+    if (mValidation == ValidationLevel.LENIENT && mDiagnostics != null) {
+      for (String member : members) {
+        if (object.has(member)) {
+          warn(ParseDiagnostic.Code.FORBIDDEN_MEMBER, object.optString("type"), member);
+        }
+      }
+    } else {
+      verifyNoMembers(object, members, mValidation);
+    }
+  }
+
+  /* Checks that the object has none of the members, unless validation is not STRICT. */
+  static void verifyNoMembers(
+      @NonNull JSONObject object, @NonNull String[] members, @NonNull ValidationLevel validation)
       throws JSONException, GeoJsonParseException {
+    if (validation != ValidationLevel.STRICT) {
+      return;
+    }
     for (String str : members) {
       if (object.has(str)) {
-        String type = object.getString("type");
-        throw new GeoJsonParseException(type + " cannot have a \"" + str + "\" member.");
+        throw new GeoJsonParseException(
+            ParseDiagnostic.Code.FORBIDDEN_MEMBER, object.getString("type"), str);
       }
     }
   }
@@ -314,16 +1060,35 @@ public class GeoJsonParser {
       throws JSONException, GeoJsonParseException {
     if (coordinates.length() >= 2) {
       double longitude = coordinates.getDouble(0);
-      if (longitude < -180 || longitude > 180) {
-        throw new GeoJsonParseException(
-            "Longitude must be in the range [-180, 180], instead saw: " + longitude);
+      double latitude = coordinates.getDouble(1);
+      if (mValidation == ValidationLevel.LENIENT) {
+        if (longitude < -180 || longitude > 180) {
+          warn(ParseDiagnostic.Code.LONGITUDE_OUT_OF_RANGE, longitude);
+          longitude = ParsingHelpers.wrapLongitude(longitude);
+        }
+        if (latitude < -90 || latitude > 90) {
+          warn(ParseDiagnostic.Code.LATITUDE_OUT_OF_RANGE, latitude);
+          latitude = ParsingHelpers.clampLatitude(latitude);
+        }
+      } else if (mValidation == ValidationLevel.STRICT) {
+        if (longitude < -180 || longitude > 180) {
+          throw new GeoJsonParseException(ParseDiagnostic.Code.LONGITUDE_OUT_OF_RANGE, longitude);
+        }
+        if (latitude < -90 || latitude > 90) {
+          throw new GeoJsonParseException(ParseDiagnostic.Code.LATITUDE_OUT_OF_RANGE, latitude);
+        }
+      }
+      if (mQuantizationScale != 0) {
+        longitude = ParsingHelpers.quantize(longitude, mQuantizationScale);
+        latitude = ParsingHelpers.quantize(latitude, mQuantizationScale);
       }
 
-      double latitude = coordinates.getDouble(1);
-      if (latitude < -90 || latitude > 90) {
-        throw new GeoJsonParseException(
-            "Latitude must be in the range [-90, 90], instead saw: " + latitude);
+      if (mCurrentBounds != null) {
+        mCurrentBounds.extend(latitude, longitude);
       }
+      mLatitudeSum += latitude;
+      mLongitudeSum += longitude;
+      mPositionCount++;
 
       if (coordinates.length() > 2) {
         double altitude = coordinates.getDouble(2);
@@ -331,9 +1096,7 @@ public class GeoJsonParser {
       }
       return new Geoposition(latitude, longitude);
     } else {
-      throw new GeoJsonParseException(
-          "coordinates array must contain at least latitude and longitude, instead saw: "
-              + coordinates.toString());
+      throw new GeoJsonParseException(ParseDiagnostic.Code.MISSING_COORDINATE, coordinates);
     }
   }
 
@@ -357,4 +1120,10 @@ public class GeoJsonParser {
     }
     return path;
   }
+
+  /* Reads a Feature of a FeatureCollection, from a JSONArray or from the text. */
+  private interface FeatureSource {
+    @NonNull
+    JSONObject read() throws JSONException;
+  }
 }
@@ -0,0 +1,340 @@
+// Copyright (c) Microsoft Corporation.
+// Licensed under the MIT license.
+
+package com.microsoft.maps.geojson;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.VisibleForTesting;
+import com.microsoft.maps.MapElement;
+import com.microsoft.maps.MapElementLayer;
+import com.microsoft.maps.moduletools.MapFactories;
+import com.microsoft.maps.moduletools.ParallelTasks;
+import com.microsoft.maps.moduletools.ParseOptions;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import org.json.JSONException;
+
+/**
+ * Parses GeoJSON text sequences (RFC 8464), in which each record starts with a record separator
+ * (U+001E), and newline-delimited GeoJSON, in which each record is on its own line. Each record is
+ * a Feature, a geometry or a FeatureCollection, and is parsed on its own.
+ *
+ * <p>Text can be appended as it arrives, for example while tailing a growing file: the elements of
+ * each complete record are added to the layer, and only the incomplete record at the end is kept
+ * until more text arrives. A record ends at a record separator, or at a line feed outside of any
+ * JSON object, array or string, so pretty-printed records are read as one record in either form.
+ *
+ * <p>Icon clustering and tiled layers are not supported, as they take over the elements of the
+ * layer.
+ */
+public class GeoJsonSequenceParser {
+
+  private static final char RECORD_SEPARATOR = '\u001E';
+  /* Size of the chunks read from a Reader, which bounds the text held besides the current
+   * record. */
+  private static final int READ_BUFFER_SIZE = 8192;
+
+  private final MapFactories mFactory;
+  private final ParseOptions mOptions;
+  private final MapElementLayer mLayer;
+  /* Text of the incomplete record at the end of the input so far. */
+  private final StringBuilder mRecord = new StringBuilder();
+  /* Bracket depth and string state at the end of mRecord. */
+  private int mDepth;
+  private boolean mIsInString;
+  private boolean mIsEscaped;
+  private int mRecordCount;
+  /* Records completed so far, including invalid ones, used to number records in errors. */
+  private int mCompletedRecordCount;
+
+  public GeoJsonSequenceParser() {
+    this(new ParseOptions());
+  }
+
+  /**
+   * Creates a parser with an empty layer, which parses records with the given options. With a
+   * parallelism above 1, the complete records of each append are parsed on that many threads.
+   *
+   * @param options options controlling how the GeoJSON is parsed
+   */
+  public GeoJsonSequenceParser(@NonNull ParseOptions options) {
+    this(GeoJsonParser.DEFAULT_MAP_FACTORIES, options);
+  }
+
+  @VisibleForTesting
+  GeoJsonSequenceParser(@NonNull MapFactories factory, @NonNull ParseOptions options) {
+    if (options == null) {
+      throw new IllegalArgumentException("ParseOptions cannot be null.");
+    }
+    if (options.getIconClusterer() != null || options.getTiledLayer() != null) {
+      throw new IllegalArgumentException(
+          "GeoJsonSequenceParser does not support icon clustering or tiled layers.");
+    }
+    mFactory = factory;
+    mOptions = options;
+    mLayer = factory.createMapElementLayer();
+  }
+
+  /**
+   * Parses a whole GeoJSON text sequence or newline-delimited GeoJSON String and returns a
+   * MapGeoJsonLayer with the shapes of all records.
+   *
+   * @param geojson String of GeoJSON records to parse
+   * @return MapGeoJsonLayer containing all objects
+   * @throws GeoJsonParseException
+   */
+  @NonNull
+  public static MapGeoJsonLayer parse(@NonNull String geojson) throws GeoJsonParseException {
+    return parse(geojson, new ParseOptions());
+  }
+
+  /**
+   * Parses a whole GeoJSON text sequence or newline-delimited GeoJSON String and returns a
+   * MapGeoJsonLayer with the shapes of all records.
+   *
+   * @param geojson String of GeoJSON records to parse
+   * @param options options controlling how the GeoJSON is parsed
+   * @return MapGeoJsonLayer containing all objects
+   * @throws GeoJsonParseException
+   */
+  @NonNull
+  public static MapGeoJsonLayer parse(@NonNull String geojson, @NonNull ParseOptions options)
+      throws GeoJsonParseException {
+    if (geojson == null) {
+      throw new IllegalArgumentException("Input String cannot be null.");
+    }
+    GeoJsonSequenceParser parser = new GeoJsonSequenceParser(options);
+    parser.append(geojson);
+    parser.finish();
+    return parser.getLayer();
+  }
+
+  /** Returns the layer holding the elements of the records parsed so far. */
+  @NonNull
+  public MapGeoJsonLayer getLayer() {
+    return (MapGeoJsonLayer) mLayer;
+  }
+
+  @VisibleForTesting
+  @NonNull
+  MapElementLayer getElementLayer() {
+    return mLayer;
+  }
+
+  /** Returns the number of records whose elements were added to the layer. */
+  public int getRecordCount() {
+    return mRecordCount;
+  }
+
+  /**
+   * Appends text to the input and adds the elements of the records it completes to the layer. If
+   * records are not valid GeoJSON, the valid records are still added, the invalid ones are
+   * discarded and a GeoJsonParseException for the first one is thrown. Appending can continue after
+   * it.
+   *
+   * @param text the next part of the input
+   * @return the number of records added
+   * @throws GeoJsonParseException
+   */
+  public int append(@NonNull CharSequence text) throws GeoJsonParseException {
+    if (text == null) {
+      throw new IllegalArgumentException("Input text cannot be null.");
+    }
+    ArrayList<String> records = new ArrayList<>();
+    for (int i = 0; i < text.length(); i++) {
+      char c = text.charAt(i);
+      if (c == RECORD_SEPARATOR) {
+        completeRecord(records);
+        continue;
+      }
+      if (mRecord.length() == 0 && Character.isWhitespace(c)) {
+        continue;
+      }
+      mRecord.append(c);
+      if (mIsInString) {
+        if (mIsEscaped) {
+          mIsEscaped = false;
+        } else if (c == '\\') {
+          mIsEscaped = true;
+        } else if (c == '"') {
+          mIsInString = false;
+        }
+      } else if (c == '"') {
+        mIsInString = true;
+      } else if (c == '{' || c == '[') {
+        mDepth++;
+      } else if (c == '}' || c == ']') {
+        mDepth--;
+      } else if (c == '\n' && mDepth <= 0) {
+        completeRecord(records);
+      }
+    }
+    return addRecords(records);
+  }
+
+  /**
+   * Reads the Reader to its current end and adds the elements of the records read, holding no more
+   * than one record and a small buffer in memory. The Reader is not closed, so a growing file can
+   * be read again from where this call stopped, including after an invalid record.
+   *
+   * @return the number of records added
+   * @throws IOException
+   * @throws GeoJsonParseException
+   */
+  public int read(@NonNull Reader reader) throws IOException, GeoJsonParseException {
+    if (reader == null) {
+      throw new IllegalArgumentException("Reader cannot be null.");
+    }
+    char[] buffer = new char[READ_BUFFER_SIZE];
+    int count = 0;
+    int length;
+    while ((length = reader.read(buffer)) > 0) {
+      count += append(new String(buffer, 0, length));
+    }
+    return count;
+  }
+
+  /**
+   * Adds the elements of the last record, at the end of the input, if it was not terminated.
+   *
+   * @return the number of records added
+   * @throws GeoJsonParseException
+   */
+  public int finish() throws GeoJsonParseException {
+    ArrayList<String> records = new ArrayList<>(1);
+    completeRecord(records);
+    return addRecords(records);
+  }
+
+  private void completeRecord(@NonNull List<String> records) {
+    String record = mRecord.toString().trim();
+    if (!record.isEmpty()) {
+      records.add(record);
+    }
+    mRecord.setLength(0);
+    mDepth = 0;
+    mIsInString = false;
+    mIsEscaped = false;
+  }
+
+  /* Parses the records, on several threads if the options allow it, and adds the elements of the
+   * valid records to the layer. */
+  private int addRecords(@NonNull List<String> records) throws GeoJsonParseException {
+    if (records.isEmpty()) {
+      return 0;
+    }
+    int firstNumber = mCompletedRecordCount + 1;
+    mCompletedRecordCount += records.size();
+    List<ParsedRecord> parsedRecords;
+    if (mOptions.getParallelism() > 1 && records.size() > 1) {
+      parsedRecords = parseInParallel(records, firstNumber);
+    } else {
+      parsedRecords = parseRecords(records, 0, records.size(), firstNumber);
+    }
+
+    ArrayList<GeoJsonFeature> features = new ArrayList<>();
+    ArrayList<MapElement> elements = new ArrayList<>();
+    GeoJsonParseException error = null;
+    int count = 0;
+    for (ParsedRecord record : parsedRecords) {
+      if (record.mError != null) {
+        if (error == null) {
+          error = record.mError;
+        }
+        continue;
+      }
+      elements.addAll(record.mParser.getDetachedElements());
+      if (record.mParser.getFeatures() != null) {
+        features.addAll(record.mParser.getFeatures());
+      }
+      count++;
+    }
+    for (MapElement element : elements) {
+      mLayer.getElements().add(element);
+    }
+    if (mLayer instanceof MapGeoJsonLayer) {
+      GeoJsonStyle style =
+          mOptions instanceof GeoJsonParseOptions
+              ? ((GeoJsonParseOptions) mOptions).getStyle()
+              : null;
+      ((MapGeoJsonLayer) mLayer).appendFeatures(features, style, elements);
+      for (ParsedRecord record : parsedRecords) {
+        if (record.mError == null) {
+          ((MapGeoJsonLayer) mLayer).extendBounds(record.mParser.getBounds());
+        }
+      }
+    }
+    mRecordCount += count;
+    if (error != null) {
+      throw error;
+    }
+    return count;
+  }
+
+  @NonNull
+  private List<ParsedRecord> parseInParallel(@NonNull List<String> records, int firstNumber)
+      throws GeoJsonParseException {
+    int parallelism = mOptions.getParallelism();
+    int chunkCount = Math.min(records.size(), parallelism);
+    List<Callable<List<ParsedRecord>>> tasks = new ArrayList<>(chunkCount);
+    for (int chunk = 0; chunk < chunkCount; chunk++) {
+      int firstRecord = (int) ((long) records.size() * chunk / chunkCount);
+      int endRecord = (int) ((long) records.size() * (chunk + 1) / chunkCount);
+      tasks.add(() -> parseRecords(records, firstRecord, endRecord, firstNumber));
+    }
+    List<ParsedRecord> parsedRecords = new ArrayList<>(records.size());
+    try {
+      for (List<ParsedRecord> chunk : ParallelTasks.invokeAllInOrder(tasks, parallelism)) {
+        parsedRecords.addAll(chunk);
+      }
+    } catch (ExecutionException e) {
+      throw new GeoJsonParseException(e.getCause().getMessage());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new GeoJsonParseException("Parsing was interrupted.");
+    }
+    return parsedRecords;
+  }
+
+  /* Parses each record on its own, keeping the error of a record instead of stopping. */
+  @NonNull
+  private List<ParsedRecord> parseRecords(
+      @NonNull List<String> records, int start, int end, int firstNumber) {
+    ArrayList<ParsedRecord> parsedRecords = new ArrayList<>(end - start);
+    for (int i = start; i < end; i++) {
+      int recordNumber = firstNumber + i;
+      try {
+        parsedRecords.add(
+            new ParsedRecord(GeoJsonParser.parseDetached(mFactory, mOptions, records.get(i))));
+      } catch (GeoJsonParseException e) {
+        parsedRecords.add(new ParsedRecord(new GeoJsonParseException(e, recordNumber)));
+      } catch (JSONException e) {
+        parsedRecords.add(
+            new ParsedRecord(
+                new GeoJsonParseException(
+                    new GeoJsonParseException(e.getMessage()), recordNumber)));
+      }
+    }
+    return parsedRecords;
+  }
+
+  /* A parsed record, or the error that made it invalid. */
+  private static final class ParsedRecord {
+    private final GeoJsonParser mParser;
+    private final GeoJsonParseException mError;
+
+    ParsedRecord(@NonNull GeoJsonParser parser) {
+      mParser = parser;
+      mError = null;
+    }
+
+    ParsedRecord(@NonNull GeoJsonParseException error) {
+      mParser = null;
+      mError = error;
+    }
+  }
+}
@@ -0,0 +1,154 @@
+// Copyright (c) Microsoft Corporation.
+// Licensed under the MIT license.
+
+package com.microsoft.maps.geojson;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import com.microsoft.maps.MapElement;
+import com.microsoft.maps.MapPolygon;
+import com.microsoft.maps.MapPolyline;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Data-driven style for the shapes of a MapGeoJsonLayer. Each attribute is computed per Feature by
+ * a StyleRule over the Feature's properties. Set the style on GeoJsonParseOptions to style elements
+ * as they are created, or on the layer to restyle all elements in one pass.
+ */
+public class GeoJsonStyle {
+
+  private StyleRule<Integer> mFillColorRule;
+  private StyleRule<Integer> mStrokeColorRule;
+  private StyleRule<Integer> mStrokeWidthRule;
+  private StyleRule<Boolean> mVisibleRule;
+
+  public GeoJsonStyle() {}
+
+  /** Sets the rule for the ARGB fill color of polygons. */
+  public void setFillColorRule(@Nullable StyleRule<Integer> fillColorRule) {
+    mFillColorRule = fillColorRule;
+  }
+
+  @Nullable
+  public StyleRule<Integer> getFillColorRule() {
+    return mFillColorRule;
+  }
+
+  /** Sets the rule for the ARGB color of polylines and the outline of polygons. */
+  public void setStrokeColorRule(@Nullable StyleRule<Integer> strokeColorRule) {
+    mStrokeColorRule = strokeColorRule;
+  }
+
+  @Nullable
+  public StyleRule<Integer> getStrokeColorRule() {
+    return mStrokeColorRule;
+  }
+
+  /** Sets the rule for the width of polylines and the outline of polygons. */
+  public void setStrokeWidthRule(@Nullable StyleRule<Integer> strokeWidthRule) {
+    mStrokeWidthRule = strokeWidthRule;
+  }
+
+  @Nullable
+  public StyleRule<Integer> getStrokeWidthRule() {
+    return mStrokeWidthRule;
+  }
+
+  /** Sets the rule for whether the shapes of a Feature are visible. */
+  public void setVisibleRule(@Nullable StyleRule<Boolean> visibleRule) {
+    mVisibleRule = visibleRule;
+  }
+
+  @Nullable
+  public StyleRule<Boolean> getVisibleRule() {
+    return mVisibleRule;
+  }
+
+  /* The properties the rules read, which the parser must capture. */
+  @NonNull
+  Set<String> getPropertyNames() {
+    HashSet<String> names = new HashSet<>();
+    addPropertyName(names, mFillColorRule);
+    addPropertyName(names, mStrokeColorRule);
+    addPropertyName(names, mStrokeWidthRule);
+    addPropertyName(names, mVisibleRule);
+    return names;
+  }
+
+  private static void addPropertyName(@NonNull Set<String> names, @Nullable StyleRule<?> rule) {
+    if (rule != null) {
+      names.add(rule.getProperty());
+    }
+  }
+
+  /* Evaluates every rule once for the feature. */
+  @NonNull
+  Values evaluate(@NonNull GeoJsonFeature feature) {
+    return new Values(
+        evaluate(mFillColorRule, feature),
+        evaluate(mStrokeColorRule, feature),
+        evaluate(mStrokeWidthRule, feature),
+        evaluate(mVisibleRule, feature));
+  }
+
+  /* The rule results for one Feature. A null member means no rule produced a value, and the
+   * attribute is left to the layer-wide style. */
+  static final class Values {
+
+    static final Values NONE = new Values(null, null, null, null);
+
+    @Nullable final Integer mFillColor;
+    @Nullable final Integer mStrokeColor;
+    @Nullable final Integer mStrokeWidth;
+    @Nullable final Boolean mVisible;
+
+    Values(
+        @Nullable Integer fillColor,
+        @Nullable Integer strokeColor,
+        @Nullable Integer strokeWidth,
+        @Nullable Boolean visible) {
+      mFillColor = fillColor;
+      mStrokeColor = strokeColor;
+      mStrokeWidth = strokeWidth;
+      mVisible = visible;
+    }
+
+    boolean isVisible() {
+      return mVisible == null || mVisible;
+    }
+
+    /* Sets only the attributes the rules produced, so an element created during parsing keeps its
+     * default style for the rest. */
+    void applyTo(@NonNull MapElement element) {
+      if (element instanceof MapPolygon) {
+        MapPolygon polygon = (MapPolygon) element;
+        if (mFillColor != null) {
+          polygon.setFillColor(mFillColor);
+        }
+        if (mStrokeColor != null) {
+          polygon.setStrokeColor(mStrokeColor);
+        }
+        if (mStrokeWidth != null) {
+          polygon.setStrokeWidth(mStrokeWidth);
+        }
+      } else if (element instanceof MapPolyline) {
+        MapPolyline line = (MapPolyline) element;
+        if (mStrokeColor != null) {
+          line.setStrokeColor(mStrokeColor);
+        }
+        if (mStrokeWidth != null) {
+          line.setStrokeWidth(mStrokeWidth);
+        }
+      }
+      if (!isVisible()) {
+        element.setVisible(false);
+      }
+    }
+  }
+
+  @Nullable
+  private static <T> T evaluate(@Nullable StyleRule<T> rule, @NonNull GeoJsonFeature feature) {
+    return rule == null ? null : rule.evaluate(feature);
+  }
+}
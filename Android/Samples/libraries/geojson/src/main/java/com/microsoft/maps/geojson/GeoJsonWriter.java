@@ -0,0 +1,374 @@
+// Copyright (c) Microsoft Corporation.
+// Licensed under the MIT license.
+
+package com.microsoft.maps.geojson;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import com.microsoft.maps.AltitudeReferenceSystem;
+import com.microsoft.maps.Geopath;
+import com.microsoft.maps.Geopoint;
+import com.microsoft.maps.Geoposition;
+import com.microsoft.maps.MapElement;
+import com.microsoft.maps.MapElementLayer;
+import com.microsoft.maps.MapIcon;
+import com.microsoft.maps.MapPolygon;
+import com.microsoft.maps.MapPolyline;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Class that writes map elements as a GeoJSON FeatureCollection to an OutputStream. Features are
+ * streamed as they are written, without building JSON objects, so memory use does not grow with the
+ * size of the output.
+ *
+ * <p>Icons are written as Points, polylines as LineStrings and polygons as Polygons. Several
+ * elements of one Feature are written as a MultiPoint, MultiLineString or MultiPolygon if they are
+ * of the same type, and as a GeometryCollection otherwise. Positions of shapes whose altitude
+ * reference system is SURFACE are written without an altitude.
+ */
+public class GeoJsonWriter {
+
+  private final Writer mWriter;
+  private boolean mHasStarted;
+  private boolean mHasFeatures;
+  private boolean mIsFinished;
+
+  /**
+   * Creates a writer to the given stream. Call finish() after writing all Features to complete the
+   * FeatureCollection; the stream itself is not closed.
+   */
+  public GeoJsonWriter(@NonNull OutputStream outputStream) {
+    if (outputStream == null) {
+      throw new IllegalArgumentException("OutputStream cannot be null.");
+    }
+    mWriter = new BufferedWriter(new OutputStreamWriter(outputStream, UTF_8));
+  }
+
+  /**
+   * Writes all elements of the layer as a FeatureCollection.
+   *
+   * @param layer layer whose elements are written
+   * @param outputStream stream to write to, which is flushed but not closed
+   * @throws IOException
+   */
+  public static void write(@NonNull MapElementLayer layer, @NonNull OutputStream outputStream)
+      throws IOException {
+    if (layer == null) {
+      throw new IllegalArgumentException("Layer cannot be null.");
+    }
+    GeoJsonWriter writer = new GeoJsonWriter(outputStream);
+    writer.writeLayer(layer);
+    writer.finish();
+  }
+
+  /**
+   * Writes the elements of the layer. For a MapGeoJsonLayer with captured Features, each Feature is
+   * written once with its properties, when its first element is reached. Other elements are each
+   * written as a Feature without properties.
+   */
+  public void writeLayer(@NonNull MapElementLayer layer) throws IOException {
+    MapGeoJsonLayer geoJsonLayer =
+        layer instanceof MapGeoJsonLayer ? (MapGeoJsonLayer) layer : null;
+    IdentityHashMap<GeoJsonFeature, Boolean> writtenFeatures = new IdentityHashMap<>();
+    for (MapElement element : layer.getElements()) {
+      GeoJsonFeature feature = geoJsonLayer == null ? null : geoJsonLayer.getFeature(element);
+      if (feature == null) {
+        writeFeature(Collections.singletonList(element), null);
+      } else if (writtenFeatures.put(feature, Boolean.TRUE) == null) {
+        writeFeature(feature);
+      }
+    }
+  }
+
+  /** Writes a Feature with its elements and captured properties. */
+  public void writeFeature(@NonNull GeoJsonFeature feature) throws IOException {
+    writeFeature(feature.getElements(), feature.getProperties());
+  }
+
+  /**
+   * Writes a Feature whose geometry is made of the given elements. Elements other than icons,
+   * polylines and polygons are skipped, and a Feature without any is written with a null geometry.
+   * Property values may be Maps, Lists, Strings, Numbers, Booleans or null; other values are
+   * written as Strings.
+   */
+  public void writeFeature(
+      @NonNull List<? extends MapElement> elements, @Nullable Map<String, ?> properties)
+      throws IOException {
+    if (mIsFinished) {
+      throw new IllegalStateException("Cannot write Features after finish().");
+    }
+    if (!mHasStarted) {
+      mWriter.write("{\"type\":\"FeatureCollection\",\"features\":[");
+      mHasStarted = true;
+    }
+    if (mHasFeatures) {
+      mWriter.write(',');
+    }
+    mHasFeatures = true;
+    mWriter.write("{\"type\":\"Feature\",\"geometry\":");
+    writeGeometry(elements);
+    mWriter.write(",\"properties\":");
+    if (properties == null) {
+      mWriter.write("null");
+    } else {
+      writeValue(properties);
+    }
+    mWriter.write('}');
+  }
+
+  /** Completes the FeatureCollection and flushes the stream. */
+  public void finish() throws IOException {
+    if (mIsFinished) {
+      return;
+    }
+    if (!mHasStarted) {
+      mWriter.write("{\"type\":\"FeatureCollection\",\"features\":[");
+      mHasStarted = true;
+    }
+    mWriter.write("]}");
+    mWriter.flush();
+    mIsFinished = true;
+  }
+
+  private void writeGeometry(@NonNull List<? extends MapElement> elements) throws IOException {
+    Class<?> type = null;
+    int count = 0;
+    boolean isMixed = false;
+    for (MapElement element : elements) {
+      Class<?> elementType = getGeometryType(element);
+      if (elementType == null) {
+        continue;
+      }
+      if (type != null && type != elementType) {
+        isMixed = true;
+      }
+      type = elementType;
+      count++;
+    }
+    if (count == 0) {
+      mWriter.write("null");
+    } else if (isMixed) {
+      mWriter.write("{\"type\":\"GeometryCollection\",\"geometries\":[");
+      boolean isFirst = true;
+      for (MapElement element : elements) {
+        if (getGeometryType(element) != null) {
+          if (!isFirst) {
+            mWriter.write(',');
+          }
+          isFirst = false;
+          writeSingleGeometry(element);
+        }
+      }
+      mWriter.write("]}");
+    } else if (count == 1) {
+      for (MapElement element : elements) {
+        if (getGeometryType(element) != null) {
+          writeSingleGeometry(element);
+        }
+      }
+    } else {
+      String name =
+          type == MapIcon.class
+              ? "MultiPoint"
+              : type == MapPolyline.class ? "MultiLineString" : "MultiPolygon";
+      mWriter.write("{\"type\":\"" + name + "\",\"coordinates\":[");
+      boolean isFirst = true;
+      for (MapElement element : elements) {
+        if (getGeometryType(element) != null) {
+          if (!isFirst) {
+            mWriter.write(',');
+          }
+          isFirst = false;
+          writeCoordinates(element);
+        }
+      }
+      mWriter.write("]}");
+    }
+  }
+
+  private void writeSingleGeometry(@NonNull MapElement element) throws IOException {
+    String name =
+        element instanceof MapIcon
+            ? "Point"
+            : element instanceof MapPolyline ? "LineString" : "Polygon";
+    mWriter.write("{\"type\":\"" + name + "\",\"coordinates\":");
+    writeCoordinates(element);
+    mWriter.write('}');
+  }
+
+  private void writeCoordinates(@NonNull MapElement element) throws IOException {
+    if (element instanceof MapIcon) {
+      Geopoint location = ((MapIcon) element).getLocation();
+      writePosition(location.getPosition(), hasAltitude(location.getAltitudeReferenceSystem()));
+    } else if (element instanceof MapPolyline) {
+      writePath(((MapPolyline) element).getPath(), false);
+    } else {
+      mWriter.write('[');
+      boolean isFirst = true;
+      for (Geopath ring : ((MapPolygon) element).getPaths()) {
+        if (!isFirst) {
+          mWriter.write(',');
+        }
+        isFirst = false;
+        writePath(ring, true);
+      }
+      mWriter.write(']');
+    }
+  }
+
+  /* Writes the positions of a path. Rings that are not closed are closed by repeating the first
+   * position, as GeoJSON requires. */
+  private void writePath(@NonNull Geopath path, boolean isRing) throws IOException {
+    boolean hasAltitude = hasAltitude(path.getAltitudeReferenceSystem());
+    mWriter.write('[');
+    Geoposition first = null;
+    Geoposition last = null;
+    for (Geoposition position : path) {
+      if (first == null) {
+        first = position;
+      } else {
+        mWriter.write(',');
+      }
+      writePosition(position, hasAltitude);
+      last = position;
+    }
+    if (isRing
+        && first != null
+        && (first.getLatitude() != last.getLatitude()
+            || first.getLongitude() != last.getLongitude()
+            || (hasAltitude && first.getAltitude() != last.getAltitude()))) {
+      mWriter.write(',');
+      writePosition(first, hasAltitude);
+    }
+    mWriter.write(']');
+  }
+
+  private void writePosition(@NonNull Geoposition position, boolean hasAltitude)
+      throws IOException {
+    mWriter.write('[');
+    writeNumber(position.getLongitude());
+    mWriter.write(',');
+    writeNumber(position.getLatitude());
+    if (hasAltitude) {
+      mWriter.write(',');
+      writeNumber(position.getAltitude());
+    }
+    mWriter.write(']');
+  }
+
+  private void writeValue(@Nullable Object value) throws IOException {
+    if (value == null) {
+      mWriter.write("null");
+    } else if (value instanceof Map) {
+      mWriter.write('{');
+      boolean isFirst = true;
+      for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+        if (!isFirst) {
+          mWriter.write(',');
+        }
+        isFirst = false;
+        writeString(String.valueOf(entry.getKey()));
+        mWriter.write(':');
+        writeValue(entry.getValue());
+      }
+      mWriter.write('}');
+    } else if (value instanceof Iterable) {
+      mWriter.write('[');
+      boolean isFirst = true;
+      for (Object item : (Iterable<?>) value) {
+        if (!isFirst) {
+          mWriter.write(',');
+        }
+        isFirst = false;
+        writeValue(item);
+      }
+      mWriter.write(']');
+    } else if (value instanceof Boolean) {
+      mWriter.write(value.toString());
+    } else if (value instanceof Double || value instanceof Float) {
+      double number = ((Number) value).doubleValue();
+      if (Double.isNaN(number) || Double.isInfinite(number)) {
+        // JSON has no representation for these.
+        mWriter.write("null");
+      } else {
+        writeNumber(number);
+      }
+    } else if (value instanceof Number) {
+      mWriter.write(value.toString());
+    } else {
+      writeString(value.toString());
+    }
+  }
+
+  /* Writes integral values without a fraction, so coordinates such as 30 are not written as 30.0.
+   */
+  private void writeNumber(double value) throws IOException {
+    if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+      mWriter.write(Long.toString((long) value));
+    } else {
+      mWriter.write(Double.toString(value));
+    }
+  }
+
+  private void writeString(@NonNull String value) throws IOException {
+    mWriter.write('"');
+    int start = 0;
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c != '"' && c != '\\' && c >= 0x20) {
+        continue;
+      }
+      mWriter.write(value, start, i - start);
+      start = i + 1;
+      switch (c) {
+        case '"':
+          mWriter.write("\\\"");
+          break;
+        case '\\':
+          mWriter.write("\\\\");
+          break;
+        case '\n':
+          mWriter.write("\\n");
+          break;
+        case '\r':
+          mWriter.write("\\r");
+          break;
+        case '\t':
+          mWriter.write("\\t");
+          break;
+        default:
+          mWriter.write(String.format("\\u%04x", (int) c));
+      }
+    }
+    mWriter.write(value, start, value.length() - start);
+    mWriter.write('"');
+  }
+
+  private static boolean hasAltitude(@Nullable AltitudeReferenceSystem altitudeReferenceSystem) {
+    return altitudeReferenceSystem != AltitudeReferenceSystem.SURFACE;
+  }
+
+  @Nullable
+  private static Class<?> getGeometryType(@NonNull MapElement element) {
+    if (element instanceof MapIcon) {
+      return ((MapIcon) element).getLocation() == null ? null : MapIcon.class;
+    }
+    if (element instanceof MapPolyline) {
+      return ((MapPolyline) element).getPath() == null ? null : MapPolyline.class;
+    }
+    if (element instanceof MapPolygon) {
+      return MapPolygon.class;
+    }
+    return null;
+  }
+}
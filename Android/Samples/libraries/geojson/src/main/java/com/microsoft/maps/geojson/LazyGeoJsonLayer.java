@@ -0,0 +1,401 @@
+// Copyright (c) Microsoft Corporation.
+// Licensed under the MIT license.
+
+package com.microsoft.maps.geojson;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+import com.microsoft.maps.GeoboundingBox;
+import com.microsoft.maps.MapElement;
+import com.microsoft.maps.MapElementLayer;
+import com.microsoft.maps.moduletools.GeoBounds;
+import com.microsoft.maps.moduletools.MapFactories;
+import com.microsoft.maps.moduletools.ParallelTasks;
+import com.microsoft.maps.moduletools.ParseOptions;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * A MapGeoJsonLayer whose Features are decoded on demand. Opening the GeoJSON only scans it: the
+ * range of text and the bounds of each Feature are recorded, by reading the numbers of its
+ * coordinates without building any JSON objects or elements. A Feature is fully parsed, and its
+ * elements added to the layer, when it is loaded with load(int) or when its bounds intersect a
+ * viewport passed to setViewport. Loaded elements stay in the layer.
+ *
+ * <p>The input is kept for the lifetime of the layer, and is read again as Features are loaded, so
+ * it should not change. Any CharSequence can be used, including one backed by a memory-mapped file.
+ * Errors in a Feature are reported when it is loaded. A document that is not a FeatureCollection is
+ * a single Feature. Features are added to MapGeoJsonLayer.getFeatures() in the order they are
+ * loaded.
+ *
+ * <p>Icon clustering and tiled layers are not supported, as they take over the elements of the
+ * layer.
+ */
+public class LazyGeoJsonLayer {
+
+  private final MapFactories mFactory;
+  private final ParseOptions mOptions;
+  private final CharSequence mGeojson;
+  private final MapElementLayer mLayer;
+  /* False if the whole document is a single Feature or geometry. */
+  private final boolean mIsFeatureCollection;
+  /* Start and end of each Feature in mGeojson. */
+  private final int[] mFeatureRanges;
+  /* North, west, south and east of each Feature, or NaN if its bounds are not known. */
+  private final double[] mFeatureBounds;
+  private final boolean[] mIsLoaded;
+  private int mLoadedCount;
+
+  private LazyGeoJsonLayer(
+      @NonNull MapFactories factory,
+      @NonNull ParseOptions options,
+      @NonNull CharSequence geojson,
+      boolean isFeatureCollection,
+      @NonNull int[] featureRanges,
+      @NonNull double[] featureBounds) {
+    mFactory = factory;
+    mOptions = options;
+    mGeojson = geojson;
+    mLayer = factory.createMapElementLayer();
+    mIsFeatureCollection = isFeatureCollection;
+    mFeatureRanges = featureRanges;
+    mFeatureBounds = featureBounds;
+    mIsLoaded = new boolean[featureRanges.length / 2];
+  }
+
+  /**
+   * Scans the GeoJSON and returns a layer with no elements, from which Features are loaded on
+   * demand.
+   *
+   * @param geojson GeoJSON to scan, which must not change while the layer is used
+   * @return LazyGeoJsonLayer for the Features of the GeoJSON
+   * @throws GeoJsonParseException
+   */
+  @NonNull
+  public static LazyGeoJsonLayer open(@NonNull CharSequence geojson) throws GeoJsonParseException {
+    return open(geojson, new ParseOptions());
+  }
+
+  /**
+   * Scans the GeoJSON and returns a layer with no elements, from which Features are loaded on
+   * demand with the given options. With a parallelism above 1, the Features loaded by one call are
+   * parsed on that many threads.
+   *
+   * @param geojson GeoJSON to scan, which must not change while the layer is used
+   * @param options options controlling how the GeoJSON is parsed
+   * @return LazyGeoJsonLayer for the Features of the GeoJSON
+   * @throws GeoJsonParseException
+   */
+  @NonNull
+  public static LazyGeoJsonLayer open(@NonNull CharSequence geojson, @NonNull ParseOptions options)
+      throws GeoJsonParseException {
+    return open(geojson, GeoJsonParser.DEFAULT_MAP_FACTORIES, options);
+  }
+
+  @VisibleForTesting
+  @NonNull
+  static LazyGeoJsonLayer open(
+      @NonNull CharSequence geojson, @NonNull MapFactories factory, @NonNull ParseOptions options)
+      throws GeoJsonParseException {
+    if (geojson == null) {
+      throw new IllegalArgumentException("Input String cannot be null.");
+    }
+    if (options == null) {
+      throw new IllegalArgumentException("ParseOptions cannot be null.");
+    }
+    if (options.getIconClusterer() != null || options.getTiledLayer() != null) {
+      throw new IllegalArgumentException(
+          "LazyGeoJsonLayer does not support icon clustering or tiled layers.");
+    }
+
+    GeoJsonFeatureScanner scanner = new GeoJsonFeatureScanner(geojson);
+    int[] featureRanges;
+    boolean isFeatureCollection = scanner.scan() && isFeatureCollection(geojson, scanner, options);
+    if (isFeatureCollection) {
+      featureRanges = new int[2 * scanner.getFeatureCount()];
+      for (int i = 0; i < scanner.getFeatureCount(); i++) {
+        featureRanges[2 * i] = scanner.getFeatureStart(i);
+        featureRanges[2 * i + 1] = scanner.getFeatureEnd(i);
+      }
+    } else {
+      featureRanges = new int[] {0, geojson.length()};
+    }
+
+    double[] featureBounds = new double[2 * featureRanges.length];
+    for (int i = 0; i < featureRanges.length / 2; i++) {
+      GeoBounds bounds = new GeoBounds();
+      if (scanner.addBounds(featureRanges[2 * i], featureRanges[2 * i + 1], bounds)
+          && !bounds.isEmpty()) {
+        featureBounds[4 * i] = bounds.getNorth();
+        featureBounds[4 * i + 1] = bounds.getWest();
+        featureBounds[4 * i + 2] = bounds.getSouth();
+        featureBounds[4 * i + 3] = bounds.getEast();
+      } else {
+        Arrays.fill(featureBounds, 4 * i, 4 * i + 4, Double.NaN);
+      }
+    }
+    return new LazyGeoJsonLayer(
+        factory, options, geojson, isFeatureCollection, featureRanges, featureBounds);
+  }
+
+  /* Checks the members of the FeatureCollection other than its Features, as a full parse does. */
+  private static boolean isFeatureCollection(
+      @NonNull CharSequence geojson,
+      @NonNull GeoJsonFeatureScanner scanner,
+      @NonNull ParseOptions options)
+      throws GeoJsonParseException {
+    try {
+      JSONObject envelope =
+          new JSONObject(
+              geojson.subSequence(0, scanner.getFeaturesStart())
+                  + "[]"
+                  + geojson.subSequence(scanner.getFeaturesEnd(), geojson.length()));
+      if (!envelope.optString("type").equals("FeatureCollection")) {
+        return false;
+      }
+      GeoJsonParser.verifyNoMembers(
+          envelope, GeoJsonParser.FEATURE_COLLECTION_FORBIDDEN_MEMBERS, options.getValidation());
+      return true;
+    } catch (JSONException e) {
+      throw new GeoJsonParseException(e.getMessage());
+    }
+  }
+
+  /** Returns the layer holding the elements of the loaded Features. */
+  @NonNull
+  public MapGeoJsonLayer getLayer() {
+    return (MapGeoJsonLayer) mLayer;
+  }
+
+  @VisibleForTesting
+  @NonNull
+  MapElementLayer getElementLayer() {
+    return mLayer;
+  }
+
+  public int getFeatureCount() {
+    return mIsLoaded.length;
+  }
+
+  public int getLoadedFeatureCount() {
+    return mLoadedCount;
+  }
+
+  public boolean isLoaded(int feature) {
+    return mIsLoaded[feature];
+  }
+
+  /**
+   * Returns the bounds of the positions of the Feature found by the scan, or null if the scan could
+   * not read them, in which case the Feature is loaded by any viewport.
+   */
+  @Nullable
+  public GeoboundingBox getFeatureBounds(int feature) {
+    if (Double.isNaN(mFeatureBounds[4 * feature])) {
+      return null;
+    }
+    GeoBounds bounds = new GeoBounds();
+    bounds.extend(mFeatureBounds[4 * feature], mFeatureBounds[4 * feature + 1]);
+    bounds.extend(mFeatureBounds[4 * feature + 2], mFeatureBounds[4 * feature + 3]);
+    return bounds.toGeoboundingBox();
+  }
+
+  /**
+   * Parses the Feature at the given position in the document and adds its elements to the layer, if
+   * it is not loaded yet.
+   *
+   * @return true if the Feature was loaded by this call
+   * @throws GeoJsonParseException
+   */
+  public boolean load(int feature) throws GeoJsonParseException {
+    if (feature < 0 || feature >= mIsLoaded.length) {
+      throw new IllegalArgumentException("Feature index out of range: " + feature);
+    }
+    return loadFeatures(Collections.singletonList(feature)) > 0;
+  }
+
+  /**
+   * Loads all Features that are not loaded yet.
+   *
+   * @return the number of Features loaded
+   * @throws GeoJsonParseException
+   */
+  public int loadAll() throws GeoJsonParseException {
+    ArrayList<Integer> features = new ArrayList<>();
+    for (int i = 0; i < mIsLoaded.length; i++) {
+      features.add(i);
+    }
+    return loadFeatures(features);
+  }
+
+  /**
+   * Loads the Features whose bounds intersect the viewport.
+   *
+   * @return the number of Features loaded
+   * @throws GeoJsonParseException
+   */
+  public int setViewport(@NonNull GeoboundingBox viewport) throws GeoJsonParseException {
+    return setViewport(
+        viewport.getNorthWestCorner().getLatitude(),
+        viewport.getNorthWestCorner().getLongitude(),
+        viewport.getSouthEastCorner().getLatitude(),
+        viewport.getSouthEastCorner().getLongitude());
+  }
+
+  /**
+   * Loads the Features whose bounds intersect the viewport. A west longitude greater than the east
+   * longitude means the viewport crosses the antimeridian.
+   *
+   * @return the number of Features loaded
+   * @throws GeoJsonParseException
+   */
+  public int setViewport(double north, double west, double south, double east)
+      throws GeoJsonParseException {
+    ArrayList<Integer> features = new ArrayList<>();
+    for (int i = 0; i < mIsLoaded.length; i++) {
+      if (!mIsLoaded[i] && intersects(i, north, west, south, east)) {
+        features.add(i);
+      }
+    }
+    return loadFeatures(features);
+  }
+
+  private boolean intersects(int feature, double north, double west, double south, double east) {
+    double featureNorth = mFeatureBounds[4 * feature];
+    if (Double.isNaN(featureNorth)) {
+      return true;
+    }
+    double featureWest = mFeatureBounds[4 * feature + 1];
+    double featureSouth = mFeatureBounds[4 * feature + 2];
+    double featureEast = mFeatureBounds[4 * feature + 3];
+    if (featureSouth > north || featureNorth < south) {
+      return false;
+    }
+    if (west <= east) {
+      return featureWest <= east && featureEast >= west;
+    }
+    return featureEast >= west || featureWest <= east;
+  }
+
+  /* Parses the Features that are not loaded yet, on several threads if the options allow it, and
+   * adds their elements to the layer in the given order. If a Feature is invalid, the Features
+   * before it are still added. */
+  private int loadFeatures(@NonNull List<Integer> features) throws GeoJsonParseException {
+    ArrayList<Integer> toLoad = new ArrayList<>(features.size());
+    for (int feature : features) {
+      if (!mIsLoaded[feature]) {
+        toLoad.add(feature);
+      }
+    }
+    if (toLoad.isEmpty()) {
+      return 0;
+    }
+
+    List<GeoJsonParser> parsers;
+    GeoJsonParseException error = null;
+    int parallelism = mOptions.getParallelism();
+    if (parallelism > 1 && toLoad.size() > 1) {
+      int chunkCount = Math.min(toLoad.size(), parallelism);
+      List<Callable<List<GeoJsonParser>>> tasks = new ArrayList<>(chunkCount);
+      for (int chunk = 0; chunk < chunkCount; chunk++) {
+        List<Integer> chunkFeatures =
+            toLoad.subList(
+                (int) ((long) toLoad.size() * chunk / chunkCount),
+                (int) ((long) toLoad.size() * (chunk + 1) / chunkCount));
+        tasks.add(
+            () -> {
+              ArrayList<GeoJsonParser> chunkParsers = new ArrayList<>(chunkFeatures.size());
+              parseFeatures(chunkFeatures, chunkParsers);
+              return chunkParsers;
+            });
+      }
+      parsers = new ArrayList<>(toLoad.size());
+      try {
+        for (List<GeoJsonParser> chunk : ParallelTasks.invokeAllInOrder(tasks, parallelism)) {
+          parsers.addAll(chunk);
+        }
+      } catch (ExecutionException e) {
+        // Load the Features before the invalid one, and report its error, as a sequential load
+        // does.
+        parsers = new ArrayList<>(toLoad.size());
+        try {
+          parseFeatures(toLoad, parsers);
+        } catch (GeoJsonParseException sequentialError) {
+          error = sequentialError;
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new GeoJsonParseException("Parsing was interrupted.");
+      }
+    } else {
+      parsers = new ArrayList<>(toLoad.size());
+      try {
+        parseFeatures(toLoad, parsers);
+      } catch (GeoJsonParseException e) {
+        error = e;
+      }
+    }
+    return addParsedFeatures(toLoad, parsers, error);
+  }
+
+  private int addParsedFeatures(
+      @NonNull List<Integer> features,
+      @NonNull List<GeoJsonParser> parsers,
+      @Nullable GeoJsonParseException error)
+      throws GeoJsonParseException {
+    ArrayList<GeoJsonFeature> geoJsonFeatures = new ArrayList<>();
+    ArrayList<MapElement> elements = new ArrayList<>();
+    for (int i = 0; i < parsers.size(); i++) {
+      GeoJsonParser parser = parsers.get(i);
+      elements.addAll(parser.getDetachedElements());
+      if (parser.getFeatures() != null) {
+        geoJsonFeatures.addAll(parser.getFeatures());
+      }
+      mIsLoaded[features.get(i)] = true;
+    }
+    for (MapElement element : elements) {
+      mLayer.getElements().add(element);
+    }
+    if (mLayer instanceof MapGeoJsonLayer) {
+      GeoJsonStyle style =
+          mOptions instanceof GeoJsonParseOptions
+              ? ((GeoJsonParseOptions) mOptions).getStyle()
+              : null;
+      ((MapGeoJsonLayer) mLayer).appendFeatures(geoJsonFeatures, style, elements);
+      for (GeoJsonParser parser : parsers) {
+        ((MapGeoJsonLayer) mLayer).extendBounds(parser.getBounds());
+      }
+    }
+    mLoadedCount += parsers.size();
+    if (error != null) {
+      throw error;
+    }
+    return parsers.size();
+  }
+
+  /* Parses the Features in order into the list of parsers, stopping at the first invalid one. */
+  private void parseFeatures(@NonNull List<Integer> features, @NonNull List<GeoJsonParser> parsers)
+      throws GeoJsonParseException {
+    for (int feature : features) {
+      String text =
+          mGeojson
+              .subSequence(mFeatureRanges[2 * feature], mFeatureRanges[2 * feature + 1])
+              .toString();
+      try {
+        parsers.add(
+            mIsFeatureCollection
+                ? GeoJsonParser.parseDetached(mFactory, mOptions, new JSONObject(text), true)
+                : GeoJsonParser.parseDetached(mFactory, mOptions, text));
+      } catch (JSONException e) {
+        throw new GeoJsonParseException(e.getMessage());
+      }
+    }
+  }
+}
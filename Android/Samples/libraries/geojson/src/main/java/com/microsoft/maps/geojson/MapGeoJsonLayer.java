@@ -5,18 +5,26 @@ package com.microsoft.maps.geojson;
 
 import android.graphics.Color;
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import com.microsoft.maps.GeoboundingBox;
 import com.microsoft.maps.MapElement;
 import com.microsoft.maps.MapElementLayer;
 import com.microsoft.maps.MapIcon;
 import com.microsoft.maps.MapPolygon;
 import com.microsoft.maps.MapPolyline;
+import com.microsoft.maps.moduletools.GeoBounds;
+import com.microsoft.maps.moduletools.MapIconClusterer;
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Class returned by GeoJsonParser. Optionally, the overall style of the shapes in the layer can be
  * set (the same style will be applied to all applicable shapes). Visibility of shapes can be
- * filtered by type.
+ * filtered by type, and by Feature properties with setFilter(GeoJsonFilter).
  *
  * <p>Created by Elizabeth Bartusiak (t-elbart) on 2020-06-08
  */
@@ -31,16 +39,200 @@ public class MapGeoJsonLayer extends MapElementLayer {
   private boolean mArePolylinesVisible = true;
   private boolean mAreIconsVisible = true;
 
+  private final ArrayList<GeoJsonFeature> mFeatures = new ArrayList<>();
+  private final Map<MapElement, GeoJsonFeature> mElementFeatures = new HashMap<>();
+  private GeoJsonStyle mStyle;
+  private final FeatureIndex mFeatureIndex = new FeatureIndex(mFeatures);
+  private GeoJsonFilter mFilter;
+  /* Positions of the Features matching mFilter, or null if there is no filter. */
+  private BitSet mFilterMatches;
+  private GeoBounds mBounds = new GeoBounds();
+  /* Clusterer holding the icons of the layer, or null if they were added to the layer directly. */
+  private MapIconClusterer mIconClusterer;
+
   public MapGeoJsonLayer() {
     super();
   }
 
+  /* Adds parsed features, whose elements were already styled by the given style while parsing. The
+   * parser caches the values of the style on each Feature; Features kept from another style by a
+   * layer update are evaluated here. */
+  void addFeatures(@NonNull List<GeoJsonFeature> features, @Nullable GeoJsonStyle style) {
+    mStyle = style;
+    for (GeoJsonFeature feature : features) {
+      if (!feature.hasStyleValues(style)) {
+        feature.setStyleValues(
+            style, style == null ? GeoJsonStyle.Values.NONE : style.evaluate(feature));
+      }
+      feature.setIndex(mFeatures.size());
+      mFeatures.add(feature);
+      for (MapElement element : feature.getElements()) {
+        mElementFeatures.put(element, feature);
+      }
+    }
+    mFeatureIndex.clear();
+    if (mFilter != null) {
+      GeoJsonFilter filter = mFilter;
+      mFilter = null;
+      mFilterMatches = null;
+      setFilter(filter);
+    }
+  }
+
+  /* Hands the icons of the layer to the clusterer. Icons hidden by type, by the style or by the
+   * filter are left out of the clusters, which are built again whenever any of these change. */
+  void setIconClusterer(@NonNull MapIconClusterer iconClusterer) {
+    mIconClusterer = iconClusterer;
+    iconClusterer.setIconFilter(MapElement::isVisible);
+  }
+
+  /* Replaces the Features after a GeoJsonLayerUpdater update. The changed elements were created or
+   * updated in place from a new version of their Feature. */
+  void replaceFeatures(
+      @NonNull List<GeoJsonFeature> features,
+      @Nullable GeoJsonStyle style,
+      @NonNull List<MapElement> changedElements) {
+    mFeatures.clear();
+    mElementFeatures.clear();
+    appendFeatures(features, style, changedElements);
+    // Features that did not change are not parsed again, so their elements are measured instead.
+    mBounds = new GeoBounds();
+    for (MapElement element : getElements()) {
+      mBounds.extend(element);
+    }
+  }
+
+  /* Adds the bounds of elements parsed into the layer. */
+  void extendBounds(@NonNull GeoBounds bounds) {
+    mBounds.extend(bounds);
+  }
+
+  /**
+   * Returns the bounds of the elements parsed into the layer, or null if there are none, for
+   * example to fit the camera with MapScene.createFromBoundingBox. The bounds are computed while
+   * the GeoJSON is parsed, so no element is read again, and elements removed later still count.
+   * With ValidationLevel.TRUSTED, a "bbox" member of the FeatureCollection is used instead. Bounds
+   * do not wrap across the antimeridian.
+   */
+  @Nullable
+  public GeoboundingBox getBounds() {
+    return mBounds.toGeoboundingBox();
+  }
+
+  /* Adds Features parsed after the layer was created, whose new elements get the layer-wide style
+   * and visibility that setters applied to the other elements. */
+  void appendFeatures(
+      @NonNull List<GeoJsonFeature> features,
+      @Nullable GeoJsonStyle style,
+      @NonNull List<MapElement> newElements) {
+    addFeatures(features, style);
+    for (MapElement element : newElements) {
+      GeoJsonStyle.Values values = getStyleValues(element);
+      if (element instanceof MapPolygon) {
+        MapPolygon polygon = (MapPolygon) element;
+        polygon.setFillColor(values.mFillColor != null ? values.mFillColor : mFillColor);
+        polygon.setStrokeColor(values.mStrokeColor != null ? values.mStrokeColor : mStrokeColor);
+        polygon.setStrokeWidth(values.mStrokeWidth != null ? values.mStrokeWidth : mStrokeWidth);
+        polygon.setStrokeDashed(mIsStrokeDashed);
+      } else if (element instanceof MapPolyline) {
+        MapPolyline line = (MapPolyline) element;
+        line.setStrokeColor(values.mStrokeColor != null ? values.mStrokeColor : mStrokeColor);
+        line.setStrokeWidth(values.mStrokeWidth != null ? values.mStrokeWidth : mStrokeWidth);
+        line.setStrokeDashed(mIsStrokeDashed);
+      }
+      element.setVisible(isTypeVisible(element) && isFeatureVisible(element));
+    }
+  }
+
+  /**
+   * Returns the Features read from the GeoJSON, in document order. Features are only kept when the
+   * layer was parsed with GeoJsonParseOptions that capture properties; otherwise the list is empty.
+   */
+  @NonNull
+  public List<GeoJsonFeature> getFeatures() {
+    return Collections.unmodifiableList(mFeatures);
+  }
+
+  /** Returns the Feature the given element was created from, or null if it is not known. */
+  @Nullable
+  public GeoJsonFeature getFeature(@NonNull MapElement element) {
+    return mElementFeatures.get(element);
+  }
+
+  /**
+   * Sets the data-driven style of the layer and restyles all elements in a single pass, evaluating
+   * each rule once per Feature. The results are kept, so later calls to the layer-wide setters do
+   * not evaluate the rules again; call setStyle again after changing the rules of the style. Where
+   * a rule produces no value for a Feature, the layer-wide style set with setFillColor(int),
+   * setStrokeColor(int) and setStrokeWidth(int) is used. Pass null to remove the style. Only
+   * elements of Features kept by the parser are restyled.
+   */
+  public void setStyle(@Nullable GeoJsonStyle style) {
+    mStyle = style;
+    for (GeoJsonFeature feature : mFeatures) {
+      GeoJsonStyle.Values values =
+          style == null ? GeoJsonStyle.Values.NONE : style.evaluate(feature);
+      feature.setStyleValues(style, values);
+      int fillColor = values.mFillColor != null ? values.mFillColor : mFillColor;
+      int strokeColor = values.mStrokeColor != null ? values.mStrokeColor : mStrokeColor;
+      int strokeWidth = values.mStrokeWidth != null ? values.mStrokeWidth : mStrokeWidth;
+      for (MapElement element : feature.getElements()) {
+        if (element instanceof MapPolygon) {
+          MapPolygon polygon = (MapPolygon) element;
+          polygon.setFillColor(fillColor);
+          polygon.setStrokeColor(strokeColor);
+          polygon.setStrokeWidth(strokeWidth);
+        } else if (element instanceof MapPolyline) {
+          MapPolyline line = (MapPolyline) element;
+          line.setStrokeColor(strokeColor);
+          line.setStrokeWidth(strokeWidth);
+        }
+        element.setVisible(isTypeVisible(element) && values.isVisible() && matchesFilter(feature));
+      }
+    }
+    refreshClusters();
+  }
+
+  @Nullable
+  public GeoJsonStyle getStyle() {
+    return mStyle;
+  }
+
+  /**
+   * Shows only the elements of Features whose captured properties match the filter, in addition to
+   * the visibility set by type and by the style. Pass null to remove the filter. Per-property
+   * indexes are built the first time a property is filtered on, after which changing the filter
+   * only touches the elements whose visibility changes. Only elements of Features kept by the
+   * parser are filtered.
+   */
+  public void setFilter(@Nullable GeoJsonFilter filter) {
+    BitSet matches = filter == null ? null : filter.evaluate(mFeatureIndex);
+    BitSet changed = FeatureIndex.getChanged(mFilterMatches, matches, mFeatures.size());
+    mFilter = filter;
+    mFilterMatches = matches;
+    for (int i = changed.nextSetBit(0); i >= 0; i = changed.nextSetBit(i + 1)) {
+      GeoJsonFeature feature = mFeatures.get(i);
+      boolean visible = matchesFilter(feature) && feature.getStyleValues().isVisible();
+      for (MapElement element : feature.getElements()) {
+        element.setVisible(visible && isTypeVisible(element));
+      }
+    }
+    if (!changed.isEmpty()) {
+      refreshClusters();
+    }
+  }
+
+  @Nullable
+  public GeoJsonFilter getFilter() {
+    return mFilter;
+  }
+
   /** Sets the ARGB fill color of polygons. */
   public void setFillColor(int fillColor) {
     if (fillColor != mFillColor) {
       mFillColor = fillColor;
       for (MapElement element : getElements()) {
-        if (element instanceof MapPolygon) {
+        if (element instanceof MapPolygon && getStyleValues(element).mFillColor == null) {
           ((MapPolygon) element).setFillColor(fillColor);
         }
       }
@@ -52,6 +244,9 @@ public class MapGeoJsonLayer extends MapElementLayer {
     if (strokeColor != mStrokeColor) {
       mStrokeColor = strokeColor;
       for (MapElement element : getElements()) {
+        if (getStyleValues(element).mStrokeColor != null) {
+          continue;
+        }
         if (element instanceof MapPolygon) {
           ((MapPolygon) element).setStrokeColor(strokeColor);
         } else if (element instanceof MapPolyline) {
@@ -80,6 +275,9 @@ public class MapGeoJsonLayer extends MapElementLayer {
     if (mStrokeWidth != strokeWidth) {
       mStrokeWidth = strokeWidth;
       for (MapElement element : getElements()) {
+        if (getStyleValues(element).mStrokeWidth != null) {
+          continue;
+        }
         if (element instanceof MapPolygon) {
           ((MapPolygon) element).setStrokeWidth(strokeWidth);
         } else if (element instanceof MapPolyline) {
@@ -95,7 +293,7 @@ public class MapGeoJsonLayer extends MapElementLayer {
       mArePolygonsVisible = visible;
       for (MapElement element : getElements()) {
         if (element instanceof MapPolygon) {
-          element.setVisible(visible);
+          element.setVisible(visible && isFeatureVisible(element));
         }
       }
     }
@@ -107,7 +305,7 @@ public class MapGeoJsonLayer extends MapElementLayer {
       mArePolylinesVisible = visible;
       for (MapElement element : getElements()) {
         if (element instanceof MapPolyline) {
-          element.setVisible(visible);
+          element.setVisible(visible && isFeatureVisible(element));
         }
       }
     }
@@ -119,12 +317,56 @@ public class MapGeoJsonLayer extends MapElementLayer {
       mAreIconsVisible = visible;
       for (MapElement element : getElements()) {
         if (element instanceof MapIcon) {
-          element.setVisible(visible);
+          element.setVisible(visible && isFeatureVisible(element));
         }
       }
+      if (mIconClusterer != null) {
+        for (MapIcon icon : mIconClusterer.getIcons()) {
+          icon.setVisible(visible && isFeatureVisible(icon));
+        }
+        refreshClusters();
+      }
+    }
+  }
+
+  private void refreshClusters() {
+    if (mIconClusterer != null) {
+      mIconClusterer.refresh();
     }
   }
 
+  private boolean isTypeVisible(@NonNull MapElement element) {
+    if (element instanceof MapPolygon) {
+      return mArePolygonsVisible;
+    } else if (element instanceof MapPolyline) {
+      return mArePolylinesVisible;
+    } else if (element instanceof MapIcon) {
+      return mAreIconsVisible;
+    }
+    return true;
+  }
+
+  /* Whether the style and the filter leave the Feature of the element visible. */
+  private boolean isFeatureVisible(@NonNull MapElement element) {
+    GeoJsonFeature feature = mElementFeatures.get(element);
+    if (feature == null) {
+      return true;
+    }
+    return matchesFilter(feature) && feature.getStyleValues().isVisible();
+  }
+
+  private boolean matchesFilter(@NonNull GeoJsonFeature feature) {
+    return mFilterMatches == null || mFilterMatches.get(feature.getIndex());
+  }
+
+  /* Returns the style values cached on the Feature of the element when it was added or the style
+   * was set, so the layer-wide setters do not evaluate the rules again. */
+  @NonNull
+  private GeoJsonStyle.Values getStyleValues(@NonNull MapElement element) {
+    GeoJsonFeature feature = mElementFeatures.get(element);
+    return feature == null ? GeoJsonStyle.Values.NONE : feature.getStyleValues();
+  }
+
   private void removeAll(@NonNull ArrayList<MapElement> elementsToRemove) {
     for (int i = 0; i < elementsToRemove.size(); i++) {
       MapElement element = elementsToRemove.get(i);
@@ -0,0 +1,162 @@
+// Copyright (c) Microsoft Corporation.
+// Licensed under the MIT license.
+
+package com.microsoft.maps.geojson;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Computes a style value for a Feature from the value of one of its properties. Rules are created
+ * with match(), interpolate() or interpolateColor() and are set on a GeoJsonStyle. A rule that
+ * produces null for a Feature leaves the layer-wide style in place for that Feature.
+ */
+public abstract class StyleRule<T> {
+
+  private final String mProperty;
+
+  StyleRule(@NonNull String property) {
+    if (property == null) {
+      throw new IllegalArgumentException("Property cannot be null.");
+    }
+    mProperty = property;
+  }
+
+  /** Returns the name of the property the rule reads. */
+  @NonNull
+  public String getProperty() {
+    return mProperty;
+  }
+
+  @Nullable
+  T evaluate(@NonNull GeoJsonFeature feature) {
+    return evaluateValue(feature.getProperty(mProperty));
+  }
+
+  @Nullable
+  abstract T evaluateValue(@Nullable Object propertyValue);
+
+  /**
+   * Creates a rule that looks the property value up in cases. Numeric values match regardless of
+   * their Java type, so a case keyed by 1 matches a property value of 1.0. Values without a case
+   * produce defaultValue, which may be null.
+   */
+  @NonNull
+  public static <T> StyleRule<T> match(
+      @NonNull String property, @NonNull Map<?, T> cases, @Nullable T defaultValue) {
+    return new MatchRule<>(property, cases, defaultValue);
+  }
+
+  /**
+   * Creates a rule that linearly interpolates between values at ascending numeric stops of the
+   * property. Property values outside the stops take the value of the nearest stop, and non-numeric
+   * values produce null.
+   */
+  @NonNull
+  public static StyleRule<Integer> interpolate(
+      @NonNull String property, @NonNull double[] stops, @NonNull int[] values) {
+    return new InterpolateRule(property, stops, values, false);
+  }
+
+  /**
+   * Creates a rule that interpolates each ARGB channel between colors at ascending numeric stops of
+   * the property. Property values outside the stops take the color of the nearest stop, and
+   * non-numeric values produce null.
+   */
+  @NonNull
+  public static StyleRule<Integer> interpolateColor(
+      @NonNull String property, @NonNull double[] stops, @NonNull int[] colors) {
+    return new InterpolateRule(property, stops, colors, true);
+  }
+
+  private static class MatchRule<T> extends StyleRule<T> {
+
+    private final Map<Object, T> mCases = new HashMap<>();
+    private final T mDefaultValue;
+
+    MatchRule(@NonNull String property, @NonNull Map<?, T> cases, @Nullable T defaultValue) {
+      super(property);
+      for (Map.Entry<?, T> entry : cases.entrySet()) {
+        mCases.put(GeoJsonFeature.normalizeValue(entry.getKey()), entry.getValue());
+      }
+      mDefaultValue = defaultValue;
+    }
+
+    @Nullable
+    @Override
+    T evaluateValue(@Nullable Object propertyValue) {
+      Object key = GeoJsonFeature.normalizeValue(propertyValue);
+      if (mCases.containsKey(key)) {
+        return mCases.get(key);
+      }
+      return mDefaultValue;
+    }
+  }
+
+  private static class InterpolateRule extends StyleRule<Integer> {
+
+    private final double[] mStops;
+    private final int[] mValues;
+    private final boolean mIsColor;
+
+    InterpolateRule(
+        @NonNull String property, @NonNull double[] stops, @NonNull int[] values, boolean isColor) {
+      super(property);
+      if (stops.length == 0 || stops.length != values.length) {
+        throw new IllegalArgumentException(
+            "Stops and values must be non-empty and have the same length. Instead saw: "
+                + stops.length
+                + " stops and "
+                + values.length
+                + " values.");
+      }
+      for (int i = 1; i < stops.length; i++) {
+        if (!(stops[i] > stops[i - 1])) {
+          throw new IllegalArgumentException("Stops must be in ascending order.");
+        }
+      }
+      mStops = stops.clone();
+      mValues = values.clone();
+      mIsColor = isColor;
+    }
+
+    @Nullable
+    @Override
+    Integer evaluateValue(@Nullable Object propertyValue) {
+      if (!(propertyValue instanceof Number)) {
+        return null;
+      }
+      double value = ((Number) propertyValue).doubleValue();
+      if (Double.isNaN(value)) {
+        return null;
+      }
+      if (value <= mStops[0]) {
+        return mValues[0];
+      }
+      int last = mStops.length - 1;
+      if (value >= mStops[last]) {
+        return mValues[last];
+      }
+      int upper = 1;
+      while (mStops[upper] < value) {
+        upper++;
+      }
+      double fraction = (value - mStops[upper - 1]) / (mStops[upper] - mStops[upper - 1]);
+      int from = mValues[upper - 1];
+      int to = mValues[upper];
+      if (!mIsColor) {
+        return (int) Math.round(from + (to - from) * fraction);
+      }
+      int color = 0;
+      for (int shift = 0; shift < 32; shift += 8) {
+        int fromChannel = (from >>> shift) & 0xff;
+        int toChannel = (to >>> shift) & 0xff;
+        int channel = (int) Math.round(fromChannel + (toChannel - fromChannel) * fraction);
+        color |= channel << shift;
+      }
+      return color;
+    }
+  }
+}
@@ -0,0 +1,198 @@
+// Copyright (c) Microsoft Corporation.
+// Licensed under the MIT license.
+
+package com.microsoft.maps.geojson;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import androidx.annotation.NonNull;
+import com.microsoft.maps.MapElement;
+import com.microsoft.maps.MapIcon;
+import com.microsoft.maps.MapPolyline;
+import com.microsoft.maps.MockBingMapsLoader;
+import com.microsoft.maps.MockMapElementCollection;
+import com.microsoft.maps.moduletools.LayerUpdateResult;
+import com.microsoft.maps.moduletools.MapFactories;
+import com.microsoft.maps.moduletools.ParseOptions;
+import com.microsoft.maps.moduletools.TiledMapLayer;
+import com.microsoft.maps.moduletoolstest.MockParserMapFactories;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+
+/** Unit tests to check the GeoJsonLayerUpdater class. */
+public class GeoJsonLayerUpdaterTest {
+
+  private static final MapFactories MOCK_MAP_FACTORIES = new MockParserMapFactories();
+
+  @Before
+  public void setup() {
+    MockBingMapsLoader.mockInitialize();
+  }
+
+  @Test
+  public void testUpdateOnlyTouchesChangedFeatures() throws GeoJsonParseException {
+    GeoJsonLayerUpdater updater = new GeoJsonLayerUpdater(MOCK_MAP_FACTORIES, new ParseOptions());
+    LayerUpdateResult result =
+        updater.update(
+            featureCollection(
+                point("\"a\"", 1), point("\"b\"", 2), line("3", 0, 1), point(null, 4)));
+    assertEquals(4, result.getAddedCount());
+    List<MapElement> first = new ArrayList<>(getElements(updater));
+    assertEquals(4, first.size());
+
+    // b moves, the line with id 3 gets a new path, and the Feature without an id is replaced.
+    result =
+        updater.update(
+            featureCollection(
+                point("\"a\"", 1), point("\"b\"", 20), line("3", 5, 6), point(null, 40)));
+    assertEquals(1, result.getUnchangedCount());
+    assertEquals(2, result.getUpdatedCount());
+    assertEquals(1, result.getAddedCount());
+    assertEquals(1, result.getRemovedCount());
+    assertTrue(result.hasChanges());
+
+    List<MapElement> second = new ArrayList<>(getElements(updater));
+    assertEquals(4, second.size());
+    assertSame(first.get(0), second.get(0));
+    assertSame(first.get(1), second.get(1));
+    assertEquals(20, ((MapIcon) second.get(1)).getLocation().getPosition().getLongitude(), 0);
+    assertSame(first.get(2), second.get(2));
+    assertEquals(5, ((MapPolyline) second.get(2)).getPath().iterator().next().getLongitude(), 0);
+    assertFalse(second.contains(first.get(3)));
+    assertEquals(40, ((MapIcon) second.get(3)).getLocation().getPosition().getLongitude(), 0);
+
+    // The same document again changes nothing, and dropping a Feature only removes its element.
+    String unchanged =
+        featureCollection(point("\"a\"", 1), point("\"b\"", 20), line("3", 5, 6), point(null, 40));
+    assertFalse(updater.update(unchanged).hasChanges());
+    result = updater.update(featureCollection(point("\"b\"", 20), line("3", 5, 6)));
+    assertEquals(2, result.getRemovedCount());
+    assertEquals(2, result.getUnchangedCount());
+    assertEquals(2, getElements(updater).size());
+    assertSame(second.get(1), getElements(updater).get(0));
+  }
+
+  @Test
+  public void testFeatureChangingTypeIsReplaced() throws GeoJsonParseException {
+    GeoJsonLayerUpdater updater = new GeoJsonLayerUpdater(MOCK_MAP_FACTORIES, new ParseOptions());
+    updater.update(featureCollection(point("7", 1)));
+    MapElement icon = getElements(updater).get(0);
+
+    LayerUpdateResult result = updater.update(featureCollection(line("7", 1, 2)));
+    assertEquals(1, result.getAddedCount());
+    assertEquals(1, result.getRemovedCount());
+    assertEquals(1, getElements(updater).size());
+    assertNotSame(icon, getElements(updater).get(0));
+    assertTrue(getElements(updater).get(0) instanceof MapPolyline);
+  }
+
+  @Test
+  public void testInvalidDocumentLeavesLayerUnchanged() throws GeoJsonParseException {
+    GeoJsonLayerUpdater updater = new GeoJsonLayerUpdater(MOCK_MAP_FACTORIES, new ParseOptions());
+    updater.update(featureCollection(point("\"a\"", 1), point("\"b\"", 2)));
+    List<MapElement> elements = new ArrayList<>(getElements(updater));
+    try {
+      updater.update(featureCollection(point("\"a\"", 10), "{\"type\": \"Feature\"}"));
+      fail("Expected a GeoJsonParseException.");
+    } catch (GeoJsonParseException e) {
+      // expected
+    }
+    assertEquals(elements, getElements(updater));
+    assertEquals(1, ((MapIcon) elements.get(0)).getLocation().getPosition().getLongitude(), 0);
+
+    // The failed update did not consume the previous version.
+    LayerUpdateResult result =
+        updater.update(featureCollection(point("\"a\"", 1), point("\"b\"", 3)));
+    assertEquals(1, result.getUnchangedCount());
+    assertEquals(1, result.getUpdatedCount());
+  }
+
+  @Test
+  public void testUnchangedFeatureIsNotUpdatedById() throws GeoJsonParseException {
+    GeoJsonLayerUpdater updater = new GeoJsonLayerUpdater(MOCK_MAP_FACTORIES, new ParseOptions());
+    updater.update(featureCollection(point("1", 1)));
+    MapElement icon = getElements(updater).get(0);
+
+    // The changed Feature comes first with the same id, but the unchanged copy keeps the element.
+    LayerUpdateResult result = updater.update(featureCollection(point("1", 2), point("1", 1)));
+    assertEquals(1, result.getUnchangedCount());
+    assertEquals(1, result.getAddedCount());
+    assertEquals(0, result.getUpdatedCount());
+    assertEquals(2, getElements(updater).size());
+    assertSame(icon, getElements(updater).get(0));
+    assertEquals(1, ((MapIcon) icon).getLocation().getPosition().getLongitude(), 0);
+    assertEquals(
+        2, ((MapIcon) getElements(updater).get(1)).getLocation().getPosition().getLongitude(), 0);
+  }
+
+  @Test
+  public void testDuplicateFeaturesAreMatchedOnce() throws GeoJsonParseException {
+    GeoJsonLayerUpdater updater = new GeoJsonLayerUpdater(MOCK_MAP_FACTORIES, new ParseOptions());
+    updater.update(featureCollection(point(null, 1), point(null, 1)));
+
+    LayerUpdateResult result = updater.update(featureCollection(point(null, 1)));
+    assertEquals(1, result.getUnchangedCount());
+    assertEquals(1, result.getRemovedCount());
+    assertEquals(1, getElements(updater).size());
+
+    result = updater.update(featureCollection(point(null, 1), point(null, 1), point(null, 1)));
+    assertEquals(1, result.getUnchangedCount());
+    assertEquals(2, result.getAddedCount());
+    assertEquals(3, getElements(updater).size());
+  }
+
+  @Test
+  public void testSingleGeometryIsOneFeature() throws GeoJsonParseException {
+    GeoJsonLayerUpdater updater = new GeoJsonLayerUpdater(MOCK_MAP_FACTORIES, new ParseOptions());
+    String geojson = "{\"type\": \"MultiPoint\", \"coordinates\": [[1, 2], [3, 4]]}";
+    assertEquals(1, updater.update(geojson).getAddedCount());
+    assertEquals(2, getElements(updater).size());
+    assertEquals(1, updater.update(geojson).getUnchangedCount());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testTiledLayerThrowsException() {
+    ParseOptions options = new ParseOptions();
+    options.setTiledLayer(new TiledMapLayer(2));
+    new GeoJsonLayerUpdater(MOCK_MAP_FACTORIES, options);
+  }
+
+  @NonNull
+  private static List<MapElement> getElements(@NonNull GeoJsonLayerUpdater updater) {
+    return ((MockMapElementCollection) updater.getElementLayer().getElements()).getElements();
+  }
+
+  @NonNull
+  private static String featureCollection(@NonNull String... features) {
+    return "{\"type\": \"FeatureCollection\", \"features\": [\n"
+        + String.join(",\n", features)
+        + "\n]}";
+  }
+
+  @NonNull
+  private static String point(String id, double longitude) {
+    return "{\"type\": \"Feature\", "
+        + (id == null ? "" : "\"id\": " + id + ", ")
+        + "\"geometry\": {\"type\": \"Point\", \"coordinates\": ["
+        + longitude
+        + ", 0]}}";
+  }
+
+  @NonNull
+  private static String line(@NonNull String id, double startLongitude, double endLongitude) {
+    return "{\"type\": \"Feature\", \"id\": "
+        + id
+        + ", \"geometry\": {\"type\": \"LineString\", \"coordinates\": [["
+        + startLongitude
+        + ", 0], ["
+        + endLongitude
+        + ", 1]]}}";
+  }
+}
@@ -4,23 +4,54 @@
 package com.microsoft.maps.geojson;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
+import android.graphics.Color;
+import androidx.annotation.NonNull;
 import com.microsoft.maps.AltitudeReferenceSystem;
+import com.microsoft.maps.GeoboundingBox;
 import com.microsoft.maps.Geopath;
 import com.microsoft.maps.Geoposition;
+import com.microsoft.maps.MapElement;
 import com.microsoft.maps.MapElementLayer;
 import com.microsoft.maps.MapIcon;
 import com.microsoft.maps.MapPolygon;
 import com.microsoft.maps.MapPolyline;
 import com.microsoft.maps.MockBingMapsLoader;
 import com.microsoft.maps.MockMapElementCollection;
+import com.microsoft.maps.moduletools.GeoBounds;
 import com.microsoft.maps.moduletools.MapFactories;
+import com.microsoft.maps.moduletools.MapIconClusterer;
+import com.microsoft.maps.moduletools.MappedText;
+import com.microsoft.maps.moduletools.ParseDiagnostic;
+import com.microsoft.maps.moduletools.ParseOptions;
+import com.microsoft.maps.moduletools.TiledMapLayer;
+import com.microsoft.maps.moduletools.ValidationLevel;
 import com.microsoft.maps.moduletoolstest.MockParserMapFactories;
 import com.microsoft.maps.moduletoolstest.TestHelpers;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import org.json.JSONException;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.Mockito;
 
 /** Unit tests to check the GeoJSONParser class. */
 public class GeoJsonParserTest {
@@ -838,4 +869,929 @@ public class GeoJsonParserTest {
             + "}";
     new GeoJsonParser().internalParse(geojson, MOCK_MAP_FACTORIES);
   }
+
+  @Test
+  public void testParallelFeatureCollectionKeepsDocumentOrder()
+      throws GeoJsonParseException, JSONException {
+    StringBuilder builder = new StringBuilder("{\"type\": \"FeatureCollection\", \"features\": [");
+    int featureCount = 200;
+    for (int i = 0; i < featureCount; i++) {
+      if (i > 0) {
+        builder.append(",");
+      }
+      double longitude = i % 180;
+      if (i % 3 == 0) {
+        builder.append(
+            "{\"type\": \"Feature\", \"properties\": {\"name\": \"a]b}\\\"c\"}, "
+                + "\"geometry\": {\"type\": \"Point\", \"coordinates\": ["
+                + longitude
+                + ", 1]}}");
+      } else if (i % 3 == 1) {
+        builder.append(
+            "{\"type\": \"Feature\", \"geometry\": {\"type\": \"LineString\", "
+                + "\"coordinates\": [["
+                + longitude
+                + ", 1], [0, 0]]}}");
+      } else {
+        builder.append(
+            "{\"type\": \"Feature\", \"geometry\": {\"type\": \"Polygon\", "
+                + "\"coordinates\": [[["
+                + longitude
+                + ", 1], [0, 0], [1, 1], ["
+                + longitude
+                + ", 1]]]}}");
+      }
+    }
+    builder.append("]}");
+    ParseOptions options = new ParseOptions();
+    options.setParallelism(4);
+
+    MapElementLayer layer =
+        new GeoJsonParser().internalParse(builder.toString(), MOCK_MAP_FACTORIES, options);
+    MockMapElementCollection elementCollection = (MockMapElementCollection) layer.getElements();
+    assertEquals(featureCount, elementCollection.getElements().size());
+    for (int i = 0; i < featureCount; i++) {
+      MapElement element = elementCollection.getElements().get(i);
+      Geoposition first;
+      if (i % 3 == 0) {
+        first = ((MapIcon) element).getLocation().getPosition();
+      } else if (i % 3 == 1) {
+        first = ((MapPolyline) element).getPath().iterator().next();
+      } else {
+        first = ((MapPolygon) element).getPaths().get(0).iterator().next();
+      }
+      assertEquals(i % 180, first.getLongitude(), 0);
+    }
+  }
+
+  @Test
+  public void testParallelFeatureCollectionErrorMatchesSequential() throws JSONException {
+    String geojson =
+        "{\"type\": \"FeatureCollection\", \"features\": ["
+            + "{\"type\": \"Feature\", \"geometry\": {\"type\": \"Point\", \"coordinates\": [1, 1]}},"
+            + "{\"type\": \"Feature\", \"geometry\": {\"type\": \"Point\", \"coordinates\": [1, 100]}},"
+            + "{\"type\": \"Feature\", \"geometry\": {\"type\": \"Point\", \"coordinates\": [200, 1]}}"
+            + "]}";
+    ParseOptions options = new ParseOptions();
+    options.setParallelism(3);
+    String sequentialMessage = null;
+    try {
+      new GeoJsonParser().internalParse(geojson, MOCK_MAP_FACTORIES);
+      fail();
+    } catch (GeoJsonParseException e) {
+      sequentialMessage = e.getMessage();
+    }
+    try {
+      new GeoJsonParser().internalParse(geojson, MOCK_MAP_FACTORIES, options);
+      fail();
+    } catch (GeoJsonParseException e) {
+      assertEquals(sequentialMessage, e.getMessage());
+    }
+  }
+
+  @Test(expected = JSONException.class)
+  public void testParallelMalformedFeatureThrowsException()
+      throws GeoJsonParseException, JSONException {
+    String geojson =
+        "{\"type\": \"FeatureCollection\", \"features\": ["
+            + "{\"type\": \"Feature\", \"geometry\": {\"type\": \"Point\", \"coordinates\": [1, 1]}},"
+            + "{\"type\": \"Feature\", \"geometry\": {\"type\" \"Point\", \"coordinates\": [1, 1]}}"
+            + "]}";
+    ParseOptions options = new ParseOptions();
+    options.setParallelism(2);
+    new GeoJsonParser().internalParse(geojson, MOCK_MAP_FACTORIES, options);
+  }
+
+  @Test
+  public void testFeatureScannerFindsFeatureBounds() {
+    String geojson =
+        "{\"type\": \"FeatureCollection\", \"bbox\": [0, 0, 1, 1], "
+            + "\"features\": [ {\"a\": \"[{\"}, {\"b\": [1, {\"c\": 2}]} , ]}";
+    GeoJsonFeatureScanner scanner = new GeoJsonFeatureScanner(geojson);
+    assertTrue(scanner.scan());
+    assertEquals(2, scanner.getFeatureCount());
+    assertEquals(
+        "{\"a\": \"[{\"}", geojson.substring(scanner.getFeatureStart(0), scanner.getFeatureEnd(0)));
+    assertEquals(
+        "{\"b\": [1, {\"c\": 2}]}",
+        geojson.substring(scanner.getFeatureStart(1), scanner.getFeatureEnd(1)));
+    assertEquals('[', geojson.charAt(scanner.getFeaturesStart()));
+    assertEquals(geojson.length() - 1, scanner.getFeaturesEnd());
+  }
+
+  @Rule public TemporaryFolder mTemporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void testMappedTextMatchesDecodedString() throws IOException {
+    StringBuilder builder = new StringBuilder();
+    for (int i = 0; i < 3000; i++) {
+      builder.append(i % 7 == 0 ? "\u00e9" : i % 11 == 0 ? "\ud83c\udf0d" : "a");
+    }
+    String text = builder.toString();
+    byte[] utf8 = text.getBytes(StandardCharsets.UTF_8);
+    byte[] withBom = new byte[utf8.length + 3];
+    withBom[0] = (byte) 0xEF;
+    withBom[1] = (byte) 0xBB;
+    withBom[2] = (byte) 0xBF;
+    System.arraycopy(utf8, 0, withBom, 3, utf8.length);
+    MappedText mapped = MappedText.map(writeFile(withBom));
+
+    assertFalse(mapped.isAscii());
+    assertEquals(text.length(), mapped.length());
+    assertEquals(text, mapped.toString());
+    for (int i = text.length() - 1; i >= 0; i -= 7) {
+      assertEquals(text.charAt(i), mapped.charAt(i));
+    }
+    // Ranges that start or end between the chars of a surrogate pair.
+    int pair = text.indexOf('\ud83c', 1500);
+    assertEquals(text.substring(pair + 1, pair + 1500), mapped.subSequence(pair + 1, pair + 1500));
+    assertEquals(text.substring(pair - 10, pair + 1), mapped.subSequence(pair - 10, pair + 1));
+  }
+
+  @Test
+  public void testParseMappedFile() throws GeoJsonParseException, JSONException, IOException {
+    StringBuilder builder = new StringBuilder("{\"type\": \"FeatureCollection\", \"features\": [");
+    for (int i = 0; i < 20; i++) {
+      builder
+          .append(i == 0 ? "" : ",\n")
+          .append("{\"type\": \"Feature\", \"properties\": {\"name\": \"Caf\u00e9 \ud83c\udf0d ")
+          .append(i)
+          .append("\"}, \"geometry\": {\"type\": \"Point\", \"coordinates\": [")
+          .append(i)
+          .append(", 1]}}");
+    }
+    builder.append("]}");
+    File file = writeFile(builder.toString().getBytes(StandardCharsets.UTF_8));
+
+    for (int parallelism : new int[] {1, 4}) {
+      GeoJsonParseOptions options = new GeoJsonParseOptions();
+      options.setCaptureProperties(true);
+      options.setParallelism(parallelism);
+      GeoJsonParser parser = new GeoJsonParser();
+      MapElementLayer layer =
+          parser.internalParse(MappedText.map(file), MOCK_MAP_FACTORIES, options);
+      List<MapElement> elements = ((MockMapElementCollection) layer.getElements()).getElements();
+      assertEquals(20, elements.size());
+      for (int i = 0; i < 20; i++) {
+        assertEquals(i, ((MapIcon) elements.get(i)).getLocation().getPosition().getLongitude(), 0);
+      }
+      assertEquals("Caf\u00e9 \ud83c\udf0d 19", parser.getFeatures().get(19).getProperty("name"));
+    }
+  }
+
+  @Test(expected = JSONException.class)
+  public void testParseMappedFileReportsInvalidFeature()
+      throws GeoJsonParseException, JSONException, IOException {
+    String geojson =
+        "{\"type\": \"FeatureCollection\", \"features\": ["
+            + "{\"type\": \"Feature\", \"geometry\": {\"type\": \"Point\", \"coordinates\": [1, 1]}},"
+            + "{\"type\": \"Feature\", \"geometry\": {\"type\" \"Point\", \"coordinates\": [1, 1]}}"
+            + "]}";
+    File file = writeFile(geojson.getBytes(StandardCharsets.UTF_8));
+    new GeoJsonParser().internalParse(MappedText.map(file), MOCK_MAP_FACTORIES);
+  }
+
+  private static final String INVALID_FEATURE_GEOJSON =
+      "{\"type\": \"Feature\", \"features\": [], \"geometry\": {\"type\": \"Polygon\", "
+          + "\"coordinates\": [[[30, 10], [190, 40], [20, 95], [10, 20]]]}}";
+
+  @Test
+  public void testLenientValidationRepairsFeature() throws GeoJsonParseException, JSONException {
+    try {
+      new GeoJsonParser().internalParse(INVALID_FEATURE_GEOJSON, MOCK_MAP_FACTORIES);
+      fail("Expected a GeoJsonParseException.");
+    } catch (GeoJsonParseException e) {
+      assertEquals("Feature cannot have a \"features\" member.", e.getMessage());
+    }
+
+    ParseOptions options = new ParseOptions();
+    options.setValidation(ValidationLevel.LENIENT);
+    MapElementLayer layer =
+        new GeoJsonParser().internalParse(INVALID_FEATURE_GEOJSON, MOCK_MAP_FACTORIES, options);
+    MapPolygon polygon =
+        (MapPolygon) ((MockMapElementCollection) layer.getElements()).getElements().get(0);
+    double[][] expectedPoints = {{30, 10}, {-170, 40}, {20, 90}, {10, 20}, {30, 10}};
+    int index = 0;
+    for (Geoposition position : polygon.getPaths().get(0)) {
+      TestHelpers.assertPositionEquals(expectedPoints[index], position);
+      index++;
+    }
+    assertEquals(expectedPoints.length, index);
+  }
+
+  @Test
+  public void testTrustedValidationSkipsChecks() throws GeoJsonParseException, JSONException {
+    ParseOptions options = new ParseOptions();
+    options.setValidation(ValidationLevel.TRUSTED);
+    options.setParallelism(2);
+    String geojson =
+        "{\"type\": \"FeatureCollection\", \"features\": ["
+            + INVALID_FEATURE_GEOJSON
+            + ", "
+            + INVALID_FEATURE_GEOJSON
+            + "]}";
+    MapElementLayer layer = new GeoJsonParser().internalParse(geojson, MOCK_MAP_FACTORIES, options);
+    List<MapElement> elements = ((MockMapElementCollection) layer.getElements()).getElements();
+    assertEquals(2, elements.size());
+    double[][] expectedPoints = {{30, 10}, {190, 40}, {20, 95}, {10, 20}};
+    int index = 0;
+    for (Geoposition position : ((MapPolygon) elements.get(1)).getPaths().get(0)) {
+      TestHelpers.assertPositionEquals(expectedPoints[index], position);
+      index++;
+    }
+    assertEquals(expectedPoints.length, index);
+  }
+
+  @Test
+  public void testLenientValidationReportsWarnings() throws GeoJsonParseException, JSONException {
+    try {
+      new GeoJsonParser().internalParse(INVALID_FEATURE_GEOJSON, MOCK_MAP_FACTORIES);
+      fail("Expected a GeoJsonParseException.");
+    } catch (GeoJsonParseException e) {
+      assertEquals(ParseDiagnostic.Code.FORBIDDEN_MEMBER, e.getCode());
+    }
+
+    List<ParseDiagnostic> diagnostics = new ArrayList<>();
+    ParseOptions options = new ParseOptions();
+    options.setValidation(ValidationLevel.LENIENT);
+    options.setDiagnosticListener(diagnostics::add);
+    new GeoJsonParser().internalParse(INVALID_FEATURE_GEOJSON, MOCK_MAP_FACTORIES, options);
+
+    ParseDiagnostic.Code[] expectedCodes = {
+      ParseDiagnostic.Code.FORBIDDEN_MEMBER,
+      ParseDiagnostic.Code.LONGITUDE_OUT_OF_RANGE,
+      ParseDiagnostic.Code.LATITUDE_OUT_OF_RANGE,
+      ParseDiagnostic.Code.RING_NOT_CLOSED
+    };
+    assertEquals(expectedCodes.length, diagnostics.size());
+    for (int i = 0; i < expectedCodes.length; i++) {
+      assertEquals(expectedCodes[i], diagnostics.get(i).getCode());
+      assertEquals(ParseDiagnostic.Severity.WARNING, diagnostics.get(i).getSeverity());
+      assertEquals(0, diagnostics.get(i).getFeatureIndex());
+    }
+    assertEquals(
+        "Latitude must be in the range [-90, 90], instead saw: 95.0",
+        diagnostics.get(2).getMessage());
+    assertEquals(
+        "First and last coordinate pair of each polygon ring must be the same. Instead saw "
+            + "Geopositions: first: [10.0, 30.0, 0.0] last: [20.0, 10.0, 0.0]",
+        diagnostics.get(3).getMessage());
+  }
+
+  @Test
+  public void testSkipInvalidFeatures() throws GeoJsonParseException, JSONException {
+    String geojson =
+        "{\"type\": \"FeatureCollection\", \"features\": [\n"
+            + "{\"type\": \"Feature\", \"geometry\": {\"type\": \"Point\", \"coordinates\": [1, 2]}},\n"
+            + INVALID_FEATURE_GEOJSON
+            + ",\n"
+            + "{\"type\": \"Feature\", \"geometry\": {\"type\": \"GeometryCollection\", \"geometries\": ["
+            + "{\"type\": \"Point\", \"coordinates\": [3, 4]}, "
+            + "{\"type\": \"LineString\", \"coordinates\": [[5, 6]]}]}},\n"
+            + "  {\"type\": \"Feature\", \"geometry\": {\"type\": \"Point\", \"coordinates\": [7, x]}},\n"
+            + "{\"type\": \"Feature\", \"geometry\": {\"type\": \"Point\", \"coordinates\": [8, 9]}}\n"
+            + "]}";
+    for (int parallelism = 1; parallelism <= 2; parallelism++) {
+      List<ParseDiagnostic> diagnostics = new ArrayList<>();
+      GeoJsonParseOptions options = new GeoJsonParseOptions();
+      options.setParallelism(parallelism);
+      options.setCaptureProperties(true);
+      options.setSkipInvalidFeatures(true);
+      options.setDiagnosticListener(diagnostics::add);
+      GeoJsonParser parser = new GeoJsonParser();
+      MapElementLayer layer = parser.internalParse(geojson, MOCK_MAP_FACTORIES, options);
+
+      List<MapElement> elements = ((MockMapElementCollection) layer.getElements()).getElements();
+      assertEquals(2, elements.size());
+      TestHelpers.assertPositionEquals(
+          new double[] {1, 2}, ((MapIcon) elements.get(0)).getLocation().getPosition());
+      TestHelpers.assertPositionEquals(
+          new double[] {8, 9}, ((MapIcon) elements.get(1)).getLocation().getPosition());
+      assertEquals(2, parser.getFeatures().size());
+
+      assertEquals(3, diagnostics.size());
+      assertEquals(1, diagnostics.get(0).getFeatureIndex());
+      assertEquals(3, diagnostics.get(0).getLineNumber());
+      assertEquals(1, diagnostics.get(0).getColumnNumber());
+      assertEquals("Feature cannot have a \"features\" member.", diagnostics.get(0).getMessage());
+      assertEquals(2, diagnostics.get(1).getFeatureIndex());
+      assertEquals(
+          "Linestring must contain at least 2 positions. Instead saw: [[5,6]]",
+          diagnostics.get(1).getMessage());
+      assertEquals(3, diagnostics.get(2).getFeatureIndex());
+      assertEquals(5, diagnostics.get(2).getLineNumber());
+      assertEquals(3, diagnostics.get(2).getColumnNumber());
+      assertEquals(geojson.indexOf("  {") + 2, diagnostics.get(2).getOffset());
+    }
+
+    try {
+      new GeoJsonParser().internalParse(geojson, MOCK_MAP_FACTORIES);
+      fail("Expected a GeoJsonParseException.");
+    } catch (GeoJsonParseException e) {
+      assertEquals("Feature cannot have a \"features\" member.", e.getMessage());
+    }
+  }
+
+  @NonNull
+  private File writeFile(@NonNull byte[] bytes) throws IOException {
+    File file = mTemporaryFolder.newFile();
+    try (OutputStream stream = new FileOutputStream(file)) {
+      stream.write(bytes);
+    }
+    return file;
+  }
+
+  private static final String PROPERTIES_GEOJSON =
+      "{\"type\": \"FeatureCollection\", \"features\": ["
+          + "{\"type\": \"Feature\", "
+          + "\"properties\": {\"name\": \"first\", \"rank\": 1, \"open\": true, "
+          + "\"tags\": [\"a\", null], \"owner\": {\"id\": 7}, \"unused\": \"x\"}, "
+          + "\"geometry\": {\"type\": \"MultiPoint\", \"coordinates\": [[1, 1], [2, 2]]}},"
+          + "{\"type\": \"Feature\", \"properties\": null, "
+          + "\"geometry\": {\"type\": \"Point\", \"coordinates\": [3, 3]}}"
+          + "]}";
+
+  @Test
+  public void testNormalizePolygons() throws GeoJsonParseException, JSONException {
+    String geojson =
+        "{\"type\": \"Polygon\", \"coordinates\": ["
+            + "[[0, 0], [0, 10], [10, 10], [10, 0], [0, 0]], "
+            + "[[2, 2], [4, 2], [4, 4], [2, 4], [2, 2]], "
+            + "[[20, 20], [21, 20], [21, 21], [20, 21], [20, 20]]]}";
+    ParseOptions options = new ParseOptions();
+    options.setNormalizePolygons(true);
+    try {
+      new GeoJsonParser().internalParse(geojson, MOCK_MAP_FACTORIES, options);
+      fail("Expected a GeoJsonParseException.");
+    } catch (GeoJsonParseException e) {
+      assertEquals(ParseDiagnostic.Code.HOLE_OUTSIDE_POLYGON, e.getCode());
+    }
+
+    List<ParseDiagnostic> diagnostics = new ArrayList<>();
+    options.setValidation(ValidationLevel.LENIENT);
+    options.setDiagnosticListener(diagnostics::add);
+    MapElementLayer layer = new GeoJsonParser().internalParse(geojson, MOCK_MAP_FACTORIES, options);
+    List<MapElement> elements = ((MockMapElementCollection) layer.getElements()).getElements();
+    List<Geopath> rings = ((MapPolygon) elements.get(0)).getPaths();
+    assertEquals(2, rings.size());
+    assertPathEquals(new double[][] {{0, 0}, {10, 0}, {10, 10}, {0, 10}, {0, 0}}, rings.get(0));
+    assertPathEquals(new double[][] {{2, 2}, {2, 4}, {4, 4}, {4, 2}, {2, 2}}, rings.get(1));
+    assertEquals(1, diagnostics.size());
+    assertEquals(
+        "Inner ring 2 of a polygon must be inside the outer ring.",
+        diagnostics.get(0).getMessage());
+
+    String bowtie =
+        "{\"type\": \"Polygon\", \"coordinates\": "
+            + "[[[0, 0], [10, 10], [10, 0], [0, 10], [0, 0]]]}";
+    diagnostics.clear();
+    new GeoJsonParser().internalParse(bowtie, MOCK_MAP_FACTORIES, options);
+    assertEquals(1, diagnostics.size());
+    assertEquals(ParseDiagnostic.Code.RING_SELF_INTERSECTION, diagnostics.get(0).getCode());
+    assertEquals(
+        "Polygon ring 0 must not intersect itself. Instead the edges after positions 0 and 2 meet.",
+        diagnostics.get(0).getMessage());
+  }
+
+  @Test
+  public void testSplitAtAntimeridian() throws GeoJsonParseException, JSONException {
+    String geojson =
+        "{\"type\": \"GeometryCollection\", \"geometries\": [\n"
+            + "{\"type\": \"LineString\", \"coordinates\": [[170, 10], [-170, 20], [-160, 20]]},\n"
+            + "{\"type\": \"Polygon\", \"coordinates\": ["
+            + "[[170, -10], [-170, -10], [-170, 10], [170, 10], [170, -10]], "
+            + "[[175, -5], [178, -5], [178, 5], [175, 5], [175, -5]]]}]}";
+    MapElementLayer layer = new GeoJsonParser().internalParse(geojson, MOCK_MAP_FACTORIES);
+    assertEquals(2, ((MockMapElementCollection) layer.getElements()).getElements().size());
+
+    ParseOptions options = new ParseOptions();
+    options.setSplitAtAntimeridian(true);
+    layer = new GeoJsonParser().internalParse(geojson, MOCK_MAP_FACTORIES, options);
+    List<MapElement> elements = ((MockMapElementCollection) layer.getElements()).getElements();
+    assertEquals(4, elements.size());
+
+    assertPathEquals(
+        new double[][] {{170, 10}, {180, 15}}, ((MapPolyline) elements.get(0)).getPath());
+    assertPathEquals(
+        new double[][] {{-180, 15}, {-170, 20}, {-160, 20}},
+        ((MapPolyline) elements.get(1)).getPath());
+
+    List<Geopath> west = ((MapPolygon) elements.get(2)).getPaths();
+    assertEquals(2, west.size());
+    assertPathEquals(
+        new double[][] {{170, -10}, {180, -10}, {180, 10}, {170, 10}, {170, -10}}, west.get(0));
+    assertPathEquals(
+        new double[][] {{175, -5}, {178, -5}, {178, 5}, {175, 5}, {175, -5}}, west.get(1));
+    List<Geopath> east = ((MapPolygon) elements.get(3)).getPaths();
+    assertEquals(1, east.size());
+    assertPathEquals(
+        new double[][] {{-180, -10}, {-170, -10}, {-170, 10}, {-180, 10}, {-180, -10}},
+        east.get(0));
+  }
+
+  private static void assertPathEquals(@NonNull double[][] expected, @NonNull Geopath path) {
+    assertEquals(expected.length, path.size());
+    for (int i = 0; i < expected.length; i++) {
+      TestHelpers.assertPositionEquals(expected[i], path.get(i));
+    }
+  }
+
+  @Test
+  public void testCoordinatePrecision() throws GeoJsonParseException, JSONException {
+    String geojson =
+        "{\"type\": \"GeometryCollection\", \"geometries\": [\n"
+            + "{\"type\": \"LineString\", \"coordinates\": "
+            + "[[10.123456, 20.123456], [10.123461, 20.123459], [11.5, 21.5]]},\n"
+            + "{\"type\": \"Polygon\", \"coordinates\": "
+            + "[[[0.000001, 0.000001], [0.000002, 0], [0, 0.000002], [0.000001, 0.000001]]]}]}";
+    ParseOptions options = new ParseOptions();
+    options.setCoordinatePrecision(5);
+    MapElementLayer layer = new GeoJsonParser().internalParse(geojson, MOCK_MAP_FACTORIES, options);
+    List<MapElement> elements = ((MockMapElementCollection) layer.getElements()).getElements();
+    assertEquals(2, elements.size());
+
+    Geopath path = ((MapPolyline) elements.get(0)).getPath();
+    assertEquals(2, path.size());
+    TestHelpers.assertPositionEquals(new double[] {10.12346, 20.12346}, path.get(0));
+    TestHelpers.assertPositionEquals(new double[] {11.5, 21.5}, path.get(1));
+
+    // Rounding makes every position of this ring equal, so it is kept as is.
+    Geopath ring = ((MapPolygon) elements.get(1)).getPaths().get(0);
+    assertEquals(4, ring.size());
+    for (Geoposition position : ring) {
+      TestHelpers.assertPositionEquals(new double[] {0, 0}, position);
+    }
+
+    try {
+      options.setCoordinatePrecision(13);
+      fail("Expected an IllegalArgumentException.");
+    } catch (IllegalArgumentException e) {
+      assertEquals(5, options.getCoordinatePrecision());
+    }
+  }
+
+  @Test
+  public void testBoundsAndCentroid() throws GeoJsonParseException, JSONException {
+    String geojson =
+        "{\"type\": \"FeatureCollection\", \"bbox\": [-20, -30, 20, 30], \"features\": [\n"
+            + "{\"type\": \"Feature\", \"properties\": {}, \"geometry\": "
+            + "{\"type\": \"LineString\", \"coordinates\": [[0, 0], [4, 2]]}},\n"
+            + "{\"type\": \"Feature\", \"properties\": {}, \"bbox\": [9, -6, 11, -4], "
+            + "\"geometry\": {\"type\": \"Point\", \"coordinates\": [10, -5]}}]}";
+    GeoJsonParseOptions options = new GeoJsonParseOptions();
+    options.setCaptureProperties(true);
+    GeoJsonParser parser = new GeoJsonParser();
+    parser.internalParse(geojson, MOCK_MAP_FACTORIES, options);
+    assertBoundsEqual(2, 0, -5, 10, parser.getBounds());
+    GeoJsonFeature line = parser.getFeatures().get(0);
+    TestHelpers.assertPositionEquals(new double[] {2, 1}, line.getCentroid());
+    assertEquals(0, line.getBounds().getNorthWestCorner().getLongitude(), 0);
+    assertEquals(0, line.getBounds().getSouthEastCorner().getLatitude(), 0);
+
+    // When TRUSTED, "bbox" members are used instead of the coordinates.
+    options.setValidation(ValidationLevel.TRUSTED);
+    parser = new GeoJsonParser();
+    parser.internalParse(geojson, MOCK_MAP_FACTORIES, options);
+    assertBoundsEqual(30, -20, -30, 20, parser.getBounds());
+    GeoJsonFeature point = parser.getFeatures().get(1);
+    assertEquals(-4, point.getBounds().getNorthWestCorner().getLatitude(), 0);
+    assertEquals(11, point.getBounds().getSouthEastCorner().getLongitude(), 0);
+    TestHelpers.assertPositionEquals(new double[] {10, -5}, point.getCentroid());
+  }
+
+  private static void assertBoundsEqual(
+      double north, double west, double south, double east, @NonNull GeoBounds bounds) {
+    assertEquals(north, bounds.getNorth(), 0);
+    assertEquals(west, bounds.getWest(), 0);
+    assertEquals(south, bounds.getSouth(), 0);
+    assertEquals(east, bounds.getEast(), 0);
+  }
+
+  @Test
+  public void testPropertiesNotCapturedByDefault() throws GeoJsonParseException, JSONException {
+    GeoJsonParser parser = new GeoJsonParser();
+    parser.internalParse(PROPERTIES_GEOJSON, MOCK_MAP_FACTORIES);
+    assertNull(parser.getFeatures());
+  }
+
+  @Test
+  public void testCaptureAllProperties() throws GeoJsonParseException, JSONException {
+    GeoJsonParseOptions options = new GeoJsonParseOptions();
+    options.setCaptureProperties(true);
+    GeoJsonParser parser = new GeoJsonParser();
+    MapElementLayer layer = parser.internalParse(PROPERTIES_GEOJSON, MOCK_MAP_FACTORIES, options);
+    MockMapElementCollection elementCollection = (MockMapElementCollection) layer.getElements();
+
+    List<GeoJsonFeature> features = parser.getFeatures();
+    assertEquals(2, features.size());
+    GeoJsonFeature first = features.get(0);
+    assertEquals(6, first.getProperties().size());
+    assertEquals("first", first.getProperty("name"));
+    assertEquals(1, first.getProperty("rank"));
+    assertEquals(true, first.getProperty("open"));
+    assertEquals(Arrays.asList("a", null), first.getProperty("tags"));
+    assertEquals(7, ((Map) first.getProperty("owner")).get("id"));
+    assertEquals(2, first.getElements().size());
+    assertEquals(elementCollection.getElements().get(0), first.getElements().get(0));
+    assertEquals(elementCollection.getElements().get(1), first.getElements().get(1));
+
+    GeoJsonFeature second = features.get(1);
+    assertTrue(second.getProperties().isEmpty());
+    assertEquals(1, second.getElements().size());
+    assertEquals(elementCollection.getElements().get(2), second.getElements().get(0));
+  }
+
+  @Test
+  public void testCapturePropertiesProjection() throws GeoJsonParseException, JSONException {
+    GeoJsonParseOptions options = new GeoJsonParseOptions();
+    options.setPropertyKeys(Arrays.asList("name", "missing"));
+    GeoJsonParser parser = new GeoJsonParser();
+    parser.internalParse(PROPERTIES_GEOJSON, MOCK_MAP_FACTORIES, options);
+
+    GeoJsonFeature first = parser.getFeatures().get(0);
+    assertEquals(1, first.getProperties().size());
+    assertEquals("first", first.getProperty("name"));
+    assertFalse(first.getProperties().containsKey("missing"));
+    assertFalse(first.getProperties().containsKey("unused"));
+  }
+
+  @Test
+  public void testCapturePropertiesInParallel() throws GeoJsonParseException, JSONException {
+    GeoJsonParseOptions options = new GeoJsonParseOptions();
+    options.setPropertyKeys(Arrays.asList("name"));
+    options.setParallelism(2);
+    GeoJsonParser parser = new GeoJsonParser();
+    MapElementLayer layer = parser.internalParse(PROPERTIES_GEOJSON, MOCK_MAP_FACTORIES, options);
+    MockMapElementCollection elementCollection = (MockMapElementCollection) layer.getElements();
+
+    List<GeoJsonFeature> features = parser.getFeatures();
+    assertEquals(2, features.size());
+    assertEquals("first", features.get(0).getProperty("name"));
+    assertEquals(elementCollection.getElements().get(2), features.get(1).getElements().get(0));
+  }
+
+  @Test
+  public void testCapturePropertiesOfSingleFeature() throws GeoJsonParseException, JSONException {
+    String geojson =
+        "{\"type\": \"Feature\", \"properties\": {\"name\": \"only\"}, "
+            + "\"geometry\": {\"type\": \"Point\", \"coordinates\": [3, 3]}}";
+    GeoJsonParseOptions options = new GeoJsonParseOptions();
+    options.setCaptureProperties(true);
+    GeoJsonParser parser = new GeoJsonParser();
+    parser.internalParse(geojson, MOCK_MAP_FACTORIES, options);
+
+    assertEquals(1, parser.getFeatures().size());
+    assertEquals("only", parser.getFeatures().get(0).getProperty("name"));
+    assertEquals(1, parser.getFeatures().get(0).getElements().size());
+  }
+
+  private static final String STYLED_GEOJSON =
+      "{\"type\": \"FeatureCollection\", \"features\": ["
+          + "{\"type\": \"Feature\", \"properties\": {\"kind\": \"park\", \"lanes\": 0}, "
+          + "\"geometry\": {\"type\": \"Polygon\", "
+          + "\"coordinates\": [[[30, 10], [40, 40], [20, 40], [30, 10]]]}},"
+          + "{\"type\": \"Feature\", \"properties\": {\"kind\": \"road\", \"lanes\": 3}, "
+          + "\"geometry\": {\"type\": \"LineString\", \"coordinates\": [[1, 1], [2, 2]]}},"
+          + "{\"type\": \"Feature\", \"properties\": {\"kind\": \"hidden\"}, "
+          + "\"geometry\": {\"type\": \"Point\", \"coordinates\": [3, 3]}}"
+          + "]}";
+
+  @NonNull
+  private static GeoJsonStyle createTestStyle() {
+    HashMap<Object, Integer> colors = new HashMap<>();
+    colors.put("park", Color.GREEN);
+    colors.put("road", Color.GRAY);
+    GeoJsonStyle style = new GeoJsonStyle();
+    style.setFillColorRule(StyleRule.match("kind", colors, null));
+    style.setStrokeColorRule(StyleRule.match("kind", colors, null));
+    style.setStrokeWidthRule(
+        StyleRule.interpolate("lanes", new double[] {1, 5}, new int[] {2, 10}));
+    style.setVisibleRule(StyleRule.match("kind", Collections.singletonMap("hidden", false), true));
+    return style;
+  }
+
+  @Test
+  public void testStyleAppliedWhileParsing() throws GeoJsonParseException, JSONException {
+    GeoJsonParseOptions options = new GeoJsonParseOptions();
+    options.setStyle(createTestStyle());
+    GeoJsonParser parser = new GeoJsonParser();
+    MapElementLayer layer = parser.internalParse(STYLED_GEOJSON, MOCK_MAP_FACTORIES, options);
+    List<MapElement> elements = ((MockMapElementCollection) layer.getElements()).getElements();
+    assertEquals(3, elements.size());
+
+    MapPolygon polygon = (MapPolygon) elements.get(0);
+    assertEquals(Color.GREEN, polygon.getFillColor());
+    assertEquals(Color.GREEN, polygon.getStrokeColor());
+    assertEquals(2, polygon.getStrokeWidth());
+    MapPolyline line = (MapPolyline) elements.get(1);
+    assertEquals(Color.GRAY, line.getStrokeColor());
+    assertEquals(6, line.getStrokeWidth());
+    Mockito.verify(elements.get(2)).setVisible(false);
+    Mockito.verify(line, Mockito.never()).setVisible(Mockito.anyBoolean());
+
+    // Only the properties read by the rules are kept.
+    GeoJsonFeature first = parser.getFeatures().get(0);
+    assertEquals(2, first.getProperties().size());
+  }
+
+  @Test
+  public void testStyleValuesCachedOnFeatures() throws GeoJsonParseException, JSONException {
+    GeoJsonParseOptions options = new GeoJsonParseOptions();
+    GeoJsonStyle style = createTestStyle();
+    options.setStyle(style);
+    GeoJsonParser parser = new GeoJsonParser();
+    parser.internalParse(STYLED_GEOJSON, MOCK_MAP_FACTORIES, options);
+
+    // The layer-wide setters read these values instead of evaluating the rules again.
+    List<GeoJsonFeature> features = parser.getFeatures();
+    assertTrue(features.get(0).hasStyleValues(style));
+    assertEquals(Color.GREEN, (int) features.get(0).getStyleValues().mFillColor);
+    assertEquals(6, (int) features.get(1).getStyleValues().mStrokeWidth);
+    assertFalse(features.get(2).getStyleValues().isVisible());
+  }
+
+  @Test
+  public void testStyleAppliedWhileParsingInParallel() throws GeoJsonParseException, JSONException {
+    GeoJsonParseOptions options = new GeoJsonParseOptions();
+    options.setStyle(createTestStyle());
+    options.setParallelism(3);
+    MapElementLayer layer =
+        new GeoJsonParser().internalParse(STYLED_GEOJSON, MOCK_MAP_FACTORIES, options);
+    List<MapElement> elements = ((MockMapElementCollection) layer.getElements()).getElements();
+    assertEquals(Color.GREEN, ((MapPolygon) elements.get(0)).getFillColor());
+    assertEquals(6, ((MapPolyline) elements.get(1)).getStrokeWidth());
+    Mockito.verify(elements.get(2)).setVisible(false);
+  }
+
+  @Test
+  public void testStyleRuleMatchesNumbersOfAnyType() {
+    StyleRule<String> rule = StyleRule.match("rank", Collections.singletonMap(1, "first"), "other");
+    assertEquals("first", rule.evaluateValue(1));
+    assertEquals("first", rule.evaluateValue(1.0));
+    assertEquals("first", rule.evaluateValue(1L));
+    assertEquals("other", rule.evaluateValue(2));
+    assertEquals("other", rule.evaluateValue(null));
+  }
+
+  @Test
+  public void testStyleRuleInterpolateColor() {
+    StyleRule<Integer> rule =
+        StyleRule.interpolateColor(
+            "value", new double[] {0, 10}, new int[] {0xff000000, 0xff0000fe});
+    assertEquals(Integer.valueOf(0xff000000), rule.evaluateValue(-5));
+    assertEquals(Integer.valueOf(0xff00007f), rule.evaluateValue(5));
+    assertEquals(Integer.valueOf(0xff0000fe), rule.evaluateValue(20));
+    assertNull(rule.evaluateValue("5"));
+  }
+
+  @Test
+  public void testStyleRuleRejectsUnorderedStops() {
+    try {
+      StyleRule.interpolate("value", new double[] {2, 1}, new int[] {1, 2});
+      fail();
+    } catch (IllegalArgumentException e) {
+      assertEquals("Stops must be in ascending order.", e.getMessage());
+    }
+  }
+
+  @NonNull
+  private static List<GeoJsonFeature> parseFilterFeatures()
+      throws GeoJsonParseException, JSONException {
+    StringBuilder geojson = new StringBuilder("{\"type\": \"FeatureCollection\", \"features\": [");
+    String[] statuses = {"active", "retired", "planned"};
+    for (int i = 0; i < 6; i++) {
+      if (i > 0) {
+        geojson.append(',');
+      }
+      geojson
+          .append("{\"type\": \"Feature\", \"properties\": {\"status\": \"")
+          .append(statuses[i % 3])
+          .append("\", \"floors\": ")
+          .append(i % 2 == 0 ? "2" : "3.0")
+          .append(i == 5 ? ", \"owner\": null" : "")
+          .append("}, \"geometry\": {\"type\": \"Point\", \"coordinates\": [1, 1]}}");
+    }
+    geojson.append("]}");
+    GeoJsonParseOptions options = new GeoJsonParseOptions();
+    options.setCaptureProperties(true);
+    GeoJsonParser parser = new GeoJsonParser();
+    parser.internalParse(geojson.toString(), MOCK_MAP_FACTORIES, options);
+    return parser.getFeatures();
+  }
+
+  @NonNull
+  private static BitSet bits(int... indices) {
+    BitSet bits = new BitSet();
+    for (int index : indices) {
+      bits.set(index);
+    }
+    return bits;
+  }
+
+  @Test
+  public void testFilterExpressions() throws GeoJsonParseException, JSONException {
+    FeatureIndex index = new FeatureIndex(parseFilterFeatures());
+    assertEquals(bits(0, 3), GeoJsonFilter.eq("status", "active").evaluate(index));
+    assertEquals(bits(1, 3, 5), GeoJsonFilter.eq("floors", 3).evaluate(index));
+    assertEquals(
+        bits(0, 1, 3, 4),
+        GeoJsonFilter.in("status", Arrays.asList("active", "retired")).evaluate(index));
+    assertEquals(bits(5), GeoJsonFilter.has("owner").evaluate(index));
+    assertEquals(bits(5), GeoJsonFilter.eq("owner", null).evaluate(index));
+    assertEquals(
+        bits(3),
+        GeoJsonFilter.and(GeoJsonFilter.eq("status", "active"), GeoJsonFilter.eq("floors", 3))
+            .evaluate(index));
+    assertEquals(
+        bits(0, 2, 3, 5),
+        GeoJsonFilter.or(
+                GeoJsonFilter.eq("status", "active"), GeoJsonFilter.eq("status", "planned"))
+            .evaluate(index));
+    assertEquals(
+        bits(1, 2, 4, 5), GeoJsonFilter.not(GeoJsonFilter.eq("status", "active")).evaluate(index));
+    assertEquals(bits(), GeoJsonFilter.eq("missing", "active").evaluate(index));
+  }
+
+  @Test
+  public void testFilterChangeOnlyReportsFeaturesThatChange() {
+    assertEquals(bits(), FeatureIndex.getChanged(null, null, 4));
+    assertEquals(bits(1, 3), FeatureIndex.getChanged(null, bits(0, 2), 4));
+    assertEquals(bits(1, 3), FeatureIndex.getChanged(bits(0, 2), null, 4));
+    assertEquals(bits(0, 1), FeatureIndex.getChanged(bits(0, 2), bits(1, 2), 4));
+  }
+
+  @Test
+  public void testIconClusteringByZoomLevel() throws GeoJsonParseException, JSONException {
+    StringBuilder coordinates = new StringBuilder();
+    for (int i = 0; i < 20; i++) {
+      for (int j = 0; j < 20; j++) {
+        if (coordinates.length() > 0) {
+          coordinates.append(',');
+        }
+        coordinates
+            .append('[')
+            .append(10 + i * 0.01)
+            .append(", ")
+            .append(40 + j * 0.01)
+            .append(']');
+      }
+    }
+    String geojson =
+        "{\"type\": \"GeometryCollection\", \"geometries\": ["
+            + "{\"type\": \"MultiPoint\", \"coordinates\": ["
+            + coordinates
+            + "]},"
+            + "{\"type\": \"LineString\", \"coordinates\": [[1, 1], [2, 2]]}]}";
+    MapIconClusterer clusterer = new MapIconClusterer();
+    ParseOptions options = new ParseOptions();
+    options.setIconClusterer(clusterer);
+    MapElementLayer layer = new GeoJsonParser().internalParse(geojson, MOCK_MAP_FACTORIES, options);
+    List<MapElement> elements = ((MockMapElementCollection) layer.getElements()).getElements();
+
+    // At the lowest zoom level all points fall into a single cell.
+    assertEquals(2, elements.size());
+    assertTrue(elements.get(0) instanceof MapPolyline);
+    MapIcon cluster = (MapIcon) elements.get(1);
+    assertEquals("400", cluster.getTitle());
+    assertEquals(400, clusterer.getClusterSize(cluster));
+    assertEquals(10.095, cluster.getLocation().getPosition().getLongitude(), 1e-6);
+
+    clusterer.setZoomLevel(12.5);
+    assertEquals(12, clusterer.getZoomLevel());
+    int total = 0;
+    for (MapIcon icon : clusterer.getShownIcons()) {
+      total += clusterer.getClusterSize(icon);
+    }
+    assertEquals(400, total);
+    assertTrue(clusterer.getShownIcons().size() > 1);
+    assertTrue(clusterer.getShownIcons().size() < 400);
+    assertEquals(clusterer.getShownIcons().size() + 1, elements.size());
+
+    clusterer.setZoomLevel(20);
+    assertEquals(401, elements.size());
+    for (MapIcon icon : clusterer.getShownIcons()) {
+      assertEquals(1, clusterer.getClusterSize(icon));
+      assertNull(icon.getTitle());
+    }
+  }
+
+  @Test
+  public void testIconClustererShowsOnlyClustersInViewport()
+      throws GeoJsonParseException, JSONException {
+    StringBuilder coordinates = new StringBuilder();
+    for (int i = 0; i < 20; i++) {
+      for (int j = 0; j < 20; j++) {
+        if (coordinates.length() > 0) {
+          coordinates.append(", ");
+        }
+        coordinates.append('[').append(10 + i).append(", ").append(40 + j).append(']');
+      }
+    }
+    String geojson = "{\"type\": \"MultiPoint\", \"coordinates\": [" + coordinates + "]}";
+    MapIconClusterer clusterer = new MapIconClusterer();
+    ParseOptions options = new ParseOptions();
+    options.setIconClusterer(clusterer);
+    MapElementLayer layer = new GeoJsonParser().internalParse(geojson, MOCK_MAP_FACTORIES, options);
+    List<MapElement> elements = ((MockMapElementCollection) layer.getElements()).getElements();
+
+    // At zoom level 10 the margin is about 0.35 degrees, so only the points in the viewport show.
+    clusterer.setCamera(
+        10, new GeoboundingBox(new Geoposition(45.5, 14.5), new Geoposition(43.5, 16.5)));
+    assertEquals(4, elements.size());
+    for (MapElement element : elements) {
+      Geoposition position = ((MapIcon) element).getLocation().getPosition();
+      assertTrue(position.getLongitude() == 15 || position.getLongitude() == 16);
+      assertTrue(position.getLatitude() == 44 || position.getLatitude() == 45);
+    }
+
+    // A viewport crossing the antimeridian wraps around to the points at the west end of the range.
+    clusterer.setViewport(
+        new GeoboundingBox(new Geoposition(59.5, 170), new Geoposition(58.5, 10.5)));
+    assertEquals(1, elements.size());
+    assertEquals(10, ((MapIcon) elements.get(0)).getLocation().getPosition().getLongitude(), 0);
+
+    clusterer.setViewport(null);
+    assertEquals(400, elements.size());
+  }
+
+  @Test
+  public void testIconClustererLeavesOutFilteredIcons()
+      throws GeoJsonParseException, JSONException {
+    String geojson =
+        "{\"type\": \"MultiPoint\", \"coordinates\": [[10, 10], [10.001, 10], [10.002, 10]]}";
+    MapIconClusterer clusterer = new MapIconClusterer();
+    ParseOptions options = new ParseOptions();
+    options.setIconClusterer(clusterer);
+    MapElementLayer layer = new GeoJsonParser().internalParse(geojson, MOCK_MAP_FACTORIES, options);
+    List<MapElement> elements = ((MockMapElementCollection) layer.getElements()).getElements();
+    assertEquals(1, elements.size());
+    assertEquals(3, clusterer.getClusterSize((MapIcon) elements.get(0)));
+
+    MapIcon excluded = clusterer.getIcons().get(1);
+    clusterer.setIconFilter(icon -> icon != excluded);
+    assertEquals(3, clusterer.getClusterSize((MapIcon) elements.get(0)));
+    clusterer.refresh();
+    assertEquals(1, elements.size());
+    assertEquals("2", ((MapIcon) elements.get(0)).getTitle());
+    assertEquals(2, clusterer.getClusterSize((MapIcon) elements.get(0)));
+    assertEquals(3, clusterer.getIcons().size());
+  }
+
+  @Test
+  public void testTiledLayerAttachesOnlyTilesInView() throws GeoJsonParseException, JSONException {
+    String geojson =
+        "{\"type\": \"GeometryCollection\", \"geometries\": ["
+            + "{\"type\": \"Point\", \"coordinates\": [10, 10]},"
+            + "{\"type\": \"Point\", \"coordinates\": [20, 20]},"
+            + "{\"type\": \"LineString\", \"coordinates\": [[-100, -10], [-80, -30]]},"
+            + "{\"type\": \"Polygon\", "
+            + "\"coordinates\": [[[100, 50], [120, 50], [120, 60], [100, 50]]]}]}";
+    TiledMapLayer tiledLayer = new TiledMapLayer(2);
+    ParseOptions options = new ParseOptions();
+    options.setTiledLayer(tiledLayer);
+    MapElementLayer layer = new GeoJsonParser().internalParse(geojson, MOCK_MAP_FACTORIES, options);
+    assertTrue(((MockMapElementCollection) layer.getElements()).getElements().isEmpty());
+    assertEquals(new HashSet<>(Arrays.asList("12", "13", "21")), tiledLayer.getQuadKeys());
+    assertEquals(2, tiledLayer.getElements("12").size());
+
+    List<MapElementLayer> attached = new ArrayList<>();
+    tiledLayer.setHost(
+        new TiledMapLayer.Host() {
+          @Override
+          public void addLayer(@NonNull MapElementLayer tileLayer) {
+            attached.add(tileLayer);
+          }
+
+          @Override
+          public void removeLayer(@NonNull MapElementLayer tileLayer) {
+            attached.remove(tileLayer);
+          }
+        });
+    tiledLayer.setViewport(40, 0, 0, 40);
+    assertEquals(Collections.singleton("12"), tiledLayer.getAttachedQuadKeys());
+    assertEquals(1, attached.size());
+    MapElementLayer tileLayer = attached.get(0);
+    assertEquals(2, ((MockMapElementCollection) tileLayer.getElements()).getElements().size());
+
+    // A viewport crossing the antimeridian.
+    tiledLayer.setViewport(0, 170, -40, -70);
+    assertEquals(Collections.singleton("21"), tiledLayer.getAttachedQuadKeys());
+
+    tiledLayer.setViewport(80, -180, -80, 180);
+    assertEquals(3, attached.size());
+    tiledLayer.setViewport(40, 0, 0, 40);
+    assertEquals(Collections.singletonList(tileLayer), attached);
+
+    tiledLayer.evictDetachedTiles();
+    tiledLayer.setViewport(80, 90, 40, 180);
+    assertEquals(Collections.singleton("13"), tiledLayer.getAttachedQuadKeys());
+    assertEquals(
+        1, ((MockMapElementCollection) attached.get(0).getElements()).getElements().size());
+  }
+
+  @Test
+  public void testTiledLayerQuadKey() {
+    assertEquals("213", TiledMapLayer.toQuadKey(3, 5, 3));
+    assertEquals("0", TiledMapLayer.toQuadKey(0, 0, 1));
+  }
 }
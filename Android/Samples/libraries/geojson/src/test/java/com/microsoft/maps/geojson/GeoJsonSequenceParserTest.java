@@ -0,0 +1,145 @@
+// Copyright (c) Microsoft Corporation.
+// Licensed under the MIT license.
+
+package com.microsoft.maps.geojson;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import androidx.annotation.NonNull;
+import com.microsoft.maps.MapElement;
+import com.microsoft.maps.MapIcon;
+import com.microsoft.maps.MapPolyline;
+import com.microsoft.maps.MockBingMapsLoader;
+import com.microsoft.maps.MockMapElementCollection;
+import com.microsoft.maps.moduletools.MapFactories;
+import com.microsoft.maps.moduletools.ParseDiagnostic;
+import com.microsoft.maps.moduletools.ParseOptions;
+import com.microsoft.maps.moduletoolstest.MockParserMapFactories;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+
+/** Unit tests to check the GeoJsonSequenceParser class. */
+public class GeoJsonSequenceParserTest {
+
+  private static final MapFactories MOCK_MAP_FACTORIES = new MockParserMapFactories();
+
+  @Before
+  public void setup() {
+    MockBingMapsLoader.mockInitialize();
+  }
+
+  @Test
+  public void testParseTextSequence() throws GeoJsonParseException {
+    GeoJsonSequenceParser parser =
+        new GeoJsonSequenceParser(MOCK_MAP_FACTORIES, new ParseOptions());
+    String sequence =
+        "\u001E{\n  \"type\": \"Feature\",\n  \"geometry\": {\"type\": \"Point\", \"coordinates\":"
+            + " [1, 0]}\n}\n"
+            + "\u001E{\"type\": \"LineString\", \"coordinates\": [[2, 0], [3, 1]]}\n"
+            + "\u001E{\"type\": \"FeatureCollection\", \"features\": ["
+            + point(4)
+            + ", "
+            + point(5)
+            + "]}\n";
+    assertEquals(3, parser.append(sequence));
+    assertEquals(0, parser.finish());
+
+    List<MapElement> elements = getElements(parser);
+    assertEquals(4, elements.size());
+    assertEquals(1, getLongitude(elements.get(0)), 0);
+    assertTrue(elements.get(1) instanceof MapPolyline);
+    assertEquals(4, getLongitude(elements.get(2)), 0);
+    assertEquals(5, getLongitude(elements.get(3)), 0);
+    assertEquals(3, parser.getRecordCount());
+  }
+
+  @Test
+  public void testAppendAddsCompleteRecordsOnly() throws GeoJsonParseException {
+    GeoJsonSequenceParser parser =
+        new GeoJsonSequenceParser(MOCK_MAP_FACTORIES, new ParseOptions());
+    String lines = point(1) + "\n\n" + point(2) + "\r\n" + point(3);
+    int split = lines.indexOf("[2");
+
+    // A line feed inside the object, after a bracket in a string, does not end the first record.
+    String properties = "{\"type\": \"Feature\", \"properties\": {\"name\": \"a]\\\"\"},\n";
+    assertEquals(0, parser.append(properties));
+    assertEquals(1, parser.append(lines.substring(lines.indexOf("\"geometry\""), split)));
+    assertEquals(1, getElements(parser).size());
+    assertEquals(1, parser.append(lines.substring(split)));
+    assertEquals(2, getElements(parser).size());
+    assertEquals(1, parser.finish());
+    assertEquals(3, getElements(parser).size());
+    assertEquals(3, getLongitude(getElements(parser).get(2)), 0);
+  }
+
+  @Test
+  public void testInvalidRecordIsSkipped() throws GeoJsonParseException {
+    GeoJsonSequenceParser parser =
+        new GeoJsonSequenceParser(MOCK_MAP_FACTORIES, new ParseOptions());
+    try {
+      parser.append(point(1) + "\n{\"type\": \"Feature\"}\n" + point(3) + "\n");
+      fail("Expected a GeoJsonParseException.");
+    } catch (GeoJsonParseException e) {
+      assertTrue(e.getMessage().startsWith("Record 2: "));
+      assertEquals(2, e.getRecordNumber());
+    }
+    assertEquals(2, getElements(parser).size());
+    assertEquals(3, getLongitude(getElements(parser).get(1)), 0);
+
+    assertEquals(1, parser.append(point(4) + "\n"));
+    assertEquals(3, parser.getRecordCount());
+  }
+
+  @Test
+  public void testInvalidRecordKeepsErrorCode() {
+    GeoJsonSequenceParser parser =
+        new GeoJsonSequenceParser(MOCK_MAP_FACTORIES, new ParseOptions());
+    try {
+      parser.append(point(1) + "\n{\"type\": \"Point\", \"coordinates\": [1, 100]}\n");
+      fail("Expected a GeoJsonParseException.");
+    } catch (GeoJsonParseException e) {
+      assertEquals(ParseDiagnostic.Code.LATITUDE_OUT_OF_RANGE, e.getCode());
+      assertEquals(2, e.getRecordNumber());
+      assertEquals(
+          "Record 2: " + ParseDiagnostic.Code.LATITUDE_OUT_OF_RANGE.format(100.0), e.getMessage());
+    }
+  }
+
+  @Test
+  public void testParseInParallelKeepsOrder() throws GeoJsonParseException, IOException {
+    ParseOptions options = new ParseOptions();
+    options.setParallelism(4);
+    GeoJsonSequenceParser parser = new GeoJsonSequenceParser(MOCK_MAP_FACTORIES, options);
+    StringBuilder lines = new StringBuilder();
+    for (int i = 0; i < 100; i++) {
+      lines.append(point(i)).append('\n');
+    }
+    assertEquals(100, parser.read(new StringReader(lines.toString())));
+    List<MapElement> elements = getElements(parser);
+    assertEquals(100, elements.size());
+    for (int i = 0; i < 100; i++) {
+      assertEquals(i, getLongitude(elements.get(i)), 0);
+    }
+  }
+
+  @NonNull
+  private static List<MapElement> getElements(@NonNull GeoJsonSequenceParser parser) {
+    return ((MockMapElementCollection) parser.getElementLayer().getElements()).getElements();
+  }
+
+  private static double getLongitude(@NonNull MapElement icon) {
+    return ((MapIcon) icon).getLocation().getPosition().getLongitude();
+  }
+
+  @NonNull
+  private static String point(double longitude) {
+    return "{\"type\": \"Feature\", \"geometry\": {\"type\": \"Point\", \"coordinates\": ["
+        + longitude
+        + ", 0]}}";
+  }
+}
@@ -0,0 +1,190 @@
+// Copyright (c) Microsoft Corporation.
+// Licensed under the MIT license.
+
+package com.microsoft.maps.geojson;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import androidx.annotation.NonNull;
+import com.microsoft.maps.AltitudeReferenceSystem;
+import com.microsoft.maps.Geopath;
+import com.microsoft.maps.Geopoint;
+import com.microsoft.maps.Geoposition;
+import com.microsoft.maps.MapElement;
+import com.microsoft.maps.MapIcon;
+import com.microsoft.maps.MapPolygon;
+import com.microsoft.maps.MapPolyline;
+import com.microsoft.maps.MockBingMapsLoader;
+import com.microsoft.maps.moduletools.MapFactories;
+import com.microsoft.maps.moduletoolstest.MockParserMapFactories;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.json.JSONException;
+import org.junit.Before;
+import org.junit.Test;
+
+/** Unit tests to check the GeoJsonWriter class. */
+public class GeoJsonWriterTest {
+
+  private static final MapFactories MOCK_MAP_FACTORIES = new MockParserMapFactories();
+
+  @Before
+  public void setup() {
+    MockBingMapsLoader.mockInitialize();
+  }
+
+  @Test
+  public void testWriteEmptyCollection() throws IOException {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    new GeoJsonWriter(output).finish();
+    assertEquals("{\"type\":\"FeatureCollection\",\"features\":[]}", output.toString("UTF-8"));
+  }
+
+  @Test
+  public void testWriteGeometryTypes() throws IOException {
+    MapIcon surfaceIcon = MOCK_MAP_FACTORIES.createMapIcon();
+    surfaceIcon.setLocation(new Geopoint(new Geoposition(10, 20), AltitudeReferenceSystem.SURFACE));
+    MapIcon icon = MOCK_MAP_FACTORIES.createMapIcon();
+    icon.setLocation(new Geopoint(new Geoposition(10.5, -20.25, 100)));
+    MapPolygon polygon = MOCK_MAP_FACTORIES.createMapPolygon();
+    // An open ring is closed when written.
+    ArrayList<Geopath> paths = new ArrayList<>();
+    paths.add(
+        new Geopath(
+            Arrays.asList(new Geoposition(0, 0), new Geoposition(0, 1), new Geoposition(1, 1)),
+            AltitudeReferenceSystem.SURFACE));
+    polygon.setPaths(paths);
+
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    GeoJsonWriter writer = new GeoJsonWriter(output);
+    writer.writeFeature(Collections.singletonList(surfaceIcon), null);
+    writer.writeFeature(Arrays.asList(surfaceIcon, icon), null);
+    writer.writeFeature(Arrays.asList(icon, polygon), Collections.singletonMap("a\"b", "c\nd"));
+    writer.writeFeature(
+        Collections.<MapElement>emptyList(), Collections.<String, Object>emptyMap());
+    writer.finish();
+
+    assertEquals(
+        "{\"type\":\"FeatureCollection\",\"features\":["
+            + "{\"type\":\"Feature\",\"geometry\":{\"type\":\"Point\",\"coordinates\":[20,10]},"
+            + "\"properties\":null},"
+            + "{\"type\":\"Feature\",\"geometry\":{\"type\":\"MultiPoint\","
+            + "\"coordinates\":[[20,10],[-20.25,10.5,100]]},\"properties\":null},"
+            + "{\"type\":\"Feature\",\"geometry\":{\"type\":\"GeometryCollection\",\"geometries\":["
+            + "{\"type\":\"Point\",\"coordinates\":[-20.25,10.5,100]},"
+            + "{\"type\":\"Polygon\",\"coordinates\":[[[0,0],[1,0],[1,1],[0,0]]]}]},"
+            + "\"properties\":{\"a\\\"b\":\"c\\nd\"}},"
+            + "{\"type\":\"Feature\",\"geometry\":null,\"properties\":{}}"
+            + "]}",
+        output.toString("UTF-8"));
+  }
+
+  @Test
+  public void testRoundTripThroughParser()
+      throws IOException, GeoJsonParseException, JSONException {
+    String geojson =
+        "{\"type\": \"FeatureCollection\", \"features\": ["
+            + "{\"type\": \"Feature\", \"properties\": {\"name\": \"park\", \"rank\": 1.5, "
+            + "\"tags\": [\"a\", null, true], \"owner\": {\"id\": 7}}, "
+            + "\"geometry\": {\"type\": \"Polygon\", \"coordinates\": "
+            + "[[[30, 10], [40, 40], [20, 40], [10, 20], [30, 10]], "
+            + "[[25, 20], [30, 30], [20, 30], [25, 20]]]}},"
+            + "{\"type\": \"Feature\", \"properties\": {}, "
+            + "\"geometry\": {\"type\": \"MultiLineString\", \"coordinates\": "
+            + "[[[1, 2, 3], [4, 5, 6]], [[7, 8, 9], [10.125, 11, 12]]]}},"
+            + "{\"type\": \"Feature\", \"properties\": {\"name\": \"\\u00e9t\\u00e9\"}, "
+            + "\"geometry\": {\"type\": \"Point\", \"coordinates\": [-122.5, 47.25]}}"
+            + "]}";
+    List<GeoJsonFeature> features = parseFeatures(geojson);
+
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    GeoJsonWriter writer = new GeoJsonWriter(output);
+    for (GeoJsonFeature feature : features) {
+      writer.writeFeature(feature);
+    }
+    writer.finish();
+    List<GeoJsonFeature> written = parseFeatures(output.toString("UTF-8"));
+
+    assertEquals(features.size(), written.size());
+    for (int i = 0; i < features.size(); i++) {
+      assertEquals(features.get(i).getProperties(), written.get(i).getProperties());
+      assertElementsEqual(features.get(i).getElements(), written.get(i).getElements());
+    }
+    assertEquals("été", written.get(2).getProperty("name"));
+    assertEquals(
+        AltitudeReferenceSystem.SURFACE,
+        ((MapIcon) written.get(2).getElements().get(0)).getLocation().getAltitudeReferenceSystem());
+  }
+
+  @Test
+  public void testNonFiniteNumbersWrittenAsNull() throws IOException {
+    Map<String, Object> properties = new LinkedHashMap<>();
+    properties.put("nan", Double.NaN);
+    properties.put("count", 3L);
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    GeoJsonWriter writer = new GeoJsonWriter(output);
+    writer.writeFeature(Collections.<MapElement>emptyList(), properties);
+    writer.finish();
+    assertEquals(
+        "{\"type\":\"FeatureCollection\",\"features\":[{\"type\":\"Feature\",\"geometry\":null,"
+            + "\"properties\":{\"nan\":null,\"count\":3}}]}",
+        output.toString("UTF-8"));
+  }
+
+  @NonNull
+  private static List<GeoJsonFeature> parseFeatures(@NonNull String geojson)
+      throws GeoJsonParseException, JSONException {
+    GeoJsonParseOptions options = new GeoJsonParseOptions();
+    options.setCaptureProperties(true);
+    GeoJsonParser parser = new GeoJsonParser();
+    parser.internalParse(geojson, MOCK_MAP_FACTORIES, options);
+    return parser.getFeatures();
+  }
+
+  private static void assertElementsEqual(
+      @NonNull List<MapElement> expected, @NonNull List<MapElement> actual) {
+    assertEquals(expected.size(), actual.size());
+    for (int i = 0; i < expected.size(); i++) {
+      MapElement expectedElement = expected.get(i);
+      MapElement actualElement = actual.get(i);
+      assertEquals(expectedElement.getClass(), actualElement.getClass());
+      if (expectedElement instanceof MapIcon) {
+        Geopoint expectedLocation = ((MapIcon) expectedElement).getLocation();
+        Geopoint actualLocation = ((MapIcon) actualElement).getLocation();
+        assertPositionsEqual(
+            Collections.singletonList(expectedLocation.getPosition()),
+            Collections.singletonList(actualLocation.getPosition()));
+      } else if (expectedElement instanceof MapPolyline) {
+        assertPositionsEqual(
+            ((MapPolyline) expectedElement).getPath(), ((MapPolyline) actualElement).getPath());
+      } else {
+        List<Geopath> expectedPaths = ((MapPolygon) expectedElement).getPaths();
+        List<Geopath> actualPaths = ((MapPolygon) actualElement).getPaths();
+        assertEquals(expectedPaths.size(), actualPaths.size());
+        for (int j = 0; j < expectedPaths.size(); j++) {
+          assertPositionsEqual(expectedPaths.get(j), actualPaths.get(j));
+        }
+      }
+    }
+  }
+
+  private static void assertPositionsEqual(
+      @NonNull Iterable<Geoposition> expected, @NonNull Iterable<Geoposition> actual) {
+    Iterator<Geoposition> actualPositions = actual.iterator();
+    for (Geoposition position : expected) {
+      Geoposition actualPosition = actualPositions.next();
+      assertEquals(position.getLatitude(), actualPosition.getLatitude(), 0);
+      assertEquals(position.getLongitude(), actualPosition.getLongitude(), 0);
+      assertEquals(position.getAltitude(), actualPosition.getAltitude(), 0);
+    }
+    assertFalse(actualPositions.hasNext());
+  }
+}
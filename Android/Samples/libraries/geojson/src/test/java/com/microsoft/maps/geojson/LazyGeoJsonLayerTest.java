@@ -0,0 +1,168 @@
+// Copyright (c) Microsoft Corporation.
+// Licensed under the MIT license.
+
+package com.microsoft.maps.geojson;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import androidx.annotation.NonNull;
+import com.microsoft.maps.GeoboundingBox;
+import com.microsoft.maps.MapElement;
+import com.microsoft.maps.MapIcon;
+import com.microsoft.maps.MapPolyline;
+import com.microsoft.maps.MockBingMapsLoader;
+import com.microsoft.maps.MockMapElementCollection;
+import com.microsoft.maps.moduletools.MapFactories;
+import com.microsoft.maps.moduletools.ParseOptions;
+import com.microsoft.maps.moduletoolstest.MockParserMapFactories;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+
+/** Unit tests to check the LazyGeoJsonLayer class. */
+public class LazyGeoJsonLayerTest {
+
+  private static final MapFactories MOCK_MAP_FACTORIES = new MockParserMapFactories();
+
+  @Before
+  public void setup() {
+    MockBingMapsLoader.mockInitialize();
+  }
+
+  @Test
+  public void testOpenOnlyScansFeatures() throws GeoJsonParseException {
+    LazyGeoJsonLayer layer =
+        LazyGeoJsonLayer.open(
+            featureCollection(point(10, 20), line(-30, -10, 5, 15), nullGeometry()),
+            MOCK_MAP_FACTORIES,
+            new ParseOptions());
+    assertEquals(3, layer.getFeatureCount());
+    assertEquals(0, layer.getLoadedFeatureCount());
+    assertEquals(0, getElements(layer).size());
+
+    GeoboundingBox bounds = layer.getFeatureBounds(1);
+    assertEquals(15, bounds.getNorthWestCorner().getLatitude(), 0);
+    assertEquals(-30, bounds.getNorthWestCorner().getLongitude(), 0);
+    assertEquals(-10, bounds.getSouthEastCorner().getLatitude(), 0);
+    assertEquals(5, bounds.getSouthEastCorner().getLongitude(), 0);
+    assertNull(layer.getFeatureBounds(2));
+  }
+
+  @Test
+  public void testViewportLoadsIntersectingFeatures() throws GeoJsonParseException {
+    LazyGeoJsonLayer layer =
+        LazyGeoJsonLayer.open(
+            featureCollection(point(10, 20), line(-30, -10, 5, 15), point(170, 0)),
+            MOCK_MAP_FACTORIES,
+            new ParseOptions());
+    assertEquals(1, layer.setViewport(25, 8, 18, 20));
+    assertTrue(layer.isLoaded(0));
+    assertFalse(layer.isLoaded(1));
+    assertEquals(1, getElements(layer).size());
+    assertTrue(getElements(layer).get(0) instanceof MapIcon);
+
+    // The same viewport loads nothing more, and one across the antimeridian loads the last point.
+    assertEquals(0, layer.setViewport(25, 8, 18, 20));
+    assertEquals(1, layer.setViewport(10, 160, -10, -170));
+    assertEquals(2, getElements(layer).size());
+    assertEquals(170, getLongitude(getElements(layer).get(1)), 0);
+
+    assertFalse(layer.load(0));
+    assertTrue(layer.load(1));
+    assertTrue(getElements(layer).get(2) instanceof MapPolyline);
+    assertEquals(3, layer.getLoadedFeatureCount());
+  }
+
+  @Test
+  public void testInvalidFeatureFailsOnLoad() throws GeoJsonParseException {
+    LazyGeoJsonLayer layer =
+        LazyGeoJsonLayer.open(
+            featureCollection(point(1, 0), "{\"type\": \"Point\", \"coordinates\": [2, 0]}"),
+            MOCK_MAP_FACTORIES,
+            new ParseOptions());
+    assertEquals(2, layer.getFeatureCount());
+    try {
+      layer.loadAll();
+      fail("Expected a GeoJsonParseException.");
+    } catch (GeoJsonParseException e) {
+      // A FeatureCollection member must be a Feature.
+    }
+    assertTrue(layer.isLoaded(0));
+    assertFalse(layer.isLoaded(1));
+    assertEquals(1, getElements(layer).size());
+  }
+
+  @Test
+  public void testLoadAllInParallelKeepsOrder() throws GeoJsonParseException {
+    String[] points = new String[100];
+    for (int i = 0; i < points.length; i++) {
+      points[i] = point(i, 0);
+    }
+    ParseOptions options = new ParseOptions();
+    options.setParallelism(4);
+    LazyGeoJsonLayer layer =
+        LazyGeoJsonLayer.open(featureCollection(points), MOCK_MAP_FACTORIES, options);
+    assertEquals(100, layer.loadAll());
+    List<MapElement> elements = getElements(layer);
+    assertEquals(100, elements.size());
+    for (int i = 0; i < points.length; i++) {
+      assertEquals(i, getLongitude(elements.get(i)), 0);
+    }
+  }
+
+  @Test
+  public void testSingleFeatureDocument() throws GeoJsonParseException {
+    LazyGeoJsonLayer layer =
+        LazyGeoJsonLayer.open(line(1, 2, 3, 4), MOCK_MAP_FACTORIES, new ParseOptions());
+    assertEquals(1, layer.getFeatureCount());
+    assertEquals(0, layer.setViewport(50, 10, 40, 20));
+    assertEquals(1, layer.setViewport(5, 0, 0, 5));
+    assertEquals(1, getElements(layer).size());
+  }
+
+  @NonNull
+  private static List<MapElement> getElements(@NonNull LazyGeoJsonLayer layer) {
+    return ((MockMapElementCollection) layer.getElementLayer().getElements()).getElements();
+  }
+
+  private static double getLongitude(@NonNull MapElement icon) {
+    return ((MapIcon) icon).getLocation().getPosition().getLongitude();
+  }
+
+  @NonNull
+  private static String featureCollection(@NonNull String... features) {
+    return "{\"type\": \"FeatureCollection\", \"features\": [" + String.join(", ", features) + "]}";
+  }
+
+  @NonNull
+  private static String point(double longitude, double latitude) {
+    return "{\"type\": \"Feature\", \"geometry\": {\"type\": \"Point\", \"coordinates\": ["
+        + longitude
+        + ", "
+        + latitude
+        + "]}}";
+  }
+
+  @NonNull
+  private static String line(double west, double south, double east, double north) {
+    return "{\"type\": \"Feature\", \"properties\": {\"coordinates\": [90, 90]}, \"geometry\":"
+        + " {\"type\": \"LineString\", \"coordinates\": [["
+        + west
+        + ", "
+        + south
+        + ", 100], ["
+        + east
+        + ", "
+        + north
+        + "]]}}";
+  }
+
+  @NonNull
+  private static String nullGeometry() {
+    return "{\"type\": \"Feature\", \"geometry\": null}";
+  }
+}
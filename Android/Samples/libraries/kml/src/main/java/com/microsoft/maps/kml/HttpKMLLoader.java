@@ -0,0 +1,137 @@
+// Copyright (c) Microsoft Corporation.
+// Licensed under the MIT license.
+
+package com.microsoft.maps.kml;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.charset.Charset;
+
+/**
+ * KMLLoader that fetches documents with HttpURLConnection. Requests for a document fetched before
+ * are conditional, using If-None-Match and If-Modified-Since, and a 304 response is returned as
+ * KMLLoadResult.notModified(). The expiration of a response is read from the max-age of its
+ * Cache-Control header, or else from its Expires header.
+ */
+public class HttpKMLLoader implements KMLLoader {
+
+  private static final int DEFAULT_TIMEOUT_MILLIS = 30000;
+
+  private int mTimeoutMillis = DEFAULT_TIMEOUT_MILLIS;
+
+  public HttpKMLLoader() {}
+
+  /**
+   * Sets the connect and read timeout of requests. The default is 30 seconds.
+   *
+   * @param timeoutMillis timeout in milliseconds, greater than 0
+   */
+  public void setTimeoutMillis(int timeoutMillis) {
+    if (timeoutMillis <= 0) {
+      throw new IllegalArgumentException(
+          "Timeout must be greater than 0. Instead saw: " + timeoutMillis);
+    }
+    mTimeoutMillis = timeoutMillis;
+  }
+
+  @NonNull
+  @Override
+  public KMLLoadResult load(
+      @NonNull String url, @Nullable String eTag, @Nullable String lastModified)
+      throws IOException {
+    URLConnection urlConnection = new URL(url).openConnection();
+    urlConnection.setConnectTimeout(mTimeoutMillis);
+    urlConnection.setReadTimeout(mTimeoutMillis);
+    if (!(urlConnection instanceof HttpURLConnection)) {
+      // Other schemes, such as file URLs, have no conditional requests.
+      try (InputStream stream = urlConnection.getInputStream()) {
+        return new KMLLoadResult(readFully(stream, getCharset(urlConnection)));
+      }
+    }
+    HttpURLConnection connection = (HttpURLConnection) urlConnection;
+    try {
+      if (eTag != null) {
+        connection.setRequestProperty("If-None-Match", eTag);
+      }
+      if (lastModified != null) {
+        connection.setRequestProperty("If-Modified-Since", lastModified);
+      }
+      int responseCode = connection.getResponseCode();
+      KMLLoadResult result;
+      if (responseCode == HttpURLConnection.HTTP_NOT_MODIFIED) {
+        result = KMLLoadResult.notModified();
+      } else if (responseCode == HttpURLConnection.HTTP_OK) {
+        try (InputStream stream = connection.getInputStream()) {
+          result = new KMLLoadResult(readFully(stream, getCharset(connection)));
+        }
+      } else {
+        throw new IOException("Fetching " + url + " failed with HTTP status " + responseCode + ".");
+      }
+      result.setETag(connection.getHeaderField("ETag"));
+      result.setLastModified(connection.getHeaderField("Last-Modified"));
+      result.setExpiresInMillis(getExpiresInMillis(connection));
+      return result;
+    } finally {
+      connection.disconnect();
+    }
+  }
+
+  private static long getExpiresInMillis(@NonNull HttpURLConnection connection) {
+    String cacheControl = connection.getHeaderField("Cache-Control");
+    if (cacheControl != null) {
+      for (String directive : cacheControl.split(",")) {
+        directive = directive.trim();
+        if (directive.startsWith("max-age=")) {
+          try {
+            return Math.max(0, Long.parseLong(directive.substring(8).trim()) * 1000);
+          } catch (NumberFormatException e) {
+            // An invalid max-age is ignored, as HTTP caches do.
+          }
+        }
+      }
+    }
+    long expiration = connection.getExpiration();
+    if (expiration > 0) {
+      return Math.max(0, expiration - System.currentTimeMillis());
+    }
+    return KMLLoadResult.NO_EXPIRATION;
+  }
+
+  @NonNull
+  private static Charset getCharset(@NonNull URLConnection connection) {
+    String contentType = connection.getContentType();
+    if (contentType != null) {
+      for (String parameter : contentType.split(";")) {
+        parameter = parameter.trim();
+        if (parameter.regionMatches(true, 0, "charset=", 0, 8)) {
+          try {
+            return Charset.forName(parameter.substring(8).replace("\"", "").trim());
+          } catch (IllegalArgumentException e) {
+            // Unknown charsets fall back to UTF-8, the default encoding of KML.
+          }
+        }
+      }
+    }
+    return UTF_8;
+  }
+
+  @NonNull
+  private static String readFully(@NonNull InputStream stream, @NonNull Charset charset)
+      throws IOException {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    byte[] buffer = new byte[8192];
+    int count;
+    while ((count = stream.read(buffer)) != -1) {
+      output.write(buffer, 0, count);
+    }
+    return new String(output.toByteArray(), charset);
+  }
+}
@@ -0,0 +1,321 @@
+// Copyright (c) Microsoft Corporation.
+// Licensed under the MIT license.
+
+package com.microsoft.maps.kml;
+
+import androidx.annotation.NonNull;
+import java.util.Arrays;
+
+/**
+ * Lightweight scanner that records the ranges of the Style, StyleMap and Placemark elements which
+ * are direct children of the root element, a Document or a Folder, without building any XML events
+ * for their content. Anything the scanner does not handle (for example a DOCTYPE, whose entities
+ * would not carry over to fragments of the document) makes scan() return false, and the caller is
+ * expected to fall back to a regular parse.
+ */
+class KMLElementScanner {
+
+  private final CharSequence mKml;
+  private final int mLength;
+  private int mIndex;
+  private String mRootStartTag;
+  private String mRootName;
+  private int[] mStyleBounds = new int[16];
+  private int mStyleCount;
+  private int[] mPlacemarkBounds = new int[32];
+  private int mPlacemarkCount;
+
+  KMLElementScanner(@NonNull CharSequence kml) {
+    mKml = kml;
+    mLength = kml.length();
+  }
+
+  boolean scan() {
+    mIndex = 0;
+    mStyleCount = 0;
+    mPlacemarkCount = 0;
+    if (!skipProlog() || !startsWith("<")) {
+      return false;
+    }
+    int rootStart = mIndex;
+    mIndex++;
+    mRootName = readName();
+    if (mRootName.isEmpty()) {
+      return false;
+    }
+    int rootTagEnd = findTagEnd();
+    if (rootTagEnd < 0 || mKml.charAt(rootTagEnd - 2) == '/') {
+      return false;
+    }
+    mRootStartTag = substring(rootStart, rootTagEnd);
+    mIndex = rootTagEnd;
+
+    int containerDepth = 1;
+    while (containerDepth > 0) {
+      if (!moveToNextTag()) {
+        return false;
+      }
+      if (startsWith("</")) {
+        containerDepth--;
+        int end = indexOf('>', mIndex);
+        if (end < 0) {
+          return false;
+        }
+        mIndex = end + 1;
+        continue;
+      }
+      int elementStart = mIndex;
+      mIndex++;
+      String name = readName();
+      int tagEnd = findTagEnd();
+      if (name.isEmpty() || tagEnd < 0) {
+        return false;
+      }
+      boolean isEmptyElement = mKml.charAt(tagEnd - 2) == '/';
+      mIndex = tagEnd;
+      switch (name) {
+        case "Document":
+        case "Folder":
+          if (!isEmptyElement) {
+            containerDepth++;
+          }
+          break;
+        case "Style":
+        case "StyleMap":
+          if (!isEmptyElement && !skipElementContent()) {
+            return false;
+          }
+          mStyleBounds = add(mStyleBounds, mStyleCount++, elementStart, mIndex);
+          break;
+        case "Placemark":
+          if (!isEmptyElement && !skipElementContent()) {
+            return false;
+          }
+          mPlacemarkBounds = add(mPlacemarkBounds, mPlacemarkCount++, elementStart, mIndex);
+          break;
+        default:
+          if (!isEmptyElement && !skipElementContent()) {
+            return false;
+          }
+          break;
+      }
+    }
+    return true;
+  }
+
+  /** The root start tag exactly as written, including its namespace declarations. */
+  @NonNull
+  String getRootStartTag() {
+    return mRootStartTag;
+  }
+
+  @NonNull
+  String getRootEndTag() {
+    return "</" + mRootName + ">";
+  }
+
+  int getStyleCount() {
+    return mStyleCount;
+  }
+
+  @NonNull
+  String getStyle(int index) {
+    return substring(mStyleBounds[2 * index], mStyleBounds[2 * index + 1]);
+  }
+
+  int getPlacemarkCount() {
+    return mPlacemarkCount;
+  }
+
+  @NonNull
+  String getPlacemark(int index) {
+    return substring(mPlacemarkBounds[2 * index], mPlacemarkBounds[2 * index + 1]);
+  }
+
+  /** Index of the '<' opening the Placemark at the given position. */
+  int getPlacemarkStart(int index) {
+    return mPlacemarkBounds[2 * index];
+  }
+
+  /** Index just past the '>' closing the Placemark at the given position. */
+  int getPlacemarkEnd(int index) {
+    return mPlacemarkBounds[2 * index + 1];
+  }
+
+  @NonNull
+  private static int[] add(@NonNull int[] bounds, int index, int start, int end) {
+    if (2 * index + 1 >= bounds.length) {
+      bounds = Arrays.copyOf(bounds, bounds.length * 2);
+    }
+    bounds[2 * index] = start;
+    bounds[2 * index + 1] = end;
+    return bounds;
+  }
+
+  private boolean skipProlog() {
+    while (true) {
+      skipWhitespace();
+      if (startsWith("<?")) {
+        if (!skipPast("?>")) {
+          return false;
+        }
+      } else if (startsWith("<!--")) {
+        if (!skipPast("-->")) {
+          return false;
+        }
+      } else {
+        return !startsWith("<!");
+      }
+    }
+  }
+
+  /* Moves to the next start or end tag, skipping text, comments, CDATA sections and processing
+   * instructions. */
+  private boolean moveToNextTag() {
+    while (true) {
+      mIndex = indexOf('<', mIndex);
+      if (mIndex < 0) {
+        return false;
+      }
+      if (startsWith("<!--")) {
+        if (!skipPast("-->")) {
+          return false;
+        }
+      } else if (startsWith("<![CDATA[")) {
+        if (!skipPast("]]>")) {
+          return false;
+        }
+      } else if (startsWith("<?")) {
+        if (!skipPast("?>")) {
+          return false;
+        }
+      } else {
+        return !startsWith("<!");
+      }
+    }
+  }
+
+  /* Expects mIndex to be just past a start tag, and moves it past the matching end tag. */
+  private boolean skipElementContent() {
+    int depth = 1;
+    while (depth > 0) {
+      if (!moveToNextTag()) {
+        return false;
+      }
+      if (startsWith("</")) {
+        depth--;
+        int end = indexOf('>', mIndex);
+        if (end < 0) {
+          return false;
+        }
+        mIndex = end + 1;
+      } else {
+        int tagEnd = findTagEnd();
+        if (tagEnd < 0) {
+          return false;
+        }
+        if (mKml.charAt(tagEnd - 2) != '/') {
+          depth++;
+        }
+        mIndex = tagEnd;
+      }
+    }
+    return true;
+  }
+
+  /* Returns the index just past the '>' closing the tag at mIndex, skipping quoted attribute
+   * values, or -1 if the tag is not closed. */
+  private int findTagEnd() {
+    char quote = 0;
+    for (int i = mIndex; i < mLength; i++) {
+      char c = mKml.charAt(i);
+      if (quote != 0) {
+        if (c == quote) {
+          quote = 0;
+        }
+      } else if (c == '"' || c == '\'') {
+        quote = c;
+      } else if (c == '>') {
+        return i + 1;
+      }
+    }
+    return -1;
+  }
+
+  @NonNull
+  private String readName() {
+    int start = mIndex;
+    while (mIndex < mLength) {
+      char c = mKml.charAt(mIndex);
+      if (Character.isWhitespace(c) || c == '>' || c == '/') {
+        break;
+      }
+      mIndex++;
+    }
+    return substring(start, mIndex);
+  }
+
+  private boolean skipPast(@NonNull String terminator) {
+    int end = indexOf(terminator, mIndex);
+    if (end < 0) {
+      return false;
+    }
+    mIndex = end + terminator.length();
+    return true;
+  }
+
+  private boolean startsWith(@NonNull String prefix) {
+    return startsWith(prefix, mIndex);
+  }
+
+  /* The String methods are used when the input is a String, as they are faster than charAt. */
+  private boolean startsWith(@NonNull String prefix, int index) {
+    if (mKml instanceof String) {
+      return ((String) mKml).startsWith(prefix, index);
+    }
+    if (index + prefix.length() > mLength) {
+      return false;
+    }
+    for (int i = 0; i < prefix.length(); i++) {
+      if (mKml.charAt(index + i) != prefix.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private int indexOf(char c, int from) {
+    if (mKml instanceof String) {
+      return ((String) mKml).indexOf(c, from);
+    }
+    for (int i = from; i < mLength; i++) {
+      if (mKml.charAt(i) == c) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private int indexOf(@NonNull String text, int from) {
+    if (mKml instanceof String) {
+      return ((String) mKml).indexOf(text, from);
+    }
+    for (int i = indexOf(text.charAt(0), from); i >= 0; i = indexOf(text.charAt(0), i + 1)) {
+      if (startsWith(text, i)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  @NonNull
+  private String substring(int start, int end) {
+    return mKml.subSequence(start, end).toString();
+  }
+
+  private void skipWhitespace() {
+    while (mIndex < mLength && Character.isWhitespace(mKml.charAt(mIndex))) {
+      mIndex++;
+    }
+  }
+}
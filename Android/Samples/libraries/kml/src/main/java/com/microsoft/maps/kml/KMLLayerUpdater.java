@@ -0,0 +1,232 @@
+// Copyright (c) Microsoft Corporation.
+// Licensed under the MIT license.
+
+package com.microsoft.maps.kml;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+import com.microsoft.maps.MapElement;
+import com.microsoft.maps.MapElementLayer;
+import com.microsoft.maps.moduletools.LayerReconciler;
+import com.microsoft.maps.moduletools.LayerUpdateResult;
+import com.microsoft.maps.moduletools.MapFactories;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Keeps a MapElementLayer in step with successive versions of a KML document, such as a file that
+ * is fetched again periodically. Each call to update(String) compares the Placemarks of the new
+ * version with the current ones:
+ *
+ * <ul>
+ *   <li>Placemarks whose text and shared styles are unchanged keep their elements, and are not
+ *       parsed again.
+ *   <li>Changed Placemarks with the same id as a current one update its elements in place, as long
+ *       as their geometry still creates elements of the same types.
+ *   <li>Other new Placemarks add elements to the end of the layer, and the elements of Placemarks
+ *       that are gone are removed.
+ * </ul>
+ *
+ * <p>Placemarks are found the way parsing in parallel finds them: as children of the root element,
+ * a Document or a Folder. A document the scan does not handle is treated as a single Placemark, so
+ * any change to it replaces all elements. NetworkLinks are not followed.
+ */
+public class KMLLayerUpdater {
+
+  private static final Pattern ID_PATTERN = Pattern.compile("(?:^|\\s)id\\s*=\\s*([\"'])(.*?)\\1");
+
+  private final MapFactories mFactory;
+  private final MapElementLayer mLayer;
+  /* The data of each feature is the list of Placemarks parsed from it, which refer to the elements
+   * in the layer. */
+  private final LayerReconciler<List<MapKMLLayer.Placemark>> mReconciler;
+
+  /** Creates an updater with an empty layer. */
+  public KMLLayerUpdater() {
+    this(KMLParser.DEFAULT_MAP_FACTORIES);
+  }
+
+  @VisibleForTesting
+  KMLLayerUpdater(@NonNull MapFactories factory) {
+    mFactory = factory;
+    mLayer = factory.createMapElementLayer();
+    mReconciler = new LayerReconciler<>(mLayer);
+  }
+
+  /**
+   * Returns the layer holding the elements of the current version of the document. It is a
+   * MapKMLLayer, whose bounds, and those of each Placemark, are kept up to date by each update.
+   */
+  @NonNull
+  public MapElementLayer getLayer() {
+    return mLayer;
+  }
+
+  /**
+   * Updates the layer to a new version of the document. If the document cannot be parsed, the layer
+   * is left as it was. Note: If the KML may contain references to external resources, update should
+   * not be called on the UI thread.
+   *
+   * @param kml input String
+   * @return the number of Placemarks added, updated, removed and left unchanged
+   * @throws KMLParseException
+   */
+  @NonNull
+  public LayerUpdateResult update(@NonNull String kml) throws KMLParseException {
+    if (kml == null) {
+      throw new IllegalArgumentException("Input String cannot be null.");
+    }
+    if (kml.equals("")) {
+      throw new KMLParseException("Input String cannot be empty.");
+    }
+    mReconciler.beginUpdate();
+    List<PendingPlacemark> placemarks;
+    try {
+      placemarks = parseChangedPlacemarks(kml);
+    } catch (KMLParseException e) {
+      mReconciler.cancelUpdate();
+      throw e;
+    } catch (Exception e) {
+      mReconciler.cancelUpdate();
+      throw new KMLParseException(e.getMessage());
+    }
+    for (PendingPlacemark placemark : placemarks) {
+      if (placemark.mElements == null) {
+        mReconciler.reuse(placemark.mContentHash);
+      } else {
+        LayerReconciler.Feature<List<MapKMLLayer.Placemark>> feature =
+            mReconciler.put(
+                placemark.mId, placemark.mContentHash, placemark.mElements, placemark.mPlacemarks);
+        bindToLayerElements(placemark.mPlacemarks, placemark.mElements, feature.getElements());
+      }
+    }
+    LayerUpdateResult result = mReconciler.endUpdate();
+    if (mLayer instanceof MapKMLLayer) {
+      ((MapKMLLayer) mLayer).setPlacemarks(getPlacemarks());
+    }
+    return result;
+  }
+
+  /* The Placemarks of the current version of the document, in document order. */
+  @VisibleForTesting
+  @NonNull
+  List<MapKMLLayer.Placemark> getPlacemarks() {
+    ArrayList<MapKMLLayer.Placemark> placemarks = new ArrayList<>();
+    for (LayerReconciler.Feature<List<MapKMLLayer.Placemark>> feature : mReconciler.getFeatures()) {
+      placemarks.addAll(feature.getData());
+    }
+    return placemarks;
+  }
+
+  /* When a feature is updated in place, its parsed elements are discarded and the elements in the
+   * layer, at the same positions, are kept instead. Its Placemarks are then given the elements in
+   * the layer, so they are found by them. */
+  private static void bindToLayerElements(
+      @NonNull List<MapKMLLayer.Placemark> placemarks,
+      @NonNull List<MapElement> parsedElements,
+      @NonNull List<MapElement> layerElements) {
+    if (parsedElements.isEmpty() || parsedElements.get(0) == layerElements.get(0)) {
+      return;
+    }
+    IdentityHashMap<MapElement, Integer> indexes = new IdentityHashMap<>(parsedElements.size());
+    for (int i = 0; i < parsedElements.size(); i++) {
+      indexes.put(parsedElements.get(i), i);
+    }
+    for (int i = 0; i < placemarks.size(); i++) {
+      MapKMLLayer.Placemark placemark = placemarks.get(i);
+      ArrayList<MapElement> elements = new ArrayList<>(placemark.mElements.size());
+      for (MapElement element : placemark.mElements) {
+        Integer index = indexes.get(element);
+        if (index != null) {
+          elements.add(layerElements.get(index));
+        }
+      }
+      placemarks.set(i, placemark.withElements(elements));
+    }
+  }
+
+  /* Splits the document into Placemarks and parses the ones that are not unchanged, without
+   * touching the layer. As a Placemark may refer to shared styles anywhere in the document, the
+   * hash of each Placemark includes that of the shared styles. */
+  @NonNull
+  private List<PendingPlacemark> parseChangedPlacemarks(@NonNull String kml) throws Exception {
+    ArrayList<PendingPlacemark> placemarks = new ArrayList<>();
+    KMLElementScanner scanner = new KMLElementScanner(kml);
+    if (!scanner.scan()) {
+      long hash = LayerReconciler.hash(kml, 0, kml.length());
+      if (mReconciler.isUnchanged(hash)) {
+        placemarks.add(new PendingPlacemark(null, hash, null, null));
+      } else {
+        ArrayList<MapElement> elements = new ArrayList<>();
+        KMLParser parser = new KMLParser(mFactory, elements);
+        parser.parseElements(kml);
+        placemarks.add(new PendingPlacemark(null, hash, elements, parser.getPlacemarks()));
+      }
+      return placemarks;
+    }
+
+    String rootStartTag = scanner.getRootStartTag();
+    String rootEndTag = scanner.getRootEndTag();
+    StringBuilder styles = new StringBuilder(rootStartTag);
+    for (int i = 0; i < scanner.getStyleCount(); i++) {
+      styles.append(scanner.getStyle(i)).append('\n');
+    }
+    styles.append(rootEndTag);
+    long stylesHash = LayerReconciler.hash(styles, 0, styles.length());
+    // The shared styles are only parsed if a Placemark changed.
+    KMLParser stylesParser = null;
+    for (int i = 0; i < scanner.getPlacemarkCount(); i++) {
+      long hash =
+          LayerReconciler.combineHashes(
+              stylesHash,
+              LayerReconciler.hash(kml, scanner.getPlacemarkStart(i), scanner.getPlacemarkEnd(i)));
+      if (mReconciler.isUnchanged(hash)) {
+        placemarks.add(new PendingPlacemark(null, hash, null, null));
+        continue;
+      }
+      if (stylesParser == null) {
+        stylesParser = new KMLParser(mFactory, new ArrayList<>());
+        stylesParser.parseElements(styles.toString());
+      }
+      String placemark = scanner.getPlacemark(i);
+      ArrayList<MapElement> elements = new ArrayList<>();
+      KMLParser parser = new KMLParser(mFactory, stylesParser, elements);
+      parser.parseElements(rootStartTag + placemark + rootEndTag);
+      placemarks.add(
+          new PendingPlacemark(getId(placemark), hash, elements, parser.getPlacemarks()));
+    }
+    return placemarks;
+  }
+
+  /* Reads the id attribute of the Placemark start tag. */
+  @Nullable
+  private static String getId(@NonNull String placemark) {
+    int tagEnd = placemark.indexOf('>');
+    Matcher matcher = ID_PATTERN.matcher(placemark.substring(0, tagEnd < 0 ? 0 : tagEnd));
+    return matcher.find() ? matcher.group(2) : null;
+  }
+
+  /* A Placemark of the new version: unchanged, or parsed into elements not added to the layer,
+   * with the bounds and centroid measured while it was parsed. */
+  private static final class PendingPlacemark {
+    private final String mId;
+    private final long mContentHash;
+    private final ArrayList<MapElement> mElements;
+    private final List<MapKMLLayer.Placemark> mPlacemarks;
+
+    PendingPlacemark(
+        @Nullable String id,
+        long contentHash,
+        @Nullable ArrayList<MapElement> elements,
+        @Nullable List<MapKMLLayer.Placemark> placemarks) {
+      mId = id;
+      mContentHash = contentHash;
+      mElements = elements;
+      mPlacemarks = placemarks;
+    }
+  }
+}
@@ -0,0 +1,94 @@
+// Copyright (c) Microsoft Corporation.
+// Licensed under the MIT license.
+
+package com.microsoft.maps.kml;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/** Result of a KMLLoader fetch: either a document, or a notice that it has not changed. */
+public class KMLLoadResult {
+
+  /** Value of getExpiresInMillis() when the response did not say when it expires. */
+  public static final long NO_EXPIRATION = -1;
+
+  private final String mKml;
+  private String mETag;
+  private String mLastModified;
+  private long mExpiresInMillis = NO_EXPIRATION;
+
+  /**
+   * Creates a result holding a fetched document.
+   *
+   * @param kml the document
+   */
+  public KMLLoadResult(@NonNull String kml) {
+    if (kml == null) {
+      throw new IllegalArgumentException("KML cannot be null.");
+    }
+    mKml = kml;
+  }
+
+  private KMLLoadResult() {
+    mKml = null;
+  }
+
+  /** Creates a result telling the document has not changed since the previous fetch. */
+  @NonNull
+  public static KMLLoadResult notModified() {
+    return new KMLLoadResult();
+  }
+
+  /** Returns true if the document has not changed since the previous fetch. */
+  public boolean isNotModified() {
+    return mKml == null;
+  }
+
+  /** The fetched document, or null if it has not changed. */
+  @Nullable
+  public String getKml() {
+    return mKml;
+  }
+
+  /**
+   * Sets the ETag of the response, which is passed to the next fetch of the same URL. For a
+   * notModified() result, null keeps the previous value.
+   */
+  public void setETag(@Nullable String eTag) {
+    mETag = eTag;
+  }
+
+  @Nullable
+  public String getETag() {
+    return mETag;
+  }
+
+  /**
+   * Sets the Last-Modified value of the response, which is passed to the next fetch of the same
+   * URL. For a notModified() result, null keeps the previous value.
+   */
+  public void setLastModified(@Nullable String lastModified) {
+    mLastModified = lastModified;
+  }
+
+  @Nullable
+  public String getLastModified() {
+    return mLastModified;
+  }
+
+  /**
+   * Sets how long the response stays fresh, which is when links with refreshMode onExpire are
+   * fetched again. The default, NO_EXPIRATION, means such links are not fetched again.
+   */
+  public void setExpiresInMillis(long expiresInMillis) {
+    if (expiresInMillis < 0 && expiresInMillis != NO_EXPIRATION) {
+      throw new IllegalArgumentException(
+          "Expiration must be at least 0 or NO_EXPIRATION. Instead saw: " + expiresInMillis);
+    }
+    mExpiresInMillis = expiresInMillis;
+  }
+
+  public long getExpiresInMillis() {
+    return mExpiresInMillis;
+  }
+}
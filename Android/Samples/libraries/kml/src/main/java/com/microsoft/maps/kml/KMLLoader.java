@@ -0,0 +1,31 @@
+// Copyright (c) Microsoft Corporation.
+// Licensed under the MIT license.
+
+package com.microsoft.maps.kml;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import java.io.IOException;
+
+/**
+ * Fetches the documents NetworkLinks refer to, for KMLNetworkLinkResolver. HttpKMLLoader fetches
+ * them over HTTP; other implementations may read them from a cache or a local stand-in server.
+ * Loaders are called from several threads at once when sibling links are fetched concurrently.
+ */
+public interface KMLLoader {
+
+  /**
+   * Fetches the document at the given URL. When the previous response for the URL carried an ETag
+   * or Last-Modified value, it is passed back so the loader can make a conditional request, and
+   * return KMLLoadResult.notModified() if the document has not changed.
+   *
+   * @param url absolute URL of the document
+   * @param eTag ETag of the previous response for the URL, or null
+   * @param lastModified Last-Modified value of the previous response for the URL, or null
+   * @return the document, or a result telling it has not changed
+   * @throws IOException if the document cannot be fetched
+   */
+  @NonNull
+  KMLLoadResult load(@NonNull String url, @Nullable String eTag, @Nullable String lastModified)
+      throws IOException;
+}
@@ -0,0 +1,48 @@
+// Copyright (c) Microsoft Corporation.
+// Licensed under the MIT license.
+
+package com.microsoft.maps.kml;
+
+import androidx.annotation.NonNull;
+
+/** The Link of a NetworkLink element, with the href and refresh settings KMLParser read. */
+class KMLNetworkLink {
+
+  /** When the linked document is fetched again. */
+  enum RefreshMode {
+    /** Fetched once. Links of a refreshed parent document are fetched again with it. */
+    ON_CHANGE,
+    /** Fetched again every refreshInterval seconds. */
+    ON_INTERVAL,
+    /** Fetched again when the response the document came with expires. */
+    ON_EXPIRE
+  }
+
+  /* Refresh interval KML uses when a Link has none. */
+  static final double DEFAULT_REFRESH_INTERVAL_SECONDS = 4;
+
+  private final String mHref;
+  private final RefreshMode mRefreshMode;
+  private final double mRefreshIntervalSeconds;
+
+  KMLNetworkLink(
+      @NonNull String href, @NonNull RefreshMode refreshMode, double refreshIntervalSeconds) {
+    mHref = href;
+    mRefreshMode = refreshMode;
+    mRefreshIntervalSeconds = refreshIntervalSeconds;
+  }
+
+  @NonNull
+  String getHref() {
+    return mHref;
+  }
+
+  @NonNull
+  RefreshMode getRefreshMode() {
+    return mRefreshMode;
+  }
+
+  double getRefreshIntervalSeconds() {
+    return mRefreshIntervalSeconds;
+  }
+}
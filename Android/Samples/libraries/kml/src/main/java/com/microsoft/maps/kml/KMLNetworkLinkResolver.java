@@ -0,0 +1,508 @@
+// Copyright (c) Microsoft Corporation.
+// Licensed under the MIT license.
+
+package com.microsoft.maps.kml;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+import com.microsoft.maps.MapElement;
+import com.microsoft.maps.MapElementLayer;
+import com.microsoft.maps.moduletools.MapFactories;
+import com.microsoft.maps.moduletools.ParallelTasks;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Class that resolves the NetworkLink elements of KML documents into a single MapElementLayer.
+ * Linked documents are fetched through a KMLLoader, and links in those documents are followed in
+ * turn. Sibling links are fetched concurrently.
+ *
+ * <p>refresh() fetches the documents whose Link asks for it again: every refreshInterval seconds
+ * for refreshMode onInterval, and when the previous response expires for refreshMode onExpire. The
+ * ETag and Last-Modified values of the previous response are passed to the loader, so a document
+ * that has not changed is neither downloaded nor parsed again, and its elements are kept. When a
+ * document has changed, its elements and those of the links it contained are replaced.
+ *
+ * <p>Documents are fetched synchronously, so the methods of this class should not be called on the
+ * UI thread. Instances are not thread safe.
+ */
+public class KMLNetworkLinkResolver {
+
+  /** Number of documents fetched at once unless setMaxConcurrentFetches is called. */
+  public static final int DEFAULT_MAX_CONCURRENT_FETCHES = 4;
+
+  /* Links nested deeper than this are not followed. */
+  private static final int MAX_LINK_DEPTH = 8;
+  private static final long NEVER = Long.MAX_VALUE;
+
+  /** Source of monotonic time, in milliseconds. */
+  @VisibleForTesting
+  interface Clock {
+    long elapsedMillis();
+  }
+
+  private final KMLLoader mLoader;
+  private final MapFactories mFactory;
+  private final Clock mClock;
+  private final MapElementLayer mLayer;
+  /* Documents added directly, each the root of a tree of linked documents. */
+  private final ArrayList<LinkNode> mRoots = new ArrayList<>();
+  private int mMaxConcurrentFetches = DEFAULT_MAX_CONCURRENT_FETCHES;
+
+  /**
+   * Creates a resolver that fetches linked documents with the given loader.
+   *
+   * @param loader loader for linked documents, for example an HttpKMLLoader
+   */
+  public KMLNetworkLinkResolver(@NonNull KMLLoader loader) {
+    this(loader, KMLParser.DEFAULT_MAP_FACTORIES, () -> System.nanoTime() / 1000000);
+  }
+
+  @VisibleForTesting
+  KMLNetworkLinkResolver(
+      @NonNull KMLLoader loader, @NonNull MapFactories factory, @NonNull Clock clock) {
+    if (loader == null) {
+      throw new IllegalArgumentException("KMLLoader cannot be null.");
+    }
+    mLoader = loader;
+    mFactory = factory;
+    mClock = clock;
+    mLayer = factory.createMapElementLayer();
+  }
+
+  /**
+   * Sets how many documents are fetched at once. The default is DEFAULT_MAX_CONCURRENT_FETCHES.
+   *
+   * @param maxConcurrentFetches number of concurrent fetches, at least 1
+   */
+  public void setMaxConcurrentFetches(int maxConcurrentFetches) {
+    if (maxConcurrentFetches < 1) {
+      throw new IllegalArgumentException(
+          "Max concurrent fetches must be at least 1. Instead saw: " + maxConcurrentFetches);
+    }
+    mMaxConcurrentFetches = maxConcurrentFetches;
+  }
+
+  /**
+   * The layer holding the elements of all documents added so far, and of their links. It is a
+   * MapKMLLayer, whose bounds, and those of each Placemark, are kept up to date whenever its
+   * elements change.
+   */
+  @NonNull
+  public MapElementLayer getLayer() {
+    return mLayer;
+  }
+
+  /**
+   * Parses the given KML, fetches the documents of its NetworkLinks, and adds all their elements to
+   * the layer.
+   *
+   * @param kml input String
+   * @param baseUrl URL relative hrefs are resolved against, or null if all hrefs are absolute
+   * @throws KMLParseException if a document is not valid KML
+   * @throws IOException if a linked document cannot be fetched
+   */
+  public void addDocument(@NonNull String kml, @Nullable String baseUrl)
+      throws KMLParseException, IOException {
+    if (kml == null) {
+      throw new IllegalArgumentException("Input String cannot be null.");
+    }
+    LinkNode root = new LinkNode(baseUrl, null, 0, null);
+    applyDocument(root, parse(kml));
+    resolveChildren(root.mChildren);
+    addRoot(root);
+    updateLayerPlacemarks();
+  }
+
+  /**
+   * Fetches the document at the given URL and the documents of its NetworkLinks, and adds all their
+   * elements to the layer. The document itself is fetched once.
+   *
+   * @param url absolute URL of the document
+   * @throws KMLParseException if a document is not valid KML
+   * @throws IOException if a document cannot be fetched
+   */
+  public void addUrl(@NonNull String url) throws KMLParseException, IOException {
+    if (url == null) {
+      throw new IllegalArgumentException("URL cannot be null.");
+    }
+    LinkNode root =
+        new LinkNode(
+            url,
+            new KMLNetworkLink(
+                url,
+                KMLNetworkLink.RefreshMode.ON_CHANGE,
+                KMLNetworkLink.DEFAULT_REFRESH_INTERVAL_SECONDS),
+            0,
+            null);
+    ArrayList<LinkNode> roots = new ArrayList<>();
+    roots.add(root);
+    resolveChildren(roots);
+    addRoot(root);
+    updateLayerPlacemarks();
+  }
+
+  /**
+   * Fetches the documents that are due for a refresh, with conditional requests. Documents that
+   * changed replace their previous elements in the layer. If a fetch fails, the exception is thrown
+   * and the documents that were not refreshed stay due.
+   *
+   * @return true if the elements of the layer changed
+   * @throws KMLParseException if a document is not valid KML
+   * @throws IOException if a document cannot be fetched
+   */
+  public boolean refresh() throws KMLParseException, IOException {
+    long now = mClock.elapsedMillis();
+    ArrayList<LinkNode> dueNodes = new ArrayList<>();
+    for (LinkNode root : mRoots) {
+      collectDueNodes(root, now, dueNodes);
+    }
+    boolean hasChanged = false;
+    while (!dueNodes.isEmpty()) {
+      ArrayList<LinkNode> refreshedNodes = new ArrayList<>(dueNodes.size());
+      for (LinkNode node : dueNodes) {
+        LinkNode refreshedNode = new LinkNode(node.mUrl, node.mLink, node.mDepth, node.mParent);
+        refreshedNode.mETag = node.mETag;
+        refreshedNode.mLastModified = node.mLastModified;
+        refreshedNodes.add(refreshedNode);
+      }
+      List<ParsedDocument> documents = fetch(refreshedNodes);
+
+      // Links of documents that did not change may be due themselves, and are refreshed in the
+      // next round. Links of documents that changed are replaced along with them.
+      ArrayList<LinkNode> nextDueNodes = new ArrayList<>();
+      ArrayList<LinkNode> changedNodes = new ArrayList<>();
+      for (int i = 0; i < dueNodes.size(); i++) {
+        LinkNode node = dueNodes.get(i);
+        ParsedDocument document = documents.get(i);
+        if (document == null) {
+          node.updateValidators(refreshedNodes.get(i));
+          for (LinkNode child : node.mChildren) {
+            collectDueNodes(child, now, nextDueNodes);
+          }
+        } else {
+          applyDocument(refreshedNodes.get(i), document);
+          changedNodes.add(refreshedNodes.get(i));
+        }
+      }
+      ArrayList<LinkNode> newChildren = new ArrayList<>();
+      for (LinkNode refreshedNode : changedNodes) {
+        newChildren.addAll(refreshedNode.mChildren);
+      }
+      resolveChildren(newChildren);
+      for (int i = 0, changed = 0; i < dueNodes.size(); i++) {
+        if (documents.get(i) != null) {
+          replaceNode(dueNodes.get(i), changedNodes.get(changed++));
+          hasChanged = true;
+        }
+      }
+      dueNodes = nextDueNodes;
+    }
+    if (hasChanged) {
+      updateLayerPlacemarks();
+    }
+    return hasChanged;
+  }
+
+  /**
+   * Returns how long until refresh() has a document to fetch, 0 if one is due already, or
+   * Long.MAX_VALUE if no document is refreshed.
+   */
+  public long getMillisUntilNextRefresh() {
+    long next = NEVER;
+    for (LinkNode root : mRoots) {
+      next = Math.min(next, getNextRefreshMillis(root));
+    }
+    return next == NEVER ? NEVER : Math.max(0, next - mClock.elapsedMillis());
+  }
+
+  private void addRoot(@NonNull LinkNode root) {
+    mRoots.add(root);
+    addElements(root);
+  }
+
+  /* Fetches and parses the given nodes, which are not in the layer yet, and then level by level the
+   * documents they link to. */
+  private void resolveChildren(@NonNull List<LinkNode> nodes)
+      throws KMLParseException, IOException {
+    List<LinkNode> level = nodes;
+    while (!level.isEmpty()) {
+      List<ParsedDocument> documents = fetch(level);
+      ArrayList<LinkNode> nextLevel = new ArrayList<>();
+      for (int i = 0; i < level.size(); i++) {
+        // A loader may answer "not modified" even to an unconditional request, in which case the
+        // document is left empty.
+        if (documents.get(i) != null) {
+          LinkNode node = level.get(i);
+          applyDocument(node, documents.get(i));
+          nextLevel.addAll(node.mChildren);
+        }
+      }
+      level = nextLevel;
+    }
+  }
+
+  /* Fetches the documents of the nodes concurrently, and parses those that changed. The document of
+   * a node is null if it has not changed. The validators and next refresh time of all nodes are
+   * updated. */
+  @NonNull
+  private List<ParsedDocument> fetch(@NonNull List<LinkNode> nodes)
+      throws KMLParseException, IOException {
+    ArrayList<Callable<FetchResult>> tasks = new ArrayList<>(nodes.size());
+    for (LinkNode node : nodes) {
+      String url = node.mUrl;
+      String eTag = node.mETag;
+      String lastModified = node.mLastModified;
+      tasks.add(
+          () -> {
+            KMLLoadResult loadResult = mLoader.load(url, eTag, lastModified);
+            if (loadResult == null) {
+              throw new IOException("KMLLoader returned no result for " + url + ".");
+            }
+            if (loadResult.isNotModified()) {
+              return new FetchResult(loadResult, null);
+            }
+            return new FetchResult(loadResult, parse(loadResult.getKml()));
+          });
+    }
+    List<FetchResult> results;
+    try {
+      results = ParallelTasks.invokeAllInOrder(tasks, mMaxConcurrentFetches);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      }
+      if (cause instanceof KMLParseException) {
+        throw (KMLParseException) cause;
+      }
+      throw new KMLParseException(cause == null ? e.getMessage() : cause.getMessage());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Fetching linked documents was interrupted.");
+    }
+
+    long now = mClock.elapsedMillis();
+    ArrayList<ParsedDocument> documents = new ArrayList<>(nodes.size());
+    for (int i = 0; i < nodes.size(); i++) {
+      LinkNode node = nodes.get(i);
+      KMLLoadResult loadResult = results.get(i).mLoadResult;
+      boolean isNotModified = loadResult.isNotModified();
+      // A 304 response need not repeat the validators, in which case the previous ones still apply.
+      if (!isNotModified || loadResult.getETag() != null) {
+        node.mETag = loadResult.getETag();
+      }
+      if (!isNotModified || loadResult.getLastModified() != null) {
+        node.mLastModified = loadResult.getLastModified();
+      }
+      node.mNextRefreshMillis = getNextRefreshMillis(node.mLink, loadResult, now);
+      documents.add(results.get(i).mDocument);
+    }
+    return documents;
+  }
+
+  /* Parses a document into its elements and links. This is called from the fetching threads. */
+  @NonNull
+  private ParsedDocument parse(@NonNull String kml) throws KMLParseException {
+    ArrayList<MapElement> elements = new ArrayList<>();
+    KMLParser parser = new KMLParser(mFactory, elements);
+    try {
+      parser.parseElements(kml);
+    } catch (KMLParseException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new KMLParseException(e.getMessage());
+    }
+    return new ParsedDocument(elements, parser.getPlacemarks(), parser.getNetworkLinks());
+  }
+
+  /* Sets the elements and child links of a node that is not in the layer yet. */
+  private static void applyDocument(@NonNull LinkNode node, @NonNull ParsedDocument document) {
+    node.mElements = document.mElements;
+    node.mPlacemarks = document.mPlacemarks;
+    if (node.mDepth >= MAX_LINK_DEPTH) {
+      return;
+    }
+    for (KMLNetworkLink link : document.mLinks) {
+      String url = resolveUrl(node.mUrl, link.getHref());
+      if (!node.hasAncestorUrl(url)) {
+        node.mChildren.add(new LinkNode(url, link, node.mDepth + 1, node));
+      }
+    }
+  }
+
+  /* Puts the refreshed node in the place of the given node, in the tree and in the layer. */
+  private void replaceNode(@NonNull LinkNode node, @NonNull LinkNode refreshedNode) {
+    List<LinkNode> siblings = node.mParent == null ? mRoots : node.mParent.mChildren;
+    for (int i = 0; i < siblings.size(); i++) {
+      if (siblings.get(i) == node) {
+        siblings.set(i, refreshedNode);
+        break;
+      }
+    }
+    removeElements(node);
+    addElements(refreshedNode);
+  }
+
+  /* Elements are added and removed directly, so the layer is given the Placemarks of all documents
+   * in the tree again. */
+  private void updateLayerPlacemarks() {
+    if (mLayer instanceof MapKMLLayer) {
+      ArrayList<MapKMLLayer.Placemark> placemarks = new ArrayList<>();
+      for (LinkNode root : mRoots) {
+        collectPlacemarks(root, placemarks);
+      }
+      ((MapKMLLayer) mLayer).setPlacemarks(placemarks);
+    }
+  }
+
+  private static void collectPlacemarks(
+      @NonNull LinkNode node, @NonNull List<MapKMLLayer.Placemark> placemarks) {
+    placemarks.addAll(node.mPlacemarks);
+    for (LinkNode child : node.mChildren) {
+      collectPlacemarks(child, placemarks);
+    }
+  }
+
+  private void addElements(@NonNull LinkNode node) {
+    for (MapElement element : node.mElements) {
+      mLayer.getElements().add(element);
+    }
+    for (LinkNode child : node.mChildren) {
+      addElements(child);
+    }
+  }
+
+  private void removeElements(@NonNull LinkNode node) {
+    for (MapElement element : node.mElements) {
+      mLayer.getElements().remove(element);
+    }
+    for (LinkNode child : node.mChildren) {
+      removeElements(child);
+    }
+  }
+
+  /* Adds the due nodes of the tree to the list. The links of a due node are not added, as they are
+   * fetched again if its document has changed. */
+  private static void collectDueNodes(
+      @NonNull LinkNode node, long now, @NonNull List<LinkNode> dueNodes) {
+    if (node.mNextRefreshMillis <= now) {
+      dueNodes.add(node);
+      return;
+    }
+    for (LinkNode child : node.mChildren) {
+      collectDueNodes(child, now, dueNodes);
+    }
+  }
+
+  private static long getNextRefreshMillis(@NonNull LinkNode node) {
+    long next = node.mNextRefreshMillis;
+    for (LinkNode child : node.mChildren) {
+      next = Math.min(next, getNextRefreshMillis(child));
+    }
+    return next;
+  }
+
+  private static long getNextRefreshMillis(
+      @Nullable KMLNetworkLink link, @NonNull KMLLoadResult loadResult, long now) {
+    if (link == null) {
+      return NEVER;
+    }
+    switch (link.getRefreshMode()) {
+      case ON_INTERVAL:
+        return now + Math.round(link.getRefreshIntervalSeconds() * 1000);
+      case ON_EXPIRE:
+        long expiresInMillis = loadResult.getExpiresInMillis();
+        return expiresInMillis == KMLLoadResult.NO_EXPIRATION ? NEVER : now + expiresInMillis;
+      default:
+        return NEVER;
+    }
+  }
+
+  @NonNull
+  private static String resolveUrl(@Nullable String baseUrl, @NonNull String href) {
+    if (baseUrl == null) {
+      return href;
+    }
+    try {
+      return new URL(new URL(baseUrl), href).toString();
+    } catch (MalformedURLException e) {
+      // The loader reports hrefs it cannot fetch.
+      return href;
+    }
+  }
+
+  /* A document added to the resolver or fetched for a NetworkLink. */
+  private static final class LinkNode {
+    private final String mUrl;
+    private final KMLNetworkLink mLink;
+    private final int mDepth;
+    private final LinkNode mParent;
+    private String mETag;
+    private String mLastModified;
+    private long mNextRefreshMillis = NEVER;
+    private ArrayList<MapElement> mElements = new ArrayList<>();
+    private List<MapKMLLayer.Placemark> mPlacemarks = Collections.emptyList();
+    private final ArrayList<LinkNode> mChildren = new ArrayList<>();
+
+    LinkNode(
+        @Nullable String url, @Nullable KMLNetworkLink link, int depth, @Nullable LinkNode parent) {
+      mUrl = url;
+      mLink = link;
+      mDepth = depth;
+      mParent = parent;
+    }
+
+    /* Returns true if this document or one that links to it has the given URL, in which case
+     * following the link would loop. */
+    boolean hasAncestorUrl(@NonNull String url) {
+      for (LinkNode node = this; node != null; node = node.mParent) {
+        if (url.equals(node.mUrl)) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    void updateValidators(@NonNull LinkNode refreshedNode) {
+      mETag = refreshedNode.mETag;
+      mLastModified = refreshedNode.mLastModified;
+      mNextRefreshMillis = refreshedNode.mNextRefreshMillis;
+    }
+  }
+
+  /* The elements, Placemarks and NetworkLinks of a parsed document. */
+  private static final class ParsedDocument {
+    private final ArrayList<MapElement> mElements;
+    private final List<MapKMLLayer.Placemark> mPlacemarks;
+    private final List<KMLNetworkLink> mLinks;
+
+    ParsedDocument(
+        @NonNull ArrayList<MapElement> elements,
+        @NonNull List<MapKMLLayer.Placemark> placemarks,
+        @NonNull List<KMLNetworkLink> links) {
+      mElements = elements;
+      mPlacemarks = placemarks;
+      mLinks = links;
+    }
+  }
+
+  /* Response of a fetch, with the parsed document unless it has not changed. */
+  private static final class FetchResult {
+    private final KMLLoadResult mLoadResult;
+    private final ParsedDocument mDocument;
+
+    FetchResult(@NonNull KMLLoadResult loadResult, @Nullable ParsedDocument document) {
+      mLoadResult = loadResult;
+      mDocument = document;
+    }
+  }
+}
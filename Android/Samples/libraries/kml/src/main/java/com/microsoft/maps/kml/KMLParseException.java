@@ -3,8 +3,61 @@
 
 package com.microsoft.maps.kml;
 
+import androidx.annotation.NonNull;
+import com.microsoft.maps.moduletools.ParseDiagnostic;
+
 public class KMLParseException extends Exception {
+
+  private final ParseDiagnostic.Code mCode;
+  /* Values of the message of mCode, or null if the message was given as text. */
+  private final Object[] mArguments;
+  private final int mLineNumber;
+  private final int mColumnNumber;
+
   KMLParseException(String errorMessage) {
     super(errorMessage);
+    mCode = ParseDiagnostic.Code.INVALID_INPUT;
+    mArguments = null;
+    mLineNumber = ParseDiagnostic.UNKNOWN;
+    mColumnNumber = ParseDiagnostic.UNKNOWN;
+  }
+
+  /* The message is formatted from the code and arguments only when it is read. */
+  KMLParseException(@NonNull ParseDiagnostic.Code code, @NonNull Object... arguments) {
+    this(code, ParseDiagnostic.UNKNOWN, ParseDiagnostic.UNKNOWN, arguments);
+  }
+
+  KMLParseException(
+      @NonNull ParseDiagnostic.Code code,
+      int lineNumber,
+      int columnNumber,
+      @NonNull Object... arguments) {
+    mCode = code;
+    mArguments = arguments;
+    mLineNumber = lineNumber;
+    mColumnNumber = columnNumber;
+  }
+
+  /** The kind of error. Errors with no more specific code are INVALID_INPUT. */
+  @NonNull
+  public ParseDiagnostic.Code getCode() {
+    return mCode;
+  }
+
+  @Override
+  public String getMessage() {
+    if (mArguments == null) {
+      return super.getMessage();
+    }
+    String message = mCode.format(mArguments);
+    return mLineNumber == ParseDiagnostic.UNKNOWN
+        ? message
+        : message + " (line " + mLineNumber + ", column " + mColumnNumber + ")";
+  }
+
+  /* Values of the message, for a diagnostic made from this exception. */
+  @NonNull
+  Object[] getArguments() {
+    return mArguments == null ? new Object[] {super.getMessage()} : mArguments;
   }
 }
@@ -16,6 +16,7 @@ import com.microsoft.maps.Geoposition;
 import com.microsoft.maps.MapElement;
 import com.microsoft.maps.MapElementLayer;
 import com.microsoft.maps.MapIcon;
+import com.microsoft.maps.MapImage;
 import com.microsoft.maps.MapPolygon;
 import com.microsoft.maps.MapPolyline;
 import com.microsoft.maps.kml.styles.IconStyle;
@@ -23,21 +24,42 @@ import com.microsoft.maps.kml.styles.LineStyle;
 import com.microsoft.maps.kml.styles.PolyStyle;
 import com.microsoft.maps.kml.styles.StylesHolder;
 import com.microsoft.maps.moduletools.AltitudeReferenceSystemWrapper;
+import com.microsoft.maps.moduletools.Antimeridian;
 import com.microsoft.maps.moduletools.DefaultMapFactories;
+import com.microsoft.maps.moduletools.GeoBounds;
 import com.microsoft.maps.moduletools.MapFactories;
+import com.microsoft.maps.moduletools.MapIconClusterer;
+import com.microsoft.maps.moduletools.MappedText;
+import com.microsoft.maps.moduletools.ParallelTasks;
+import com.microsoft.maps.moduletools.ParseDiagnostic;
+import com.microsoft.maps.moduletools.ParseOptions;
 import com.microsoft.maps.moduletools.ParsingHelpers;
+import com.microsoft.maps.moduletools.PolygonRings;
+import com.microsoft.maps.moduletools.TiledMapLayer;
+import com.microsoft.maps.moduletools.ValidationLevel;
 import java.io.ByteArrayInputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import org.xmlpull.v1.XmlPullParser;
 import org.xmlpull.v1.XmlPullParserException;
 
 /**
- * Class that parses KML and returns a new MapElementLayer containing all the shapes outlined in the
+ * Class that parses KML and returns a new MapKMLLayer containing all the shapes outlined in the
  * KML.
  *
  * <p>Created by Elizabeth Bartusiak (t-elbart) on 07/21/2020
@@ -47,42 +69,230 @@ public class KMLParser {
   private final MapElementLayer mLayer;
   private final MapFactories mFactory;
   private boolean mDidWarn;
+  private ValidationLevel mValidation = ValidationLevel.STRICT;
+  /* Factor of the coordinate precision, or 0 if coordinates are not rounded. */
+  private double mQuantizationScale;
+  private boolean mSplitAtAntimeridian;
+  private boolean mNormalizePolygons;
+  private boolean mSkipInvalidFeatures;
+  /* Non-null when invalid Placemarks are skipped or a diagnostic listener is set, in document
+   * order. */
+  private ArrayList<ParseDiagnostic> mDiagnostics;
+  /* Index of the next top-level Placemark, counting the Placemarks of earlier chunks. */
+  private int mPlacemarkIndex;
+  /* Position of the Placemark being parsed, for its diagnostics. */
+  private int mPlacemarkOffset = ParseDiagnostic.UNKNOWN;
+  private int mPlacemarkLine = ParseDiagnostic.UNKNOWN;
+  private int mPlacemarkColumn = ParseDiagnostic.UNKNOWN;
+  /* Non-null for parsers of a chunk, which locate their Placemarks in the whole document. */
+  private KMLElementScanner mScanner;
   private String mNameSpace;
   private final XmlPullParser mParser = Xml.newPullParser();
-  private final Map<String, StylesHolder> mSharedStyles = new HashMap<>();
-  private final Map<String, ArrayList<MapElement>> mMapElementStyles = new HashMap<>();
-  private final Map<String, String> mKmlStyleMap = new HashMap<>();
-  private final Map<MapElement, StylesHolder> mInlineStyles = new HashMap<>();
-  private final Map<StylesHolder, String> mMergeStyles = new HashMap<>();
+  private final Map<String, StylesHolder> mSharedStyles;
+  private final Map<String, String> mKmlStyleMap;
+  /* Inline styles merged with the shared style of their styleUrl, by styleUrl and inline style, so
+   * Placemarks with identical inline styles share one merged StylesHolder. */
+  private final Map<String, Map<StylesHolder, StylesHolder>> mMergedStyles = new HashMap<>();
+  /* Canonical inline styles of Placemarks without a styleUrl, so Placemarks with identical inline
+   * styles share one StylesHolder. */
+  private final Map<StylesHolder, StylesHolder> mInternedInlineStyles = new HashMap<>();
+  /* Icon images by href, so an icon used by many styles is only downloaded once. Shared with the
+   * parsers of chunks, which may download icons concurrently. */
+  private final ConcurrentMap<String, MapImage> mIconImages;
+  /* Elements whose styleUrl refers to a style that had not been parsed yet when the element was
+   * created. These are styled once the whole document has been parsed. */
+  private final ArrayList<PendingStyle> mPendingStyles = new ArrayList<>();
+  /* Links of the NetworkLink elements, in document order. */
+  private final ArrayList<KMLNetworkLink> mNetworkLinks = new ArrayList<>();
+  /* Non-null for parsers that parse a chunk of Placemarks on a worker thread. Elements are
+   * collected here and added to the layer by the parser that owns it, in document order. */
+  private final ArrayList<MapElement> mChunkElements;
+  /* Icons held back for the icon clusterer, in document order, or null without a clusterer. */
+  private ArrayList<MapIcon> mClusteredIcons;
+  /* Elements held back for the tiled layer, in document order, or null without a tiled layer. */
+  private ArrayList<MapElement> mTiledElements;
+  /* Bounds of the Placemarks parsed so far, and their elements with their own bounds, which are
+   * handed to the layer if it is a MapKMLLayer. */
+  private final GeoBounds mBounds = new GeoBounds();
+  private final ArrayList<MapKMLLayer.Placemark> mPlacemarks = new ArrayList<>();
+  /* Bounds and sums of the positions of the Placemark being parsed, measured as coordinates are
+   * read. */
+  private GeoBounds mPlacemarkBounds = new GeoBounds();
+  private double mLatitudeSum;
+  private double mLongitudeSum;
+  private int mPositionCount;
 
-  private static final MapFactories DEFAULT_MAP_FACTORIES = new DefaultMapFactories();
+  static final MapFactories DEFAULT_MAP_FACTORIES =
+      new DefaultMapFactories() {
+        @Override
+        public MapKMLLayer createMapElementLayer() {
+          return new MapKMLLayer();
+        }
+      };
+
+  /* More chunks than threads keeps all threads busy when Placemark sizes vary widely. */
+  private static final int CHUNKS_PER_THREAD = 4;
+
+  /* Encoding declared by the XML declaration at the start of a document. */
+  private static final Pattern ENCODING_PATTERN =
+      Pattern.compile("^\\s*<\\?xml[^>]*?\\sencoding\\s*=\\s*([\"'])(.*?)\\1");
+  /* Characters of the start of a mapped document searched for the XML declaration. */
+  private static final int DECLARATION_SEARCH_LENGTH = 256;
 
   @VisibleForTesting
   KMLParser(@NonNull MapFactories factory) {
     mFactory = factory;
     mLayer = mFactory.createMapElementLayer();
+    mSharedStyles = new HashMap<>();
+    mKmlStyleMap = new HashMap<>();
+    mIconImages = new ConcurrentHashMap<>();
+    mChunkElements = null;
+  }
+
+  /* Creates a parser for a chunk of Placemarks, which reads the styles already parsed by the given
+   * parser. Those are not modified while chunks are parsed, so they are safe to share. */
+  KMLParser(
+      @NonNull MapFactories factory,
+      @NonNull KMLParser stylesParser,
+      @NonNull ArrayList<MapElement> chunkElements) {
+    mFactory = factory;
+    mLayer = null;
+    mSharedStyles = stylesParser.mSharedStyles;
+    mKmlStyleMap = stylesParser.mKmlStyleMap;
+    mIconImages = stylesParser.mIconImages;
+    mChunkElements = chunkElements;
+    mValidation = stylesParser.mValidation;
+    mQuantizationScale = stylesParser.mQuantizationScale;
+    mSplitAtAntimeridian = stylesParser.mSplitAtAntimeridian;
+    mNormalizePolygons = stylesParser.mNormalizePolygons;
+    mSkipInvalidFeatures = stylesParser.mSkipInvalidFeatures;
+    mDiagnostics = stylesParser.mDiagnostics == null ? null : new ArrayList<>();
+  }
+
+  /* Creates a parser that collects the elements of a document into the given list instead of a
+   * layer, for KMLNetworkLinkResolver. */
+  KMLParser(@NonNull MapFactories factory, @NonNull ArrayList<MapElement> elements) {
+    mFactory = factory;
+    mLayer = null;
+    mSharedStyles = new HashMap<>();
+    mKmlStyleMap = new HashMap<>();
+    mIconImages = new ConcurrentHashMap<>();
+    mChunkElements = elements;
   }
 
   /**
-   * Method to parse given kml and return MapElementLayer containing the shapes outlined in the kml.
+   * Method to parse given kml and return a MapKMLLayer containing the shapes outlined in the kml.
    * Note: If the KML may contain references to external resources, parse should not be called on
    * the UI thread. The external resources will be downloaded synchronously.
    *
    * @param kml input String
-   * @return MapElementLayer
+   * @return MapKMLLayer
+   * @throws KMLParseException
+   */
+  @NonNull
+  public static MapKMLLayer parse(@NonNull String kml) throws KMLParseException {
+    return parse(kml, new ParseOptions());
+  }
+
+  /**
+   * Method to parse given kml with the given options and return a MapKMLLayer containing the shapes
+   * outlined in the kml. Note: If the KML may contain references to external resources, parse
+   * should not be called on the UI thread. The external resources will be downloaded synchronously.
+   *
+   * @param kml input String
+   * @param options options controlling how the kml is parsed
+   * @return MapKMLLayer
    * @throws KMLParseException
    */
   @NonNull
-  public static MapElementLayer parse(@NonNull String kml) throws KMLParseException {
+  public static MapKMLLayer parse(@NonNull String kml, @NonNull ParseOptions options)
+      throws KMLParseException {
     if (kml == null) {
       throw new IllegalArgumentException("Input String cannot be null.");
     }
+    if (options == null) {
+      throw new IllegalArgumentException("ParseOptions cannot be null.");
+    }
     if (kml.equals("")) {
       throw new KMLParseException("Input String cannot be empty.");
     }
     KMLParser instance = new KMLParser(DEFAULT_MAP_FACTORIES);
     try {
-      return instance.internalParse(kml);
+      return (MapKMLLayer) instance.internalParse(kml, options);
+    } catch (KMLParseException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new KMLParseException(e.getMessage());
+    }
+  }
+
+  /**
+   * Method to parse a kml file and return a MapKMLLayer containing the shapes outlined in the kml.
+   * The file is memory-mapped and read by the XML parser as bytes, so the document is not copied
+   * into a String. Note: If the KML may contain references to external resources, parse should not
+   * be called on the UI thread. The external resources will be downloaded synchronously.
+   *
+   * @param file kml file
+   * @return MapKMLLayer
+   * @throws KMLParseException
+   * @throws IOException
+   */
+  @NonNull
+  public static MapKMLLayer parseFile(@NonNull File file) throws KMLParseException, IOException {
+    return parseFile(file, new ParseOptions());
+  }
+
+  /**
+   * Method to parse a kml file with the given options and return a MapKMLLayer containing the
+   * shapes outlined in the kml. The file is memory-mapped and read by the XML parser as bytes, so
+   * the document is not copied into a String. With a parallelism above 1, the Placemarks of a UTF-8
+   * document are copied out of the mapping one chunk at a time. Note: If the KML may contain
+   * references to external resources, parse should not be called on the UI thread. The external
+   * resources will be downloaded synchronously.
+   *
+   * @param file kml file
+   * @param options options controlling how the kml is parsed
+   * @return MapKMLLayer
+   * @throws KMLParseException
+   * @throws IOException
+   */
+  @NonNull
+  public static MapKMLLayer parseFile(@NonNull File file, @NonNull ParseOptions options)
+      throws KMLParseException, IOException {
+    return parseMapped(MappedText.map(file), options);
+  }
+
+  /**
+   * Method to parse the kml file of a channel with the given options and return a MapKMLLayer
+   * containing the shapes outlined in the kml. The file is memory-mapped, as for parseFile(File,
+   * ParseOptions). The channel is not closed.
+   *
+   * @param channel channel of a kml file, opened for reading
+   * @param options options controlling how the kml is parsed
+   * @return MapKMLLayer
+   * @throws KMLParseException
+   * @throws IOException
+   */
+  @NonNull
+  public static MapKMLLayer parseFile(@NonNull FileChannel channel, @NonNull ParseOptions options)
+      throws KMLParseException, IOException {
+    return parseMapped(MappedText.map(channel), options);
+  }
+
+  @NonNull
+  private static MapKMLLayer parseMapped(@NonNull MappedText kml, @NonNull ParseOptions options)
+      throws KMLParseException {
+    if (options == null) {
+      throw new IllegalArgumentException("ParseOptions cannot be null.");
+    }
+    if (kml.length() == 0) {
+      throw new KMLParseException("Input file cannot be empty.");
+    }
+    KMLParser instance = new KMLParser(DEFAULT_MAP_FACTORIES);
+    try {
+      return (MapKMLLayer) instance.internalParse(kml, options);
+    } catch (KMLParseException e) {
+      throw e;
     } catch (Exception e) {
       throw new KMLParseException(e.getMessage());
     }
@@ -90,17 +300,203 @@ public class KMLParser {
 
   @VisibleForTesting
   @NonNull
-  MapElementLayer internalParse(@NonNull String kml)
+  MapElementLayer internalParse(@NonNull CharSequence kml)
+      throws XmlPullParserException, IOException, KMLParseException {
+    return internalParse(kml, new ParseOptions());
+  }
+
+  @VisibleForTesting
+  @NonNull
+  MapElementLayer internalParse(@NonNull CharSequence kml, @NonNull ParseOptions options)
       throws XmlPullParserException, IOException, KMLParseException {
-    try (InputStream stream = new ByteArrayInputStream(kml.getBytes(UTF_8))) {
+    mValidation = options.getValidation();
+    mQuantizationScale = ParsingHelpers.getQuantizationScale(options);
+    mSplitAtAntimeridian = options.shouldSplitAtAntimeridian();
+    mNormalizePolygons = options.shouldNormalizePolygons();
+    mSkipInvalidFeatures = options.shouldSkipInvalidFeatures();
+    if (mSkipInvalidFeatures || options.getDiagnosticListener() != null) {
+      mDiagnostics = new ArrayList<>();
+    }
+    MapIconClusterer iconClusterer = options.getIconClusterer();
+    if (iconClusterer != null) {
+      mClusteredIcons = new ArrayList<>();
+    }
+    TiledMapLayer tiledLayer = options.getTiledLayer();
+    if (tiledLayer != null) {
+      mTiledElements = new ArrayList<>();
+    }
+    if (options.getParallelism() <= 1
+        || !isDecodedAsDeclared(kml)
+        || !parseInParallel(kml, options)) {
+      parseDocument(kml);
+      applyPendingStyles();
+    }
+    if (iconClusterer != null) {
+      iconClusterer.setIcons(mLayer, mClusteredIcons, mFactory);
+    }
+    if (tiledLayer != null) {
+      tiledLayer.addElements(mFactory, mTiledElements);
+    }
+    if (mLayer instanceof MapKMLLayer) {
+      ((MapKMLLayer) mLayer).addPlacemarks(mBounds, mPlacemarks);
+    }
+    if (mDiagnostics != null) {
+      ParsingHelpers.reportDiagnostics(mDiagnostics, kml, options.getDiagnosticListener());
+    }
+    return mLayer;
+  }
+
+  /* Returns the bounds of the Placemarks parsed so far. */
+  @NonNull
+  GeoBounds getBounds() {
+    return mBounds;
+  }
+
+  /* Returns the Placemarks parsed so far that created elements, in document order. */
+  @NonNull
+  List<MapKMLLayer.Placemark> getPlacemarks() {
+    return mPlacemarks;
+  }
+
+  /* Parses the whole document into the list of elements this parser was created with. */
+  void parseElements(@NonNull String kml)
+      throws XmlPullParserException, IOException, KMLParseException {
+    parseDocument(kml);
+    applyPendingStyles();
+  }
+
+  /* The links of the NetworkLink elements found by the last parse, in document order. */
+  @NonNull
+  List<KMLNetworkLink> getNetworkLinks() {
+    return mNetworkLinks;
+  }
+
+  /* A mapped document is read by the XML parser straight from the mapping, so its own encoding
+   * declaration applies. */
+  private void parseDocument(@NonNull CharSequence kml)
+      throws XmlPullParserException, IOException, KMLParseException {
+    try (InputStream stream =
+        kml instanceof MappedText
+            ? ((MappedText) kml).newInputStream()
+            : new ByteArrayInputStream(kml.toString().getBytes(UTF_8))) {
       mParser.setInput(stream, null);
       mParser.nextTag();
       mNameSpace = mParser.getNamespace();
       parseOuterLayer();
-      mergeSharedStyleIntoInlineStyle();
-      applyStyles();
     }
-    return mLayer;
+  }
+
+  /* Two-phase parse: a scanner first records the ranges of the top-level Style, StyleMap and
+   * Placemark elements. The styles are parsed on this thread, then the Placemarks are parsed in
+   * chunks on a thread pool. Each chunk is wrapped in the original root tag so namespaces resolve
+   * as they do in the full document. As all shared styles are known before the Placemarks are
+   * parsed, each chunk styles its elements as it creates them. Returns false without adding
+   * anything to the layer if the document is not something the scanner handles, or if any phase
+   * fails, in which case the caller parses sequentially and reports exactly the error a sequential
+   * parse reports. */
+  private boolean parseInParallel(@NonNull CharSequence kml, @NonNull ParseOptions options)
+      throws XmlPullParserException, IOException, KMLParseException {
+    KMLElementScanner scanner = new KMLElementScanner(kml);
+    if (!scanner.scan() || scanner.getPlacemarkCount() < 2) {
+      return false;
+    }
+    String rootStartTag = scanner.getRootStartTag();
+    String rootEndTag = scanner.getRootEndTag();
+
+    StringBuilder styles = new StringBuilder(rootStartTag);
+    for (int i = 0; i < scanner.getStyleCount(); i++) {
+      styles.append(scanner.getStyle(i)).append('\n');
+    }
+    styles.append(rootEndTag);
+    try {
+      parseDocument(styles.toString());
+    } catch (XmlPullParserException | IOException | KMLParseException e) {
+      resetStyles();
+      return false;
+    }
+
+    int placemarkCount = scanner.getPlacemarkCount();
+    int chunkCount = Math.min(placemarkCount, options.getParallelism() * CHUNKS_PER_THREAD);
+    List<Callable<KMLParser>> tasks = new ArrayList<>(chunkCount);
+    for (int chunk = 0; chunk < chunkCount; chunk++) {
+      int firstPlacemark = (int) ((long) placemarkCount * chunk / chunkCount);
+      int endPlacemark = (int) ((long) placemarkCount * (chunk + 1) / chunkCount);
+      StringBuilder document = new StringBuilder(rootStartTag);
+      for (int i = firstPlacemark; i < endPlacemark; i++) {
+        document.append(scanner.getPlacemark(i)).append('\n');
+      }
+      document.append(rootEndTag);
+      String chunkKml = document.toString();
+      tasks.add(
+          () -> {
+            KMLParser worker = new KMLParser(mFactory, this, new ArrayList<>());
+            worker.mPlacemarkIndex = firstPlacemark;
+            worker.mScanner = scanner;
+            worker.parseDocument(chunkKml);
+            return worker;
+          });
+    }
+
+    List<KMLParser> workers;
+    try {
+      workers = ParallelTasks.invokeAllInOrder(tasks, options.getParallelism());
+    } catch (ExecutionException e) {
+      resetStyles();
+      return false;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new KMLParseException("Parsing was interrupted.");
+    }
+
+    for (KMLParser worker : workers) {
+      for (MapElement element : worker.mChunkElements) {
+        addToLayer(element);
+      }
+      mBounds.extend(worker.mBounds);
+      mPlacemarks.addAll(worker.mPlacemarks);
+      // Only references to missing styles are left, which applyPendingStyles reports.
+      mPendingStyles.addAll(worker.mPendingStyles);
+      if (mDiagnostics != null) {
+        mDiagnostics.addAll(worker.mDiagnostics);
+      }
+    }
+    applyPendingStyles();
+    return true;
+  }
+
+  /* Chunks of a mapped document are copied out of it as UTF-8 text, which only matches what the
+   * XML parser reads from the file if the document is ASCII or declares no other encoding. */
+  private static boolean isDecodedAsDeclared(@NonNull CharSequence kml) {
+    if (!(kml instanceof MappedText) || ((MappedText) kml).isAscii()) {
+      return true;
+    }
+    Matcher matcher =
+        ENCODING_PATTERN.matcher(
+            kml.subSequence(0, Math.min(kml.length(), DECLARATION_SEARCH_LENGTH)));
+    return !matcher.find() || matcher.group(2).equalsIgnoreCase("UTF-8");
+  }
+
+  private void resetStyles() {
+    mSharedStyles.clear();
+    mKmlStyleMap.clear();
+  }
+
+  private void addElement(@NonNull MapElement element) {
+    if (mChunkElements != null) {
+      mChunkElements.add(element);
+    } else {
+      addToLayer(element);
+    }
+  }
+
+  private void addToLayer(@NonNull MapElement element) {
+    if (mClusteredIcons != null && element instanceof MapIcon) {
+      mClusteredIcons.add((MapIcon) element);
+    } else if (mTiledElements != null) {
+      mTiledElements.add(element);
+    } else {
+      mLayer.getElements().add(element);
+    }
   }
 
   private void parseOuterLayer() throws IOException, XmlPullParserException, KMLParseException {
@@ -111,7 +507,12 @@ public class KMLParser {
       String type = mParser.getName();
       switch (type) {
         case "Placemark":
-          parsePlacemark();
+          if (mDiagnostics != null) {
+            parsePlacemarkOrSkip();
+          } else {
+            parsePlacemark();
+          }
+          mPlacemarkIndex++;
           break;
         case "Style":
           parseStyleAddToMapStylesHolders();
@@ -119,6 +520,9 @@ public class KMLParser {
         case "StyleMap":
           parseStyleMap();
           break;
+        case "NetworkLink":
+          parseNetworkLink();
+          break;
         case "Document":
         case "Folder":
           parseOuterLayer();
@@ -130,6 +534,81 @@ public class KMLParser {
     }
   }
 
+  /* Records the Link of a NetworkLink. KML 2.0 documents name the Link element Url. Links without
+   * an href are ignored. */
+  private void parseNetworkLink() throws XmlPullParserException, IOException, KMLParseException {
+    while (moveToNext() != XmlPullParser.END_TAG) {
+      if (mParser.getEventType() != XmlPullParser.START_TAG) {
+        continue;
+      }
+      String type = mParser.getName();
+      if (type.equals("Link") || type.equals("Url")) {
+        KMLNetworkLink link = parseLink();
+        if (link != null) {
+          mNetworkLinks.add(link);
+        }
+      } else {
+        skipToEndOfTag();
+      }
+    }
+  }
+
+  @Nullable
+  private KMLNetworkLink parseLink() throws XmlPullParserException, IOException, KMLParseException {
+    String href = null;
+    KMLNetworkLink.RefreshMode refreshMode = KMLNetworkLink.RefreshMode.ON_CHANGE;
+    double refreshInterval = KMLNetworkLink.DEFAULT_REFRESH_INTERVAL_SECONDS;
+    while (moveToNext() != XmlPullParser.END_TAG) {
+      if (mParser.getEventType() != XmlPullParser.START_TAG) {
+        continue;
+      }
+      switch (mParser.getName()) {
+        case "href":
+          href = parseText();
+          break;
+        case "refreshMode":
+          // Unknown values keep the default of onChange, as a bad refresh setting should not
+          // fail the whole document.
+          switch (parseText()) {
+            case "onInterval":
+              refreshMode = KMLNetworkLink.RefreshMode.ON_INTERVAL;
+              break;
+            case "onExpire":
+              refreshMode = KMLNetworkLink.RefreshMode.ON_EXPIRE;
+              break;
+            default:
+              refreshMode = KMLNetworkLink.RefreshMode.ON_CHANGE;
+              break;
+          }
+          break;
+        case "refreshInterval":
+          refreshInterval = parseRefreshInterval(parseText());
+          break;
+        default:
+          skipToEndOfTag();
+          break;
+      }
+    }
+    if (href == null || href.isEmpty()) {
+      return null;
+    }
+    return new KMLNetworkLink(href, refreshMode, refreshInterval);
+  }
+
+  /* Returns the interval in seconds, or the default for values that are not a positive number,
+   * such as the 0 that some tools write for links that are not refreshed. */
+  private static double parseRefreshInterval(@NonNull String text) {
+    try {
+      double refreshInterval = Double.parseDouble(text);
+      if (refreshInterval > 0 && !Double.isInfinite(refreshInterval)) {
+        return refreshInterval;
+      }
+    } catch (NumberFormatException e) {
+      // Falls back to the default below.
+    }
+    return KMLNetworkLink.DEFAULT_REFRESH_INTERVAL_SECONDS;
+  }
+
   private void parseStyleAddToMapStylesHolders()
       throws XmlPullParserException, IOException, KMLParseException {
     String id = mParser.getAttributeValue(null, "id");
@@ -185,8 +664,16 @@ public class KMLParser {
       }
       if (mParser.getName().equals("href")) {
         String url = parseText();
-        InputStream inputStream = new URL(url).openConnection().getInputStream();
-        iconStyle.setImage(mFactory.createMapImage(inputStream));
+        MapImage image = mIconImages.get(url);
+        if (image == null) {
+          InputStream inputStream = new URL(url).openConnection().getInputStream();
+          image = mFactory.createMapImage(inputStream);
+          MapImage previous = mIconImages.putIfAbsent(url, image);
+          if (previous != null) {
+            image = previous;
+          }
+        }
+        iconStyle.setImage(url, image);
       }
     }
   }
@@ -318,11 +805,85 @@ public class KMLParser {
     }
   }
 
+  /* Parses a Placemark, recording diagnostics at its position. Positions within a chunk are
+   * relative to the chunk, so a chunk locates its Placemarks by their offset in the document
+   * instead. If invalid Placemarks are skipped and this one is not valid, the rest of it is skipped
+   * and an error is recorded instead of its warnings. A Placemark adds its elements only once it
+   * has been read entirely, so a skipped one adds nothing. XML that is not well-formed fails again
+   * while skipping, which fails the parse. */
+  private void parsePlacemarkOrSkip()
+      throws IOException, XmlPullParserException, KMLParseException {
+    int depth = mParser.getDepth();
+    if (mScanner != null) {
+      mPlacemarkOffset = mScanner.getPlacemarkStart(mPlacemarkIndex);
+    } else {
+      mPlacemarkLine = mParser.getLineNumber();
+      mPlacemarkColumn = mParser.getColumnNumber();
+    }
+    int diagnosticCount = mDiagnostics.size();
+    try {
+      parsePlacemark();
+    } catch (KMLParseException | XmlPullParserException | NumberFormatException e) {
+      if (!mSkipInvalidFeatures) {
+        throw e;
+      }
+      while (mParser.getEventType() != XmlPullParser.END_TAG || mParser.getDepth() != depth) {
+        moveToNext();
+      }
+      mDiagnostics.subList(diagnosticCount, mDiagnostics.size()).clear();
+      mDiagnostics.add(
+          e instanceof KMLParseException
+              ? new ParseDiagnostic(
+                  ((KMLParseException) e).getCode(),
+                  ParseDiagnostic.Severity.ERROR,
+                  mPlacemarkIndex,
+                  mPlacemarkOffset,
+                  mPlacemarkLine,
+                  mPlacemarkColumn,
+                  ((KMLParseException) e).getArguments())
+              : new ParseDiagnostic(
+                  ParseDiagnostic.Code.INVALID_INPUT,
+                  ParseDiagnostic.Severity.ERROR,
+                  mPlacemarkIndex,
+                  mPlacemarkOffset,
+                  mPlacemarkLine,
+                  mPlacemarkColumn,
+                  e.getMessage()));
+    }
+  }
+
+  /* Records a repair made to the Placemark being parsed, if diagnostics are reported. */
+  private void warn(@NonNull ParseDiagnostic.Code code, @NonNull Object... arguments) {
+    if (mDiagnostics != null) {
+      mDiagnostics.add(
+          new ParseDiagnostic(
+              code,
+              ParseDiagnostic.Severity.WARNING,
+              mPlacemarkIndex,
+              mPlacemarkOffset,
+              mPlacemarkLine,
+              mPlacemarkColumn,
+              arguments));
+    }
+  }
+
+  /* Creates an exception at the current position, whose message is formatted only if read. */
+  @NonNull
+  private KMLParseException error(
+      @NonNull ParseDiagnostic.Code code, @NonNull Object... arguments) {
+    return new KMLParseException(
+        code, mParser.getLineNumber(), mParser.getColumnNumber(), arguments);
+  }
+
   private void parsePlacemark() throws IOException, XmlPullParserException, KMLParseException {
     String title = null;
-    MapElement element = null;
+    ArrayList<MapElement> elements = new ArrayList<>();
     String styleId = null;
     StylesHolder stylesHolder = null;
+    mPlacemarkBounds = new GeoBounds();
+    mLatitudeSum = 0;
+    mLongitudeSum = 0;
+    mPositionCount = 0;
     while (moveToNext() != XmlPullParser.END_TAG) {
       if (mParser.getEventType() != XmlPullParser.START_TAG) {
         continue;
@@ -339,35 +900,104 @@ public class KMLParser {
         case "Style":
           stylesHolder = parseStyle();
           break;
-        case "MultiGeometry":
-          parseMultiGeometry();
-          break;
         default:
-          element = parseGeometryIfApplicable();
+          parseGeometryIfApplicable(elements);
           break;
       }
     }
-    if (element != null) {
-      if (title != null && element instanceof MapIcon) {
-        ((MapIcon) element).setTitle(title);
+    if (elements.isEmpty()) {
+      return;
+    }
+    mBounds.extend(mPlacemarkBounds);
+    mPlacemarks.add(
+        new MapKMLLayer.Placemark(
+            elements,
+            mPlacemarkBounds,
+            new Geoposition(mLatitudeSum / mPositionCount, mLongitudeSum / mPositionCount)));
+    if (title != null) {
+      for (MapElement element : elements) {
+        if (element instanceof MapIcon) {
+          ((MapIcon) element).setTitle(title);
+        }
       }
-      if (stylesHolder != null) {
-        mInlineStyles.put(element, stylesHolder);
-        if (styleId != null) {
-          mMergeStyles.put(stylesHolder, styleId);
+    }
+    if (styleId != null || stylesHolder != null) {
+      StylesHolder style = resolveStyle(styleId, stylesHolder);
+      if (style != null) {
+        for (MapElement element : elements) {
+          applyStyles(element, style);
         }
       } else {
-        if (styleId != null) {
-          ArrayList<MapElement> stylesList = mMapElementStyles.get(styleId);
-          if (stylesList == null) {
-            stylesList = new ArrayList<>();
-            mMapElementStyles.put(styleId, stylesList);
-          }
-          stylesList.add(element);
-        }
+        mPendingStyles.add(new PendingStyle(elements, styleId, stylesHolder));
       }
-      mLayer.getElements().add(element);
     }
+    for (MapElement element : elements) {
+      addElement(element);
+    }
+  }
+
+  /* Returns the style to apply for the given styleUrl and inline style, either of which may be
+   * null, or null if the styleUrl refers to a style that has not been parsed yet. */
+  @Nullable
+  private StylesHolder resolveStyle(@Nullable String styleId, @Nullable StylesHolder inlineStyle) {
+    if (styleId == null) {
+      return internInlineStyle(inlineStyle);
+    }
+    if (inlineStyle == null) {
+      return findSharedStyle(styleId);
+    }
+    Map<StylesHolder, StylesHolder> mergedStyles = mMergedStyles.get(styleId);
+    if (mergedStyles == null) {
+      mergedStyles = new HashMap<>();
+      mMergedStyles.put(styleId, mergedStyles);
+    }
+    StylesHolder mergedStyle = mergedStyles.get(inlineStyle);
+    if (mergedStyle == null) {
+      StylesHolder sharedStyle = findSharedStyle(styleId);
+      if (sharedStyle == null) {
+        return null;
+      }
+      mergedStyle = mergeSharedStyleIntoInlineStyle(sharedStyle, inlineStyle);
+      mergedStyles.put(inlineStyle, mergedStyle);
+    }
+    return mergedStyle;
+  }
+
+  @NonNull
+  private StylesHolder internInlineStyle(@NonNull StylesHolder inlineStyle) {
+    StylesHolder canonical = mInternedInlineStyles.get(inlineStyle);
+    if (canonical == null) {
+      mInternedInlineStyles.put(inlineStyle, inlineStyle);
+      canonical = inlineStyle;
+    }
+    return canonical;
+  }
+
+  /* Returns the number of distinct inline styles, merged with a shared style or not, that the
+   * Placemarks parsed so far refer to. */
+  @VisibleForTesting
+  int getInlineStyleCount() {
+    int count = mInternedInlineStyles.size();
+    for (Map<StylesHolder, StylesHolder> mergedStyles : mMergedStyles.values()) {
+      count += mergedStyles.size();
+    }
+    return count;
+  }
+
+  /* The styleUrl of a Placemark can either point to a Style element or a StyleMap element. The id
+   * is first looked for in the SharedStyles map (which holds all individual shared Style elements).
+   * If the id is not found, it is looked for in the StyleMaps map. The StyleMap points to a Style
+   * element id. Returns null if the id is not found in either map. */
+  @Nullable
+  private StylesHolder findSharedStyle(@NonNull String styleId) {
+    StylesHolder stylesHolder = mSharedStyles.get(styleId);
+    if (stylesHolder == null) {
+      String mappedStyleId = mKmlStyleMap.get(styleId);
+      if (mappedStyleId != null) {
+        stylesHolder = mSharedStyles.get(mappedStyleId);
+      }
+    }
+    return stylesHolder;
   }
 
   @Nullable
@@ -379,31 +1009,36 @@ public class KMLParser {
     return null;
   }
 
-  private void parseMultiGeometry() throws XmlPullParserException, IOException, KMLParseException {
+  /* Adds the geometries of the MultiGeometry, including those of nested MultiGeometry elements, to
+   * the elements of the Placemark, so they share its title and style. */
+  private void parseMultiGeometry(@NonNull ArrayList<MapElement> elements)
+      throws XmlPullParserException, IOException, KMLParseException {
     while (moveToNext() != XmlPullParser.END_TAG) {
       if (mParser.getEventType() != XmlPullParser.START_TAG) {
         continue;
       }
-      MapElement element = parseGeometryIfApplicable();
-      if (element != null) {
-        mLayer.getElements().add(element);
-      }
+      parseGeometryIfApplicable(elements);
     }
   }
 
-  @Nullable
-  private MapElement parseGeometryIfApplicable()
+  private void parseGeometryIfApplicable(@NonNull ArrayList<MapElement> elements)
       throws XmlPullParserException, IOException, KMLParseException {
     switch (mParser.getName()) {
       case "Point":
-        return parsePoint();
+        elements.add(parsePoint());
+        break;
       case "LineString":
-        return parseLineString();
+        parseLineString(elements);
+        break;
       case "Polygon":
-        return parsePolygon();
+        parsePolygon(elements);
+        break;
+      case "MultiGeometry":
+        parseMultiGeometry(elements);
+        break;
       default:
         skipToEndOfTag();
-        return null;
+        break;
     }
   }
 
@@ -423,11 +1058,11 @@ public class KMLParser {
             new AltitudeReferenceSystemWrapper(AltitudeReferenceSystem.GEOID);
         ArrayList<Geoposition> coordinates = parseCoordinates(altitudeReferenceSystemWrapper);
         if (coordinates.size() > 1) {
-          throw new KMLParseException(
-              "coordinates for a Point can only contain one position. Instead saw: "
-                  + coordinates.size()
-                  + " at position: "
-                  + mParser.getPositionDescription());
+          throw error(
+              ParseDiagnostic.Code.TOO_MANY_POSITIONS,
+              "coordinates for a Point",
+              1,
+              coordinates.size());
         }
         icon.setLocation(
             new Geopoint(
@@ -441,13 +1076,13 @@ public class KMLParser {
     return icon;
   }
 
-  @NonNull
-  private MapPolyline parseLineString()
+  /* Adds the line, or its parts on each side of the antimeridian, to the elements. */
+  private void parseLineString(@NonNull ArrayList<MapElement> elements)
       throws IOException, XmlPullParserException, KMLParseException {
     mParser.require(XmlPullParser.START_TAG, mNameSpace, "LineString");
-    MapPolyline line = mFactory.createMapPolyline();
-    // set default kml strokeColor
-    line.setStrokeColor(0xffffffff);
+    ArrayList<Geoposition> positions = null;
+    AltitudeReferenceSystemWrapper altitudeReferenceSystemWrapper =
+        new AltitudeReferenceSystemWrapper(AltitudeReferenceSystem.GEOID);
     boolean hasParsedCoordinates = false;
     while (moveToNext() != XmlPullParser.END_TAG) {
       if (mParser.getEventType() != XmlPullParser.START_TAG) {
@@ -456,41 +1091,48 @@ public class KMLParser {
       String type = mParser.getName();
       if (type.equals("coordinates")) {
         verifyElementNotSeen("coordinates", hasParsedCoordinates);
-        AltitudeReferenceSystemWrapper altitudeReferenceSystemWrapper =
-            new AltitudeReferenceSystemWrapper(AltitudeReferenceSystem.GEOID);
-        ArrayList<Geoposition> positions = parseCoordinates(altitudeReferenceSystemWrapper);
+        positions = parseCoordinates(altitudeReferenceSystemWrapper);
         if (positions.size() < 2) {
-          throw new KMLParseException(
-              "coordinates for a LineString must contain at least two positions. Instead saw: "
-                  + positions.size()
-                  + " at position: "
-                  + mParser.getPositionDescription());
+          throw error(
+              ParseDiagnostic.Code.TOO_FEW_POSITIONS,
+              "coordinates for a LineString",
+              2,
+              positions.size());
+        }
+        if (mQuantizationScale != 0) {
+          ParsingHelpers.removeRepeatedPositions(positions, 2);
         }
         ParsingHelpers.setAltitudesToZeroIfAtSurface(
             positions, altitudeReferenceSystemWrapper.getAltitudeReferenceSystem());
-        line.setPath(
-            new Geopath(positions, altitudeReferenceSystemWrapper.getAltitudeReferenceSystem()));
         hasParsedCoordinates = true;
       } else {
         skipToEndOfTag();
       }
     }
     verifyElementSeen("coordinates", hasParsedCoordinates);
-    return line;
+    List<ArrayList<Geoposition>> paths =
+        mSplitAtAntimeridian
+            ? Antimeridian.splitLine(positions)
+            : Collections.singletonList(positions);
+    for (ArrayList<Geoposition> path : paths) {
+      MapPolyline line = mFactory.createMapPolyline();
+      // set default kml strokeColor
+      line.setStrokeColor(0xffffffff);
+      line.setPath(new Geopath(path, altitudeReferenceSystemWrapper.getAltitudeReferenceSystem()));
+      elements.add(line);
+    }
   }
 
   /* A Polygon MUST have only one outer boundary, and a Polygon may have 0 or more
-   * inner boundaries.
+   * inner boundaries. Adds the polygon, or its parts on each side of the antimeridian, to the
+   * elements.
    */
-  @NonNull
-  private MapPolygon parsePolygon() throws IOException, XmlPullParserException, KMLParseException {
+  private void parsePolygon(@NonNull ArrayList<MapElement> elements)
+      throws IOException, XmlPullParserException, KMLParseException {
     mParser.require(XmlPullParser.START_TAG, mNameSpace, "Polygon");
-    MapPolygon polygon = mFactory.createMapPolygon();
-    // set default kml colors
-    polygon.setStrokeColor(0xffffffff);
-    polygon.setFillColor(0xffffffff);
     ArrayList<ArrayList<Geoposition>> rings = new ArrayList<>();
     boolean hasOuterBoundary = false;
+    int outerBoundaryIndex = 0;
     AltitudeReferenceSystemWrapper altitudeReferenceSystemWrapper =
         new AltitudeReferenceSystemWrapper(AltitudeReferenceSystem.GEOID);
     while (moveToNext() != XmlPullParser.END_TAG) {
@@ -502,6 +1144,7 @@ public class KMLParser {
         if (type.equals("outerBoundaryIs")) {
           verifyElementNotSeen("outerBoundaryIs", hasOuterBoundary);
           hasOuterBoundary = true;
+          outerBoundaryIndex = rings.size();
         }
         rings.add(parsePolygonRing(type, altitudeReferenceSystemWrapper));
       } else {
@@ -509,14 +1152,65 @@ public class KMLParser {
       }
     }
     verifyElementSeen("outerBoundaryIs", hasOuterBoundary);
-    ArrayList<Geopath> paths = new ArrayList<>(rings.size());
+    if (mNormalizePolygons) {
+      rings.add(0, rings.remove(outerBoundaryIndex));
+      normalizePolygon(rings);
+    }
     for (ArrayList<Geoposition> ring : rings) {
       ParsingHelpers.setAltitudesToZeroIfAtSurface(
           ring, altitudeReferenceSystemWrapper.getAltitudeReferenceSystem());
-      paths.add(new Geopath(ring, altitudeReferenceSystemWrapper.getAltitudeReferenceSystem()));
     }
-    polygon.setPaths(paths);
-    return polygon;
+    List<ArrayList<ArrayList<Geoposition>>> polygons =
+        mSplitAtAntimeridian ? Antimeridian.splitPolygon(rings) : Collections.singletonList(rings);
+    for (ArrayList<ArrayList<Geoposition>> polygonRings : polygons) {
+      ArrayList<Geopath> paths = new ArrayList<>(polygonRings.size());
+      for (ArrayList<Geoposition> ring : polygonRings) {
+        paths.add(new Geopath(ring, altitudeReferenceSystemWrapper.getAltitudeReferenceSystem()));
+      }
+      MapPolygon polygon = mFactory.createMapPolygon();
+      // set default kml colors
+      polygon.setStrokeColor(0xffffffff);
+      polygon.setFillColor(0xffffffff);
+      polygon.setPaths(paths);
+      elements.add(polygon);
+    }
+  }
+
+  /* Unless TRUSTED, checks the rings of the polygon, outer ring first, then winds the outer ring
+   * counterclockwise and the holes clockwise. */
+  private void normalizePolygon(@NonNull ArrayList<ArrayList<Geoposition>> rings)
+      throws KMLParseException {
+    if (mValidation != ValidationLevel.TRUSTED && !rings.isEmpty()) {
+      checkPolygon(rings);
+    }
+    for (int i = 0; i < rings.size(); i++) {
+      PolygonRings.orient(rings.get(i), i == 0);
+    }
+  }
+
+  /* Checks that no ring intersects itself and that each hole is inside the outer ring. Positions
+   * in messages are those of the input. LENIENT removes holes that are outside. */
+  private void checkPolygon(@NonNull ArrayList<ArrayList<Geoposition>> rings)
+      throws KMLParseException {
+    for (int i = 0; i < rings.size(); i++) {
+      int[] edges = PolygonRings.findSelfIntersection(rings.get(i));
+      if (edges != null) {
+        if (mValidation == ValidationLevel.STRICT) {
+          throw error(ParseDiagnostic.Code.RING_SELF_INTERSECTION, i, edges[0], edges[1]);
+        }
+        warn(ParseDiagnostic.Code.RING_SELF_INTERSECTION, i, edges[0], edges[1]);
+      }
+    }
+    Iterator<ArrayList<Geoposition>> holes = rings.listIterator(1);
+    for (int i = 1; holes.hasNext(); i++) {
+      if (!PolygonRings.contains(rings.get(0), holes.next())) {
+        if (mValidation == ValidationLevel.STRICT) {
+          throw error(ParseDiagnostic.Code.HOLE_OUTSIDE_POLYGON, i);
+        }
+        warn(ParseDiagnostic.Code.HOLE_OUTSIDE_POLYGON, i);
+        holes.remove();
+      }
+    }
   }
 
   /* ArrayList positions is initialized by parseCoordinates, or an error is thrown if no
@@ -538,10 +1232,22 @@ public class KMLParser {
       if (type.equals("coordinates")) {
         verifyElementNotSeen(type, hasParsedCoordinates);
         positions = parseCoordinates(altitudeReferenceSystemWrapper);
-        String exceptionMessage = ParsingHelpers.getErrorMessageForPolygonRing(positions);
-        if (exceptionMessage != null) {
-          throw new KMLParseException(
-              "Error at: " + mParser.getPositionDescription() + " " + exceptionMessage);
+        if (mValidation == ValidationLevel.LENIENT && ParsingHelpers.closePolygonRing(positions)) {
+          // The diagnostic names the last position the ring had before it was closed.
+          warn(
+              ParseDiagnostic.Code.RING_NOT_CLOSED,
+              ParsingHelpers.getPolygonRingArguments(
+                  ParseDiagnostic.Code.RING_NOT_CLOSED,
+                  positions.subList(0, positions.size() - 1)));
+        }
+        if (mValidation != ValidationLevel.TRUSTED) {
+          ParseDiagnostic.Code code = ParsingHelpers.checkPolygonRing(positions);
+          if (code != null) {
+            throw error(code, ParsingHelpers.getPolygonRingArguments(code, positions));
+          }
+        }
+        if (mQuantizationScale != 0) {
+          ParsingHelpers.removeRepeatedPositions(positions, 4);
         }
         hasParsedCoordinates = true;
       }
@@ -566,41 +1272,45 @@ public class KMLParser {
     for (String str : allCoordinates) {
       String[] latLongAlt = str.split(",");
       if (latLongAlt.length < 2) {
-        throw new KMLParseException(
-            "Error at: "
-                + mParser.getPositionDescription()
-                + " coordinates must contain at least latitude and longitude, separated by only a comma.");
+        throw error(ParseDiagnostic.Code.MISSING_COORDINATE, str);
       }
       double longitude = Double.parseDouble(latLongAlt[0]);
-      if (Double.isNaN(longitude)) {
-        throw new KMLParseException(
-            "Error at: " + mParser.getPositionDescription() + " longitude cannot be NaN.");
+      if (mValidation != ValidationLevel.TRUSTED && Double.isNaN(longitude)) {
+        throw error(ParseDiagnostic.Code.NOT_A_NUMBER, "longitude");
       }
-      if (longitude < -180 || longitude > 180) {
-        throw new KMLParseException(
-            "Longitude must be in the range [-180, 180], instead saw: "
-                + longitude
-                + " at position: "
-                + mParser.getPositionDescription());
+      if (mValidation == ValidationLevel.STRICT && (longitude < -180 || longitude > 180)) {
+        throw error(ParseDiagnostic.Code.LONGITUDE_OUT_OF_RANGE, longitude);
       }
       double latitude = Double.parseDouble(latLongAlt[1]);
-      if (Double.isNaN(latitude)) {
-        throw new KMLParseException(
-            "Error at: " + mParser.getPositionDescription() + " latitude cannot be NaN.");
+      if (mValidation != ValidationLevel.TRUSTED && Double.isNaN(latitude)) {
+        throw error(ParseDiagnostic.Code.NOT_A_NUMBER, "latitude");
+      }
+      if (mValidation == ValidationLevel.STRICT && (latitude < -90 || latitude > 90)) {
+        throw error(ParseDiagnostic.Code.LATITUDE_OUT_OF_RANGE, latitude);
       }
-      if (latitude < -90 || latitude > 90) {
-        throw new KMLParseException(
-            "Latitude must be in the range [-90, 90], instead saw: "
-                + latitude
-                + " at position: "
-                + mParser.getPositionDescription());
+      if (mValidation == ValidationLevel.LENIENT) {
+        if (longitude < -180 || longitude > 180) {
+          warn(ParseDiagnostic.Code.LONGITUDE_OUT_OF_RANGE, longitude);
+          longitude = ParsingHelpers.wrapLongitude(longitude);
+        }
+        if (latitude < -90 || latitude > 90) {
+          warn(ParseDiagnostic.Code.LATITUDE_OUT_OF_RANGE, latitude);
+          latitude = ParsingHelpers.clampLatitude(latitude);
+        }
       }
+      if (mQuantizationScale != 0) {
+        longitude = ParsingHelpers.quantize(longitude, mQuantizationScale);
+        latitude = ParsingHelpers.quantize(latitude, mQuantizationScale);
+      }
+      mPlacemarkBounds.extend(latitude, longitude);
+      mLatitudeSum += latitude;
+      mLongitudeSum += longitude;
+      mPositionCount++;
       double altitude = 0;
       if (latLongAlt.length > 2) {
         altitude = Double.parseDouble(latLongAlt[2]);
-        if (Double.isNaN(altitude)) {
-          throw new KMLParseException(
-              "Error at: " + mParser.getPositionDescription() + " altitude cannot be NaN.");
+        if (Double.isNaN(altitude) && mValidation != ValidationLevel.TRUSTED) {
+          throw error(ParseDiagnostic.Code.NOT_A_NUMBER, "altitude");
         }
       } else {
         altitudeReferenceSystemWrapper.setAltitudeReferenceSystem(AltitudeReferenceSystem.SURFACE);
@@ -618,7 +1328,7 @@ public class KMLParser {
   @NonNull
   private String parseText() throws IOException, XmlPullParserException, KMLParseException {
     if (mParser.next() != XmlPullParser.TEXT) {
-      throw new KMLParseException("Expected TEXT at position: " + mParser.getPositionDescription());
+      throw error(ParseDiagnostic.Code.UNEXPECTED_CONTENT, "text");
     } else {
       String result = mParser.getText().trim();
       mParser.nextTag();
@@ -640,7 +1350,6 @@ public class KMLParser {
 
   private int parseColor() throws XmlPullParserException, IOException, KMLParseException {
     long alphaBlueGreenRed = Long.parseLong(parseText(), 16);
-    moveToNext();
     return formatColorForMapControl((int) alphaBlueGreenRed);
   }
 
@@ -655,8 +1364,7 @@ public class KMLParser {
    * XML is malformed and an exception is thrown.*/
   private void skipToEndOfTag() throws XmlPullParserException, IOException, KMLParseException {
     if (mParser.getEventType() != XmlPullParser.START_TAG) {
-      throw new KMLParseException(
-          "Expected start tag at position: " + mParser.getPositionDescription());
+      throw error(ParseDiagnostic.Code.UNEXPECTED_CONTENT, "a start tag");
     }
     int depth = 1;
     while (depth != 0) {
@@ -676,22 +1384,13 @@ public class KMLParser {
   private void verifyElementNotSeen(@NonNull String tag, boolean hasSeenTag)
       throws KMLParseException {
     if (hasSeenTag) {
-      throw new KMLParseException(
-          "Error at: + "
-              + mParser.getPositionDescription()
-              + " Geometry Object can only contain one"
-              + tag
-              + " element.");
+      throw error(ParseDiagnostic.Code.DUPLICATE_ELEMENT, tag);
     }
   }
 
   private void verifyElementSeen(@NonNull String tag, boolean hasSeenTag) throws KMLParseException {
     if (!hasSeenTag) {
-      throw new KMLParseException(
-          "Geometry Object must contain "
-              + tag
-              + " element around XML position "
-              + mParser.getPositionDescription());
+      throw error(ParseDiagnostic.Code.MISSING_ELEMENT, tag);
     }
   }
 
@@ -703,56 +1402,58 @@ public class KMLParser {
   }
 
   /* When style tags are set by the shared style and not set by the inline style, the
-   * inline style inherits those values set by the shared style.*/
-  private void mergeSharedStyleIntoInlineStyle() {
-    for (StylesHolder inlineStyle : mMergeStyles.keySet()) {
-      StylesHolder sharedStyle = mSharedStyles.get(mMergeStyles.get(inlineStyle));
-      if (sharedStyle.getIconStyle().getImage() != null) {
-        inlineStyle.getIconStyle().setImage(sharedStyle.getIconStyle().getImage());
-      }
-      LineStyle sharedLineStyle = sharedStyle.getLineStyle();
-      LineStyle inlineLineStyle = inlineStyle.getLineStyle();
-      if (!inlineLineStyle.useWidth() && sharedLineStyle.useWidth()) {
-        inlineLineStyle.setWidth(sharedLineStyle.getWidth());
-        inlineLineStyle.setUseWidth(true);
-      }
-      if (!inlineLineStyle.useStrokeColor() && sharedLineStyle.useStrokeColor()) {
-        inlineLineStyle.setStrokeColor(sharedLineStyle.getStrokeColor());
-        inlineLineStyle.setUseStrokeColor(true);
-      }
-      PolyStyle sharedPolyStyle = sharedStyle.getPolyStyle();
-      PolyStyle inlinePolyStyle = inlineStyle.getPolyStyle();
-      if (!inlinePolyStyle.useFillTag() && sharedPolyStyle.useFillTag()) {
-        inlinePolyStyle.setShouldFill(sharedPolyStyle.shouldFill());
-        inlinePolyStyle.setUseFillTag(true);
-      }
-      if (!inlinePolyStyle.useOutlineTag() && sharedPolyStyle.useOutlineTag()) {
-        inlinePolyStyle.setShouldOutline(sharedPolyStyle.shouldOutline());
-        inlinePolyStyle.setUseOutlineTag(true);
-      }
-    }
-  }
-
-  private void applyStyles() throws KMLParseException {
-    for (String id : mMapElementStyles.keySet()) {
-      // The styleUrl of a Placemark can either point to a Style element or a StyleMap element.
-      // The id is first looked for in the SharedStyles map (which holds all individual shared Style
-      // elements). If the id is not found, it is looked for in the StyleMaps map. The StyleMap
-      // points to a Style element id. If the id is not found in either map, an exception is thrown.
-      StylesHolder stylesHolder = mSharedStyles.get(id);
-      if (stylesHolder == null) {
-        stylesHolder = mSharedStyles.get(mKmlStyleMap.get(id));
+   * inline style inherits those values set by the shared style. The result is a new StylesHolder,
+   * as the inline style may be shared by other Placemarks.*/
+  @NonNull
+  private static StylesHolder mergeSharedStyleIntoInlineStyle(
+      @NonNull StylesHolder sharedStyle, @NonNull StylesHolder inlineStyle) {
+    StylesHolder mergedStyle = new StylesHolder();
+    IconStyle iconSource =
+        sharedStyle.getIconStyle().getImage() != null
+            ? sharedStyle.getIconStyle()
+            : inlineStyle.getIconStyle();
+    MapImage image = iconSource.getImage();
+    if (image != null) {
+      if (iconSource.getHref() != null) {
+        mergedStyle.getIconStyle().setImage(iconSource.getHref(), image);
+      } else {
+        mergedStyle.getIconStyle().setImage(image);
       }
+    }
+    LineStyle sharedLineStyle = sharedStyle.getLineStyle();
+    LineStyle inlineLineStyle = inlineStyle.getLineStyle();
+    LineStyle mergedLineStyle = mergedStyle.getLineStyle();
+    LineStyle widthSource = inlineLineStyle.useWidth() ? inlineLineStyle : sharedLineStyle;
+    mergedLineStyle.setWidth(widthSource.getWidth());
+    mergedLineStyle.setUseWidth(widthSource.useWidth());
+    LineStyle colorSource = inlineLineStyle.useStrokeColor() ? inlineLineStyle : sharedLineStyle;
+    mergedLineStyle.setStrokeColor(colorSource.getStrokeColor());
+    mergedLineStyle.setUseStrokeColor(colorSource.useStrokeColor());
+    PolyStyle sharedPolyStyle = sharedStyle.getPolyStyle();
+    PolyStyle inlinePolyStyle = inlineStyle.getPolyStyle();
+    PolyStyle mergedPolyStyle = mergedStyle.getPolyStyle();
+    mergedPolyStyle.setFillColor(inlinePolyStyle.getFillColor());
+    PolyStyle fillSource = inlinePolyStyle.useFillTag() ? inlinePolyStyle : sharedPolyStyle;
+    mergedPolyStyle.setShouldFill(fillSource.shouldFill());
+    mergedPolyStyle.setUseFillTag(fillSource.useFillTag());
+    PolyStyle outlineSource = inlinePolyStyle.useOutlineTag() ? inlinePolyStyle : sharedPolyStyle;
+    mergedPolyStyle.setShouldOutline(outlineSource.shouldOutline());
+    mergedPolyStyle.setUseOutlineTag(outlineSource.useOutlineTag());
+    return mergedStyle;
+  }
+
+  /* Styles the elements whose styleUrl was a forward reference. */
+  private void applyPendingStyles() throws KMLParseException {
+    for (PendingStyle pendingStyle : mPendingStyles) {
+      StylesHolder stylesHolder = resolveStyle(pendingStyle.mStyleId, pendingStyle.mInlineStyle);
       if (stylesHolder == null) {
-        throw new KMLParseException("Style id " + id + " not found.");
+        throw new KMLParseException("Style id " + pendingStyle.mStyleId + " not found.");
       }
-      for (MapElement element : mMapElementStyles.get(id)) {
+      for (MapElement element : pendingStyle.mElements) {
         applyStyles(element, stylesHolder);
       }
     }
-    for (MapElement element : mInlineStyles.keySet()) {
-      applyStyles(element, mInlineStyles.get(element));
-    }
+    mPendingStyles.clear();
   }
 
   private void applyStyles(@NonNull MapElement element, @NonNull StylesHolder stylesHolder)
@@ -793,9 +1494,24 @@ public class KMLParser {
   private int moveToNext() throws IOException, XmlPullParserException, KMLParseException {
     int eventType = mParser.next();
     if (eventType == XmlPullParser.END_DOCUMENT) {
-      throw new KMLParseException(
-          "Unexpected end of document around position " + mParser.getPositionDescription());
+      throw error(ParseDiagnostic.Code.UNEXPECTED_END);
     }
     return eventType;
   }
+
+  /* The elements of a Placemark styled after parsing, with its styleUrl and inline style. */
+  private static final class PendingStyle {
+    private final List<MapElement> mElements;
+    private final String mStyleId;
+    private final StylesHolder mInlineStyle;
+
+    PendingStyle(
+        @NonNull List<MapElement> elements,
+        @NonNull String styleId,
+        @Nullable StylesHolder inlineStyle) {
+      mElements = elements;
+      mStyleId = styleId;
+      mInlineStyle = inlineStyle;
+    }
+  }
 }
@@ -0,0 +1,302 @@
+// Copyright (c) Microsoft Corporation.
+// Licensed under the MIT license.
+
+package com.microsoft.maps.kml;
+
+import android.util.Xml;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import com.microsoft.maps.AltitudeReferenceSystem;
+import com.microsoft.maps.Geopath;
+import com.microsoft.maps.Geopoint;
+import com.microsoft.maps.Geoposition;
+import com.microsoft.maps.MapElement;
+import com.microsoft.maps.MapElementLayer;
+import com.microsoft.maps.MapIcon;
+import com.microsoft.maps.MapPolygon;
+import com.microsoft.maps.MapPolyline;
+import com.microsoft.maps.kml.styles.LineStyle;
+import com.microsoft.maps.kml.styles.PolyStyle;
+import com.microsoft.maps.kml.styles.StylesHolder;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import org.xmlpull.v1.XmlSerializer;
+
+/**
+ * Class that writes map elements as KML to an OutputStream. Each element is streamed as a Placemark
+ * as it is written, with the title of icons as its name. The style of each polyline and polygon is
+ * written as a shared Style element the first time it is used; Placemarks with the same style refer
+ * to it by styleUrl, so each distinct style is written once.
+ *
+ * <p>Icon images are not written, as a MapImage does not keep the URL it was loaded from. A
+ * StyleMap read by KMLParser is written as the Style its normal key resolves to.
+ */
+public class KMLWriter {
+
+  private static final String KML_NAMESPACE = "http://www.opengis.net/kml/2.2";
+  private static final String STYLE_ID_PREFIX = "style";
+
+  private final XmlSerializer mSerializer = Xml.newSerializer();
+  /* Ids of the Style elements written so far, by style. */
+  private final HashMap<StylesHolder, String> mStyleIds = new HashMap<>();
+  private boolean mHasStarted;
+  private boolean mIsFinished;
+
+  /**
+   * Creates a writer to the given stream. Call finish() after writing all Placemarks to complete
+   * the document; the stream itself is not closed.
+   */
+  public KMLWriter(@NonNull OutputStream outputStream) throws IOException {
+    if (outputStream == null) {
+      throw new IllegalArgumentException("OutputStream cannot be null.");
+    }
+    mSerializer.setOutput(outputStream, "UTF-8");
+  }
+
+  /**
+   * Writes all elements of the layer as a KML document.
+   *
+   * @param layer layer whose elements are written
+   * @param outputStream stream to write to, which is flushed but not closed
+   * @throws IOException
+   */
+  public static void write(@NonNull MapElementLayer layer, @NonNull OutputStream outputStream)
+      throws IOException {
+    if (layer == null) {
+      throw new IllegalArgumentException("Layer cannot be null.");
+    }
+    KMLWriter writer = new KMLWriter(outputStream);
+    writer.writeLayer(layer);
+    writer.finish();
+  }
+
+  /** Writes each element of the layer as a Placemark. */
+  public void writeLayer(@NonNull MapElementLayer layer) throws IOException {
+    for (MapElement element : layer.getElements()) {
+      writePlacemark(element);
+    }
+  }
+
+  /**
+   * Writes the element as a Placemark. Elements other than icons, polylines and polygons are
+   * skipped.
+   */
+  public void writePlacemark(@NonNull MapElement element) throws IOException {
+    if (mIsFinished) {
+      throw new IllegalStateException("Cannot write Placemarks after finish().");
+    }
+    if (!(element instanceof MapIcon
+        || element instanceof MapPolyline
+        || element instanceof MapPolygon)) {
+      return;
+    }
+    startDocumentIfNeeded();
+    String styleId = null;
+    StylesHolder style = getStyle(element);
+    if (style != null) {
+      styleId = mStyleIds.get(style);
+      if (styleId == null) {
+        styleId = STYLE_ID_PREFIX + mStyleIds.size();
+        mStyleIds.put(style, styleId);
+        writeStyle(styleId, style);
+      }
+    }
+
+    mSerializer.startTag(KML_NAMESPACE, "Placemark");
+    if (element instanceof MapIcon) {
+      String title = ((MapIcon) element).getTitle();
+      if (title != null && !title.isEmpty()) {
+        writeTextElement("name", title);
+      }
+    }
+    if (styleId != null) {
+      writeTextElement("styleUrl", "#" + styleId);
+    }
+    if (element instanceof MapIcon) {
+      Geopoint location = ((MapIcon) element).getLocation();
+      mSerializer.startTag(KML_NAMESPACE, "Point");
+      writeCoordinates(
+          Collections.singletonList(location.getPosition()),
+          location.getAltitudeReferenceSystem(),
+          false);
+      mSerializer.endTag(KML_NAMESPACE, "Point");
+    } else if (element instanceof MapPolyline) {
+      Geopath path = ((MapPolyline) element).getPath();
+      mSerializer.startTag(KML_NAMESPACE, "LineString");
+      writeCoordinates(path, path.getAltitudeReferenceSystem(), false);
+      mSerializer.endTag(KML_NAMESPACE, "LineString");
+    } else {
+      List<Geopath> paths = ((MapPolygon) element).getPaths();
+      mSerializer.startTag(KML_NAMESPACE, "Polygon");
+      for (int i = 0; i < paths.size(); i++) {
+        String boundary = i == 0 ? "outerBoundaryIs" : "innerBoundaryIs";
+        mSerializer.startTag(KML_NAMESPACE, boundary);
+        mSerializer.startTag(KML_NAMESPACE, "LinearRing");
+        writeCoordinates(paths.get(i), paths.get(i).getAltitudeReferenceSystem(), true);
+        mSerializer.endTag(KML_NAMESPACE, "LinearRing");
+        mSerializer.endTag(KML_NAMESPACE, boundary);
+      }
+      mSerializer.endTag(KML_NAMESPACE, "Polygon");
+    }
+    mSerializer.endTag(KML_NAMESPACE, "Placemark");
+  }
+
+  /** Completes the document and flushes the stream. */
+  public void finish() throws IOException {
+    if (mIsFinished) {
+      return;
+    }
+    startDocumentIfNeeded();
+    mSerializer.endTag(KML_NAMESPACE, "Document");
+    mSerializer.endTag(KML_NAMESPACE, "kml");
+    mSerializer.endDocument();
+    mSerializer.flush();
+    mIsFinished = true;
+  }
+
+  private void startDocumentIfNeeded() throws IOException {
+    if (!mHasStarted) {
+      mSerializer.startDocument("UTF-8", null);
+      mSerializer.setPrefix("", KML_NAMESPACE);
+      mSerializer.startTag(KML_NAMESPACE, "kml");
+      mSerializer.startTag(KML_NAMESPACE, "Document");
+      mHasStarted = true;
+    }
+  }
+
+  /* Returns the style that reproduces the colors and width of the element when parsed, or null for
+   * icons. */
+  @Nullable
+  private static StylesHolder getStyle(@NonNull MapElement element) {
+    StylesHolder style = new StylesHolder();
+    LineStyle lineStyle = style.getLineStyle();
+    if (element instanceof MapPolyline) {
+      MapPolyline line = (MapPolyline) element;
+      lineStyle.setStrokeColor(line.getStrokeColor());
+      lineStyle.setUseStrokeColor(true);
+      if (line.getStrokeWidth() > 0) {
+        lineStyle.setWidth(line.getStrokeWidth());
+        lineStyle.setUseWidth(true);
+      }
+      return style;
+    }
+    if (element instanceof MapPolygon) {
+      MapPolygon polygon = (MapPolygon) element;
+      PolyStyle polyStyle = style.getPolyStyle();
+      polyStyle.setFillColor(polygon.getFillColor());
+      lineStyle.setStrokeColor(polygon.getStrokeColor());
+      lineStyle.setUseStrokeColor(true);
+      if (polygon.getStrokeWidth() > 0) {
+        lineStyle.setWidth(polygon.getStrokeWidth());
+        lineStyle.setUseWidth(true);
+      } else {
+        // KMLParser maps outline 0 to a stroke width of 0.
+        polyStyle.setShouldOutline(false);
+        polyStyle.setUseOutlineTag(true);
+      }
+      return style;
+    }
+    return null;
+  }
+
+  private void writeStyle(@NonNull String id, @NonNull StylesHolder style) throws IOException {
+    LineStyle lineStyle = style.getLineStyle();
+    PolyStyle polyStyle = style.getPolyStyle();
+    mSerializer.startTag(KML_NAMESPACE, "Style");
+    mSerializer.attribute(null, "id", id);
+    if (lineStyle.useStrokeColor() || lineStyle.useWidth()) {
+      mSerializer.startTag(KML_NAMESPACE, "LineStyle");
+      if (lineStyle.useStrokeColor()) {
+        writeTextElement("color", formatColor(lineStyle.getStrokeColor()));
+      }
+      if (lineStyle.useWidth()) {
+        writeTextElement("width", Integer.toString(lineStyle.getWidth()));
+      }
+      mSerializer.endTag(KML_NAMESPACE, "LineStyle");
+    }
+    // A PolyStyle with default values is left out, as KMLParser applies the defaults without one.
+    if (polyStyle.getFillColor() != new PolyStyle().getFillColor()
+        || polyStyle.useFillTag()
+        || polyStyle.useOutlineTag()) {
+      mSerializer.startTag(KML_NAMESPACE, "PolyStyle");
+      writeTextElement("color", formatColor(polyStyle.getFillColor()));
+      if (polyStyle.useFillTag()) {
+        writeTextElement("fill", polyStyle.shouldFill() ? "1" : "0");
+      }
+      if (polyStyle.useOutlineTag()) {
+        writeTextElement("outline", polyStyle.shouldOutline() ? "1" : "0");
+      }
+      mSerializer.endTag(KML_NAMESPACE, "PolyStyle");
+    }
+    mSerializer.endTag(KML_NAMESPACE, "Style");
+  }
+
+  /* Writes the positions as "longitude,latitude[,altitude]" tuples. Positions of shapes at SURFACE
+   * altitude are written without an altitude, which KMLParser reads back as SURFACE. */
+  private void writeCoordinates(
+      @NonNull Iterable<Geoposition> positions,
+      @Nullable AltitudeReferenceSystem altitudeReferenceSystem,
+      boolean isRing)
+      throws IOException {
+    boolean hasAltitude = altitudeReferenceSystem != AltitudeReferenceSystem.SURFACE;
+    StringBuilder coordinates = new StringBuilder();
+    Geoposition first = null;
+    Geoposition last = null;
+    for (Geoposition position : positions) {
+      if (first == null) {
+        first = position;
+      } else {
+        coordinates.append(' ');
+      }
+      appendPosition(coordinates, position, hasAltitude);
+      last = position;
+    }
+    if (isRing
+        && first != null
+        && (first.getLatitude() != last.getLatitude()
+            || first.getLongitude() != last.getLongitude()
+            || (hasAltitude && first.getAltitude() != last.getAltitude()))) {
+      coordinates.append(' ');
+      appendPosition(coordinates, first, hasAltitude);
+    }
+    writeTextElement("coordinates", coordinates.toString());
+  }
+
+  private static void appendPosition(
+      @NonNull StringBuilder builder, @NonNull Geoposition position, boolean hasAltitude) {
+    builder.append(formatNumber(position.getLongitude()));
+    builder.append(',');
+    builder.append(formatNumber(position.getLatitude()));
+    if (hasAltitude) {
+      builder.append(',');
+      builder.append(formatNumber(position.getAltitude()));
+    }
+  }
+
+  private void writeTextElement(@NonNull String name, @NonNull String text) throws IOException {
+    mSerializer.startTag(KML_NAMESPACE, name);
+    mSerializer.text(text);
+    mSerializer.endTag(KML_NAMESPACE, name);
+  }
+
+  /* Formats numbers without an exponent, and integral values without a fraction. */
+  @NonNull
+  private static String formatNumber(double value) {
+    if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+      return Long.toString((long) value);
+    }
+    return BigDecimal.valueOf(value).toPlainString();
+  }
+
+  /* Converts an ARGB color to the aabbggrr form used by KML. */
+  @NonNull
+  private static String formatColor(int color) {
+    int alphaBlueGreenRed =
+        (color & 0xFF00FF00) | ((color & 0xFF) << 16) | ((color & 0x00FF0000) >>> 16);
+    return String.format("%08x", alphaBlueGreenRed);
+  }
+}
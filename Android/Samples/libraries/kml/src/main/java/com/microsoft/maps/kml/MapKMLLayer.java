@@ -0,0 +1,119 @@
+// Copyright (c) Microsoft Corporation.
+// Licensed under the MIT license.
+
+package com.microsoft.maps.kml;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import com.microsoft.maps.GeoboundingBox;
+import com.microsoft.maps.Geoposition;
+import com.microsoft.maps.MapElement;
+import com.microsoft.maps.MapElementLayer;
+import com.microsoft.maps.moduletools.GeoBounds;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+/**
+ * Class returned by KMLParser. Holds the bounds of the parsed elements and of each Placemark, which
+ * are computed while the KML is parsed, so fitting the camera does not read every element again.
+ * Bounds do not wrap across the antimeridian.
+ */
+public class MapKMLLayer extends MapElementLayer {
+
+  private GeoBounds mBounds = new GeoBounds();
+  private final ArrayList<Placemark> mPlacemarks = new ArrayList<>();
+  /* The Placemark of each element, only built once a Placemark is looked up, so layers whose
+   * Placemarks are never looked up do not hold an entry per element. */
+  private IdentityHashMap<MapElement, Placemark> mPlacemarkIndex;
+
+  public MapKMLLayer() {
+    super();
+  }
+
+  /**
+   * Returns the bounds of the elements parsed into the layer, or null if there are none, for
+   * example to fit the camera with MapScene.createFromBoundingBox.
+   */
+  @Nullable
+  public GeoboundingBox getBounds() {
+    return mBounds.toGeoboundingBox();
+  }
+
+  /**
+   * Returns the bounds of the positions of the Placemark the element was created from, or null if
+   * it is not known.
+   */
+  @Nullable
+  public GeoboundingBox getPlacemarkBounds(@NonNull MapElement element) {
+    Placemark placemark = findPlacemark(element);
+    return placemark == null ? null : placemark.mBounds.toGeoboundingBox();
+  }
+
+  /**
+   * Returns the average of the positions of the Placemark the element was created from, or null if
+   * it is not known. This is a cheap point to label or center on the Placemark, not the center of
+   * mass of its area.
+   */
+  @Nullable
+  public Geoposition getPlacemarkCentroid(@NonNull MapElement element) {
+    Placemark placemark = findPlacemark(element);
+    return placemark == null ? null : placemark.mCentroid;
+  }
+
+  /* Adds the bounds of parsed Placemarks. */
+  void addPlacemarks(@NonNull GeoBounds bounds, @NonNull List<Placemark> placemarks) {
+    mBounds.extend(bounds);
+    mPlacemarks.addAll(placemarks);
+    mPlacemarkIndex = null;
+  }
+
+  /* Replaces the Placemarks of the layer, for KMLLayerUpdater and KMLNetworkLinkResolver, which
+   * keep the Placemarks of the documents they add elements from. The bounds of the layer are those
+   * of the Placemarks, so the elements are not measured again. */
+  void setPlacemarks(@NonNull List<Placemark> placemarks) {
+    mBounds = new GeoBounds();
+    mPlacemarks.clear();
+    mPlacemarkIndex = null;
+    for (Placemark placemark : placemarks) {
+      mBounds.extend(placemark.mBounds);
+      mPlacemarks.add(placemark);
+    }
+  }
+
+  @Nullable
+  private Placemark findPlacemark(@NonNull MapElement element) {
+    if (mPlacemarkIndex == null) {
+      mPlacemarkIndex = new IdentityHashMap<>();
+      for (Placemark placemark : mPlacemarks) {
+        for (MapElement placemarkElement : placemark.mElements) {
+          mPlacemarkIndex.put(placemarkElement, placemark);
+        }
+      }
+    }
+    return mPlacemarkIndex.get(element);
+  }
+
+  /* The elements of a Placemark with the bounds and centroid of its positions. */
+  static class Placemark {
+    final List<MapElement> mElements;
+    final GeoBounds mBounds;
+    final Geoposition mCentroid;
+
+    Placemark(
+        @NonNull List<MapElement> elements,
+        @NonNull GeoBounds bounds,
+        @Nullable Geoposition centroid) {
+      mElements = elements;
+      mBounds = bounds;
+      mCentroid = centroid;
+    }
+
+    /* The same Placemark with other elements, such as the elements its parsed elements were copied
+     * to by an update in place. */
+    @NonNull
+    Placemark withElements(@NonNull List<MapElement> elements) {
+      return new Placemark(elements, mBounds, mCentroid);
+    }
+  }
+}
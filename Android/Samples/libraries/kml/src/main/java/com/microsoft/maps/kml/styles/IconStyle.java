@@ -9,8 +9,14 @@ import com.microsoft.maps.MapImage;
 
 public class IconStyle {
 
+  private String mHref;
   private MapImage mImage;
 
+  @Nullable
+  public String getHref() {
+    return mHref;
+  }
+
   @Nullable
   public MapImage getImage() {
     return mImage;
@@ -19,4 +25,32 @@ public class IconStyle {
   public void setImage(@NonNull MapImage image) {
     mImage = image;
   }
+
+  /** Sets the image along with the href of the Icon it was loaded from. */
+  public void setImage(@NonNull String href, @NonNull MapImage image) {
+    mHref = href;
+    mImage = image;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof IconStyle)) {
+      return false;
+    }
+    IconStyle other = (IconStyle) o;
+    // Icons are compared by href. Images set without one are compared by identity, as MapImage
+    // does not define equality.
+    if (mHref != null || other.mHref != null) {
+      return mHref != null && mHref.equals(other.mHref);
+    }
+    return mImage == other.mImage;
+  }
+
+  @Override
+  public int hashCode() {
+    return mHref != null ? mHref.hashCode() : System.identityHashCode(mImage);
+  }
 }
@@ -43,4 +43,27 @@ public class LineStyle {
   public void setUseStrokeColor(boolean useStrokeColor) {
     mUseStrokeColor = useStrokeColor;
   }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof LineStyle)) {
+      return false;
+    }
+    LineStyle other = (LineStyle) o;
+    return mUseWidth == other.mUseWidth
+        && mWidth == other.mWidth
+        && mUseStrokeColor == other.mUseStrokeColor
+        && mStrokeColor == other.mStrokeColor;
+  }
+
+  @Override
+  public int hashCode() {
+    int result = mWidth;
+    result = 31 * result + mStrokeColor;
+    result = 31 * result + (mUseWidth ? 1 : 0);
+    return 31 * result + (mUseStrokeColor ? 1 : 0);
+  }
 }
@@ -58,4 +58,29 @@ public class PolyStyle {
   public void setUseOutlineTag(boolean useOutlineTag) {
     mUseOutlineTag = useOutlineTag;
   }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof PolyStyle)) {
+      return false;
+    }
+    PolyStyle other = (PolyStyle) o;
+    return mShouldFill == other.mShouldFill
+        && mUseFillTag == other.mUseFillTag
+        && mShouldOutline == other.mShouldOutline
+        && mUseOutlineTag == other.mUseOutlineTag
+        && mFillColor == other.mFillColor;
+  }
+
+  @Override
+  public int hashCode() {
+    int result = mFillColor;
+    result = 31 * result + (mShouldFill ? 1 : 0);
+    result = 31 * result + (mUseFillTag ? 1 : 0);
+    result = 31 * result + (mShouldOutline ? 1 : 0);
+    return 31 * result + (mUseOutlineTag ? 1 : 0);
+  }
 }
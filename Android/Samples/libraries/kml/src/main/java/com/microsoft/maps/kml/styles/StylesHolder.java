@@ -28,4 +28,29 @@ public class StylesHolder {
   public PolyStyle getPolyStyle() {
     return mPolyStyle;
   }
+
+  /**
+   * Styles are equal when all of their values are equal, so KMLParser can share one StylesHolder
+   * between identical inline styles. StylesHolders used as keys must not be modified.
+   */
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof StylesHolder)) {
+      return false;
+    }
+    StylesHolder other = (StylesHolder) o;
+    return mIconStyle.equals(other.mIconStyle)
+        && mLineStyle.equals(other.mLineStyle)
+        && mPolyStyle.equals(other.mPolyStyle);
+  }
+
+  @Override
+  public int hashCode() {
+    int result = mIconStyle.hashCode();
+    result = 31 * result + mLineStyle.hashCode();
+    return 31 * result + mPolyStyle.hashCode();
+  }
 }
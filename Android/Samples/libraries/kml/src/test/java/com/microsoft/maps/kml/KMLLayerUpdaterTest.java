@@ -0,0 +1,163 @@
+// Copyright (c) Microsoft Corporation.
+// Licensed under the MIT license.
+
+package com.microsoft.maps.kml;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import com.microsoft.maps.MapElement;
+import com.microsoft.maps.MapIcon;
+import com.microsoft.maps.MapPolyline;
+import com.microsoft.maps.MockBingMapsLoader;
+import com.microsoft.maps.MockMapElementCollection;
+import com.microsoft.maps.moduletools.LayerUpdateResult;
+import com.microsoft.maps.moduletools.MapFactories;
+import com.microsoft.maps.moduletoolstest.MockParserMapFactories;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class KMLLayerUpdaterTest {
+
+  private static final MapFactories MOCK_MAP_FACTORIES = new MockParserMapFactories();
+
+  @Before
+  public void setup() {
+    MockBingMapsLoader.mockInitialize();
+  }
+
+  @Test
+  public void testUpdateOnlyTouchesChangedPlacemarks() throws KMLParseException {
+    KMLLayerUpdater updater = new KMLLayerUpdater(MOCK_MAP_FACTORIES);
+    LayerUpdateResult result =
+        updater.update(
+            createDocument(
+                style("ff0000ff"), point("a", 1), point("b", 2), line("c", 0), point(null, 4)));
+    assertEquals(4, result.getAddedCount());
+    List<MapElement> first = new ArrayList<>(getElements(updater));
+
+    result =
+        updater.update(
+            createDocument(
+                style("ff0000ff"), point("a", 1), point("b", 20), line("c", 5), point(null, 40)));
+    assertEquals(1, result.getUnchangedCount());
+    assertEquals(2, result.getUpdatedCount());
+    assertEquals(1, result.getAddedCount());
+    assertEquals(1, result.getRemovedCount());
+    List<MapElement> second = getElements(updater);
+    assertEquals(4, second.size());
+    assertSame(first.get(0), second.get(0));
+    assertSame(first.get(1), second.get(1));
+    assertEquals(20, ((MapIcon) second.get(1)).getLocation().getPosition().getLongitude(), 0);
+    assertEquals("b", ((MapIcon) second.get(1)).getTitle());
+    assertSame(first.get(2), second.get(2));
+    MapPolyline line = (MapPolyline) second.get(2);
+    assertEquals(5, line.getPath().iterator().next().getLongitude(), 0);
+    assertEquals(0xffff0000, line.getStrokeColor());
+    assertFalse(second.contains(first.get(3)));
+
+    // A change to a shared style restyles the Placemarks in place.
+    result =
+        updater.update(
+            createDocument(
+                style("ff00ff00"), point("a", 1), point("b", 20), line("c", 5), point(null, 40)));
+    assertEquals(4, result.getUpdatedCount() + result.getAddedCount());
+    assertSame(line, getElements(updater).get(2));
+    assertEquals(0xff00ff00, line.getStrokeColor());
+  }
+
+  @Test
+  public void testPlacemarksAreKeptAcrossUpdates() throws KMLParseException {
+    KMLLayerUpdater updater = new KMLLayerUpdater(MOCK_MAP_FACTORIES);
+    updater.update(createDocument(style("ff0000ff"), point("a", 1), line("c", 0)));
+    updater.update(createDocument(style("ff0000ff"), point("a", 1), line("c", 5)));
+
+    List<MapElement> elements = getElements(updater);
+    List<MapKMLLayer.Placemark> placemarks = updater.getPlacemarks();
+    assertEquals(2, placemarks.size());
+    // The unchanged Placemark keeps its bounds and centroid.
+    assertEquals(1, placemarks.get(0).mElements.size());
+    assertSame(elements.get(0), placemarks.get(0).mElements.get(0));
+    assertEquals(1, placemarks.get(0).mBounds.getWest(), 0);
+    assertEquals(1, placemarks.get(0).mCentroid.getLongitude(), 0);
+    // The Placemark updated in place refers to the element in the layer, with its new bounds.
+    assertEquals(1, placemarks.get(1).mElements.size());
+    assertSame(elements.get(1), placemarks.get(1).mElements.get(0));
+    assertEquals(1, placemarks.get(1).mBounds.getWest(), 0);
+    assertEquals(5, placemarks.get(1).mBounds.getEast(), 0);
+    assertEquals(3, placemarks.get(1).mCentroid.getLongitude(), 0);
+  }
+
+  @Test
+  public void testInvalidDocumentLeavesLayerUnchanged() throws KMLParseException {
+    KMLLayerUpdater updater = new KMLLayerUpdater(MOCK_MAP_FACTORIES);
+    String kml = createDocument(style("ff0000ff"), line("c", 0));
+    updater.update(kml);
+    MapElement element = getElements(updater).get(0);
+    try {
+      updater.update(createDocument("", line("c", 7)));
+      fail("Expected a KMLParseException.");
+    } catch (KMLParseException e) {
+      assertEquals("Style id lineStyle not found.", e.getMessage());
+    }
+    assertEquals(1, getElements(updater).size());
+    assertSame(element, getElements(updater).get(0));
+    assertEquals(0, ((MapPolyline) element).getPath().iterator().next().getLongitude(), 0);
+    assertFalse(updater.update(kml).hasChanges());
+  }
+
+  @NonNull
+  private static List<MapElement> getElements(@NonNull KMLLayerUpdater updater) {
+    return ((MockMapElementCollection) updater.getLayer().getElements()).getElements();
+  }
+
+  @NonNull
+  private static String createDocument(@NonNull String styles, @NonNull String... placemarks) {
+    return "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+        + "<kml xmlns=\"http://www.opengis.net/kml/2.2\">\n"
+        + "<Document>\n"
+        + styles
+        + String.join("", placemarks)
+        + "</Document>\n"
+        + "</kml>";
+  }
+
+  @NonNull
+  private static String style(@NonNull String color) {
+    return "<Style id=\"lineStyle\"><LineStyle><color>" + color + "</color></LineStyle></Style>\n";
+  }
+
+  @NonNull
+  private static String point(@Nullable String id, double longitude) {
+    return "<Placemark"
+        + (id == null ? "" : " id=\"" + id + "\"")
+        + "><name>"
+        + id
+        + "</name><Point><coordinates>"
+        + longitude
+        + ",0</coordinates></Point></Placemark>\n";
+  }
+
+  @NonNull
+  private static String line(@NonNull String id, double longitude) {
+    return "<Placemark id='"
+        + id
+        + "'>\n"
+        + "  <styleUrl>#lineStyle</styleUrl>\n"
+        + "  <LineString><coordinates>"
+        + longitude
+        + ",0 1,1</coordinates></LineString>\n"
+        + "</Placemark>\n";
+  }
+}
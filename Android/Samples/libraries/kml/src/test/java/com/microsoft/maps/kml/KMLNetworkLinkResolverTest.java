@@ -0,0 +1,288 @@
+// Copyright (c) Microsoft Corporation.
+// Licensed under the MIT license.
+
+package com.microsoft.maps.kml;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import com.microsoft.maps.MapElement;
+import com.microsoft.maps.MapIcon;
+import com.microsoft.maps.MapPolyline;
+import com.microsoft.maps.MockBingMapsLoader;
+import com.microsoft.maps.MockMapElementCollection;
+import com.microsoft.maps.moduletools.MapFactories;
+import com.microsoft.maps.moduletoolstest.MockParserMapFactories;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class KMLNetworkLinkResolverTest {
+
+  private static final MapFactories MOCK_MAP_FACTORIES = new MockParserMapFactories();
+  private static final String BASE_URL = "http://example.com/layers/";
+
+  private long mNow;
+
+  @Before
+  public void setup() {
+    MockBingMapsLoader.mockInitialize();
+  }
+
+  @Test
+  public void testResolvesNestedLinksConcurrently() throws IOException, KMLParseException {
+    Map<String, String> documents = new HashMap<>();
+    documents.put(BASE_URL + "a.kml", createDocument("<name>a</name>", point(1)));
+    documents.put(BASE_URL + "b.kml", createDocument("<name>b</name>", point(2)));
+    documents.put(
+        BASE_URL + "c.kml",
+        createDocument("", point(3) + networkLink("nested/d.kml", "") + networkLink("c.kml", "")));
+    documents.put(BASE_URL + "nested/d.kml", createDocument("", point(4)));
+    CountDownLatch siblingsInFlight = new CountDownLatch(3);
+    AtomicInteger fetchCount = new AtomicInteger();
+    KMLLoader loader =
+        (url, eTag, lastModified) -> {
+          fetchCount.incrementAndGet();
+          if (!url.endsWith("d.kml")) {
+            // Each sibling waits for the others, which only returns if they are fetched at once.
+            siblingsInFlight.countDown();
+            try {
+              assertTrue(siblingsInFlight.await(10, TimeUnit.SECONDS));
+            } catch (InterruptedException e) {
+              throw new IOException(e);
+            }
+          }
+          return new KMLLoadResult(documents.get(url));
+        };
+
+    KMLNetworkLinkResolver resolver =
+        new KMLNetworkLinkResolver(loader, MOCK_MAP_FACTORIES, () -> mNow);
+    resolver.setMaxConcurrentFetches(3);
+    resolver.addDocument(
+        createDocument(
+            "",
+            point(0)
+                + networkLink("a.kml", "")
+                + networkLink("b.kml", "")
+                + networkLink("c.kml", "")),
+        BASE_URL);
+
+    // The link of c.kml to itself is not followed.
+    assertEquals(4, fetchCount.get());
+    assertEquals(5, getElements(resolver).size());
+    double[] expectedLongitudes = {0, 1, 2, 3, 4};
+    for (int i = 0; i < expectedLongitudes.length; i++) {
+      MapIcon icon = (MapIcon) getElements(resolver).get(i);
+      assertEquals(expectedLongitudes[i], icon.getLocation().getPosition().getLongitude(), 0);
+    }
+    assertEquals(Long.MAX_VALUE, resolver.getMillisUntilNextRefresh());
+    assertFalse(resolver.refresh());
+    assertEquals(4, fetchCount.get());
+  }
+
+  @Test
+  public void testIntervalRefreshUsesConditionalRequests() throws IOException, KMLParseException {
+    List<String> requests = new ArrayList<>();
+    String[] content = {line("ff0000ff")};
+    KMLLoader loader =
+        (url, eTag, lastModified) -> {
+          requests.add(url + " " + eTag + " " + lastModified);
+          String version = Integer.toString(content[0].hashCode());
+          if (version.equals(eTag)) {
+            return KMLLoadResult.notModified();
+          }
+          KMLLoadResult result = new KMLLoadResult(createDocument("", content[0]));
+          result.setETag(version);
+          result.setLastModified("Mon, 19 Oct 2026 10:00:00 GMT");
+          return result;
+        };
+    KMLNetworkLinkResolver resolver =
+        new KMLNetworkLinkResolver(loader, MOCK_MAP_FACTORIES, () -> mNow);
+    resolver.addDocument(
+        createDocument(
+            "",
+            networkLink(
+                BASE_URL + "live.kml",
+                "<refreshMode>onInterval</refreshMode><refreshInterval>30</refreshInterval>")),
+        null);
+    assertEquals(1, requests.size());
+    assertEquals(BASE_URL + "live.kml null null", requests.get(0));
+    MapElement firstElement = getElements(resolver).get(0);
+    assertEquals(0xffff0000, ((MapPolyline) firstElement).getStrokeColor());
+
+    mNow = 29999;
+    assertEquals(1, resolver.getMillisUntilNextRefresh());
+    assertFalse(resolver.refresh());
+    assertEquals(1, requests.size());
+
+    // Unchanged documents are neither parsed nor replaced.
+    mNow = 30000;
+    assertFalse(resolver.refresh());
+    assertEquals(2, requests.size());
+    String validators = content[0].hashCode() + " Mon, 19 Oct 2026 10:00:00 GMT";
+    assertEquals(BASE_URL + "live.kml " + validators, requests.get(1));
+    assertEquals(1, getElements(resolver).size());
+    assertSame(firstElement, getElements(resolver).get(0));
+    assertEquals(30000, resolver.getMillisUntilNextRefresh());
+
+    content[0] = line("ff00ff00") + line("ff00ff00");
+    mNow = 60000;
+    assertTrue(resolver.refresh());
+    assertEquals(BASE_URL + "live.kml " + validators, requests.get(2));
+    assertEquals(2, getElements(resolver).size());
+    for (MapElement element : getElements(resolver)) {
+      assertEquals(0xff00ff00, ((MapPolyline) element).getStrokeColor());
+    }
+  }
+
+  @Test
+  public void testExpireRefreshWithLocalServer() throws IOException, KMLParseException {
+    AtomicInteger version = new AtomicInteger(1);
+    List<String> ifNoneMatch = Collections.synchronizedList(new ArrayList<>());
+    HttpServer server =
+        HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+    server.createContext(
+        "/live.kml",
+        exchange -> {
+          String requestETag = exchange.getRequestHeaders().getFirst("If-None-Match");
+          ifNoneMatch.add(String.valueOf(requestETag));
+          String eTag = "\"v" + version.get() + "\"";
+          exchange.getResponseHeaders().add("ETag", eTag);
+          exchange.getResponseHeaders().add("Cache-Control", "max-age=60");
+          if (eTag.equals(requestETag)) {
+            exchange.sendResponseHeaders(304, -1);
+          } else {
+            byte[] body = createDocument("", point(version.get())).getBytes(UTF_8);
+            exchange
+                .getResponseHeaders()
+                .add("Content-Type", "application/vnd.google-earth.kml+xml");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream output = exchange.getResponseBody()) {
+              output.write(body);
+            }
+          }
+          exchange.close();
+        });
+    server.start();
+    try {
+      String url = "http://127.0.0.1:" + server.getAddress().getPort() + "/live.kml";
+      KMLNetworkLinkResolver resolver =
+          new KMLNetworkLinkResolver(new HttpKMLLoader(), MOCK_MAP_FACTORIES, () -> mNow);
+      resolver.addDocument(
+          createDocument("", networkLink(url, "<refreshMode>onExpire</refreshMode>")), null);
+      assertEquals(1, getElements(resolver).size());
+      assertEquals(60000, resolver.getMillisUntilNextRefresh());
+
+      mNow = 60000;
+      assertFalse(resolver.refresh());
+      version.set(2);
+      mNow = 120000;
+      assertTrue(resolver.refresh());
+      MapIcon icon = (MapIcon) getElements(resolver).get(0);
+      assertEquals(2, icon.getLocation().getPosition().getLongitude(), 0);
+      assertEquals(1, getElements(resolver).size());
+      assertEquals(3, ifNoneMatch.size());
+      assertEquals("null", ifNoneMatch.get(0));
+      assertEquals("\"v1\"", ifNoneMatch.get(1));
+      assertEquals("\"v1\"", ifNoneMatch.get(2));
+    } finally {
+      server.stop(0);
+    }
+  }
+
+  @Test
+  public void testInvalidRefreshSettingsFallBackToDefaults() throws IOException, KMLParseException {
+    KMLNetworkLinkResolver resolver =
+        new KMLNetworkLinkResolver(
+            (url, eTag, lastModified) -> new KMLLoadResult(createDocument("", "")),
+            MOCK_MAP_FACTORIES,
+            () -> mNow);
+    resolver.addDocument(
+        createDocument("", networkLink("a.kml", "<refreshMode>sometimes</refreshMode>")), BASE_URL);
+    assertEquals(Long.MAX_VALUE, resolver.getMillisUntilNextRefresh());
+
+    resolver.addDocument(
+        createDocument(
+            "",
+            networkLink(
+                "b.kml",
+                "<refreshMode>onInterval</refreshMode><refreshInterval>0</refreshInterval>")),
+        BASE_URL);
+    assertEquals(4000, resolver.getMillisUntilNextRefresh());
+  }
+
+  @Test
+  public void testLinkedDocumentsAreNotFetchedByParse() throws Exception {
+    String kml = createDocument("", point(0) + networkLink(BASE_URL + "a.kml", ""));
+    List<MapElement> elements =
+        ((MockMapElementCollection)
+                new KMLParser(MOCK_MAP_FACTORIES).internalParse(kml).getElements())
+            .getElements();
+    assertEquals(1, elements.size());
+  }
+
+  @NonNull
+  private static List<MapElement> getElements(@NonNull KMLNetworkLinkResolver resolver) {
+    return ((MockMapElementCollection) resolver.getLayer().getElements()).getElements();
+  }
+
+  @NonNull
+  private static String createDocument(@NonNull String header, @NonNull String content) {
+    return "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+        + "<kml xmlns=\"http://www.opengis.net/kml/2.2\">\n"
+        + "<Document>\n"
+        + header
+        + content
+        + "</Document>\n"
+        + "</kml>";
+  }
+
+  @NonNull
+  private static String networkLink(@NonNull String href, @Nullable String refresh) {
+    return "<NetworkLink>\n"
+        + "  <Link>\n"
+        + "    <href>"
+        + href
+        + "</href>\n"
+        + refresh
+        + "  </Link>\n"
+        + "</NetworkLink>\n";
+  }
+
+  @NonNull
+  private static String point(double longitude) {
+    return "<Placemark><Point><coordinates>" + longitude + ",0</coordinates></Point></Placemark>\n";
+  }
+
+  @NonNull
+  private static String line(@NonNull String color) {
+    return "<Placemark>\n"
+        + "  <Style><LineStyle><color>"
+        + color
+        + "</color></LineStyle></Style>\n"
+        + "  <LineString><coordinates>0,0 1,1</coordinates></LineString>\n"
+        + "</Placemark>\n";
+  }
+}
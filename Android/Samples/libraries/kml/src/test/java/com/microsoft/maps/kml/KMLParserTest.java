@@ -4,8 +4,11 @@
 package com.microsoft.maps.kml;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
@@ -20,14 +23,29 @@ import com.microsoft.maps.MapPolygon;
 import com.microsoft.maps.MapPolyline;
 import com.microsoft.maps.MockBingMapsLoader;
 import com.microsoft.maps.MockMapElementCollection;
+import com.microsoft.maps.kml.styles.StylesHolder;
+import com.microsoft.maps.moduletools.GeoBounds;
 import com.microsoft.maps.moduletools.MapFactories;
+import com.microsoft.maps.moduletools.MapIconClusterer;
+import com.microsoft.maps.moduletools.MappedText;
+import com.microsoft.maps.moduletools.ParseDiagnostic;
+import com.microsoft.maps.moduletools.ParseOptions;
+import com.microsoft.maps.moduletools.ValidationLevel;
 import com.microsoft.maps.moduletoolstest.MockParserMapFactories;
 import com.microsoft.maps.moduletoolstest.TestHelpers;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
 import org.robolectric.RobolectricTestRunner;
 import org.robolectric.annotation.Config;
@@ -590,6 +608,50 @@ public class KMLParserTest {
     assertEquals(0, elementCollection.getElements().size());
   }
 
+  @Test
+  public void testMultiGeometryChildrenGetTitleAndStyle()
+      throws XmlPullParserException, IOException, KMLParseException {
+    String kml =
+        "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+            + "<kml xmlns=\"http://www.opengis.net/kml/2.2\">\n"
+            + "<Document>\n"
+            + "<Style id=\"shared\">\n"
+            + "  <LineStyle><color>ff0000ff</color></LineStyle>\n"
+            + "</Style>\n"
+            + "<Placemark>\n"
+            + "  <name>harbor</name>\n"
+            + "  <styleUrl>#shared</styleUrl>\n"
+            + "  <Style>\n"
+            + "    <LineStyle><width>5</width></LineStyle>\n"
+            + "    <PolyStyle><color>ff00ff00</color></PolyStyle>\n"
+            + "  </Style>\n"
+            + "  <MultiGeometry>\n"
+            + "    <Point><coordinates>-123,47</coordinates></Point>\n"
+            + "    <MultiGeometry>\n"
+            + "      <LineString><coordinates>-122,37 -122,38</coordinates></LineString>\n"
+            + "      <Point><coordinates>-124,48</coordinates></Point>\n"
+            + "    </MultiGeometry>\n"
+            + "    <Polygon><outerBoundaryIs><LinearRing>\n"
+            + "      <coordinates>-104,41 -104,45 -111,45 -104,41</coordinates>\n"
+            + "    </LinearRing></outerBoundaryIs></Polygon>\n"
+            + "  </MultiGeometry>\n"
+            + "</Placemark>\n"
+            + "</Document>\n"
+            + "</kml>";
+    MapElementLayer layer = new KMLParser(MOCK_MAP_FACTORIES).internalParse(kml);
+    List<MapElement> elements = ((MockMapElementCollection) layer.getElements()).getElements();
+    assertEquals(4, elements.size());
+    assertEquals("harbor", ((MapIcon) elements.get(0)).getTitle());
+    MapPolyline line = (MapPolyline) elements.get(1);
+    assertEquals(0xffff0000, line.getStrokeColor());
+    assertEquals(5, line.getStrokeWidth());
+    assertEquals("harbor", ((MapIcon) elements.get(2)).getTitle());
+    MapPolygon polygon = (MapPolygon) elements.get(3);
+    assertEquals(0xffff0000, polygon.getStrokeColor());
+    assertEquals(5, polygon.getStrokeWidth());
+    assertEquals(0xff00ff00, polygon.getFillColor());
+  }
+
   @Test
   public void testNestedLevels() throws XmlPullParserException, IOException, KMLParseException {
     String kml =
@@ -2958,4 +3020,610 @@ public class KMLParserTest {
             + "</kml>";
     new KMLParser(MOCK_MAP_FACTORIES).internalParse(kml);
   }
+
+  @Test
+  public void testParallelParseMatchesSequential()
+      throws XmlPullParserException, IOException, KMLParseException {
+    StringBuilder builder =
+        new StringBuilder(
+            "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                + "<kml xmlns=\"http://www.opengis.net/kml/2.2\">\n"
+                + "<Document>\n"
+                + "  <name>many placemarks</name>\n"
+                + "  <Style id=\"red\">\n"
+                + "    <LineStyle>\n<color>ff0000ff</color>\n<width>3</width>\n</LineStyle>\n"
+                + "  </Style>\n"
+                + "  <StyleMap id=\"redMap\">\n"
+                + "    <Pair><key>normal</key><styleUrl>#red</styleUrl></Pair>\n"
+                + "    <Pair><key>highlight</key><styleUrl>#red</styleUrl></Pair>\n"
+                + "  </StyleMap>\n");
+    int placemarkCount = 60;
+    for (int i = 0; i < placemarkCount; i++) {
+      if (i == placemarkCount / 2) {
+        builder.append("<Folder><name>nested</name><!-- <Placemark> in a comment -->\n");
+      }
+      String styleUrl = i % 3 == 0 ? "#red" : i % 3 == 1 ? "#redMap" : "#green";
+      builder
+          .append("<Placemark>\n")
+          .append("  <name>p")
+          .append(i)
+          .append("</name>\n")
+          .append("  <styleUrl>")
+          .append(styleUrl)
+          .append("</styleUrl>\n");
+      if (i % 6 == 0) {
+        builder.append("  <Style><LineStyle><width>7</width></LineStyle></Style>\n");
+      }
+      builder
+          .append("  <LineString><coordinates>")
+          .append(i)
+          .append(",1 0,0</coordinates></LineString>\n")
+          .append("</Placemark>\n");
+      if (i == placemarkCount / 2 + 5) {
+        builder.append("</Folder>\n");
+      }
+    }
+    builder
+        .append("  <Style id=\"green\">\n")
+        .append("    <LineStyle>\n<color>ff00ff00</color>\n</LineStyle>\n")
+        .append("  </Style>\n")
+        .append("</Document>\n")
+        .append("</kml>");
+    String kml = builder.toString();
+    ParseOptions options = new ParseOptions();
+    options.setParallelism(4);
+
+    List<MapElement> sequential =
+        ((MockMapElementCollection)
+                new KMLParser(MOCK_MAP_FACTORIES).internalParse(kml).getElements())
+            .getElements();
+    List<MapElement> parallel =
+        ((MockMapElementCollection)
+                new KMLParser(MOCK_MAP_FACTORIES).internalParse(kml, options).getElements())
+            .getElements();
+    assertEquals(placemarkCount, sequential.size());
+    assertEquals(sequential.size(), parallel.size());
+    for (int i = 0; i < placemarkCount; i++) {
+      MapPolyline expected = (MapPolyline) sequential.get(i);
+      MapPolyline actual = (MapPolyline) parallel.get(i);
+      assertEquals(i, actual.getPath().iterator().next().getLongitude(), 0);
+      assertEquals(expected.getStrokeColor(), actual.getStrokeColor());
+      assertEquals(expected.getStrokeWidth(), actual.getStrokeWidth());
+    }
+    assertEquals(7, ((MapPolyline) parallel.get(0)).getStrokeWidth());
+    assertEquals(0xffff0000, ((MapPolyline) parallel.get(1)).getStrokeColor());
+    assertEquals(0xff00ff00, ((MapPolyline) parallel.get(2)).getStrokeColor());
+  }
+
+  @Test
+  public void testParallelParseErrorMatchesSequential() throws XmlPullParserException, IOException {
+    String kml =
+        "<kml xmlns=\"http://www.opengis.net/kml/2.2\">\n"
+            + "<Document>\n"
+            + "<Placemark><Point><coordinates>1,1</coordinates></Point></Placemark>\n"
+            + "<Placemark><Point><coordinates>1,100</coordinates></Point></Placemark>\n"
+            + "<Placemark><Point><coordinates>200,1</coordinates></Point></Placemark>\n"
+            + "<Placemark><styleUrl>#missing</styleUrl>"
+            + "<Point><coordinates>1,1</coordinates></Point></Placemark>\n"
+            + "</Document>\n"
+            + "</kml>";
+    ParseOptions options = new ParseOptions();
+    options.setParallelism(4);
+    String sequentialMessage = null;
+    try {
+      new KMLParser(MOCK_MAP_FACTORIES).internalParse(kml);
+      fail();
+    } catch (KMLParseException e) {
+      sequentialMessage = e.getMessage().replaceAll("@[0-9a-f]+", "");
+    }
+    try {
+      new KMLParser(MOCK_MAP_FACTORIES).internalParse(kml, options);
+      fail();
+    } catch (KMLParseException e) {
+      assertEquals(sequentialMessage, e.getMessage().replaceAll("@[0-9a-f]+", ""));
+    }
+  }
+
+  @Test
+  public void testElementScannerFindsTopLevelElements() {
+    String kml =
+        "<?xml version=\"1.0\"?><!-- <Placemark> -->"
+            + "<kml xmlns=\"http://www.opengis.net/kml/2.2\"><Document>"
+            + "<Style id=\"a\"><IconStyle/></Style>"
+            + "<Folder><Placemark id=\"x>\"><name><![CDATA[</Placemark>]]></name></Placemark>"
+            + "<ExtendedData><Placemark/></ExtendedData></Folder>"
+            + "<Placemark/>"
+            + "</Document></kml>";
+    KMLElementScanner scanner = new KMLElementScanner(kml);
+    assertTrue(scanner.scan());
+    assertEquals("<kml xmlns=\"http://www.opengis.net/kml/2.2\">", scanner.getRootStartTag());
+    assertEquals("</kml>", scanner.getRootEndTag());
+    assertEquals(1, scanner.getStyleCount());
+    assertEquals("<Style id=\"a\"><IconStyle/></Style>", scanner.getStyle(0));
+    assertEquals(2, scanner.getPlacemarkCount());
+    assertEquals(
+        "<Placemark id=\"x>\"><name><![CDATA[</Placemark>]]></name></Placemark>",
+        scanner.getPlacemark(0));
+    assertEquals("<Placemark/>", scanner.getPlacemark(1));
+  }
+
+  @Test
+  public void testIconClusteringKeepsStylesAndTitles()
+      throws XmlPullParserException, IOException, KMLParseException {
+    String kml =
+        "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+            + "<kml xmlns=\"http://www.opengis.net/kml/2.2\">\n"
+            + "<Document>\n"
+            + "<Placemark>\n<name>first</name>\n"
+            + "<Point><coordinates>-122.0,47.0</coordinates></Point>\n</Placemark>\n"
+            + "<Placemark>\n<name>second</name>\n"
+            + "<Point><coordinates>-122.001,47.001</coordinates></Point>\n</Placemark>\n"
+            + "<Placemark>\n<name>line</name>\n"
+            + "<LineString><coordinates>0,0 1,1</coordinates></LineString>\n</Placemark>\n"
+            + "</Document>\n"
+            + "</kml>";
+    for (int parallelism = 1; parallelism <= 2; parallelism++) {
+      MapIconClusterer clusterer = new MapIconClusterer();
+      ParseOptions options = new ParseOptions();
+      options.setIconClusterer(clusterer);
+      options.setParallelism(parallelism);
+      MapElementLayer layer = new KMLParser(MOCK_MAP_FACTORIES).internalParse(kml, options);
+      List<MapElement> elements = ((MockMapElementCollection) layer.getElements()).getElements();
+      assertEquals(2, elements.size());
+      assertTrue(elements.get(0) instanceof MapPolyline);
+      assertEquals("2", ((MapIcon) elements.get(1)).getTitle());
+
+      clusterer.setZoomLevel(MapIconClusterer.MAX_ZOOM_LEVEL);
+      assertEquals(3, elements.size());
+      assertEquals("first", ((MapIcon) elements.get(1)).getTitle());
+      assertEquals("second", ((MapIcon) elements.get(2)).getTitle());
+    }
+  }
+
+  @Test
+  public void testIdenticalInlineStylesShareOneHolder()
+      throws XmlPullParserException, IOException, KMLParseException {
+    String placemark =
+        "<Placemark>\n"
+            + "<Style><LineStyle><width>4</width><color>ff0000ff</color></LineStyle></Style>\n"
+            + "<LineString><coordinates>0,0 1,1</coordinates></LineString>\n"
+            + "</Placemark>\n";
+    String kml =
+        "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+            + "<kml xmlns=\"http://www.opengis.net/kml/2.2\">\n"
+            + "<Document>\n"
+            + placemark
+            + placemark
+            + placemark
+            + "</Document>\n"
+            + "</kml>";
+    KMLParser parser = new KMLParser(MOCK_MAP_FACTORIES);
+    MapElementLayer layer = parser.internalParse(kml);
+    List<MapElement> elements = ((MockMapElementCollection) layer.getElements()).getElements();
+    assertEquals(3, elements.size());
+    for (MapElement element : elements) {
+      assertEquals(4, ((MapPolyline) element).getStrokeWidth());
+      assertEquals(0xffff0000, ((MapPolyline) element).getStrokeColor());
+    }
+    assertEquals(1, parser.getInlineStyleCount());
+  }
+
+  @Test
+  public void testInlineIconStylesWithSameHrefShareOneHolder()
+      throws XmlPullParserException, IOException, KMLParseException {
+    File icon = mTemporaryFolder.newFile("icon.png");
+    String placemark =
+        "<Placemark>\n"
+            + "<Style><IconStyle><Icon><href>"
+            + icon.toURI()
+            + "</href></Icon></IconStyle></Style>\n"
+            + "<Point><coordinates>1,2</coordinates></Point>\n"
+            + "</Placemark>\n";
+    String kml =
+        "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+            + "<kml xmlns=\"http://www.opengis.net/kml/2.2\">\n"
+            + "<Document>\n"
+            + placemark
+            + placemark
+            + "</Document>\n"
+            + "</kml>";
+    KMLParser parser = new KMLParser(MOCK_MAP_FACTORIES);
+    MapElementLayer layer = parser.internalParse(kml);
+    List<MapElement> elements = ((MockMapElementCollection) layer.getElements()).getElements();
+    assertEquals(2, elements.size());
+    assertNotNull(((MapIcon) elements.get(0)).getImage());
+    assertSame(((MapIcon) elements.get(0)).getImage(), ((MapIcon) elements.get(1)).getImage());
+    assertEquals(1, parser.getInlineStyleCount());
+  }
+
+  @Test
+  public void testIdenticalInlineStylesKeepTheirOwnStyleUrl()
+      throws XmlPullParserException, IOException, KMLParseException {
+    String inlineStyle = "<Style><LineStyle><width>4</width></LineStyle></Style>\n";
+    String line = "<LineString><coordinates>0,0 1,1</coordinates></LineString>\n";
+    String kml =
+        "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+            + "<kml xmlns=\"http://www.opengis.net/kml/2.2\">\n"
+            + "<Document>\n"
+            + "<Style id=\"red\"><LineStyle><color>ff0000ff</color></LineStyle></Style>\n"
+            + "<Style id=\"green\"><LineStyle><color>ff00ff00</color></LineStyle></Style>\n"
+            + "<Placemark>\n<styleUrl>#red</styleUrl>\n"
+            + inlineStyle
+            + line
+            + "</Placemark>\n"
+            + "<Placemark>\n"
+            + inlineStyle
+            + line
+            + "</Placemark>\n"
+            + "<Placemark>\n<styleUrl>#green</styleUrl>\n"
+            + inlineStyle
+            + line
+            + "</Placemark>\n"
+            + "<Placemark>\n<styleUrl>#red</styleUrl>\n"
+            + inlineStyle
+            + line
+            + "</Placemark>\n"
+            + "</Document>\n"
+            + "</kml>";
+    MapElementLayer layer = new KMLParser(MOCK_MAP_FACTORIES).internalParse(kml);
+    List<MapElement> elements = ((MockMapElementCollection) layer.getElements()).getElements();
+    assertEquals(4, elements.size());
+    int[] expectedColors = {0xffff0000, 0xffffffff, 0xff00ff00, 0xffff0000};
+    for (int i = 0; i < elements.size(); i++) {
+      MapPolyline polyline = (MapPolyline) elements.get(i);
+      assertEquals(4, polyline.getStrokeWidth());
+      assertEquals(expectedColors[i], polyline.getStrokeColor());
+    }
+  }
+
+  @Test
+  public void testStylesHolderValueEquality() throws IOException {
+    StylesHolder first = new StylesHolder();
+    StylesHolder second = new StylesHolder();
+    assertEquals(first, second);
+    assertEquals(first.hashCode(), second.hashCode());
+
+    first.getLineStyle().setWidth(3);
+    first.getLineStyle().setUseWidth(true);
+    assertNotEquals(first, second);
+    second.getLineStyle().setWidth(3);
+    second.getLineStyle().setUseWidth(true);
+    assertEquals(first, second);
+    assertEquals(first.hashCode(), second.hashCode());
+
+    first.getPolyStyle().setShouldFill(false);
+    assertNotEquals(first, second);
+    second.getPolyStyle().setShouldFill(false);
+    assertEquals(first, second);
+
+    first.getIconStyle().setImage(MOCK_MAP_FACTORIES.createMapImage(null));
+    assertNotEquals(first, second);
+  }
+
+  @Test
+  public void testForwardStyleReferencesAreApplied()
+      throws XmlPullParserException, IOException, KMLParseException {
+    String kml =
+        "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+            + "<kml xmlns=\"http://www.opengis.net/kml/2.2\">\n"
+            + "<Document>\n"
+            + "<Placemark>\n"
+            + "    <styleUrl>#later</styleUrl>\n"
+            + "    <LineString><coordinates>0,0 1,1</coordinates></LineString>\n"
+            + "</Placemark>\n"
+            + "<Placemark>\n"
+            + "    <styleUrl>#laterMap</styleUrl>\n"
+            + "    <Style><LineStyle><width>6</width></LineStyle></Style>\n"
+            + "    <LineString><coordinates>0,0 1,1</coordinates></LineString>\n"
+            + "</Placemark>\n"
+            + "<StyleMap id=\"laterMap\">\n"
+            + "    <Pair><key>normal</key><styleUrl>#later</styleUrl></Pair>\n"
+            + "    <Pair><key>highlight</key><styleUrl>#later</styleUrl></Pair>\n"
+            + "</StyleMap>\n"
+            + "<Style id=\"later\">\n"
+            + "    <LineStyle><color>ff0000ff</color><width>3</width></LineStyle>\n"
+            + "</Style>\n"
+            + "<Placemark>\n"
+            + "    <styleUrl>#laterMap</styleUrl>\n"
+            + "    <Style><LineStyle><width>6</width></LineStyle></Style>\n"
+            + "    <LineString><coordinates>0,0 1,1</coordinates></LineString>\n"
+            + "</Placemark>\n"
+            + "</Document>\n"
+            + "</kml>";
+    MapElementLayer layer = new KMLParser(MOCK_MAP_FACTORIES).internalParse(kml);
+    List<MapElement> elements = ((MockMapElementCollection) layer.getElements()).getElements();
+    assertEquals(3, elements.size());
+    int[] expectedWidths = {3, 6, 6};
+    for (int i = 0; i < elements.size(); i++) {
+      MapPolyline polyline = (MapPolyline) elements.get(i);
+      assertEquals(0xffff0000, polyline.getStrokeColor());
+      assertEquals(expectedWidths[i], polyline.getStrokeWidth());
+    }
+  }
+
+  @Test(expected = KMLParseException.class)
+  public void testInlineStyleWithMissingStyleUrlThrowsException()
+      throws XmlPullParserException, IOException, KMLParseException {
+    String kml =
+        "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+            + "<kml xmlns=\"http://www.opengis.net/kml/2.2\">\n"
+            + "<Document>\n"
+            + "<Placemark>\n"
+            + "    <styleUrl>#notFound</styleUrl>\n"
+            + "    <Style><LineStyle><width>6</width></LineStyle></Style>\n"
+            + "    <LineString><coordinates>0,0 1,1</coordinates></LineString>\n"
+            + "</Placemark>\n"
+            + "</Document>\n"
+            + "</kml>";
+    new KMLParser(MOCK_MAP_FACTORIES).internalParse(kml);
+  }
+
+  @Rule public TemporaryFolder mTemporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void testParseMappedFile() throws XmlPullParserException, IOException, KMLParseException {
+    StringBuilder builder =
+        new StringBuilder(
+            "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                + "<kml xmlns=\"http://www.opengis.net/kml/2.2\">\n"
+                + "<Document>\n"
+                + "<Style id=\"lineStyle\"><LineStyle><width>4</width></LineStyle></Style>\n");
+    for (int i = 0; i < 10; i++) {
+      builder
+          .append("<Placemark><name>Caf\u00e9 \ud83c\udf0d ")
+          .append(i)
+          .append("</name><Point><coordinates>")
+          .append(i)
+          .append(",0</coordinates></Point></Placemark>\n");
+    }
+    builder
+        .append("<Placemark><styleUrl>#lineStyle</styleUrl>")
+        .append("<LineString><coordinates>0,0 1,1</coordinates></LineString></Placemark>\n")
+        .append("</Document>\n</kml>");
+    File file = mTemporaryFolder.newFile();
+    try (OutputStream stream = new FileOutputStream(file)) {
+      stream.write(builder.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    for (int parallelism : new int[] {1, 4}) {
+      ParseOptions options = new ParseOptions();
+      options.setParallelism(parallelism);
+      MapElementLayer layer =
+          new KMLParser(MOCK_MAP_FACTORIES).internalParse(MappedText.map(file), options);
+      List<MapElement> elements = ((MockMapElementCollection) layer.getElements()).getElements();
+      assertEquals(11, elements.size());
+      for (int i = 0; i < 10; i++) {
+        MapIcon icon = (MapIcon) elements.get(i);
+        assertEquals("Caf\u00e9 \ud83c\udf0d " + i, icon.getTitle());
+        assertEquals(i, icon.getLocation().getPosition().getLongitude(), 0);
+      }
+      assertEquals(4, ((MapPolyline) elements.get(10)).getStrokeWidth());
+    }
+  }
+
+  @Test
+  public void testValidationLevels() throws XmlPullParserException, IOException, KMLParseException {
+    String kml =
+        "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+            + "<kml xmlns=\"http://www.opengis.net/kml/2.2\">\n"
+            + "<Placemark><Polygon><outerBoundaryIs><LinearRing>\n"
+            + "  <coordinates>30,10 190,40 20,95 10,20</coordinates>\n"
+            + "</LinearRing></outerBoundaryIs></Polygon></Placemark>\n"
+            + "</kml>";
+    try {
+      new KMLParser(MOCK_MAP_FACTORIES).internalParse(kml);
+      fail("Expected a KMLParseException.");
+    } catch (KMLParseException e) {
+      assertTrue(e.getMessage().startsWith("Longitude must be in the range [-180, 180]"));
+    }
+
+    ParseOptions options = new ParseOptions();
+    options.setValidation(ValidationLevel.LENIENT);
+    MapElementLayer layer = new KMLParser(MOCK_MAP_FACTORIES).internalParse(kml, options);
+    MapPolygon polygon =
+        (MapPolygon) ((MockMapElementCollection) layer.getElements()).getElements().get(0);
+    double[][] expectedPoints = {{30, 10}, {-170, 40}, {20, 90}, {10, 20}, {30, 10}};
+    int index = 0;
+    for (Geoposition position : polygon.getPaths().get(0)) {
+      TestHelpers.assertPositionEquals(expectedPoints[index], position);
+      index++;
+    }
+    assertEquals(expectedPoints.length, index);
+
+    options.setValidation(ValidationLevel.TRUSTED);
+    layer = new KMLParser(MOCK_MAP_FACTORIES).internalParse(kml, options);
+    polygon = (MapPolygon) ((MockMapElementCollection) layer.getElements()).getElements().get(0);
+    expectedPoints = new double[][] {{30, 10}, {190, 40}, {20, 95}, {10, 20}};
+    index = 0;
+    for (Geoposition position : polygon.getPaths().get(0)) {
+      TestHelpers.assertPositionEquals(expectedPoints[index], position);
+      index++;
+    }
+    assertEquals(expectedPoints.length, index);
+  }
+
+  @Test
+  public void testPublicParseKeepsErrorCode() {
+    String kml =
+        "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+            + "<kml xmlns=\"http://www.opengis.net/kml/2.2\">\n"
+            + "<Placemark><Point><coordinates>10,95</coordinates></Point></Placemark>\n"
+            + "</kml>";
+    try {
+      KMLParser.parse(kml, new ParseOptions());
+      fail("Expected a KMLParseException.");
+    } catch (KMLParseException e) {
+      assertEquals(ParseDiagnostic.Code.LATITUDE_OUT_OF_RANGE, e.getCode());
+    }
+  }
+
+  @Test
+  public void testNormalizePolygons()
+      throws XmlPullParserException, IOException, KMLParseException {
+    String kml =
+        "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+            + "<kml xmlns=\"http://www.opengis.net/kml/2.2\">\n"
+            + "<Placemark><Polygon>\n"
+            + "<innerBoundaryIs><LinearRing><coordinates>\n"
+            + "  2,2 4,2 4,4 2,4 2,2\n"
+            + "</coordinates></LinearRing></innerBoundaryIs>\n"
+            + "<outerBoundaryIs><LinearRing><coordinates>\n"
+            + "  0,0 0,10 10,10 10,0 0,0\n"
+            + "</coordinates></LinearRing></outerBoundaryIs>\n"
+            + "</Polygon></Placemark>\n"
+            + "</kml>";
+    ParseOptions options = new ParseOptions();
+    options.setNormalizePolygons(true);
+    MapElementLayer layer = new KMLParser(MOCK_MAP_FACTORIES).internalParse(kml, options);
+
+    List<MapElement> elements = ((MockMapElementCollection) layer.getElements()).getElements();
+    List<Geopath> rings = ((MapPolygon) elements.get(0)).getPaths();
+    assertEquals(2, rings.size());
+    TestHelpers.assertPositionEquals(new double[] {10, 0}, rings.get(0).get(1));
+    TestHelpers.assertPositionEquals(new double[] {2, 4}, rings.get(1).get(1));
+
+    try {
+      new KMLParser(MOCK_MAP_FACTORIES)
+          .internalParse(
+              kml.replace("0,0 0,10 10,10 10,0 0,0", "0,0 10,10 10,0 0,10 0,0"), options);
+      fail("Expected a KMLParseException.");
+    } catch (KMLParseException e) {
+      assertEquals(ParseDiagnostic.Code.RING_SELF_INTERSECTION, e.getCode());
+    }
+  }
+
+  @Test
+  public void testBounds() throws XmlPullParserException, IOException, KMLParseException {
+    String kml =
+        "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+            + "<kml xmlns=\"http://www.opengis.net/kml/2.2\">\n"
+            + "<Document>\n"
+            + "<Placemark><Point><coordinates>10,-5</coordinates></Point></Placemark>\n"
+            + "<Placemark><LineString><coordinates>0,0 4,2</coordinates></LineString></Placemark>\n"
+            + "</Document>\n"
+            + "</kml>";
+    for (int parallelism = 1; parallelism <= 2; parallelism++) {
+      ParseOptions options = new ParseOptions();
+      options.setParallelism(parallelism);
+      KMLParser parser = new KMLParser(MOCK_MAP_FACTORIES);
+      parser.internalParse(kml, options);
+      GeoBounds bounds = parser.getBounds();
+      assertEquals(2, bounds.getNorth(), 0);
+      assertEquals(0, bounds.getWest(), 0);
+      assertEquals(-5, bounds.getSouth(), 0);
+      assertEquals(10, bounds.getEast(), 0);
+    }
+  }
+
+  @Test
+  public void testSplitAtAntimeridian()
+      throws XmlPullParserException, IOException, KMLParseException {
+    String kml =
+        "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+            + "<kml xmlns=\"http://www.opengis.net/kml/2.2\">\n"
+            + "<Placemark><name>route</name><MultiGeometry>\n"
+            + "<Point><coordinates>178,0</coordinates></Point>\n"
+            + "<LineString><coordinates>170,10 -170,20</coordinates></LineString>\n"
+            + "<Polygon><outerBoundaryIs><LinearRing><coordinates>\n"
+            + "  -170,-10 170,-10 170,10 -170,10 -170,-10\n"
+            + "</coordinates></LinearRing></outerBoundaryIs></Polygon>\n"
+            + "</MultiGeometry></Placemark>\n"
+            + "</kml>";
+    ParseOptions options = new ParseOptions();
+    options.setSplitAtAntimeridian(true);
+    MapElementLayer layer = new KMLParser(MOCK_MAP_FACTORIES).internalParse(kml, options);
+
+    List<MapElement> elements = ((MockMapElementCollection) layer.getElements()).getElements();
+    assertEquals(5, elements.size());
+    assertEquals("route", ((MapIcon) elements.get(0)).getTitle());
+    Geopath west = ((MapPolyline) elements.get(1)).getPath();
+    assertEquals(2, west.size());
+    TestHelpers.assertPositionEquals(new double[] {180, 15}, west.get(1));
+    Geopath east = ((MapPolyline) elements.get(2)).getPath();
+    assertEquals(2, east.size());
+    TestHelpers.assertPositionEquals(new double[] {-180, 15}, east.get(0));
+    for (int i = 3; i < 5; i++) {
+      MapPolygon polygon = (MapPolygon) elements.get(i);
+      assertEquals(0xffffffff, polygon.getFillColor());
+      for (Geoposition position : polygon.getPaths().get(0)) {
+        assertTrue(Math.abs(position.getLongitude()) >= 170);
+      }
+    }
+  }
+
+  @Test
+  public void testCoordinatePrecision()
+      throws XmlPullParserException, IOException, KMLParseException {
+    String kml =
+        "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+            + "<kml xmlns=\"http://www.opengis.net/kml/2.2\">\n"
+            + "<Placemark><LineString><coordinates>\n"
+            + "  10.123456,20.123456 10.123461,20.123459 11.5,21.5\n"
+            + "</coordinates></LineString></Placemark>\n"
+            + "</kml>";
+    ParseOptions options = new ParseOptions();
+    options.setCoordinatePrecision(5);
+    MapElementLayer layer = new KMLParser(MOCK_MAP_FACTORIES).internalParse(kml, options);
+
+    List<MapElement> elements = ((MockMapElementCollection) layer.getElements()).getElements();
+    assertEquals(1, elements.size());
+    Geopath path = ((MapPolyline) elements.get(0)).getPath();
+    assertEquals(2, path.size());
+    TestHelpers.assertPositionEquals(new double[] {10.12346, 20.12346}, path.get(0));
+    TestHelpers.assertPositionEquals(new double[] {11.5, 21.5}, path.get(1));
+  }
+
+  @Test
+  public void testSkipInvalidPlacemarks()
+      throws XmlPullParserException, IOException, KMLParseException {
+    String kml =
+        "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+            + "<kml xmlns=\"http://www.opengis.net/kml/2.2\">\n"
+            + "<Document>\n"
+            + "<Placemark><Point><coordinates>1,2</coordinates></Point></Placemark>\n"
+            + "<Placemark><name>bad</name><MultiGeometry>\n"
+            + "  <Point><coordinates>3,4</coordinates></Point>\n"
+            + "  <Point><coordinates>5,95</coordinates></Point>\n"
+            + "</MultiGeometry></Placemark>\n"
+            + "  <Placemark><Point><coordinates>x,6</coordinates></Point></Placemark>\n"
+            + "<Placemark><Point><coordinates>7,8</coordinates></Point></Placemark>\n"
+            + "</Document>\n"
+            + "</kml>";
+    for (int parallelism = 1; parallelism <= 2; parallelism++) {
+      List<ParseDiagnostic> diagnostics = new ArrayList<>();
+      ParseOptions options = new ParseOptions();
+      options.setParallelism(parallelism);
+      options.setSkipInvalidFeatures(true);
+      options.setDiagnosticListener(diagnostics::add);
+      MapElementLayer layer = new KMLParser(MOCK_MAP_FACTORIES).internalParse(kml, options);
+
+      List<MapElement> elements = ((MockMapElementCollection) layer.getElements()).getElements();
+      assertEquals(2, elements.size());
+      TestHelpers.assertPositionEquals(
+          new double[] {1, 2}, ((MapIcon) elements.get(0)).getLocation().getPosition());
+      TestHelpers.assertPositionEquals(
+          new double[] {7, 8}, ((MapIcon) elements.get(1)).getLocation().getPosition());
+
+      assertEquals(2, diagnostics.size());
+      assertEquals(ParseDiagnostic.Code.LATITUDE_OUT_OF_RANGE, diagnostics.get(0).getCode());
+      assertEquals(ParseDiagnostic.Severity.ERROR, diagnostics.get(0).getSeverity());
+      assertEquals(1, diagnostics.get(0).getFeatureIndex());
+      assertEquals(5, diagnostics.get(0).getLineNumber());
+      assertTrue(
+          diagnostics.get(0).getMessage().contains("Latitude must be in the range [-90, 90]"));
+      assertEquals(ParseDiagnostic.Code.INVALID_INPUT, diagnostics.get(1).getCode());
+      assertEquals(2, diagnostics.get(1).getFeatureIndex());
+      assertEquals(9, diagnostics.get(1).getLineNumber());
+    }
+
+    try {
+      new KMLParser(MOCK_MAP_FACTORIES).internalParse(kml);
+      fail("Expected a KMLParseException.");
+    } catch (KMLParseException e) {
+      assertEquals(ParseDiagnostic.Code.LATITUDE_OUT_OF_RANGE, e.getCode());
+      assertEquals(
+          "Latitude must be in the range [-90, 90], instead saw: 95.0 (line 7, column 41)",
+          e.getMessage());
+    }
+  }
 }
@@ -0,0 +1,203 @@
+// Copyright (c) Microsoft Corporation.
+// Licensed under the MIT license.
+
+package com.microsoft.maps.kml;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import androidx.annotation.NonNull;
+import com.microsoft.maps.AltitudeReferenceSystem;
+import com.microsoft.maps.Geopath;
+import com.microsoft.maps.Geopoint;
+import com.microsoft.maps.Geoposition;
+import com.microsoft.maps.MapElement;
+import com.microsoft.maps.MapElementLayer;
+import com.microsoft.maps.MapIcon;
+import com.microsoft.maps.MapPolygon;
+import com.microsoft.maps.MapPolyline;
+import com.microsoft.maps.MockBingMapsLoader;
+import com.microsoft.maps.MockMapElementCollection;
+import com.microsoft.maps.moduletools.MapFactories;
+import com.microsoft.maps.moduletoolstest.MockParserMapFactories;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.xmlpull.v1.XmlPullParserException;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class KMLWriterTest {
+
+  private static final MapFactories MOCK_MAP_FACTORIES = new MockParserMapFactories();
+
+  @Before
+  public void setup() {
+    MockBingMapsLoader.mockInitialize();
+  }
+
+  @Test
+  public void testWriteEmptyDocument()
+      throws IOException, XmlPullParserException, KMLParseException {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    new KMLWriter(output).finish();
+    String kml = output.toString("UTF-8");
+    assertTrue(kml.contains("<kml xmlns=\"http://www.opengis.net/kml/2.2\">"));
+    MapElementLayer layer = new KMLParser(MOCK_MAP_FACTORIES).internalParse(kml);
+    assertEquals(0, ((MockMapElementCollection) layer.getElements()).getElements().size());
+  }
+
+  @Test
+  public void testWritePlacemarks() throws IOException {
+    MapIcon icon = MOCK_MAP_FACTORIES.createMapIcon();
+    icon.setLocation(new Geopoint(new Geoposition(43, -107.55), AltitudeReferenceSystem.SURFACE));
+    icon.setTitle("a < b");
+    MapPolyline line = createPolyline(0xff00ff00, 3);
+
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    KMLWriter writer = new KMLWriter(output);
+    writer.writePlacemark(icon);
+    writer.writePlacemark(line);
+    writer.finish();
+
+    String kml = output.toString("UTF-8");
+    assertTrue(
+        kml.contains(
+            "<Placemark><name>a &lt; b</name><Point><coordinates>-107.55,43</coordinates>"
+                + "</Point></Placemark>"));
+    assertTrue(
+        kml.contains(
+            "<Style id=\"style0\"><LineStyle><color>ff00ff00</color><width>3</width></LineStyle>"
+                + "</Style><Placemark><styleUrl>#style0</styleUrl><LineString>"
+                + "<coordinates>0,0,5 1,1,5</coordinates></LineString></Placemark>"));
+  }
+
+  @Test
+  public void testRoundTripDeduplicatesStyles()
+      throws IOException, XmlPullParserException, KMLParseException {
+    int[] colors = {0xffff0000, 0x8000ff00, 0xff0000ff};
+    ArrayList<MapElement> elements = new ArrayList<>();
+    for (int i = 0; i < 1000; i++) {
+      switch (i % 3) {
+        case 0:
+          MapIcon icon = MOCK_MAP_FACTORIES.createMapIcon();
+          icon.setLocation(
+              new Geopoint(
+                  new Geoposition(i % 90, (i % 360) - 179.875, i), AltitudeReferenceSystem.GEOID));
+          icon.setTitle("icon " + i);
+          elements.add(icon);
+          break;
+        case 1:
+          elements.add(createPolyline(colors[i / 3 % colors.length], 1 + i / 9 % 2));
+          break;
+        default:
+          MapPolygon polygon = MOCK_MAP_FACTORIES.createMapPolygon();
+          ArrayList<Geopath> paths = new ArrayList<>();
+          paths.add(
+              createPath(
+                  AltitudeReferenceSystem.SURFACE,
+                  new double[][] {{0, 0}, {0, 10}, {10, 10}, {10, 0}, {0, 0}}));
+          paths.add(
+              createPath(
+                  AltitudeReferenceSystem.SURFACE,
+                  new double[][] {{2, 2}, {2, 4}, {4, 4}, {2, 2}}));
+          polygon.setPaths(paths);
+          polygon.setFillColor(colors[i / 3 % colors.length]);
+          polygon.setStrokeColor(colors[(i / 3 + 1) % colors.length]);
+          polygon.setStrokeWidth(i / 9 % 2 == 0 ? 0 : 2);
+          elements.add(polygon);
+          break;
+      }
+    }
+
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    KMLWriter writer = new KMLWriter(output);
+    for (MapElement element : elements) {
+      writer.writePlacemark(element);
+    }
+    writer.finish();
+    String kml = output.toString("UTF-8");
+
+    // 3 colors x 2 widths for polylines, and 3 colors x 2 outlines for polygons.
+    assertEquals(12, kml.split("<Style ").length - 1);
+    assertEquals(1000, kml.split("<Placemark>").length - 1);
+
+    MapElementLayer layer = new KMLParser(MOCK_MAP_FACTORIES).internalParse(kml);
+    List<MapElement> parsed = ((MockMapElementCollection) layer.getElements()).getElements();
+    assertEquals(elements.size(), parsed.size());
+    for (int i = 0; i < elements.size(); i++) {
+      MapElement expected = elements.get(i);
+      MapElement actual = parsed.get(i);
+      if (expected instanceof MapIcon) {
+        MapIcon expectedIcon = (MapIcon) expected;
+        MapIcon actualIcon = (MapIcon) actual;
+        assertEquals(expectedIcon.getTitle(), actualIcon.getTitle());
+        assertPositionsEqual(
+            Arrays.asList(expectedIcon.getLocation().getPosition()),
+            Arrays.asList(actualIcon.getLocation().getPosition()));
+        assertEquals(
+            AltitudeReferenceSystem.GEOID, actualIcon.getLocation().getAltitudeReferenceSystem());
+      } else if (expected instanceof MapPolyline) {
+        MapPolyline expectedLine = (MapPolyline) expected;
+        MapPolyline actualLine = (MapPolyline) actual;
+        assertEquals(expectedLine.getStrokeColor(), actualLine.getStrokeColor());
+        assertEquals(expectedLine.getStrokeWidth(), actualLine.getStrokeWidth());
+        assertPositionsEqual(expectedLine.getPath(), actualLine.getPath());
+      } else {
+        MapPolygon expectedPolygon = (MapPolygon) expected;
+        MapPolygon actualPolygon = (MapPolygon) actual;
+        assertEquals(expectedPolygon.getFillColor(), actualPolygon.getFillColor());
+        assertEquals(expectedPolygon.getStrokeWidth(), actualPolygon.getStrokeWidth());
+        if (expectedPolygon.getStrokeWidth() > 0) {
+          assertEquals(expectedPolygon.getStrokeColor(), actualPolygon.getStrokeColor());
+        }
+        assertEquals(2, actualPolygon.getPaths().size());
+        for (int j = 0; j < 2; j++) {
+          assertPositionsEqual(expectedPolygon.getPaths().get(j), actualPolygon.getPaths().get(j));
+          assertEquals(
+              AltitudeReferenceSystem.SURFACE,
+              actualPolygon.getPaths().get(j).getAltitudeReferenceSystem());
+        }
+      }
+    }
+  }
+
+  @NonNull
+  private static MapPolyline createPolyline(int strokeColor, int strokeWidth) {
+    MapPolyline line = MOCK_MAP_FACTORIES.createMapPolyline();
+    line.setPath(createPath(AltitudeReferenceSystem.GEOID, new double[][] {{0, 0, 5}, {1, 1, 5}}));
+    line.setStrokeColor(strokeColor);
+    line.setStrokeWidth(strokeWidth);
+    return line;
+  }
+
+  @NonNull
+  private static Geopath createPath(
+      @NonNull AltitudeReferenceSystem altitudeReferenceSystem, @NonNull double[][] points) {
+    ArrayList<Geoposition> positions = new ArrayList<>();
+    for (double[] point : points) {
+      positions.add(new Geoposition(point[1], point[0], point.length > 2 ? point[2] : 0));
+    }
+    return new Geopath(positions, altitudeReferenceSystem);
+  }
+
+  private static void assertPositionsEqual(
+      @NonNull Iterable<Geoposition> expected, @NonNull Iterable<Geoposition> actual) {
+    Iterator<Geoposition> actualPositions = actual.iterator();
+    for (Geoposition position : expected) {
+      Geoposition actualPosition = actualPositions.next();
+      assertEquals(position.getLatitude(), actualPosition.getLatitude(), 0);
+      assertEquals(position.getLongitude(), actualPosition.getLongitude(), 0);
+      assertEquals(position.getAltitude(), actualPosition.getAltitude(), 0);
+    }
+    assertTrue(!actualPositions.hasNext());
+  }
+}
@@ -0,0 +1,268 @@
+// Copyright (c) Microsoft Corporation.
+// Licensed under the MIT license.
+
+package com.microsoft.maps.moduletools;
+
+import androidx.annotation.NonNull;
+import com.microsoft.maps.Geoposition;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Splits lines and polygons that cross the antimeridian into parts that each stay on one side of
+ * it, so the map draws them across the Pacific instead of around the world. Two consecutive
+ * positions whose longitudes are more than 180 degrees apart are taken to be joined across the
+ * antimeridian, as that is the shorter way between them. Where a part ends at the antimeridian, it
+ * gets a position at longitude 180 or -180, with the latitude and altitude interpolated linearly
+ * between the two positions.
+ */
+public class Antimeridian {
+
+  private Antimeridian() {}
+
+  /** Returns whether the line between the two positions crosses the antimeridian. */
+  public static boolean crosses(@NonNull Geoposition from, @NonNull Geoposition to) {
+    double delta = Math.abs(to.getLongitude() - from.getLongitude());
+    // Positions at 180 and -180 are on the same meridian.
+    return delta > 180 && delta < 360;
+  }
+
+  /**
+   * Returns the parts of the line between its crossings of the antimeridian, in order. A line that
+   * does not cross it is returned as the only part, without being copied.
+   */
+  @NonNull
+  public static List<ArrayList<Geoposition>> splitLine(@NonNull ArrayList<Geoposition> line) {
+    List<ArrayList<Geoposition>> parts = null;
+    ArrayList<Geoposition> part = null;
+    for (int i = 1; i < line.size(); i++) {
+      Geoposition from = line.get(i - 1);
+      Geoposition to = line.get(i);
+      if (crosses(from, to)) {
+        if (parts == null) {
+          parts = new ArrayList<>();
+          part = new ArrayList<>(line.subList(0, i));
+        }
+        double toLongitude = unwrap(from.getLongitude(), to.getLongitude());
+        double boundary = toLongitude > from.getLongitude() ? 180 : -180;
+        addPosition(
+            part, interpolate(from, from.getLongitude(), to, toLongitude, boundary, boundary));
+        parts.add(part);
+        part = new ArrayList<>();
+        addPosition(
+            part, interpolate(from, from.getLongitude(), to, toLongitude, boundary, -boundary));
+      }
+      if (part != null) {
+        addPosition(part, to);
+      }
+    }
+    if (parts == null) {
+      return Collections.singletonList(line);
+    }
+    parts.add(part);
+    return parts;
+  }
+
+  /**
+   * Returns the polygons that a polygon crossing the antimeridian is made of on each side of it.
+   * The first ring of the polygon and of each part is the outer ring; holes stay with the part they
+   * are in, and holes that cross the antimeridian are split too. A polygon that does not cross it,
+   * or whose outer ring goes all the way around a pole, is returned as the only part, without being
+   * copied.
+   */
+  @NonNull
+  public static List<ArrayList<ArrayList<Geoposition>>> splitPolygon(
+      @NonNull ArrayList<ArrayList<Geoposition>> rings) {
+    if (rings.isEmpty() || !crosses(rings)) {
+      return Collections.singletonList(rings);
+    }
+
+    /* Longitudes are unwrapped so each ring is continuous, crossing 180 or -180 instead of
+     * jumping. Holes are moved by whole turns to lie next to the outer ring. */
+    double[][] longitudes = new double[rings.size()][];
+    double outerCenter = 0;
+    double minLongitude = Double.POSITIVE_INFINITY;
+    double maxLongitude = Double.NEGATIVE_INFINITY;
+    for (int i = 0; i < rings.size(); i++) {
+      ArrayList<Geoposition> ring = rings.get(i);
+      double[] ringLongitudes = unwrapRing(ring);
+      if (ringLongitudes == null) {
+        return Collections.singletonList(rings);
+      }
+      double min = Double.POSITIVE_INFINITY;
+      double max = Double.NEGATIVE_INFINITY;
+      for (double longitude : ringLongitudes) {
+        min = Math.min(min, longitude);
+        max = Math.max(max, longitude);
+      }
+      if (i == 0) {
+        outerCenter = (min + max) / 2;
+      } else {
+        double shift = 360 * Math.round((outerCenter - (min + max) / 2) / 360);
+        for (int j = 0; j < ringLongitudes.length; j++) {
+          ringLongitudes[j] += shift;
+        }
+        min += shift;
+        max += shift;
+      }
+      minLongitude = Math.min(minLongitude, min);
+      maxLongitude = Math.max(maxLongitude, max);
+      longitudes[i] = ringLongitudes;
+    }
+    double boundary;
+    if (maxLongitude > 180) {
+      boundary = 180;
+    } else if (minLongitude < -180) {
+      boundary = -180;
+    } else {
+      return Collections.singletonList(rings);
+    }
+
+    List<ArrayList<ArrayList<Geoposition>>> parts = new ArrayList<>(2);
+    /* The part inside [-180, 180] keeps its longitudes; the part beyond the boundary is moved by a
+     * whole turn back into that range. */
+    addPolygonPart(parts, rings, longitudes, boundary, boundary > 0 ? -1 : 1, 0);
+    addPolygonPart(parts, rings, longitudes, boundary, boundary > 0 ? 1 : -1, -boundary * 2);
+    return parts;
+  }
+
+  private static boolean crosses(@NonNull ArrayList<ArrayList<Geoposition>> rings) {
+    for (ArrayList<Geoposition> ring : rings) {
+      for (int i = 1; i < ring.size(); i++) {
+        if (crosses(ring.get(i - 1), ring.get(i))) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  /* Returns the longitudes of the closed ring made continuous, or null if they do not come back to
+   * where they started, which means the ring goes around a pole. */
+  private static double[] unwrapRing(@NonNull ArrayList<Geoposition> ring) {
+    double[] longitudes = new double[ring.size()];
+    for (int i = 0; i < ring.size(); i++) {
+      double longitude = ring.get(i).getLongitude();
+      longitudes[i] = i == 0 ? longitude : unwrap(longitudes[i - 1], longitude);
+    }
+    if (ring.size() > 1 && Math.abs(longitudes[ring.size() - 1] - longitudes[0]) > 180) {
+      return null;
+    }
+    return longitudes;
+  }
+
+  /* Returns the longitude equal to longitude modulo 360 that is nearest to previous. */
+  private static double unwrap(double previous, double longitude) {
+    double delta = longitude - previous;
+    if (delta > 180) {
+      return longitude - 360 * Math.ceil((delta - 180) / 360);
+    }
+    if (delta < -180) {
+      return longitude + 360 * Math.ceil((-180 - delta) / 360);
+    }
+    return longitude;
+  }
+
+  /* Clips each ring to the side of the boundary given by side (-1 for west, 1 for east), and adds
+   * the clipped rings as a polygon if the outer ring is left. */
+  private static void addPolygonPart(
+      @NonNull List<ArrayList<ArrayList<Geoposition>>> parts,
+      @NonNull ArrayList<ArrayList<Geoposition>> rings,
+      @NonNull double[][] longitudes,
+      double boundary,
+      int side,
+      double shift) {
+    ArrayList<ArrayList<Geoposition>> part = new ArrayList<>(rings.size());
+    for (int i = 0; i < rings.size(); i++) {
+      ArrayList<Geoposition> ring = clipRing(rings.get(i), longitudes[i], boundary, side, shift);
+      if (ring != null) {
+        part.add(ring);
+      } else if (i == 0) {
+        return;
+      }
+    }
+    parts.add(part);
+  }
+
+  /* Sutherland-Hodgman clipping of a closed ring against one side of a meridian. A concave ring
+   * that crosses the boundary several times stays one ring, joined along the boundary by edges
+   * that enclose no area. Returns null if fewer than 3 distinct positions are left. */
+  private static ArrayList<Geoposition> clipRing(
+      @NonNull ArrayList<Geoposition> ring,
+      @NonNull double[] longitudes,
+      double boundary,
+      int side,
+      double shift) {
+    int count = ring.size() - 1;
+    ArrayList<Geoposition> clipped = new ArrayList<>(ring.size() + 2);
+    for (int i = 0; i < count; i++) {
+      int previous = i == 0 ? count - 1 : i - 1;
+      boolean isInside = (longitudes[i] - boundary) * side >= 0;
+      boolean wasInside = (longitudes[previous] - boundary) * side >= 0;
+      if (isInside != wasInside) {
+        addPosition(
+            clipped,
+            interpolate(
+                ring.get(previous),
+                longitudes[previous],
+                ring.get(i),
+                longitudes[i],
+                boundary,
+                boundary + shift));
+      }
+      if (isInside) {
+        addPosition(clipped, moveLongitude(ring.get(i), longitudes[i] + shift));
+      }
+    }
+    if (clipped.size() > 1 && isSamePosition(clipped.get(0), clipped.get(clipped.size() - 1))) {
+      clipped.remove(clipped.size() - 1);
+    }
+    if (clipped.size() < 3) {
+      return null;
+    }
+    clipped.add(clipped.get(0));
+    return clipped;
+  }
+
+  /* Returns the position where the line between from and to, at the given unwrapped longitudes,
+   * meets the boundary, with the given longitude: the boundary itself, or the same meridian on the
+   * other side of the antimeridian. */
+  @NonNull
+  private static Geoposition interpolate(
+      @NonNull Geoposition from,
+      double fromLongitude,
+      @NonNull Geoposition to,
+      double toLongitude,
+      double boundary,
+      double longitude) {
+    double t = (boundary - fromLongitude) / (toLongitude - fromLongitude);
+    return new Geoposition(
+        from.getLatitude() + t * (to.getLatitude() - from.getLatitude()),
+        longitude,
+        from.getAltitude() + t * (to.getAltitude() - from.getAltitude()));
+  }
+
+  @NonNull
+  private static Geoposition moveLongitude(@NonNull Geoposition position, double longitude) {
+    if (longitude == position.getLongitude()) {
+      return position;
+    }
+    return new Geoposition(position.getLatitude(), longitude, position.getAltitude());
+  }
+
+  /* Adds the position unless it is the same as the last one, which happens when a position lies on
+   * the boundary. */
+  private static void addPosition(
+      @NonNull ArrayList<Geoposition> positions, @NonNull Geoposition position) {
+    if (positions.isEmpty() || !isSamePosition(positions.get(positions.size() - 1), position)) {
+      positions.add(position);
+    }
+  }
+
+  private static boolean isSamePosition(@NonNull Geoposition first, @NonNull Geoposition second) {
+    return first.getLatitude() == second.getLatitude()
+        && first.getLongitude() == second.getLongitude()
+        && first.getAltitude() == second.getAltitude();
+  }
+}
@@ -0,0 +1,110 @@
+// Copyright (c) Microsoft Corporation.
+// Licensed under the MIT license.
+
+package com.microsoft.maps.moduletools;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import com.microsoft.maps.GeoboundingBox;
+import com.microsoft.maps.Geopath;
+import com.microsoft.maps.Geopoint;
+import com.microsoft.maps.Geoposition;
+import com.microsoft.maps.MapElement;
+import com.microsoft.maps.MapIcon;
+import com.microsoft.maps.MapPolygon;
+import com.microsoft.maps.MapPolyline;
+
+/**
+ * Latitude and longitude bounds that grow as positions are added. Bounds do not wrap across the
+ * antimeridian, so west is always less than or equal to east.
+ */
+public class GeoBounds {
+
+  private double mNorth = Double.NEGATIVE_INFINITY;
+  private double mSouth = Double.POSITIVE_INFINITY;
+  private double mEast = Double.NEGATIVE_INFINITY;
+  private double mWest = Double.POSITIVE_INFINITY;
+
+  public GeoBounds() {}
+
+  /** Returns true until a position has been added. */
+  public boolean isEmpty() {
+    return mNorth < mSouth;
+  }
+
+  public void extend(double latitude, double longitude) {
+    mNorth = Math.max(mNorth, latitude);
+    mSouth = Math.min(mSouth, latitude);
+    mEast = Math.max(mEast, longitude);
+    mWest = Math.min(mWest, longitude);
+  }
+
+  public void extend(@NonNull Geoposition position) {
+    extend(position.getLatitude(), position.getLongitude());
+  }
+
+  public void extend(@NonNull GeoBounds bounds) {
+    if (!bounds.isEmpty()) {
+      extend(bounds.mNorth, bounds.mWest);
+      extend(bounds.mSouth, bounds.mEast);
+    }
+  }
+
+  /** Extends the bounds by the location of an icon or the paths of a polyline or polygon. */
+  public void extend(@NonNull MapElement element) {
+    if (element instanceof MapIcon) {
+      Geopoint location = ((MapIcon) element).getLocation();
+      if (location != null) {
+        extend(location.getPosition());
+      }
+    } else if (element instanceof MapPolyline) {
+      extend(((MapPolyline) element).getPath());
+    } else if (element instanceof MapPolygon) {
+      for (Geopath path : ((MapPolygon) element).getPaths()) {
+        extend(path);
+      }
+    }
+  }
+
+  private void extend(@Nullable Geopath path) {
+    if (path != null) {
+      for (Geoposition position : path) {
+        extend(position);
+      }
+    }
+  }
+
+  public double getNorth() {
+    return mNorth;
+  }
+
+  public double getSouth() {
+    return mSouth;
+  }
+
+  public double getEast() {
+    return mEast;
+  }
+
+  public double getWest() {
+    return mWest;
+  }
+
+  /** Returns the center of the bounds, or null if the bounds are empty. */
+  @Nullable
+  public Geoposition getCenter() {
+    if (isEmpty()) {
+      return null;
+    }
+    return new Geoposition((mNorth + mSouth) / 2, (mEast + mWest) / 2);
+  }
+
+  /** Returns the bounds as a GeoboundingBox, or null if the bounds are empty. */
+  @Nullable
+  public GeoboundingBox toGeoboundingBox() {
+    if (isEmpty()) {
+      return null;
+    }
+    return new GeoboundingBox(new Geoposition(mNorth, mWest), new Geoposition(mSouth, mEast));
+  }
+}
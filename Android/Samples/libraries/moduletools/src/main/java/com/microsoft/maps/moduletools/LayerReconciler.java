@@ -0,0 +1,358 @@
+// Copyright (c) Microsoft Corporation.
+// Licensed under the MIT license.
+
+package com.microsoft.maps.moduletools;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import com.microsoft.maps.MapElement;
+import com.microsoft.maps.MapElementLayer;
+import com.microsoft.maps.MapIcon;
+import com.microsoft.maps.MapPolygon;
+import com.microsoft.maps.MapPolyline;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Helper used by the layer updaters to keep the elements of a layer in step with successive
+ * versions of a document, touching only the features that changed.
+ *
+ * <p>An update starts with beginUpdate(). The updater then asks isUnchanged() for the hash of the
+ * source text of each feature of the new version: a feature of the previous version with the same
+ * hash is unchanged, and keeps its elements without the feature being parsed again. The updater
+ * parses the other features, and calls cancelUpdate() if that fails, which leaves the layer as it
+ * was. Then, in document order, it calls reuse() for each unchanged feature and put() for each
+ * parsed one. If a feature of the previous version has the same id as a parsed one, its elements
+ * are updated in place from the new ones; otherwise the new elements are added to the layer.
+ * endUpdate() removes the elements of the features that are gone.
+ *
+ * @param <T> data the updater keeps with each feature, such as the GeoJsonFeature it was parsed as
+ */
+public class LayerReconciler<T> {
+
+  private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+  private static final long FNV_PRIME = 0x100000001b3L;
+
+  private final MapElementLayer mLayer;
+  /* Features of the current version, in document order. */
+  private ArrayList<Feature<T>> mFeatures = new ArrayList<>();
+  /* Features of the previous version during an update. */
+  private ArrayList<Feature<T>> mPreviousFeatures;
+  /* Features of the previous version not matched yet during an update, by content hash and by id.
+   * A feature is in both maps and marked as matched once either finds it. */
+  private HashMap<Long, ArrayDeque<Feature<T>>> mPreviousByHash;
+  private HashMap<String, ArrayDeque<Feature<T>>> mPreviousById;
+  /* Features of the previous version claimed by isUnchanged, by content hash, in the order reuse
+   * takes them. They are marked as matched, so put() does not update them by id. */
+  private HashMap<Long, ArrayDeque<Feature<T>>> mClaimedByHash;
+  private int mUnchangedCount;
+  private int mUpdatedCount;
+  private int mAddedCount;
+  private int mRemovedCount;
+
+  /** A feature of the document, with the elements created from it. */
+  public static final class Feature<T> {
+    private final String mId;
+    private final long mContentHash;
+    private final List<MapElement> mElements;
+    private final T mData;
+    private boolean mIsMatched;
+
+    Feature(
+        @Nullable String id,
+        long contentHash,
+        @NonNull List<MapElement> elements,
+        @Nullable T data) {
+      mId = id;
+      mContentHash = contentHash;
+      mElements = Collections.unmodifiableList(elements);
+      mData = data;
+    }
+
+    /** The id of the feature, or null if it has none. */
+    @Nullable
+    public String getId() {
+      return mId;
+    }
+
+    /** The elements of the feature, which are in the layer. */
+    @NonNull
+    public List<MapElement> getElements() {
+      return mElements;
+    }
+
+    @Nullable
+    public T getData() {
+      return mData;
+    }
+  }
+
+  public LayerReconciler(@NonNull MapElementLayer layer) {
+    if (layer == null) {
+      throw new IllegalArgumentException("Layer cannot be null.");
+    }
+    mLayer = layer;
+  }
+
+  /** Starts matching a new version of the document against the current one. */
+  public void beginUpdate() {
+    if (mPreviousFeatures != null) {
+      throw new IllegalStateException("An update is in progress already.");
+    }
+    mPreviousFeatures = mFeatures;
+    mPreviousByHash = new HashMap<>();
+    mPreviousById = new HashMap<>();
+    mClaimedByHash = new HashMap<>();
+    for (Feature<T> feature : mPreviousFeatures) {
+      feature.mIsMatched = false;
+      addToQueue(mPreviousByHash, feature.mContentHash, feature);
+      if (feature.mId != null) {
+        addToQueue(mPreviousById, feature.mId, feature);
+      }
+    }
+    mFeatures = new ArrayList<>(mPreviousFeatures.size());
+    mUnchangedCount = 0;
+    mUpdatedCount = 0;
+    mAddedCount = 0;
+    mRemovedCount = 0;
+  }
+
+  /**
+   * Returns true if a feature of the previous version had source text with the given hash, and
+   * claims it for a reuse() call with the same hash. A claimed feature is not updated by put(),
+   * even if it has the same id. Otherwise the feature is new or changed, and must be parsed and
+   * put().
+   */
+  public boolean isUnchanged(long contentHash) {
+    verifyUpdating();
+    Feature<T> previous = poll(mPreviousByHash, contentHash);
+    if (previous == null) {
+      return false;
+    }
+    addToQueue(mClaimedByHash, contentHash, previous);
+    return true;
+  }
+
+  /** Keeps the unchanged feature of the previous version that isUnchanged() claimed. */
+  @NonNull
+  public Feature<T> reuse(long contentHash) {
+    verifyUpdating();
+    ArrayDeque<Feature<T>> claimed = mClaimedByHash.get(contentHash);
+    Feature<T> previous = claimed == null ? null : claimed.poll();
+    if (previous == null) {
+      throw new IllegalStateException("No unchanged feature has the hash " + contentHash + ".");
+    }
+    mFeatures.add(previous);
+    mUnchangedCount++;
+    return previous;
+  }
+
+  /**
+   * Adds a new or changed feature with the elements parsed from it, which are not in any layer. If
+   * a feature of the previous version has the same id, and its elements are of the same types as
+   * the new ones, the previous elements are updated in place with the geometry and style of the new
+   * ones, which are discarded. Otherwise the previous elements of the id are removed from the layer
+   * and the new ones are added, which counts as a removed and an added feature.
+   *
+   * @return the feature, holding the elements that are in the layer
+   */
+  @NonNull
+  public Feature<T> put(
+      @Nullable String id, long contentHash, @NonNull List<MapElement> elements, @Nullable T data) {
+    verifyUpdating();
+    Feature<T> previous = id == null ? null : poll(mPreviousById, id);
+    List<MapElement> layerElements = elements;
+    if (previous != null && copyStates(elements, previous.mElements)) {
+      layerElements = previous.mElements;
+      mUpdatedCount++;
+    } else {
+      if (previous != null) {
+        removeFromLayer(previous);
+        mRemovedCount++;
+      }
+      for (MapElement element : elements) {
+        mLayer.getElements().add(element);
+      }
+      mAddedCount++;
+    }
+    Feature<T> feature = new Feature<>(id, contentHash, new ArrayList<>(layerElements), data);
+    mFeatures.add(feature);
+    return feature;
+  }
+
+  /**
+   * Removes the elements of the features of the previous version that were neither reused nor
+   * updated, and completes the update.
+   */
+  @NonNull
+  public LayerUpdateResult endUpdate() {
+    verifyUpdating();
+    for (ArrayDeque<Feature<T>> queue : mPreviousByHash.values()) {
+      for (Feature<T> feature : queue) {
+        if (!feature.mIsMatched) {
+          feature.mIsMatched = true;
+          removeFromLayer(feature);
+          mRemovedCount++;
+        }
+      }
+    }
+    // Features claimed by isUnchanged() but never reused are gone as well.
+    for (ArrayDeque<Feature<T>> queue : mClaimedByHash.values()) {
+      for (Feature<T> feature : queue) {
+        removeFromLayer(feature);
+        mRemovedCount++;
+      }
+    }
+    clearUpdate();
+    return new LayerUpdateResult(mAddedCount, mUpdatedCount, mRemovedCount, mUnchangedCount);
+  }
+
+  /**
+   * Abandons an update before reuse() or put() was called, keeping the features of the previous
+   * version.
+   */
+  public void cancelUpdate() {
+    verifyUpdating();
+    if (!mFeatures.isEmpty()) {
+      throw new IllegalStateException("The layer was changed by this update already.");
+    }
+    mFeatures = mPreviousFeatures;
+    clearUpdate();
+  }
+
+  /** The features of the current version, in document order. */
+  @NonNull
+  public List<Feature<T>> getFeatures() {
+    return Collections.unmodifiableList(mFeatures);
+  }
+
+  /** Returns the 64-bit FNV-1a hash of the characters of text from start to end. */
+  public static long hash(@NonNull CharSequence text, int start, int end) {
+    long hash = FNV_OFFSET_BASIS;
+    for (int i = start; i < end; i++) {
+      char c = text.charAt(i);
+      hash = (hash ^ (c & 0xFF)) * FNV_PRIME;
+      hash = (hash ^ (c >>> 8)) * FNV_PRIME;
+    }
+    return hash;
+  }
+
+  /** Combines two hashes, such as that of a feature and that of the shared styles it refers to. */
+  public static long combineHashes(long first, long second) {
+    return (first ^ second) * FNV_PRIME + second;
+  }
+
+  private void clearUpdate() {
+    mPreviousFeatures = null;
+    mPreviousByHash = null;
+    mPreviousById = null;
+    mClaimedByHash = null;
+  }
+
+  private void verifyUpdating() {
+    if (mPreviousFeatures == null) {
+      throw new IllegalStateException("beginUpdate() must be called first.");
+    }
+  }
+
+  private void removeFromLayer(@NonNull Feature<T> feature) {
+    for (MapElement element : feature.mElements) {
+      mLayer.getElements().remove(element);
+    }
+  }
+
+  private static <K, T> void addToQueue(
+      @NonNull HashMap<K, ArrayDeque<Feature<T>>> map,
+      @NonNull K key,
+      @NonNull Feature<T> feature) {
+    ArrayDeque<Feature<T>> queue = map.get(key);
+    if (queue == null) {
+      queue = new ArrayDeque<>(1);
+      map.put(key, queue);
+    }
+    queue.add(feature);
+  }
+
+  /* Returns the first feature of the key not matched yet, and marks it as matched. */
+  @Nullable
+  private static <K, T> Feature<T> poll(
+      @NonNull HashMap<K, ArrayDeque<Feature<T>>> map, @NonNull K key) {
+    ArrayDeque<Feature<T>> queue = map.get(key);
+    if (queue == null) {
+      return null;
+    }
+    Feature<T> feature;
+    while ((feature = queue.poll()) != null) {
+      if (!feature.mIsMatched) {
+        feature.mIsMatched = true;
+        return feature;
+      }
+    }
+    return null;
+  }
+
+  /* Copies the geometry and style of each source element to the target element at the same
+   * position. Returns false without copying anything if the lists differ in size or types. */
+  private static boolean copyStates(
+      @NonNull List<MapElement> sources, @NonNull List<MapElement> targets) {
+    if (sources.size() != targets.size()) {
+      return false;
+    }
+    for (int i = 0; i < sources.size(); i++) {
+      if (getType(sources.get(i)) != getType(targets.get(i)) || getType(sources.get(i)) == null) {
+        return false;
+      }
+    }
+    for (int i = 0; i < sources.size(); i++) {
+      copyState(sources.get(i), targets.get(i));
+    }
+    return true;
+  }
+
+  private static void copyState(@NonNull MapElement source, @NonNull MapElement target) {
+    if (source instanceof MapIcon) {
+      MapIcon sourceIcon = (MapIcon) source;
+      MapIcon targetIcon = (MapIcon) target;
+      targetIcon.setLocation(sourceIcon.getLocation());
+      if (sourceIcon.getTitle() != null || targetIcon.getTitle() != null) {
+        targetIcon.setTitle(sourceIcon.getTitle() == null ? "" : sourceIcon.getTitle());
+      }
+      if (sourceIcon.getImage() != null) {
+        targetIcon.setImage(sourceIcon.getImage());
+      }
+    } else if (source instanceof MapPolyline) {
+      MapPolyline sourceLine = (MapPolyline) source;
+      MapPolyline targetLine = (MapPolyline) target;
+      targetLine.setPath(sourceLine.getPath());
+      targetLine.setStrokeColor(sourceLine.getStrokeColor());
+      targetLine.setStrokeWidth(sourceLine.getStrokeWidth());
+      targetLine.setStrokeDashed(sourceLine.isStrokeDashed());
+    } else {
+      MapPolygon sourcePolygon = (MapPolygon) source;
+      MapPolygon targetPolygon = (MapPolygon) target;
+      targetPolygon.setPaths(sourcePolygon.getPaths());
+      targetPolygon.setFillColor(sourcePolygon.getFillColor());
+      targetPolygon.setStrokeColor(sourcePolygon.getStrokeColor());
+      targetPolygon.setStrokeWidth(sourcePolygon.getStrokeWidth());
+      targetPolygon.setStrokeDashed(sourcePolygon.isStrokeDashed());
+    }
+    target.setVisible(source.isVisible());
+  }
+
+  @Nullable
+  private static Class<?> getType(@NonNull MapElement element) {
+    if (element instanceof MapIcon) {
+      return MapIcon.class;
+    }
+    if (element instanceof MapPolyline) {
+      return MapPolyline.class;
+    }
+    if (element instanceof MapPolygon) {
+      return MapPolygon.class;
+    }
+    return null;
+  }
+}
@@ -0,0 +1,48 @@
+// Copyright (c) Microsoft Corporation.
+// Licensed under the MIT license.
+
+package com.microsoft.maps.moduletools;
+
+/** Counts of the features a layer update added, updated, removed and left unchanged. */
+public class LayerUpdateResult {
+
+  private final int mAddedCount;
+  private final int mUpdatedCount;
+  private final int mRemovedCount;
+  private final int mUnchangedCount;
+
+  LayerUpdateResult(int addedCount, int updatedCount, int removedCount, int unchangedCount) {
+    mAddedCount = addedCount;
+    mUpdatedCount = updatedCount;
+    mRemovedCount = removedCount;
+    mUnchangedCount = unchangedCount;
+  }
+
+  /**
+   * Features whose elements were added to the layer: new features, and changed features whose
+   * elements could not be updated in place because their geometry types changed.
+   */
+  public int getAddedCount() {
+    return mAddedCount;
+  }
+
+  /** Changed features whose elements were updated in place. */
+  public int getUpdatedCount() {
+    return mUpdatedCount;
+  }
+
+  /** Features of the previous version whose elements were removed from the layer. */
+  public int getRemovedCount() {
+    return mRemovedCount;
+  }
+
+  /** Features whose source text did not change, and whose elements were kept as they were. */
+  public int getUnchangedCount() {
+    return mUnchangedCount;
+  }
+
+  /** Returns true if the update changed any element of the layer. */
+  public boolean hasChanges() {
+    return mAddedCount > 0 || mUpdatedCount > 0 || mRemovedCount > 0;
+  }
+}
@@ -0,0 +1,434 @@
+// Copyright (c) Microsoft Corporation.
+// Licensed under the MIT license.
+
+package com.microsoft.maps.moduletools;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import com.microsoft.maps.GeoboundingBox;
+import com.microsoft.maps.Geopoint;
+import com.microsoft.maps.Geoposition;
+import com.microsoft.maps.MapElement;
+import com.microsoft.maps.MapElementCollection;
+import com.microsoft.maps.MapElementLayer;
+import com.microsoft.maps.MapIcon;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+/**
+ * Groups the icons created by a parser into clusters on a screen-space grid, precomputed for every
+ * zoom level. Only the icons for the current zoom level are added to the layer: an icon standing
+ * alone in its cell is shown as is, and a cell holding several icons is shown as one cluster icon
+ * titled with the number of icons it holds. Set it on ParseOptions before parsing, and call
+ * setCamera(double, GeoboundingBox) when the camera of the map changes. With a viewport, only the
+ * clusters inside it, plus a margin of VIEWPORT_MARGIN pixels, are added to the layer, so the
+ * number of icons in the layer is bounded by the size of the viewport rather than by the number of
+ * icons.
+ */
+public class MapIconClusterer {
+
+  /** Decides which of the icons given to setIcons are clustered. */
+  public interface IconFilter {
+    boolean isIncluded(@NonNull MapIcon icon);
+  }
+
+  public static final int MIN_ZOOM_LEVEL = 1;
+  public static final int MAX_ZOOM_LEVEL = 20;
+  /** Distance in pixels past each edge of the viewport within which clusters are shown. */
+  public static final int VIEWPORT_MARGIN = 256;
+
+  private static final int TILE_SIZE = 256;
+  private static final int DEFAULT_GRID_SIZE = 64;
+  /* Scale of the x coordinates in the keys of Level.mOrderByX, whose low bits hold the index of
+   * the cluster. */
+  private static final long ORDER_X_SCALE = 1L << 31;
+
+  private final int mGridSize;
+  private int mZoomLevel = MIN_ZOOM_LEVEL;
+  /* West, north, east and south edges of the viewport in normalized Web Mercator coordinates, with
+   * east greater than 1 when the viewport crosses the antimeridian, or null to show all clusters. */
+  private double[] mViewport;
+  private IconFilter mIconFilter;
+  private MapElementLayer mLayer;
+  private MapFactories mFactory;
+  private List<MapIcon> mIcons = Collections.emptyList();
+  /* Clusters for each zoom level, indexed by zoom level. Levels without any merge share the
+   * clusters of the level above. */
+  private final Level[] mLevels = new Level[MAX_ZOOM_LEVEL + 1];
+  /* The icons in the layer, with the number of clustered icons each represents. */
+  private IdentityHashMap<MapIcon, Integer> mShownIcons = new IdentityHashMap<>();
+  private ArrayList<MapIcon> mShownIconsInOrder = new ArrayList<>();
+
+  public MapIconClusterer() {
+    this(DEFAULT_GRID_SIZE);
+  }
+
+  /**
+   * Creates a clusterer whose grid cells are gridSize pixels wide at every zoom level. Larger cells
+   * mean fewer, larger clusters.
+   */
+  public MapIconClusterer(int gridSize) {
+    if (gridSize < 1) {
+      throw new IllegalArgumentException("Grid size must be at least 1. Instead saw: " + gridSize);
+    }
+    mGridSize = gridSize;
+  }
+
+  /**
+   * Called by the parsers with the icons they created, instead of adding the icons to the layer.
+   * Replaces any icons clustered before, and adds the icons for the current zoom level to the
+   * layer.
+   */
+  public void setIcons(
+      @NonNull MapElementLayer layer, @NonNull List<MapIcon> icons, @NonNull MapFactories factory) {
+    hideAll();
+    mLayer = layer;
+    mFactory = factory;
+    mIcons = new ArrayList<>(icons);
+    buildLevels();
+    show(mZoomLevel);
+  }
+
+  /**
+   * Shows the clusters for the given zoom level. Zoom levels are rounded down and clamped to the
+   * range from MIN_ZOOM_LEVEL to MAX_ZOOM_LEVEL. Icons shown at both the old and the new zoom level
+   * stay in the layer.
+   */
+  public void setZoomLevel(double zoomLevel) {
+    update(toLevel(zoomLevel), mViewport);
+  }
+
+  public int getZoomLevel() {
+    return mZoomLevel;
+  }
+
+  /**
+   * Shows only the clusters inside the viewport, plus a margin of VIEWPORT_MARGIN pixels. A west
+   * longitude greater than the east longitude means the viewport crosses the antimeridian. Pass
+   * null to show the clusters of the whole world, which is the default.
+   */
+  public void setViewport(@Nullable GeoboundingBox viewport) {
+    update(mZoomLevel, toWebMercator(viewport));
+  }
+
+  /**
+   * Sets the zoom level and the viewport at once, so the layer is only updated once when the camera
+   * of the map changes. See setZoomLevel(double) and setViewport(GeoboundingBox).
+   */
+  public void setCamera(double zoomLevel, @Nullable GeoboundingBox viewport) {
+    update(toLevel(zoomLevel), toWebMercator(viewport));
+  }
+
+  /**
+   * Sets which icons are clustered. Icons the filter excludes are neither shown nor counted in
+   * clusters. The filter applies from the next call to setIcons or refresh(). Pass null to cluster
+   * all icons, which is the default.
+   */
+  public void setIconFilter(@Nullable IconFilter iconFilter) {
+    mIconFilter = iconFilter;
+  }
+
+  /**
+   * Clusters the icons again, for example after the icon filter changed its answers, and shows the
+   * clusters for the current zoom level and viewport.
+   */
+  public void refresh() {
+    if (mLayer != null) {
+      hideAll();
+      buildLevels();
+      show(mZoomLevel);
+    }
+  }
+
+  /** Returns the icons given to setIcons, including those the icon filter excludes. */
+  @NonNull
+  public List<MapIcon> getIcons() {
+    return Collections.unmodifiableList(mIcons);
+  }
+
+  /**
+   * Returns the icons in the layer for the current zoom level, including cluster icons, in the
+   * order of the clustered icons.
+   */
+  @NonNull
+  public List<MapIcon> getShownIcons() {
+    return Collections.unmodifiableList(mShownIconsInOrder);
+  }
+
+  /** Returns the number of clustered icons represented by an icon shown by this clusterer. */
+  public int getClusterSize(@NonNull MapIcon icon) {
+    Integer size = mShownIcons.get(icon);
+    return size == null ? 0 : size;
+  }
+
+  private void update(int level, @Nullable double[] viewport) {
+    if (level == mZoomLevel && Arrays.equals(viewport, mViewport)) {
+      return;
+    }
+    mZoomLevel = level;
+    mViewport = viewport;
+    if (mLayer != null) {
+      show(level);
+    }
+  }
+
+  private static int toLevel(double zoomLevel) {
+    int level = (int) Math.floor(zoomLevel);
+    return Math.max(MIN_ZOOM_LEVEL, Math.min(MAX_ZOOM_LEVEL, level));
+  }
+
+  @Nullable
+  private static double[] toWebMercator(@Nullable GeoboundingBox viewport) {
+    if (viewport == null) {
+      return null;
+    }
+    Geoposition northWest = viewport.getNorthWestCorner();
+    Geoposition southEast = viewport.getSouthEastCorner();
+    double west = WebMercator.toX(northWest.getLongitude());
+    double east = WebMercator.toX(southEast.getLongitude());
+    if (east < west) {
+      east += 1;
+    }
+    return new double[] {
+      west, WebMercator.toY(northWest.getLatitude()), east, WebMercator.toY(southEast.getLatitude())
+    };
+  }
+
+  private void buildLevels() {
+    int pointCount = mIcons.size();
+    Level points = new Level(pointCount);
+    for (int i = 0; i < pointCount; i++) {
+      if (mIconFilter != null && !mIconFilter.isIncluded(mIcons.get(i))) {
+        continue;
+      }
+      Geoposition position = mIcons.get(i).getLocation().getPosition();
+      points.add(
+          WebMercator.toX(position.getLongitude()), WebMercator.toY(position.getLatitude()), 1, i);
+    }
+    Level above = points;
+    for (int zoom = MAX_ZOOM_LEVEL; zoom >= MIN_ZOOM_LEVEL; zoom--) {
+      Level level = merge(above, (double) mGridSize / (TILE_SIZE * Math.pow(2, zoom)));
+      if (level.mCount == above.mCount) {
+        level = above;
+      } else {
+        level.trim();
+      }
+      mLevels[zoom] = level;
+      above = level;
+    }
+  }
+
+  /* Greedily merges the clusters of the level above that fall into the same grid cell. Each new
+   * cluster is positioned at the weighted centroid of the clusters it merges. */
+  @NonNull
+  private static Level merge(@NonNull Level above, double cellSize) {
+    Level level = new Level(above.mCount);
+    HashMap<Long, Integer> cells = new HashMap<>();
+    long cellsPerRow = (long) Math.ceil(1 / cellSize) + 1;
+    for (int i = 0; i < above.mCount; i++) {
+      long cell =
+          (long) Math.floor(above.mY[i] / cellSize) * cellsPerRow
+              + (long) Math.floor(above.mX[i] / cellSize);
+      Integer cluster = cells.get(cell);
+      if (cluster == null) {
+        cells.put(cell, level.mCount);
+        level.add(above.mX[i], above.mY[i], above.mSizes[i], above.mIcons[i]);
+      } else {
+        level.merge(cluster, above.mX[i], above.mY[i], above.mSizes[i]);
+      }
+    }
+    return level;
+  }
+
+  private void show(int zoom) {
+    Level level = mLevels[zoom];
+    IdentityHashMap<MapIcon, Integer> shown = new IdentityHashMap<>();
+    ArrayList<MapIcon> shownInOrder = new ArrayList<>();
+    for (int i : getClustersInViewport(level, zoom)) {
+      MapIcon icon = level.getIcon(i, this);
+      shown.put(icon, level.mSizes[i]);
+      shownInOrder.add(icon);
+    }
+    MapElementCollection elements = mLayer.getElements();
+    for (MapIcon icon : mShownIconsInOrder) {
+      if (!shown.containsKey(icon)) {
+        elements.remove(icon);
+      }
+    }
+    for (MapIcon icon : shownInOrder) {
+      if (!mShownIcons.containsKey(icon)) {
+        elements.add(icon);
+      }
+    }
+    mShownIcons = shown;
+    mShownIconsInOrder = shownInOrder;
+  }
+
+  /* Returns the clusters of the level inside the viewport and its margin, in the order of the
+   * clustered icons. */
+  @NonNull
+  private int[] getClustersInViewport(@NonNull Level level, int zoom) {
+    if (mViewport == null) {
+      int[] clusters = new int[level.mCount];
+      for (int i = 0; i < clusters.length; i++) {
+        clusters[i] = i;
+      }
+      return clusters;
+    }
+    double margin = (double) VIEWPORT_MARGIN / (TILE_SIZE * Math.pow(2, zoom));
+    double minX = mViewport[0] - margin;
+    double maxX = mViewport[2] + margin;
+    double minY = mViewport[1] - margin;
+    double maxY = mViewport[3] + margin;
+    ArrayList<Integer> clusters = new ArrayList<>();
+    if (maxX - minX >= 1) {
+      level.collect(0, 1, minY, maxY, clusters);
+    } else {
+      double shift = Math.floor(minX);
+      minX -= shift;
+      maxX -= shift;
+      level.collect(minX, Math.min(maxX, 1), minY, maxY, clusters);
+      if (maxX > 1) {
+        level.collect(0, maxX - 1, minY, maxY, clusters);
+      }
+    }
+    int[] sorted = new int[clusters.size()];
+    for (int i = 0; i < sorted.length; i++) {
+      sorted[i] = clusters.get(i);
+    }
+    Arrays.sort(sorted);
+    return sorted;
+  }
+
+  private void hideAll() {
+    if (mLayer != null) {
+      MapElementCollection elements = mLayer.getElements();
+      for (MapElement icon : mShownIconsInOrder) {
+        elements.remove(icon);
+      }
+    }
+    mShownIcons = new IdentityHashMap<>();
+    mShownIconsInOrder = new ArrayList<>();
+    for (int i = 0; i < mLevels.length; i++) {
+      mLevels[i] = null;
+    }
+  }
+
+  @NonNull
+  private MapIcon createClusterIcon(double x, double y, int size) {
+    MapIcon icon = mFactory.createMapIcon();
+    icon.setLocation(
+        new Geopoint(new Geoposition(WebMercator.toLatitude(y), WebMercator.toLongitude(x))));
+    icon.setTitle(Integer.toString(size));
+    return icon;
+  }
+
+  /* Clusters of one zoom level, in parallel arrays. Positions are in normalized Web Mercator
+   * coordinates, from 0 to 1 in both directions. */
+  private static class Level {
+
+    private double[] mX;
+    private double[] mY;
+    private int[] mSizes;
+    /* The clustered icon for clusters of size 1, otherwise -1. */
+    private int[] mIcons;
+    private MapIcon[] mClusterIcons;
+    private int mCount;
+    /* The clusters sorted by x, as the quantized x shifted above the index of the cluster, built the
+     * first time a viewport is queried. */
+    private long[] mOrderByX;
+
+    Level(int capacity) {
+      mX = new double[capacity];
+      mY = new double[capacity];
+      mSizes = new int[capacity];
+      mIcons = new int[capacity];
+    }
+
+    void add(double x, double y, int size, int icon) {
+      mX[mCount] = x;
+      mY[mCount] = y;
+      mSizes[mCount] = size;
+      mIcons[mCount] = size == 1 ? icon : -1;
+      mCount++;
+    }
+
+    void trim() {
+      mX = Arrays.copyOf(mX, mCount);
+      mY = Arrays.copyOf(mY, mCount);
+      mSizes = Arrays.copyOf(mSizes, mCount);
+      mIcons = Arrays.copyOf(mIcons, mCount);
+    }
+
+    void merge(int cluster, double x, double y, int size) {
+      int total = mSizes[cluster] + size;
+      mX[cluster] = (mX[cluster] * mSizes[cluster] + x * size) / total;
+      mY[cluster] = (mY[cluster] * mSizes[cluster] + y * size) / total;
+      mSizes[cluster] = total;
+      mIcons[cluster] = -1;
+    }
+
+    /* Adds the clusters whose x is from minX to maxX, within the quantization of mOrderByX, and
+     * whose y is from minY to maxY. */
+    void collect(
+        double minX, double maxX, double minY, double maxY, @NonNull List<Integer> clusters) {
+      if (mOrderByX == null) {
+        mOrderByX = new long[mCount];
+        for (int i = 0; i < mCount; i++) {
+          mOrderByX[i] = quantizeX(mX[i]) << 31 | i;
+        }
+        Arrays.sort(mOrderByX);
+      }
+      long end = (quantizeX(maxX) + 1) << 31;
+      for (int i = lowerBound(mOrderByX, quantizeX(minX) << 31);
+          i < mOrderByX.length && mOrderByX[i] < end;
+          i++) {
+        int cluster = (int) (mOrderByX[i] & Integer.MAX_VALUE);
+        if (mY[cluster] >= minY && mY[cluster] <= maxY) {
+          clusters.add(cluster);
+        }
+      }
+    }
+
+    private static long quantizeX(double x) {
+      return (long) Math.floor(Math.max(0, Math.min(1, x)) * ORDER_X_SCALE);
+    }
+
+    /* Returns the index of the first key that is not less than the given key. */
+    private static int lowerBound(@NonNull long[] keys, long key) {
+      int low = 0;
+      int high = keys.length;
+      while (low < high) {
+        int middle = (low + high) >>> 1;
+        if (keys[middle] < key) {
+          low = middle + 1;
+        } else {
+          high = middle;
+        }
+      }
+      return low;
+    }
+
+    /* Returns the icon shown for the cluster, creating cluster icons the first time they are
+     * needed. */
+    @NonNull
+    MapIcon getIcon(int cluster, @NonNull MapIconClusterer clusterer) {
+      if (mIcons[cluster] != -1) {
+        return clusterer.mIcons.get(mIcons[cluster]);
+      }
+      if (mClusterIcons == null) {
+        mClusterIcons = new MapIcon[mCount];
+      }
+      MapIcon icon = mClusterIcons[cluster];
+      if (icon == null) {
+        icon = clusterer.createClusterIcon(mX[cluster], mY[cluster], mSizes[cluster]);
+        mClusterIcons[cluster] = icon;
+      }
+      return icon;
+    }
+  }
+}
@@ -0,0 +1,326 @@
+// Copyright (c) Microsoft Corporation.
+// Licensed under the MIT license.
+
+package com.microsoft.maps.moduletools;
+
+import androidx.annotation.NonNull;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * UTF-8 text of a memory-mapped file, read as a CharSequence. The file is mapped read-only, so its
+ * contents stay outside the Java heap and are paged in by the operating system as they are read.
+ * Only the parts of the text that are extracted with subSequence or toString are copied to the
+ * heap.
+ *
+ * <p>A byte order mark at the start is skipped, and invalid UTF-8 bytes read as U+FFFD. Reading is
+ * fastest in order, and text that is only ASCII maps each char to one byte. Other text keeps a
+ * sparse index of char positions, so random access decodes at most a small block. Instances can be
+ * read from several threads at once. The file must not change while it is mapped, and files of 2 GB
+ * or more cannot be mapped.
+ */
+public final class MappedText implements CharSequence {
+
+  /* Chars between entries of the position index used for text that is not only ASCII. */
+  private static final int INDEX_STEP = 1024;
+  private static final char REPLACEMENT_CHARACTER = '\uFFFD';
+
+  private final ByteBuffer mBuffer;
+  /* Byte offset of the first char, after any byte order mark. */
+  private final int mStart;
+  private final int mLength;
+  /* Char index and byte offset of the last code point that starts at or before each multiple of
+   * INDEX_STEP, or null if the text is only ASCII. */
+  private final int[] mIndexChars;
+  private final int[] mIndexBytes;
+  /* Last position decoded by each thread, so reading in order does not go back to an index
+   * entry. */
+  private final ThreadLocal<Cursor> mCursor =
+      new ThreadLocal<Cursor>() {
+        @Override
+        protected Cursor initialValue() {
+          Cursor cursor = new Cursor();
+          cursor.mBytes = mStart;
+          return cursor;
+        }
+      };
+
+  private MappedText(@NonNull ByteBuffer buffer) {
+    mBuffer = buffer;
+    int limit = buffer.limit();
+    mStart =
+        limit >= 3
+                && (buffer.get(0) & 0xFF) == 0xEF
+                && (buffer.get(1) & 0xFF) == 0xBB
+                && (buffer.get(2) & 0xFF) == 0xBF
+            ? 3
+            : 0;
+    int firstNonAscii = mStart;
+    while (firstNonAscii < limit && buffer.get(firstNonAscii) >= 0) {
+      firstNonAscii++;
+    }
+    if (firstNonAscii == limit) {
+      mLength = limit - mStart;
+      mIndexChars = null;
+      mIndexBytes = null;
+      return;
+    }
+
+    int[] indexChars = new int[(limit - mStart) / INDEX_STEP + 1];
+    int[] indexBytes = new int[indexChars.length];
+    int entryCount = 0;
+    int chars = 0;
+    int bytes = mStart;
+    while (bytes < limit) {
+      int decoded = decode(bytes);
+      int next = chars + Character.charCount(codePointOf(decoded));
+      while (entryCount * INDEX_STEP < next) {
+        indexChars[entryCount] = chars;
+        indexBytes[entryCount] = bytes;
+        entryCount++;
+      }
+      chars = next;
+      bytes += byteCount(decoded);
+    }
+    mLength = chars;
+    mIndexChars = indexChars;
+    mIndexBytes = indexBytes;
+  }
+
+  /**
+   * Maps the whole file read-only.
+   *
+   * @param file UTF-8 text file to map
+   * @return the text of the file
+   * @throws IOException
+   */
+  @NonNull
+  public static MappedText map(@NonNull File file) throws IOException {
+    if (file == null) {
+      throw new IllegalArgumentException("File cannot be null.");
+    }
+    try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        FileChannel channel = randomAccessFile.getChannel()) {
+      // The mapping stays valid after the channel is closed.
+      return map(channel);
+    }
+  }
+
+  /**
+   * Maps the whole file of the channel read-only. The channel can be closed once this returns.
+   *
+   * @param channel channel of a UTF-8 text file, opened for reading
+   * @return the text of the file
+   * @throws IOException
+   */
+  @NonNull
+  public static MappedText map(@NonNull FileChannel channel) throws IOException {
+    if (channel == null) {
+      throw new IllegalArgumentException("FileChannel cannot be null.");
+    }
+    long size = channel.size();
+    if (size > Integer.MAX_VALUE) {
+      throw new IOException("File is too large to map: " + size + " bytes.");
+    }
+    return new MappedText(channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+  }
+
+  /** Returns a stream of the raw bytes of the file, including any byte order mark. */
+  @NonNull
+  public InputStream newInputStream() {
+    ByteBuffer buffer = mBuffer.duplicate();
+    buffer.position(0);
+    return new InputStream() {
+      @Override
+      public int read() {
+        return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+      }
+
+      @Override
+      public int read(@NonNull byte[] bytes, int offset, int length) {
+        if (length == 0) {
+          return 0;
+        }
+        if (!buffer.hasRemaining()) {
+          return -1;
+        }
+        int count = Math.min(length, buffer.remaining());
+        buffer.get(bytes, offset, count);
+        return count;
+      }
+
+      @Override
+      public int available() {
+        return buffer.remaining();
+      }
+    };
+  }
+
+  /** Returns true if every char of the text is one byte of the file. */
+  public boolean isAscii() {
+    return mIndexChars == null;
+  }
+
+  @Override
+  public int length() {
+    return mLength;
+  }
+
+  @Override
+  public char charAt(int index) {
+    if (index < 0 || index >= mLength) {
+      throw new IndexOutOfBoundsException("Index " + index + " out of range: " + mLength);
+    }
+    if (mIndexChars == null) {
+      return (char) mBuffer.get(mStart + index);
+    }
+    Cursor cursor = seek(index);
+    int codePoint = codePointOf(decode(cursor.mBytes));
+    if (Character.charCount(codePoint) == 1) {
+      return (char) codePoint;
+    }
+    return index == cursor.mChars
+        ? Character.highSurrogate(codePoint)
+        : Character.lowSurrogate(codePoint);
+  }
+
+  /** Returns a String holding a copy of the chars between start and end. */
+  @NonNull
+  @Override
+  public String subSequence(int start, int end) {
+    if (start < 0 || end > mLength || start > end) {
+      throw new IndexOutOfBoundsException(
+          "Range " + start + " to " + end + " out of range: " + mLength);
+    }
+    if (mIndexChars == null) {
+      byte[] bytes = new byte[end - start];
+      ByteBuffer buffer = mBuffer.duplicate();
+      buffer.position(mStart + start);
+      buffer.get(bytes);
+      char[] chars = new char[bytes.length];
+      for (int i = 0; i < bytes.length; i++) {
+        chars[i] = (char) bytes[i];
+      }
+      return new String(chars);
+    }
+    if (start == end) {
+      return "";
+    }
+    StringBuilder builder = new StringBuilder(end - start);
+    Cursor cursor = seek(start);
+    int chars = cursor.mChars;
+    int bytes = cursor.mBytes;
+    while (chars < end) {
+      int decoded = decode(bytes);
+      int codePoint = codePointOf(decoded);
+      if (Character.charCount(codePoint) == 1) {
+        builder.append((char) codePoint);
+        chars++;
+      } else {
+        if (chars >= start) {
+          builder.append(Character.highSurrogate(codePoint));
+        }
+        if (chars + 1 < end) {
+          builder.append(Character.lowSurrogate(codePoint));
+        }
+        chars += 2;
+      }
+      bytes += byteCount(decoded);
+    }
+    if (chars < mLength) {
+      cursor.mChars = chars;
+      cursor.mBytes = bytes;
+    }
+    return builder.toString();
+  }
+
+  /** Returns a String holding a copy of the whole text. */
+  @NonNull
+  @Override
+  public String toString() {
+    return subSequence(0, mLength);
+  }
+
+  /* Moves the cursor of this thread to the code point that contains the char at the index,
+   * starting from where it is if that is not far before the index, or else from the index entry
+   * before it. */
+  @NonNull
+  private Cursor seek(int index) {
+    Cursor cursor = mCursor.get();
+    int entry = index / INDEX_STEP;
+    if (cursor.mChars > index || cursor.mChars < mIndexChars[entry]) {
+      cursor.mChars = mIndexChars[entry];
+      cursor.mBytes = mIndexBytes[entry];
+    }
+    while (true) {
+      int decoded = decode(cursor.mBytes);
+      int next = cursor.mChars + Character.charCount(codePointOf(decoded));
+      if (next > index) {
+        return cursor;
+      }
+      cursor.mChars = next;
+      cursor.mBytes += byteCount(decoded);
+    }
+  }
+
+  /* Decodes the code point whose encoding starts at the byte offset. The result holds the code
+   * point in its low 21 bits and the number of bytes it takes in the bits above, so a decode is not
+   * repeated to find where the next code point starts. */
+  private int decode(int offset) {
+    int lead = mBuffer.get(offset) & 0xFF;
+    int count;
+    int codePoint;
+    int minimum;
+    if (lead < 0x80) {
+      return lead | (1 << 21);
+    } else if (lead >= 0xC2 && lead < 0xE0) {
+      count = 2;
+      codePoint = lead & 0x1F;
+      minimum = 0x80;
+    } else if (lead >= 0xE0 && lead < 0xF0) {
+      count = 3;
+      codePoint = lead & 0x0F;
+      minimum = 0x800;
+    } else if (lead >= 0xF0 && lead < 0xF5) {
+      count = 4;
+      codePoint = lead & 0x07;
+      minimum = 0x10000;
+    } else {
+      return REPLACEMENT_CHARACTER | (1 << 21);
+    }
+    if (offset + count > mBuffer.limit()) {
+      return REPLACEMENT_CHARACTER | (1 << 21);
+    }
+    for (int i = 1; i < count; i++) {
+      int next = mBuffer.get(offset + i) & 0xFF;
+      if ((next & 0xC0) != 0x80) {
+        return REPLACEMENT_CHARACTER | (1 << 21);
+      }
+      codePoint = (codePoint << 6) | (next & 0x3F);
+    }
+    if (codePoint < minimum
+        || codePoint > Character.MAX_CODE_POINT
+        || (codePoint >= Character.MIN_SURROGATE && codePoint <= Character.MAX_SURROGATE)) {
+      return REPLACEMENT_CHARACTER | (1 << 21);
+    }
+    return codePoint | (count << 21);
+  }
+
+  private static int codePointOf(int decoded) {
+    return decoded & 0x1FFFFF;
+  }
+
+  private static int byteCount(int decoded) {
+    return decoded >>> 21;
+  }
+
+  /* Char index of a code point and the byte offset where its encoding starts. */
+  private static final class Cursor {
+    private int mChars;
+    private int mBytes;
+  }
+}
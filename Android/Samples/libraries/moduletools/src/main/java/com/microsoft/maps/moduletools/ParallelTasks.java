@@ -0,0 +1,53 @@
+// Copyright (c) Microsoft Corporation.
+// Licensed under the MIT license.
+
+package com.microsoft.maps.moduletools;
+
+import androidx.annotation.NonNull;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/** Helper used by the parsers to run independent chunks of work on a bounded thread pool. */
+public class ParallelTasks {
+
+  private ParallelTasks() {}
+
+  /**
+   * Runs the tasks on at most parallelism threads and returns their results in the same order as
+   * the tasks. If any task fails, the remaining tasks are cancelled and the failure of the earliest
+   * failing task (in task order) is thrown.
+   */
+  @NonNull
+  public static <T> List<T> invokeAllInOrder(@NonNull List<Callable<T>> tasks, int parallelism)
+      throws ExecutionException, InterruptedException {
+    ArrayList<T> results = new ArrayList<>(tasks.size());
+    if (tasks.isEmpty()) {
+      return results;
+    }
+    ExecutorService pool =
+        Executors.newFixedThreadPool(
+            Math.max(1, Math.min(parallelism, tasks.size())),
+            runnable -> {
+              Thread thread = new Thread(runnable, "MapsModulesParser");
+              thread.setDaemon(true);
+              return thread;
+            });
+    try {
+      ArrayList<Future<T>> futures = new ArrayList<>(tasks.size());
+      for (Callable<T> task : tasks) {
+        futures.add(pool.submit(task));
+      }
+      for (Future<T> future : futures) {
+        results.add(future.get());
+      }
+    } finally {
+      pool.shutdownNow();
+    }
+    return results;
+  }
+}
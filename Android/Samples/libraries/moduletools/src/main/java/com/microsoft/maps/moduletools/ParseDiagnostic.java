@@ -0,0 +1,174 @@
+// Copyright (c) Microsoft Corporation.
+// Licensed under the MIT license.
+
+package com.microsoft.maps.moduletools;
+
+import androidx.annotation.NonNull;
+import java.util.Locale;
+
+/**
+ * Problem found in one feature (a GeoJSON Feature or a KML Placemark) of a parsed document. An
+ * ERROR means the feature was skipped, with ParseOptions.setSkipInvalidFeatures(true); a WARNING
+ * means the feature was repaired and kept, with ValidationLevel.LENIENT.
+ *
+ * <p>A diagnostic holds its code and the values its message is made of, and the message is only
+ * formatted when it is read, so parses that report many diagnostics stay cheap.
+ */
+public class ParseDiagnostic {
+
+  /** Value of the position getters when the position is not known. */
+  public static final int UNKNOWN = -1;
+
+  /** Receives the diagnostics of a parse. */
+  public interface Listener {
+    /**
+     * Called once for each diagnostic, in document order, on the thread that called parse, before
+     * parse returns.
+     */
+    void onDiagnostic(@NonNull ParseDiagnostic diagnostic);
+  }
+
+  /** Whether the feature was skipped or repaired. */
+  public enum Severity {
+    /** The feature was repaired and its elements were added. */
+    WARNING,
+    /** The feature was skipped and added no elements. */
+    ERROR
+  }
+
+  /** The kind of problem, with the pattern its message is formatted from. */
+  public enum Code {
+    /** Input the underlying JSON or XML reader rejected, or that has no more specific code. */
+    INVALID_INPUT("%s"),
+    NOT_A_FEATURE("GeoJSON Features must have type \"Feature\" instead saw: %s"),
+    NULL_GEOMETRY("Feature geometry cannot be null."),
+    UNKNOWN_GEOMETRY_TYPE("Expected a GeoJSON Geometry type, instead saw: \"%s\""),
+    FORBIDDEN_MEMBER("%s cannot have a \"%s\" member."),
+    MISSING_COORDINATE("coordinates must contain at least longitude and latitude, instead saw: %s"),
+    NOT_A_NUMBER("%s cannot be NaN."),
+    LONGITUDE_OUT_OF_RANGE("Longitude must be in the range [-180, 180], instead saw: %s"),
+    LATITUDE_OUT_OF_RANGE("Latitude must be in the range [-90, 90], instead saw: %s"),
+    TOO_FEW_POSITIONS("%s must contain at least %s positions. Instead saw: %s"),
+    TOO_MANY_POSITIONS("%s can only contain %s position. Instead saw: %s"),
+    RING_TOO_SHORT(
+        "Polygon ring must have at least 4 positions, and the first and last position must be the "
+            + "same. Instead saw Geopositions: [%s]."),
+    RING_NOT_CLOSED(
+        "First and last coordinate pair of each polygon ring must be the same. Instead saw "
+            + "Geopositions: first: %s last: %s"),
+    RING_SELF_INTERSECTION(
+        "Polygon ring %s must not intersect itself. Instead the edges after positions %s and %s "
+            + "meet."),
+    HOLE_OUTSIDE_POLYGON("Inner ring %s of a polygon must be inside the outer ring."),
+    MISSING_ELEMENT("Geometry Object must contain %s element."),
+    DUPLICATE_ELEMENT("Geometry Object can only contain one %s element."),
+    UNEXPECTED_CONTENT("Expected %s."),
+    UNEXPECTED_END("Unexpected end of document.");
+
+    private final String mPattern;
+
+    Code(@NonNull String pattern) {
+      mPattern = pattern;
+    }
+
+    /** Formats the message of this code from the values it is made of. */
+    @NonNull
+    public String format(@NonNull Object... arguments) {
+      return String.format(Locale.ROOT, mPattern, arguments);
+    }
+  }
+
+  private final Code mCode;
+  private final Severity mSeverity;
+  private final int mFeatureIndex;
+  private final int mOffset;
+  private int mLineNumber;
+  private int mColumnNumber;
+  private final Object[] mArguments;
+  private String mMessage;
+
+  /**
+   * Creates a diagnostic. The arguments are the values of the message pattern of the code; they are
+   * converted to text only when the message is read, so they must not change afterwards.
+   */
+  public ParseDiagnostic(
+      @NonNull Code code,
+      @NonNull Severity severity,
+      int featureIndex,
+      int offset,
+      int lineNumber,
+      int columnNumber,
+      @NonNull Object... arguments) {
+    mCode = code;
+    mSeverity = severity;
+    mFeatureIndex = featureIndex;
+    mOffset = offset;
+    mLineNumber = lineNumber;
+    mColumnNumber = columnNumber;
+    mArguments = arguments;
+  }
+
+  @NonNull
+  public Code getCode() {
+    return mCode;
+  }
+
+  @NonNull
+  public Severity getSeverity() {
+    return mSeverity;
+  }
+
+  /**
+   * Index of the feature among the features of the document, counting from 0 in document order and
+   * including skipped ones. A document that is a single Feature or geometry is feature 0.
+   */
+  public int getFeatureIndex() {
+    return mFeatureIndex;
+  }
+
+  /** Char index in the document where the feature starts, or UNKNOWN. */
+  public int getOffset() {
+    return mOffset;
+  }
+
+  /** Line of the document where the feature starts, counting from 1, or UNKNOWN. */
+  public int getLineNumber() {
+    return mLineNumber;
+  }
+
+  /**
+   * Column of the document where the feature starts, counting from 1, or UNKNOWN. KML positions are
+   * those reported by the XML parser, which may be just past the start tag.
+   */
+  public int getColumnNumber() {
+    return mColumnNumber;
+  }
+
+  /** Describes the problem. The message is formatted on the first call. */
+  @NonNull
+  public String getMessage() {
+    if (mMessage == null) {
+      mMessage = mCode.format(mArguments);
+    }
+    return mMessage;
+  }
+
+  /* Set by ParsingHelpers.reportDiagnostics for diagnostics located by their offset. */
+  void setLineAndColumn(int lineNumber, int columnNumber) {
+    mLineNumber = lineNumber;
+    mColumnNumber = columnNumber;
+  }
+
+  @NonNull
+  @Override
+  public String toString() {
+    return mSeverity
+        + " "
+        + mCode
+        + " in feature "
+        + mFeatureIndex
+        + (mLineNumber == UNKNOWN ? "" : " at line " + mLineNumber + ", column " + mColumnNumber)
+        + ": "
+        + getMessage();
+  }
+}
@@ -0,0 +1,174 @@
+// Copyright (c) Microsoft Corporation.
+// Licensed under the MIT license.
+
+package com.microsoft.maps.moduletools;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Options that control how the parsers read their input. A default ParseOptions parses the same way
+ * as the single-argument parse methods.
+ */
+public class ParseOptions {
+
+  /** Value of getCoordinatePrecision() when coordinates are kept as they are written. */
+  public static final int FULL_PRECISION = -1;
+
+  /* Decimal places beyond this are below the precision of a double for longitudes. */
+  private static final int MAX_COORDINATE_PRECISION = 12;
+
+  private int mParallelism = 1;
+  private MapIconClusterer mIconClusterer;
+  private TiledMapLayer mTiledLayer;
+  private ValidationLevel mValidation = ValidationLevel.STRICT;
+  private boolean mSkipInvalidFeatures;
+  private ParseDiagnostic.Listener mDiagnosticListener;
+  private int mCoordinatePrecision = FULL_PRECISION;
+  private boolean mSplitAtAntimeridian;
+  private boolean mNormalizePolygons;
+
+  public ParseOptions() {}
+
+  /**
+   * Sets the number of threads used to parse independent features (GeoJSON Features, KML
+   * Placemarks). A value of 1, the default, parses everything on the calling thread. Elements are
+   * added to the layer in document order regardless of this setting.
+   */
+  public void setParallelism(int parallelism) {
+    if (parallelism < 1) {
+      throw new IllegalArgumentException(
+          "Parallelism must be at least 1. Instead saw: " + parallelism);
+    }
+    mParallelism = parallelism;
+  }
+
+  public int getParallelism() {
+    return mParallelism;
+  }
+
+  /**
+   * Sets the clusterer that receives the icons created for Points. The icons are not added to the
+   * layer directly; instead the clusterer adds the icons or clusters for its current zoom level and
+   * viewport. For a MapGeoJsonLayer, the filter, style and icon visibility of the layer decide
+   * which icons are clustered. The default is null, which adds every icon to the layer.
+   */
+  public void setIconClusterer(@Nullable MapIconClusterer iconClusterer) {
+    mIconClusterer = iconClusterer;
+  }
+
+  @Nullable
+  public MapIconClusterer getIconClusterer() {
+    return mIconClusterer;
+  }
+
+  /**
+   * Sets the tiled layer that receives the parsed elements, partitioned into tiles, instead of the
+   * layer returned by the parser. Icons handed to an icon clusterer are not tiled. The default is
+   * null, which adds every element to the returned layer.
+   */
+  public void setTiledLayer(@Nullable TiledMapLayer tiledLayer) {
+    mTiledLayer = tiledLayer;
+  }
+
+  @Nullable
+  public TiledMapLayer getTiledLayer() {
+    return mTiledLayer;
+  }
+
+  /**
+   * Sets how strictly the input is checked. The default, STRICT, reports every violation of the
+   * format. LENIENT repairs what it can, and TRUSTED skips the checks for input known to be valid.
+   */
+  public void setValidation(@NonNull ValidationLevel validation) {
+    if (validation == null) {
+      throw new IllegalArgumentException("ValidationLevel cannot be null.");
+    }
+    mValidation = validation;
+  }
+
+  @NonNull
+  public ValidationLevel getValidation() {
+    return mValidation;
+  }
+
+  /**
+   * Sets whether an invalid feature (a GeoJSON Feature of a FeatureCollection, or a KML Placemark)
+   * is skipped instead of failing the whole parse. Each skipped feature adds no elements and is
+   * reported to the diagnostic listener. Errors outside the features, such as malformed JSON or XML
+   * around them, still fail the parse. The default is false.
+   */
+  public void setSkipInvalidFeatures(boolean skipInvalidFeatures) {
+    mSkipInvalidFeatures = skipInvalidFeatures;
+  }
+
+  public boolean shouldSkipInvalidFeatures() {
+    return mSkipInvalidFeatures;
+  }
+
+  /**
+   * Sets the listener that receives a ParseDiagnostic for each feature skipped because of
+   * setSkipInvalidFeatures. The default is null, which skips invalid features silently.
+   */
+  public void setDiagnosticListener(@Nullable ParseDiagnostic.Listener diagnosticListener) {
+    mDiagnosticListener = diagnosticListener;
+  }
+
+  @Nullable
+  public ParseDiagnostic.Listener getDiagnosticListener() {
+    return mDiagnosticListener;
+  }
+
+  /**
+   * Sets the number of decimal places latitudes and longitudes are rounded to while parsing. 6
+   * places are about 10 cm and 7 places about 1 cm at the equator. Consecutive positions of a line
+   * or polygon ring that become equal are merged, unless the line or ring would become too short.
+   * Altitudes are not rounded. The default, FULL_PRECISION, keeps coordinates as they are written.
+   */
+  public void setCoordinatePrecision(int decimalPlaces) {
+    if (decimalPlaces != FULL_PRECISION
+        && (decimalPlaces < 0 || decimalPlaces > MAX_COORDINATE_PRECISION)) {
+      throw new IllegalArgumentException(
+          "Coordinate precision must be FULL_PRECISION or in the range [0, "
+              + MAX_COORDINATE_PRECISION
+              + "]. Instead saw: "
+              + decimalPlaces);
+    }
+    mCoordinatePrecision = decimalPlaces;
+  }
+
+  public int getCoordinatePrecision() {
+    return mCoordinatePrecision;
+  }
+
+  /**
+   * Sets whether lines and polygons that cross the antimeridian are split into one element for each
+   * side of it. Without splitting, the map joins positions such as 179 and -179 the long way around
+   * the world, so a shape across the Pacific is drawn as one that covers most of the globe. Two
+   * consecutive positions more than 180 degrees of longitude apart are taken to cross the
+   * antimeridian. Polygons around a pole are not split. The default is false. See Antimeridian.
+   */
+  public void setSplitAtAntimeridian(boolean splitAtAntimeridian) {
+    mSplitAtAntimeridian = splitAtAntimeridian;
+  }
+
+  public boolean shouldSplitAtAntimeridian() {
+    return mSplitAtAntimeridian;
+  }
+
+  /**
+   * Sets whether polygons are normalized as they are parsed. Outer rings are made to wind
+   * counterclockwise and holes clockwise, following the right-hand rule of RFC 7946, so the map can
+   * draw them without reordering. Rings are also checked for intersecting themselves, and holes for
+   * lying inside the outer ring. With STRICT validation those problems throw; with LENIENT
+   * validation they are reported as warnings, and holes outside the outer ring are removed. With
+   * TRUSTED validation only the winding is changed. The default is false. See PolygonRings.
+   */
+  public void setNormalizePolygons(boolean normalizePolygons) {
+    mNormalizePolygons = normalizePolygons;
+  }
+
+  public boolean shouldNormalizePolygons() {
+    return mNormalizePolygons;
+  }
+}
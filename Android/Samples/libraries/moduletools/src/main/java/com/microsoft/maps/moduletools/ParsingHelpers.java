@@ -9,6 +9,8 @@ import androidx.annotation.Nullable;
 import com.microsoft.maps.AltitudeReferenceSystem;
 import com.microsoft.maps.Geoposition;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 public class ParsingHelpers {
 
@@ -28,55 +30,199 @@ public class ParsingHelpers {
         "Unless all positions in a Geometry Object contain an altitude coordinate, all altitudes will be set to 0 at surface level for that Geometry Object.");
   }
 
+  /**
+   * Closes a polygon ring of at least 3 positions whose last position is not its first, by adding
+   * the first position again.
+   *
+   * @return true if the ring was closed
+   */
+  public static boolean closePolygonRing(@NonNull ArrayList<Geoposition> positions) {
+    if (positions.size() < 3) {
+      return false;
+    }
+    Geoposition first = positions.get(0);
+    Geoposition last = positions.get(positions.size() - 1);
+    if (first.getLongitude() == last.getLongitude()
+        && first.getLatitude() == last.getLatitude()
+        && first.getAltitude() == last.getAltitude()) {
+      return false;
+    }
+    positions.add(new Geoposition(first.getLatitude(), first.getLongitude(), first.getAltitude()));
+    return true;
+  }
+
+  /**
+   * Checks that a polygon ring has at least 4 positions and that its first and last positions are
+   * the same.
+   *
+   * @return the problem with the ring, or null if it is valid
+   */
   @Nullable
-  public static String getErrorMessageForPolygonRing(@NonNull ArrayList<Geoposition> positions) {
+  public static ParseDiagnostic.Code checkPolygonRing(@NonNull List<Geoposition> positions) {
     if (positions.size() < 4) {
-      StringBuilder positionsStringBuilder = new StringBuilder();
-      if (!positions.isEmpty()) {
-        for (int i = 0; i < positions.size() - 1; i++) {
-          Geoposition position = positions.get(i);
-          positionsStringBuilder
-              .append(
-                  "["
-                      + position.getLatitude()
-                      + ", "
-                      + position.getLongitude()
-                      + ", "
-                      + position.getAltitude()
-                      + "]")
-              .append(", ");
+      return ParseDiagnostic.Code.RING_TOO_SHORT;
+    }
+    Geoposition first = positions.get(0);
+    Geoposition last = positions.get(positions.size() - 1);
+    if (first.getLongitude() != last.getLongitude()
+        || first.getLatitude() != last.getLatitude()
+        || first.getAltitude() != last.getAltitude()) {
+      return ParseDiagnostic.Code.RING_NOT_CLOSED;
+    }
+    return null;
+  }
+
+  /**
+   * Returns the message arguments of a RING_TOO_SHORT or RING_NOT_CLOSED diagnostic of the ring.
+   * The positions are only converted to text when the message is formatted. The arguments of
+   * RING_NOT_CLOSED do not change if the ring is closed afterwards. Only call this once the ring is
+   * known to need a diagnostic, as valid rings should not pay for it.
+   */
+  @NonNull
+  public static Object[] getPolygonRingArguments(
+      @NonNull ParseDiagnostic.Code code, @NonNull List<Geoposition> positions) {
+    if (code == ParseDiagnostic.Code.RING_TOO_SHORT) {
+      return new Object[] {new PositionsText(positions)};
+    }
+    return new Object[] {
+      new PositionsText(Collections.singletonList(positions.get(0))),
+      new PositionsText(Collections.singletonList(positions.get(positions.size() - 1)))
+    };
+  }
+
+  /**
+   * Returns the error message for an invalid polygon ring, or null if it is valid.
+   *
+   * @deprecated Use checkPolygonRing, and getPolygonRingArguments to format the message of the code
+   *     it returns only when it is needed.
+   */
+  @Deprecated
+  @Nullable
+  public static String getErrorMessageForPolygonRing(@NonNull ArrayList<Geoposition> positions) {
+    ParseDiagnostic.Code code = checkPolygonRing(positions);
+    return code == null ? null : code.format(getPolygonRingArguments(code, positions));
+  }
+
+  /**
+   * Returns the factor coordinates are multiplied by before rounding for the coordinate precision
+   * of the options, or 0 if coordinates are not rounded.
+   */
+  public static double getQuantizationScale(@NonNull ParseOptions options) {
+    int precision = options.getCoordinatePrecision();
+    return precision == ParseOptions.FULL_PRECISION ? 0 : Math.pow(10, precision);
+  }
+
+  /** Rounds a coordinate to a multiple of 1 / scale. */
+  public static double quantize(double coordinate, double scale) {
+    return Math.round(coordinate * scale) / scale;
+  }
+
+  /**
+   * Removes each position that is equal to the position before it, such as those merged by
+   * quantization, unless fewer than minimumSize positions would remain.
+   */
+  public static void removeRepeatedPositions(
+      @NonNull ArrayList<Geoposition> positions, int minimumSize) {
+    int size = positions.size();
+    int distinctCount = Math.min(size, 1);
+    for (int i = 1; i < size; i++) {
+      if (!isSamePosition(positions.get(i - 1), positions.get(i))) {
+        distinctCount++;
+      }
+    }
+    if (distinctCount == size || distinctCount < minimumSize) {
+      return;
+    }
+    int count = 1;
+    for (int i = 1; i < size; i++) {
+      Geoposition position = positions.get(i);
+      if (!isSamePosition(positions.get(count - 1), position)) {
+        positions.set(count++, position);
+      }
+    }
+    positions.subList(count, size).clear();
+  }
+
+  private static boolean isSamePosition(@NonNull Geoposition first, @NonNull Geoposition second) {
+    return first.getLatitude() == second.getLatitude()
+        && first.getLongitude() == second.getLongitude()
+        && first.getAltitude() == second.getAltitude();
+  }
+
+  /** Clamps a latitude to [-90, 90]. */
+  public static double clampLatitude(double latitude) {
+    return Math.max(-90, Math.min(90, latitude));
+  }
+
+  /** Wraps a longitude outside [-180, 180] into that range, keeping the meridian it is on. */
+  public static double wrapLongitude(double longitude) {
+    if (longitude >= -180 && longitude <= 180) {
+      return longitude;
+    }
+    double wrapped = ((longitude + 180) % 360 + 360) % 360 - 180;
+    return wrapped == -180 && longitude > 0 ? 180 : wrapped;
+  }
+
+  /**
+   * Reports diagnostics in document order to the listener, if there is one. Diagnostics with an
+   * offset but no line get the line and column of their offset in the text, which is read once up
+   * to the last such offset.
+   */
+  public static void reportDiagnostics(
+      @NonNull List<ParseDiagnostic> diagnostics,
+      @NonNull CharSequence text,
+      @Nullable ParseDiagnostic.Listener listener) {
+    if (listener == null) {
+      return;
+    }
+    int index = 0;
+    int line = 1;
+    int lineStart = 0;
+    for (ParseDiagnostic diagnostic : diagnostics) {
+      int offset = diagnostic.getOffset();
+      if (offset == ParseDiagnostic.UNKNOWN
+          || diagnostic.getLineNumber() != ParseDiagnostic.UNKNOWN
+          || offset < index) {
+        listener.onDiagnostic(diagnostic);
+        continue;
+      }
+      for (; index < offset; index++) {
+        if (text.charAt(index) == '\n') {
+          line++;
+          lineStart = index + 1;
         }
-        positionsStringBuilder.append(positions.get(positions.size() - 1));
       }
-      return "Polygon ring must have at least 4 positions, and the first and last position must "
-          + "be the same. Instead saw Geopositions: ["
-          + positionsStringBuilder
-          + "].";
+      diagnostic.setLineAndColumn(line, offset - lineStart + 1);
+      listener.onDiagnostic(diagnostic);
     }
+  }
+
+  /* Positions written as [latitude, longitude, altitude] when converted to text. */
+  private static final class PositionsText {
+    private final List<Geoposition> mPositions;
 
-    Geoposition firstPosition = positions.get(0);
-    Geoposition lastPosition = positions.get(positions.size() - 1);
-    if (firstPosition.getLongitude() != lastPosition.getLongitude()
-        || firstPosition.getLatitude() != lastPosition.getLatitude()
-        || firstPosition.getAltitude() != lastPosition.getAltitude()) {
-      return "First and last coordinate pair of each polygon ring must be the same. "
-          + " Instead saw Geopositions: first: "
-          + "["
-          + firstPosition.getLatitude()
-          + ", "
-          + firstPosition.getLongitude()
-          + ", "
-          + firstPosition.getAltitude()
-          + "]"
-          + " last: "
-          + "["
-          + lastPosition.getLatitude()
-          + ", "
-          + lastPosition.getLongitude()
-          + ", "
-          + lastPosition.getAltitude()
-          + "]";
+    PositionsText(@NonNull List<Geoposition> positions) {
+      mPositions = positions;
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+      StringBuilder builder = new StringBuilder();
+      for (Geoposition position : mPositions) {
+        if (builder.length() > 0) {
+          builder.append(", ");
+        }
+        builder
+            .append('[')
+            .append(position.getLatitude())
+            .append(", ")
+            .append(position.getLongitude())
+            .append(", ")
+            .append(position.getAltitude())
+            .append(']');
+      }
+      return builder.toString();
     }
-    return null;
   }
 }
@@ -0,0 +1,227 @@
+// Copyright (c) Microsoft Corporation.
+// Licensed under the MIT license.
+
+package com.microsoft.maps.moduletools;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import com.microsoft.maps.Geoposition;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Checks on the closed rings of a polygon, treating longitude and latitude as planar x and y.
+ * Longitudes are unwrapped, so rings across the antimeridian are handled like any other. Positions
+ * are copied into arrays once per call, and each check runs in about linear time for the rings of
+ * real data.
+ */
+public class PolygonRings {
+
+  private PolygonRings() {}
+
+  /**
+   * Returns whether the ring winds counterclockwise, which RFC 7946 requires of outer rings. Holes
+   * wind clockwise.
+   */
+  public static boolean isCounterclockwise(@NonNull List<Geoposition> ring) {
+    Packed packed = new Packed(ring, Double.NaN);
+    double area = 0;
+    for (int i = 1; i < packed.mCount; i++) {
+      area += packed.mX[i - 1] * packed.mY[i] - packed.mX[i] * packed.mY[i - 1];
+    }
+    return area > 0;
+  }
+
+  /**
+   * Reverses the ring if needed so that it winds counterclockwise for an outer ring, or clockwise
+   * for a hole. Returns whether the ring was reversed.
+   */
+  public static boolean orient(@NonNull ArrayList<Geoposition> ring, boolean isOuterRing) {
+    if (ring.size() < 4 || isCounterclockwise(ring) == isOuterRing) {
+      return false;
+    }
+    Collections.reverse(ring);
+    return true;
+  }
+
+  /**
+   * Returns whether the hole lies inside the outer ring. The bounds of the hole are compared first,
+   * then a position of the hole that is not on the outer ring is tested against it.
+   */
+  public static boolean contains(
+      @NonNull List<Geoposition> outerRing, @NonNull List<Geoposition> hole) {
+    if (outerRing.isEmpty() || hole.isEmpty()) {
+      return true;
+    }
+    Packed outer = new Packed(outerRing, Double.NaN);
+    Packed inner = new Packed(hole, outerRing.get(0).getLongitude());
+    if (inner.mMinX < outer.mMinX
+        || inner.mMaxX > outer.mMaxX
+        || inner.mMinY < outer.mMinY
+        || inner.mMaxY > outer.mMaxY) {
+      return false;
+    }
+    for (int i = 0; i < inner.mCount; i++) {
+      double x = inner.mX[i];
+      double y = inner.mY[i];
+      if (!outer.isOnBoundary(x, y)) {
+        return outer.contains(x, y);
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns the indices of the first positions of two edges of the ring that cross or touch, or
+   * null if the ring is simple. Edges are swept from west to east, so only edges that overlap in
+   * longitude are compared.
+   */
+  @Nullable
+  public static int[] findSelfIntersection(@NonNull List<Geoposition> ring) {
+    Packed packed = new Packed(ring, Double.NaN);
+    int edgeCount = packed.mCount - 1;
+    if (edgeCount < 4) {
+      return null;
+    }
+    double[] x = packed.mX;
+    double[] y = packed.mY;
+    Integer[] edges = new Integer[edgeCount];
+    for (int i = 0; i < edgeCount; i++) {
+      edges[i] = i;
+    }
+    Arrays.sort(edges, (first, second) -> Double.compare(minX(x, first), minX(x, second)));
+
+    int[] active = new int[edgeCount];
+    int activeCount = 0;
+    for (int edge : edges) {
+      double left = minX(x, edge);
+      int kept = 0;
+      for (int i = 0; i < activeCount; i++) {
+        int other = active[i];
+        if (Math.max(x[other], x[other + 1]) < left) {
+          continue;
+        }
+        active[kept++] = other;
+        boolean isAdjacent =
+            Math.abs(other - edge) == 1
+                || (Math.min(other, edge) == 0 && Math.max(other, edge) == edgeCount - 1);
+        if (!isAdjacent
+            && Math.max(y[other], y[other + 1]) >= Math.min(y[edge], y[edge + 1])
+            && Math.min(y[other], y[other + 1]) <= Math.max(y[edge], y[edge + 1])
+            && intersect(x, y, other, edge)) {
+          return new int[] {
+            packed.mIndices[Math.min(other, edge)], packed.mIndices[Math.max(other, edge)]
+          };
+        }
+      }
+      activeCount = kept;
+      active[activeCount++] = edge;
+    }
+    return null;
+  }
+
+  private static double minX(@NonNull double[] x, int edge) {
+    return Math.min(x[edge], x[edge + 1]);
+  }
+
+  private static boolean intersect(
+      @NonNull double[] x, @NonNull double[] y, int first, int second) {
+    int a = first;
+    int b = first + 1;
+    int c = second;
+    int d = second + 1;
+    double d1 = cross(x, y, c, d, x[a], y[a]);
+    double d2 = cross(x, y, c, d, x[b], y[b]);
+    double d3 = cross(x, y, a, b, x[c], y[c]);
+    double d4 = cross(x, y, a, b, x[d], y[d]);
+    if (((d1 > 0 && d2 < 0) || (d1 < 0 && d2 > 0)) && ((d3 > 0 && d4 < 0) || (d3 < 0 && d4 > 0))) {
+      return true;
+    }
+    return (d1 == 0 && isWithin(x, y, c, d, x[a], y[a]))
+        || (d2 == 0 && isWithin(x, y, c, d, x[b], y[b]))
+        || (d3 == 0 && isWithin(x, y, a, b, x[c], y[c]))
+        || (d4 == 0 && isWithin(x, y, a, b, x[d], y[d]));
+  }
+
+  /* Positive if the point is left of the line from position a to position b. */
+  private static double cross(
+      @NonNull double[] x, @NonNull double[] y, int a, int b, double pointX, double pointY) {
+    return (x[b] - x[a]) * (pointY - y[a]) - (y[b] - y[a]) * (pointX - x[a]);
+  }
+
+  /* Whether a point on the line through positions a and b lies between them. */
+  private static boolean isWithin(
+      @NonNull double[] x, @NonNull double[] y, int a, int b, double pointX, double pointY) {
+    return pointX >= Math.min(x[a], x[b])
+        && pointX <= Math.max(x[a], x[b])
+        && pointY >= Math.min(y[a], y[b])
+        && pointY <= Math.max(y[a], y[b]);
+  }
+
+  /* The positions of a ring as arrays of unwrapped longitudes and latitudes, without consecutive
+   * duplicates, which would make zero-length edges. */
+  private static class Packed {
+    final double[] mX;
+    final double[] mY;
+    /* Index in the ring of each packed position. */
+    final int[] mIndices;
+    final int mCount;
+    double mMinX = Double.POSITIVE_INFINITY;
+    double mMaxX = Double.NEGATIVE_INFINITY;
+    double mMinY = Double.POSITIVE_INFINITY;
+    double mMaxY = Double.NEGATIVE_INFINITY;
+
+    /* The first longitude is moved by whole turns to be nearest to reference, unless it is NaN. */
+    Packed(@NonNull List<Geoposition> ring, double reference) {
+      mX = new double[ring.size()];
+      mY = new double[ring.size()];
+      mIndices = new int[ring.size()];
+      int count = 0;
+      for (int i = 0; i < ring.size(); i++) {
+        Geoposition position = ring.get(i);
+        double x = position.getLongitude();
+        double previous = count == 0 ? reference : mX[count - 1];
+        if (!Double.isNaN(previous)) {
+          x += 360 * Math.round((previous - x) / 360);
+        }
+        double y = position.getLatitude();
+        if (count > 0 && x == mX[count - 1] && y == mY[count - 1]) {
+          continue;
+        }
+        mX[count] = x;
+        mY[count] = y;
+        mIndices[count] = i;
+        count++;
+        mMinX = Math.min(mMinX, x);
+        mMaxX = Math.max(mMaxX, x);
+        mMinY = Math.min(mMinY, y);
+        mMaxY = Math.max(mMaxY, y);
+      }
+      mCount = count;
+    }
+
+    /* Even-odd test of whether the point is inside the ring. */
+    boolean contains(double x, double y) {
+      boolean isInside = false;
+      for (int i = 1; i < mCount; i++) {
+        int j = i - 1;
+        if ((mY[i] > y) != (mY[j] > y)
+            && x < (mX[j] - mX[i]) * (y - mY[i]) / (mY[j] - mY[i]) + mX[i]) {
+          isInside = !isInside;
+        }
+      }
+      return isInside;
+    }
+
+    boolean isOnBoundary(double x, double y) {
+      for (int i = 1; i < mCount; i++) {
+        if (cross(mX, mY, i - 1, i, x, y) == 0 && isWithin(mX, mY, i - 1, i, x, y)) {
+          return true;
+        }
+      }
+      return false;
+    }
+  }
+}
@@ -0,0 +1,272 @@
+// Copyright (c) Microsoft Corporation.
+// Licensed under the MIT license.
+
+package com.microsoft.maps.moduletools;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import com.microsoft.maps.GeoboundingBox;
+import com.microsoft.maps.Geoposition;
+import com.microsoft.maps.MapElement;
+import com.microsoft.maps.MapElementCollection;
+import com.microsoft.maps.MapElementLayer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Partitions elements into quadkey tiles at a fixed level of detail, with one MapElementLayer per
+ * tile. Each element is assigned to the tile containing the center of its bounds. Only the layers
+ * of the tiles in the viewport are attached to the map, so the work per viewport change is bounded
+ * by the number of tiles in view rather than the size of the data set. Set it on ParseOptions to
+ * have the parsers add elements here instead of to the returned layer.
+ */
+public class TiledMapLayer {
+
+  /** Adds tile layers to and removes them from the map, typically through MapView.getLayers(). */
+  public interface Host {
+
+    void addLayer(@NonNull MapElementLayer layer);
+
+    void removeLayer(@NonNull MapElementLayer layer);
+  }
+
+  public static final int MIN_LEVEL_OF_DETAIL = 1;
+  public static final int MAX_LEVEL_OF_DETAIL = 23;
+
+  private final int mLevelOfDetail;
+  private final Map<String, Tile> mTiles = new HashMap<>();
+  private final Set<String> mAttachedQuadKeys = new HashSet<>();
+  private MapFactories mFactory = new DefaultMapFactories();
+  private Host mHost;
+
+  public TiledMapLayer(int levelOfDetail) {
+    if (levelOfDetail < MIN_LEVEL_OF_DETAIL || levelOfDetail > MAX_LEVEL_OF_DETAIL) {
+      throw new IllegalArgumentException(
+          "Level of detail must be between "
+              + MIN_LEVEL_OF_DETAIL
+              + " and "
+              + MAX_LEVEL_OF_DETAIL
+              + ". Instead saw: "
+              + levelOfDetail);
+    }
+    mLevelOfDetail = levelOfDetail;
+  }
+
+  public int getLevelOfDetail() {
+    return mLevelOfDetail;
+  }
+
+  /**
+   * Sets where tile layers are attached. Tiles attached to a previous host are removed from it and
+   * attached to the new one.
+   */
+  public void setHost(@Nullable Host host) {
+    if (mHost != null) {
+      for (String quadKey : mAttachedQuadKeys) {
+        mHost.removeLayer(mTiles.get(quadKey).mLayer);
+      }
+    }
+    mHost = host;
+    if (mHost != null) {
+      for (String quadKey : mAttachedQuadKeys) {
+        mHost.addLayer(getOrCreateLayer(mTiles.get(quadKey)));
+      }
+    }
+  }
+
+  /**
+   * Adds elements to the tiles containing their centers, using factory to create tile layers.
+   * Called by the parsers; elements added to tiles that are attached appear immediately.
+   */
+  public void addElements(@NonNull MapFactories factory, @NonNull List<MapElement> elements) {
+    mFactory = factory;
+    int tileCount = 1 << mLevelOfDetail;
+    for (MapElement element : elements) {
+      GeoBounds bounds = new GeoBounds();
+      bounds.extend(element);
+      Geoposition center = bounds.getCenter();
+      if (center == null) {
+        continue;
+      }
+      int tileX = toTile(WebMercator.toX(center.getLongitude()), tileCount);
+      int tileY = toTile(WebMercator.toY(center.getLatitude()), tileCount);
+      String quadKey = toQuadKey(tileX, tileY, mLevelOfDetail);
+      Tile tile = mTiles.get(quadKey);
+      if (tile == null) {
+        tile = new Tile();
+        mTiles.put(quadKey, tile);
+      }
+      tile.mElements.add(element);
+      if (tile.mLayer != null) {
+        tile.mLayer.getElements().add(element);
+      }
+    }
+  }
+
+  /** Attaches the tiles intersecting the bounds, and detaches all other tiles. */
+  public void setViewport(@NonNull GeoboundingBox bounds) {
+    setViewport(
+        bounds.getNorthWestCorner().getLatitude(),
+        bounds.getNorthWestCorner().getLongitude(),
+        bounds.getSouthEastCorner().getLatitude(),
+        bounds.getSouthEastCorner().getLongitude());
+  }
+
+  /**
+   * Attaches the tiles intersecting the bounds, and detaches all other tiles. A west longitude
+   * greater than the east longitude means the viewport crosses the antimeridian.
+   */
+  public void setViewport(double north, double west, double south, double east) {
+    int tileCount = 1 << mLevelOfDetail;
+    int minY = toTile(WebMercator.toY(north), tileCount);
+    int maxY = toTile(WebMercator.toY(south), tileCount);
+    int minX = toTile(WebMercator.toX(west), tileCount);
+    int maxX = toTile(WebMercator.toX(east), tileCount);
+    if (west > east) {
+      maxX += tileCount;
+    }
+
+    HashSet<String> inView = new HashSet<>();
+    long tilesInView = (long) (maxX - minX + 1) * (maxY - minY + 1);
+    if (tilesInView > mTiles.size()) {
+      // Cheaper to test the populated tiles than to enumerate every tile in view.
+      for (String quadKey : mTiles.keySet()) {
+        int[] tile = fromQuadKey(quadKey);
+        int x = tile[0] < minX ? tile[0] + tileCount : tile[0];
+        if (x >= minX && x <= maxX && tile[1] >= minY && tile[1] <= maxY) {
+          inView.add(quadKey);
+        }
+      }
+    } else {
+      for (int x = minX; x <= maxX; x++) {
+        for (int y = minY; y <= maxY; y++) {
+          String quadKey = toQuadKey(x % tileCount, y, mLevelOfDetail);
+          if (mTiles.containsKey(quadKey)) {
+            inView.add(quadKey);
+          }
+        }
+      }
+    }
+
+    for (String quadKey : new ArrayList<>(mAttachedQuadKeys)) {
+      if (!inView.contains(quadKey)) {
+        detach(quadKey);
+      }
+    }
+    for (String quadKey : inView) {
+      if (!mAttachedQuadKeys.contains(quadKey)) {
+        attach(quadKey);
+      }
+    }
+  }
+
+  /**
+   * Releases the layers of all tiles that are not attached, for example under memory pressure.
+   * Their elements are kept, and a new layer is created when the tile comes back into view.
+   */
+  public void evictDetachedTiles() {
+    for (Map.Entry<String, Tile> entry : mTiles.entrySet()) {
+      Tile tile = entry.getValue();
+      if (tile.mLayer != null && !mAttachedQuadKeys.contains(entry.getKey())) {
+        MapElementCollection elements = tile.mLayer.getElements();
+        for (MapElement element : tile.mElements) {
+          elements.remove(element);
+        }
+        tile.mLayer = null;
+      }
+    }
+  }
+
+  /** Returns the quadkeys of all tiles holding elements. */
+  @NonNull
+  public Set<String> getQuadKeys() {
+    return Collections.unmodifiableSet(mTiles.keySet());
+  }
+
+  /** Returns the quadkeys of the tiles attached to the host. */
+  @NonNull
+  public Set<String> getAttachedQuadKeys() {
+    return Collections.unmodifiableSet(mAttachedQuadKeys);
+  }
+
+  /** Returns the elements of a tile, or an empty list if the tile holds no elements. */
+  @NonNull
+  public List<MapElement> getElements(@NonNull String quadKey) {
+    Tile tile = mTiles.get(quadKey);
+    return tile == null
+        ? Collections.<MapElement>emptyList()
+        : Collections.unmodifiableList(tile.mElements);
+  }
+
+  /** Returns the quadkey of a tile, with one digit per level of detail. */
+  @NonNull
+  public static String toQuadKey(int tileX, int tileY, int levelOfDetail) {
+    char[] quadKey = new char[levelOfDetail];
+    for (int i = levelOfDetail; i > 0; i--) {
+      int mask = 1 << (i - 1);
+      int digit = 0;
+      if ((tileX & mask) != 0) {
+        digit++;
+      }
+      if ((tileY & mask) != 0) {
+        digit += 2;
+      }
+      quadKey[levelOfDetail - i] = (char) ('0' + digit);
+    }
+    return new String(quadKey);
+  }
+
+  @NonNull
+  private static int[] fromQuadKey(@NonNull String quadKey) {
+    int tileX = 0;
+    int tileY = 0;
+    for (int i = 0; i < quadKey.length(); i++) {
+      int digit = quadKey.charAt(i) - '0';
+      tileX = (tileX << 1) | (digit & 1);
+      tileY = (tileY << 1) | (digit >> 1);
+    }
+    return new int[] {tileX, tileY};
+  }
+
+  private static int toTile(double normalized, int tileCount) {
+    return Math.max(0, Math.min(tileCount - 1, (int) Math.floor(normalized * tileCount)));
+  }
+
+  private void attach(@NonNull String quadKey) {
+    mAttachedQuadKeys.add(quadKey);
+    MapElementLayer layer = getOrCreateLayer(mTiles.get(quadKey));
+    if (mHost != null) {
+      mHost.addLayer(layer);
+    }
+  }
+
+  private void detach(@NonNull String quadKey) {
+    mAttachedQuadKeys.remove(quadKey);
+    if (mHost != null) {
+      mHost.removeLayer(mTiles.get(quadKey).mLayer);
+    }
+  }
+
+  @NonNull
+  private MapElementLayer getOrCreateLayer(@NonNull Tile tile) {
+    if (tile.mLayer == null) {
+      tile.mLayer = mFactory.createMapElementLayer();
+      MapElementCollection elements = tile.mLayer.getElements();
+      for (MapElement element : tile.mElements) {
+        elements.add(element);
+      }
+    }
+    return tile.mLayer;
+  }
+
+  private static class Tile {
+
+    private final ArrayList<MapElement> mElements = new ArrayList<>();
+    private MapElementLayer mLayer;
+  }
+}
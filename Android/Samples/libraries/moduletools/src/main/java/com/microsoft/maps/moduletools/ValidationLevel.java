@@ -0,0 +1,21 @@
+// Copyright (c) Microsoft Corporation.
+// Licensed under the MIT license.
+
+package com.microsoft.maps.moduletools;
+
+/** How strictly the parsers check their input. Input that cannot be read at all always fails. */
+public enum ValidationLevel {
+  /** Reports every violation of the format as an error. This is the default. */
+  STRICT,
+  /**
+   * Repairs what can be repaired instead of reporting an error: polygon rings that are not closed
+   * are closed, latitudes outside [-90, 90] are clamped, longitudes outside [-180, 180] are
+   * wrapped, and GeoJSON members not allowed on an object are ignored.
+   */
+  LENIENT,
+  /**
+   * Skips the checks of coordinates, polygon rings and GeoJSON members, for input known to be
+   * valid, such as the output of a trusted pipeline. Invalid input may create invalid elements.
+   */
+  TRUSTED
+}
@@ -0,0 +1,34 @@
+// Copyright (c) Microsoft Corporation.
+// Licensed under the MIT license.
+
+package com.microsoft.maps.moduletools;
+
+/**
+ * Conversions between geographic coordinates and normalized Web Mercator coordinates, which run
+ * from 0 to 1 west to east and north to south. Multiplying by 256 * 2^zoom gives pixel coordinates,
+ * and by 2^zoom gives tile coordinates.
+ */
+public class WebMercator {
+
+  public static final double MAX_LATITUDE = 85.05112878;
+
+  private WebMercator() {}
+
+  public static double toX(double longitude) {
+    return (longitude + 180) / 360;
+  }
+
+  public static double toY(double latitude) {
+    double clamped = Math.max(-MAX_LATITUDE, Math.min(MAX_LATITUDE, latitude));
+    double sinLatitude = Math.sin(Math.toRadians(clamped));
+    return 0.5 - Math.log((1 + sinLatitude) / (1 - sinLatitude)) / (4 * Math.PI);
+  }
+
+  public static double toLongitude(double x) {
+    return x * 360 - 180;
+  }
+
+  public static double toLatitude(double y) {
+    return 90 - 360 * Math.atan(Math.exp((y - 0.5) * 2 * Math.PI)) / Math.PI;
+  }
+}
@@ -0,0 +1,150 @@
+// Copyright (c) Microsoft Corporation.
+// Licensed under the MIT license.
+
+package com.microsoft.maps.mvt;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import androidx.annotation.NonNull;
+import java.util.Arrays;
+
+/**
+ * Minimal protocol buffers decoder over a region of a byte array, for the fields used by vector
+ * tiles. Length-delimited fields are read as readers over the same array, so nothing is copied.
+ */
+class ProtobufReader {
+
+  private static final int WIRE_TYPE_VARINT = 0;
+  private static final int WIRE_TYPE_FIXED64 = 1;
+  private static final int WIRE_TYPE_LENGTH_DELIMITED = 2;
+  private static final int WIRE_TYPE_FIXED32 = 5;
+
+  private final byte[] mBuffer;
+  private int mPosition;
+  private final int mLimit;
+  private int mWireType;
+
+  ProtobufReader(@NonNull byte[] buffer) {
+    this(buffer, 0, buffer.length);
+  }
+
+  private ProtobufReader(@NonNull byte[] buffer, int offset, int limit) {
+    mBuffer = buffer;
+    mPosition = offset;
+    mLimit = limit;
+  }
+
+  boolean hasNext() {
+    return mPosition < mLimit;
+  }
+
+  /** Reads the next field key and returns its field number. */
+  int nextField() throws VectorTileParseException {
+    long key = readVarint();
+    mWireType = (int) (key & 0x7);
+    return (int) (key >>> 3);
+  }
+
+  long readVarint() throws VectorTileParseException {
+    long value = 0;
+    for (int shift = 0; shift < 64; shift += 7) {
+      if (mPosition >= mLimit) {
+        throw new VectorTileParseException("Unexpected end of tile while reading a varint.");
+      }
+      byte b = mBuffer[mPosition++];
+      value |= (long) (b & 0x7f) << shift;
+      if ((b & 0x80) == 0) {
+        return value;
+      }
+    }
+    throw new VectorTileParseException("Malformed varint in tile.");
+  }
+
+  long readSignedVarint() throws VectorTileParseException {
+    long value = readVarint();
+    return (value >>> 1) ^ -(value & 1);
+  }
+
+  double readDouble() throws VectorTileParseException {
+    return Double.longBitsToDouble(readFixed(8));
+  }
+
+  float readFloat() throws VectorTileParseException {
+    return Float.intBitsToFloat((int) readFixed(4));
+  }
+
+  @NonNull
+  String readString() throws VectorTileParseException {
+    int length = readLength();
+    String value = new String(mBuffer, mPosition, length, UTF_8);
+    mPosition += length;
+    return value;
+  }
+
+  @NonNull
+  ProtobufReader readMessage() throws VectorTileParseException {
+    int length = readLength();
+    ProtobufReader message = new ProtobufReader(mBuffer, mPosition, mPosition + length);
+    mPosition += length;
+    return message;
+  }
+
+  /** Reads a packed repeated uint32 field, or a single unpacked value. */
+  @NonNull
+  int[] readPackedVarints() throws VectorTileParseException {
+    if (mWireType == WIRE_TYPE_VARINT) {
+      return new int[] {(int) readVarint()};
+    }
+    ProtobufReader packed = readMessage();
+    int[] values = new int[16];
+    int count = 0;
+    while (packed.hasNext()) {
+      if (count == values.length) {
+        values = Arrays.copyOf(values, count * 2);
+      }
+      values[count++] = (int) packed.readVarint();
+    }
+    return Arrays.copyOf(values, count);
+  }
+
+  /** Skips the value of the field whose key was just read. */
+  void skip() throws VectorTileParseException {
+    switch (mWireType) {
+      case WIRE_TYPE_VARINT:
+        readVarint();
+        break;
+      case WIRE_TYPE_FIXED64:
+        readFixed(8);
+        break;
+      case WIRE_TYPE_LENGTH_DELIMITED:
+        int length = readLength();
+        mPosition += length;
+        break;
+      case WIRE_TYPE_FIXED32:
+        readFixed(4);
+        break;
+      default:
+        throw new VectorTileParseException("Unsupported wire type in tile: " + mWireType);
+    }
+  }
+
+  private long readFixed(int bytes) throws VectorTileParseException {
+    if (mLimit - mPosition < bytes) {
+      throw new VectorTileParseException("Unexpected end of tile while reading a fixed value.");
+    }
+    long value = 0;
+    for (int i = 0; i < bytes; i++) {
+      value |= (long) (mBuffer[mPosition++] & 0xff) << (8 * i);
+    }
+    return value;
+  }
+
+  private int readLength() throws VectorTileParseException {
+    long length = readVarint();
+    if (length < 0 || length > mLimit - mPosition) {
+      throw new VectorTileParseException(
+          "Length-delimited field extends past the end of the tile.");
+    }
+    return (int) length;
+  }
+}
@@ -0,0 +1,57 @@
+// Copyright (c) Microsoft Corporation.
+// Licensed under the MIT license.
+
+package com.microsoft.maps.mvt;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import com.microsoft.maps.MapElement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A feature read by VectorTileParser: the name of its tile layer, its attributes and the elements
+ * created from its geometry. Attribute values are Strings, Booleans, Longs for integer values and
+ * Doubles for float and double values.
+ */
+public class VectorTileFeature {
+
+  private final String mLayerName;
+  private final Map<String, Object> mProperties;
+  private final ArrayList<MapElement> mElements = new ArrayList<>(1);
+
+  VectorTileFeature(@NonNull String layerName, @NonNull Map<String, Object> properties) {
+    mLayerName = layerName;
+    mProperties = Collections.unmodifiableMap(properties);
+  }
+
+  /** Returns the name of the tile layer the feature belongs to. */
+  @NonNull
+  public String getLayerName() {
+    return mLayerName;
+  }
+
+  /** Returns the attributes of the feature. */
+  @NonNull
+  public Map<String, Object> getProperties() {
+    return mProperties;
+  }
+
+  /** Returns the value of the given attribute, or null if the feature does not have it. */
+  @Nullable
+  public Object getProperty(@NonNull String key) {
+    return mProperties.get(key);
+  }
+
+  /** Returns the elements created from the geometry of the feature. */
+  @NonNull
+  public List<MapElement> getElements() {
+    return Collections.unmodifiableList(mElements);
+  }
+
+  void addElement(@NonNull MapElement element) {
+    mElements.add(element);
+  }
+}
@@ -0,0 +1,10 @@
+// Copyright (c) Microsoft Corporation.
+// Licensed under the MIT license.
+
+package com.microsoft.maps.mvt;
+
+public class VectorTileParseException extends Exception {
+  VectorTileParseException(String errorMessage) {
+    super(errorMessage);
+  }
+}
@@ -0,0 +1,403 @@
+// Copyright (c) Microsoft Corporation.
+// Licensed under the MIT license.
+
+package com.microsoft.maps.mvt;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.VisibleForTesting;
+import com.microsoft.maps.Geopath;
+import com.microsoft.maps.Geopoint;
+import com.microsoft.maps.Geoposition;
+import com.microsoft.maps.MapElement;
+import com.microsoft.maps.MapElementLayer;
+import com.microsoft.maps.MapIcon;
+import com.microsoft.maps.MapPolygon;
+import com.microsoft.maps.MapPolyline;
+import com.microsoft.maps.moduletools.DefaultMapFactories;
+import com.microsoft.maps.moduletools.MapFactories;
+import com.microsoft.maps.moduletools.WebMercator;
+import com.microsoft.maps.mvtcore.VectorTileEncoder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * Class that reads a Mapbox Vector Tile, such as one written by VectorTileWriter, and creates map
+ * elements from its features. The features of all layers of the tile are added to a single layer.
+ * The attributes of the features are available from parseFeatures.
+ */
+public class VectorTileParser {
+
+  private static final int DEFAULT_EXTENT = 4096;
+
+  private MapFactories mFactory;
+  private MapElementLayer mLayer;
+  private final ArrayList<VectorTileFeature> mFeatures = new ArrayList<>();
+  private int mZoom;
+  private int mTileX;
+  private int mTileY;
+
+  @VisibleForTesting
+  VectorTileParser() {}
+
+  /**
+   * Parses the tile at the given position and returns a MapElementLayer with its points,
+   * linestrings and polygons.
+   *
+   * @param tile encoded vector tile
+   * @param zoom zoom level of the tile
+   * @param x column of the tile
+   * @param y row of the tile
+   * @return MapElementLayer containing all features
+   * @throws VectorTileParseException
+   */
+  @NonNull
+  public static MapElementLayer parse(@NonNull byte[] tile, int zoom, int x, int y)
+      throws VectorTileParseException {
+    validate(tile, zoom, x, y);
+    return new VectorTileParser().internalParse(tile, zoom, x, y, new DefaultMapFactories());
+  }
+
+  /**
+   * Parses the tile at the given position and returns its features, in tile order, with the name of
+   * their tile layer, their attributes and the elements created from their geometry.
+   *
+   * @param tile encoded vector tile
+   * @param zoom zoom level of the tile
+   * @param x column of the tile
+   * @param y row of the tile
+   * @return features of all layers of the tile
+   * @throws VectorTileParseException
+   */
+  @NonNull
+  public static List<VectorTileFeature> parseFeatures(@NonNull byte[] tile, int zoom, int x, int y)
+      throws VectorTileParseException {
+    validate(tile, zoom, x, y);
+    VectorTileParser parser = new VectorTileParser();
+    parser.internalParse(tile, zoom, x, y, new DefaultMapFactories());
+    return parser.getFeatures();
+  }
+
+  private static void validate(byte[] tile, int zoom, int x, int y) {
+    if (tile == null) {
+      throw new IllegalArgumentException("Input tile cannot be null.");
+    }
+    if (zoom < 0 || zoom > VectorTileEncoder.MAX_ZOOM) {
+      throw new IllegalArgumentException(
+          "Zoom level must be between 0 and "
+              + VectorTileEncoder.MAX_ZOOM
+              + ". Instead saw: "
+              + zoom);
+    }
+    if (x < 0 || y < 0 || x >= 1 << zoom || y >= 1 << zoom) {
+      throw new IllegalArgumentException(
+          "Tile " + x + ", " + y + " does not exist at zoom level " + zoom + ".");
+    }
+  }
+
+  @VisibleForTesting
+  @NonNull
+  MapElementLayer internalParse(
+      @NonNull byte[] tile, int zoom, int x, int y, @NonNull MapFactories factory)
+      throws VectorTileParseException {
+    mFactory = factory;
+    mLayer = factory.createMapElementLayer();
+    mZoom = zoom;
+    mTileX = x;
+    mTileY = y;
+    ProtobufReader reader = new ProtobufReader(tile);
+    while (reader.hasNext()) {
+      if (reader.nextField() == 3) {
+        parseLayer(reader.readMessage());
+      } else {
+        reader.skip();
+      }
+    }
+    return mLayer;
+  }
+
+  /* Features read by the last call to internalParse. */
+  @VisibleForTesting
+  @NonNull
+  List<VectorTileFeature> getFeatures() {
+    return mFeatures;
+  }
+
+  private void parseLayer(@NonNull ProtobufReader layer) throws VectorTileParseException {
+    int extent = DEFAULT_EXTENT;
+    String name = "";
+    ArrayList<ProtobufReader> features = new ArrayList<>();
+    ArrayList<String> keys = new ArrayList<>();
+    ArrayList<Object> values = new ArrayList<>();
+    while (layer.hasNext()) {
+      switch (layer.nextField()) {
+        case 1:
+          name = layer.readString();
+          break;
+        case 2:
+          features.add(layer.readMessage());
+          break;
+        case 3:
+          keys.add(layer.readString());
+          break;
+        case 4:
+          values.add(parseValue(layer.readMessage()));
+          break;
+        case 5:
+          extent = (int) layer.readVarint();
+          if (extent <= 0) {
+            throw new VectorTileParseException("Layer extent must be positive.");
+          }
+          break;
+        default:
+          layer.skip();
+      }
+    }
+    /* The extent, keys and values can come after the features, so features are decoded once the
+     * whole layer has been read. */
+    for (ProtobufReader feature : features) {
+      parseFeature(feature, name, keys, values, extent);
+    }
+  }
+
+  /* Returns the String, Boolean, Long or Double held by a Value message. Floats are widened to
+   * Doubles, as VectorTileWriter writes every non-integer number as a double. */
+  @NonNull
+  private static Object parseValue(@NonNull ProtobufReader value) throws VectorTileParseException {
+    Object result = null;
+    while (value.hasNext()) {
+      switch (value.nextField()) {
+        case 1:
+          result = value.readString();
+          break;
+        case 2:
+          result = (double) value.readFloat();
+          break;
+        case 3:
+          result = value.readDouble();
+          break;
+        case 4:
+        case 5:
+          result = value.readVarint();
+          break;
+        case 6:
+          result = value.readSignedVarint();
+          break;
+        case 7:
+          result = value.readVarint() != 0;
+          break;
+        default:
+          value.skip();
+      }
+    }
+    if (result == null) {
+      throw new VectorTileParseException("Layer value has no known value field.");
+    }
+    return result;
+  }
+
+  private void parseFeature(
+      @NonNull ProtobufReader feature,
+      @NonNull String layerName,
+      @NonNull List<String> keys,
+      @NonNull List<Object> values,
+      int extent)
+      throws VectorTileParseException {
+    int type = 0;
+    int[] tags = null;
+    int[] geometry = null;
+    while (feature.hasNext()) {
+      switch (feature.nextField()) {
+        case 2:
+          tags = feature.readPackedVarints();
+          break;
+        case 3:
+          type = (int) feature.readVarint();
+          break;
+        case 4:
+          geometry = feature.readPackedVarints();
+          break;
+        default:
+          feature.skip();
+      }
+    }
+    if (geometry == null) {
+      return;
+    }
+    ArrayList<int[]> paths = decodeGeometry(geometry, type);
+    double scale = (double) extent * (1L << mZoom);
+    VectorTileFeature result = new VectorTileFeature(layerName, decodeTags(tags, keys, values));
+    switch (type) {
+      case 1:
+        for (int[] path : paths) {
+          for (int i = 0; i < path.length; i += 2) {
+            MapIcon icon = mFactory.createMapIcon();
+            icon.setLocation(new Geopoint(toPosition(path[i], path[i + 1], extent, scale)));
+            addElement(result, icon);
+          }
+        }
+        break;
+      case 2:
+        for (int[] path : paths) {
+          MapPolyline line = mFactory.createMapPolyline();
+          line.setPath(toGeopath(path, false, extent, scale));
+          addElement(result, line);
+        }
+        break;
+      case 3:
+        parsePolygons(result, paths, extent, scale);
+        break;
+      default:
+        // Features of unknown type are ignored, as the specification allows.
+        return;
+    }
+    mFeatures.add(result);
+  }
+
+  @NonNull
+  private static LinkedHashMap<String, Object> decodeTags(
+      int[] tags, @NonNull List<String> keys, @NonNull List<Object> values)
+      throws VectorTileParseException {
+    LinkedHashMap<String, Object> properties = new LinkedHashMap<>();
+    if (tags == null) {
+      return properties;
+    }
+    if (tags.length % 2 != 0) {
+      throw new VectorTileParseException("Feature tags must come in key and value pairs.");
+    }
+    for (int i = 0; i < tags.length; i += 2) {
+      int key = tags[i];
+      int value = tags[i + 1];
+      if (key < 0 || key >= keys.size() || value < 0 || value >= values.size()) {
+        throw new VectorTileParseException("Feature tag refers to a missing key or value.");
+      }
+      properties.put(keys.get(key), values.get(value));
+    }
+    return properties;
+  }
+
+  private void addElement(@NonNull VectorTileFeature feature, @NonNull MapElement element) {
+    feature.addElement(element);
+    mLayer.getElements().add(element);
+  }
+
+  /* A ring with positive area starts a new polygon and the rings with negative area after it are
+   * its holes. Rings with zero area are dropped. */
+  private void parsePolygons(
+      @NonNull VectorTileFeature feature, @NonNull ArrayList<int[]> rings, int extent, double scale)
+      throws VectorTileParseException {
+    ArrayList<Geopath> paths = null;
+    for (int[] ring : rings) {
+      long area = doubleSignedArea(ring);
+      if (area > 0) {
+        addPolygon(feature, paths);
+        paths = new ArrayList<>();
+      } else if (area == 0) {
+        continue;
+      } else if (paths == null) {
+        throw new VectorTileParseException("Polygon interior ring precedes its exterior ring.");
+      }
+      paths.add(toGeopath(ring, true, extent, scale));
+    }
+    addPolygon(feature, paths);
+  }
+
+  private void addPolygon(@NonNull VectorTileFeature feature, ArrayList<Geopath> paths) {
+    if (paths != null) {
+      MapPolygon polygon = mFactory.createMapPolygon();
+      polygon.setPaths(paths);
+      addElement(feature, polygon);
+    }
+  }
+
+  /* Decodes the command integers into paths of absolute tile coordinates. Points are returned as a
+   * single path holding every point. */
+  @NonNull
+  private static ArrayList<int[]> decodeGeometry(@NonNull int[] geometry, int type)
+      throws VectorTileParseException {
+    ArrayList<int[]> paths = new ArrayList<>();
+    int[] path = null;
+    int size = 0;
+    int x = 0;
+    int y = 0;
+    int i = 0;
+    while (i < geometry.length) {
+      int command = geometry[i] & 0x7;
+      int count = geometry[i] >>> 3;
+      i++;
+      if (command == 1 || command == 2) {
+        if (command == 1 && type != 1) {
+          if (path != null) {
+            paths.add(Arrays.copyOf(path, size));
+          }
+          path = null;
+          size = 0;
+        }
+        if (command == 2 && path == null) {
+          throw new VectorTileParseException("LineTo command without a preceding MoveTo.");
+        }
+        if (i + 2 * count > geometry.length) {
+          throw new VectorTileParseException("Geometry command has too few parameters.");
+        }
+        if (path == null) {
+          path = new int[2 * count];
+        } else if (size + 2 * count > path.length) {
+          path = Arrays.copyOf(path, size + 2 * count);
+        }
+        for (int j = 0; j < count; j++) {
+          x += zigZagDecode(geometry[i++]);
+          y += zigZagDecode(geometry[i++]);
+          path[size++] = x;
+          path[size++] = y;
+        }
+      } else if (command == 7) {
+        if (path == null) {
+          throw new VectorTileParseException("ClosePath command without a preceding MoveTo.");
+        }
+      } else {
+        throw new VectorTileParseException("Unknown geometry command: " + command);
+      }
+    }
+    if (path != null) {
+      paths.add(Arrays.copyOf(path, size));
+    }
+    return paths;
+  }
+
+  @NonNull
+  private Geopath toGeopath(@NonNull int[] path, boolean isRing, int extent, double scale) {
+    int count = path.length / 2;
+    ArrayList<Geoposition> positions = new ArrayList<>(count + 1);
+    for (int i = 0; i < count; i++) {
+      positions.add(toPosition(path[2 * i], path[2 * i + 1], extent, scale));
+    }
+    if (isRing && count > 0) {
+      positions.add(positions.get(0));
+    }
+    return new Geopath(positions);
+  }
+
+  @NonNull
+  private Geoposition toPosition(int x, int y, int extent, double scale) {
+    double worldX = ((double) mTileX * extent + x) / scale;
+    double worldY = ((double) mTileY * extent + y) / scale;
+    return new Geoposition(WebMercator.toLatitude(worldY), WebMercator.toLongitude(worldX));
+  }
+
+  private static int zigZagDecode(int value) {
+    return (value >>> 1) ^ -(value & 1);
+  }
+
+  /* Twice the signed area of a ring by the shoelace formula. With y pointing down, as in tile
+   * coordinates, a positive area means the ring is clockwise on screen. */
+  private static long doubleSignedArea(@NonNull int[] ring) {
+    long area = 0;
+    int count = ring.length / 2;
+    for (int i = 0; i < count; i++) {
+      int next = (i + 1) % count;
+      area += (long) ring[2 * i] * ring[2 * next + 1] - (long) ring[2 * next] * ring[2 * i + 1];
+    }
+    return area;
+  }
+}
@@ -0,0 +1,117 @@
+// Copyright (c) Microsoft Corporation.
+// Licensed under the MIT license.
+
+package com.microsoft.maps.mvt;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import com.microsoft.maps.Geopath;
+import com.microsoft.maps.Geopoint;
+import com.microsoft.maps.Geoposition;
+import com.microsoft.maps.MapElement;
+import com.microsoft.maps.MapIcon;
+import com.microsoft.maps.MapPolygon;
+import com.microsoft.maps.MapPolyline;
+import com.microsoft.maps.mvtcore.VectorTileEncoder;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Map;
+
+/**
+ * Writes Mapbox Vector Tiles (version 2.1) for a range of zoom levels from the elements created by
+ * GeoJsonParser or KMLParser, so data can be tiled once instead of parsed on every device. This
+ * class only reads the coordinates of map elements; the tiles are encoded by VectorTileEncoder,
+ * which also runs on a plain JVM for data that is not held in map elements.
+ *
+ * <p>Icons become POINT features, polylines LINESTRING features and polygons POLYGON features,
+ * whose first path is the exterior ring and whose other paths are holes.
+ */
+public class VectorTileWriter {
+
+  private final VectorTileEncoder mEncoder;
+
+  public VectorTileWriter(int minZoom, int maxZoom) {
+    mEncoder = new VectorTileEncoder(minZoom, maxZoom);
+  }
+
+  /** Sets the size of a tile in tile coordinates. The default is 4096. */
+  public void setExtent(int extent) {
+    mEncoder.setExtent(extent);
+  }
+
+  /** Sets how far, in tile coordinates, geometry extends past the tile edges. The default is 64. */
+  public void setBuffer(int buffer) {
+    mEncoder.setBuffer(buffer);
+  }
+
+  /**
+   * Sets the simplification tolerance in tile coordinates. Points closer than this to the
+   * simplified geometry are dropped. The default is 8. 0 turns simplification off.
+   */
+  public void setTolerance(double tolerance) {
+    mEncoder.setTolerance(tolerance);
+  }
+
+  /** Adds the elements without properties to the named tile layer. */
+  public void addElements(@NonNull String layerName, @NonNull Iterable<MapElement> elements) {
+    for (MapElement element : elements) {
+      addElement(layerName, element, null);
+    }
+  }
+
+  /**
+   * Adds an element to the named tile layer. String, boolean and numeric properties are written as
+   * feature attributes; other values are skipped.
+   */
+  public void addElement(
+      @NonNull String layerName, @NonNull MapElement element, @Nullable Map<String, ?> properties) {
+    if (layerName == null || element == null) {
+      throw new IllegalArgumentException("Layer name and element cannot be null.");
+    }
+    if (element instanceof MapIcon) {
+      Geopoint location = ((MapIcon) element).getLocation();
+      if (location != null) {
+        Geoposition position = location.getPosition();
+        mEncoder.addPoint(layerName, position.getLongitude(), position.getLatitude(), properties);
+      }
+    } else if (element instanceof MapPolyline) {
+      mEncoder.addLineString(
+          layerName, toCoordinates(((MapPolyline) element).getPath()), properties);
+    } else if (element instanceof MapPolygon) {
+      ArrayList<double[]> rings = new ArrayList<>();
+      for (Geopath path : ((MapPolygon) element).getPaths()) {
+        rings.add(toCoordinates(path));
+      }
+      mEncoder.addPolygon(layerName, rings, properties);
+    }
+  }
+
+  /** Encodes every non-empty tile for the zoom range and hands it to the sink. */
+  public void writeTiles(@NonNull VectorTileEncoder.TileSink sink) throws IOException {
+    mEncoder.writeTiles(sink);
+  }
+
+  /** Encodes a single tile, or returns null if no element falls into it. */
+  @Nullable
+  public byte[] writeTile(int zoom, int x, int y) {
+    return mEncoder.writeTile(zoom, x, y);
+  }
+
+  /* Returns the positions of the path as longitude, latitude pairs. */
+  @NonNull
+  private static double[] toCoordinates(@Nullable Geopath path) {
+    if (path == null) {
+      return new double[0];
+    }
+    ArrayList<Geoposition> positions = new ArrayList<>();
+    for (Geoposition position : path) {
+      positions.add(position);
+    }
+    double[] coordinates = new double[2 * positions.size()];
+    for (int i = 0; i < positions.size(); i++) {
+      coordinates[2 * i] = positions.get(i).getLongitude();
+      coordinates[2 * i + 1] = positions.get(i).getLatitude();
+    }
+    return coordinates;
+  }
+}
@@ -0,0 +1,264 @@
+// Copyright (c) Microsoft Corporation.
+// Licensed under the MIT license.
+
+package com.microsoft.maps.mvt;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import androidx.annotation.NonNull;
+import com.microsoft.maps.Geopath;
+import com.microsoft.maps.Geopoint;
+import com.microsoft.maps.Geoposition;
+import com.microsoft.maps.MapElement;
+import com.microsoft.maps.MapElementLayer;
+import com.microsoft.maps.MapIcon;
+import com.microsoft.maps.MapPolygon;
+import com.microsoft.maps.MapPolyline;
+import com.microsoft.maps.MockBingMapsLoader;
+import com.microsoft.maps.MockMapElementCollection;
+import com.microsoft.maps.moduletools.MapFactories;
+import com.microsoft.maps.moduletoolstest.MockParserMapFactories;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Before;
+import org.junit.Test;
+
+/** Unit tests to check the VectorTileWriter and VectorTileParser classes. */
+public class VectorTileTest {
+
+  private static final MapFactories MOCK_MAP_FACTORIES = new MockParserMapFactories();
+  /* One tile coordinate at zoom level 0 with the default extent is about 0.09 degrees. */
+  private static final double DELTA = 0.1;
+
+  @Before
+  public void setup() {
+    MockBingMapsLoader.mockInitialize();
+  }
+
+  @Test
+  public void testRoundTripAtZoomLevelZero() throws VectorTileParseException {
+    VectorTileWriter writer = new VectorTileWriter(0, 0);
+    MapIcon icon = MOCK_MAP_FACTORIES.createMapIcon();
+    icon.setLocation(new Geopoint(new Geoposition(47.6, -122.3)));
+    writer.addElement("places", icon, Collections.singletonMap("name", "Seattle"));
+    writer.addElement(
+        "roads", createPolyline(new double[][] {{-100, 40}, {-90, 35}, {-80, 40}}), null);
+    writer.addElement(
+        "areas",
+        createPolygon(
+            new double[][] {{-10, -10}, {10, -10}, {10, 10}, {-10, 10}, {-10, -10}},
+            new double[][] {{-5, -5}, {-5, 5}, {5, 5}, {5, -5}, {-5, -5}}),
+        null);
+
+    byte[] tile = writer.writeTile(0, 0, 0);
+    assertNotNull(tile);
+    List<MapElement> elements = parse(tile, 0, 0, 0);
+    assertEquals(3, elements.size());
+
+    Geoposition location = ((MapIcon) elements.get(0)).getLocation().getPosition();
+    assertEquals(47.6, location.getLatitude(), DELTA);
+    assertEquals(-122.3, location.getLongitude(), DELTA);
+
+    assertPathEquals(
+        new double[][] {{-100, 40}, {-90, 35}, {-80, 40}},
+        ((MapPolyline) elements.get(1)).getPath());
+
+    MapPolygon polygon = (MapPolygon) elements.get(2);
+    assertEquals(2, polygon.getPaths().size());
+    assertEquals(5, size(polygon.getPaths().get(0)));
+    assertEquals(5, size(polygon.getPaths().get(1)));
+  }
+
+  @Test
+  public void testAttributesRoundTrip() throws VectorTileParseException {
+    VectorTileWriter writer = new VectorTileWriter(0, 0);
+    Map<String, Object> seattle = new LinkedHashMap<>();
+    seattle.put("name", "Seattle");
+    seattle.put("population", 750000);
+    seattle.put("elevation", 52.5);
+    seattle.put("capital", false);
+    seattle.put("mayor", null);
+    writer.addElement("places", createIcon(47.6, -122.3), seattle);
+    Map<String, Object> olympia = new LinkedHashMap<>();
+    olympia.put("name", "Olympia");
+    olympia.put("capital", true);
+    writer.addElement("places", createIcon(47.0, -122.9), olympia);
+    writer.addElement(
+        "roads", createPolyline(new double[][] {{-100, 40}, {-90, 35}, {-80, 40}}), null);
+
+    VectorTileParser parser = new VectorTileParser();
+    parser.internalParse(writer.writeTile(0, 0, 0), 0, 0, 0, MOCK_MAP_FACTORIES);
+    List<VectorTileFeature> features = parser.getFeatures();
+    assertEquals(3, features.size());
+
+    VectorTileFeature first = features.get(0);
+    assertEquals("places", first.getLayerName());
+    assertEquals(4, first.getProperties().size());
+    assertEquals("Seattle", first.getProperty("name"));
+    assertEquals(750000L, first.getProperty("population"));
+    assertEquals(52.5, first.getProperty("elevation"));
+    assertEquals(false, first.getProperty("capital"));
+    assertEquals(1, first.getElements().size());
+    assertTrue(first.getElements().get(0) instanceof MapIcon);
+
+    VectorTileFeature second = features.get(1);
+    assertEquals("places", second.getLayerName());
+    assertEquals("Olympia", second.getProperty("name"));
+    assertEquals(true, second.getProperty("capital"));
+    assertEquals(2, second.getProperties().size());
+
+    VectorTileFeature third = features.get(2);
+    assertEquals("roads", third.getLayerName());
+    assertTrue(third.getProperties().isEmpty());
+    assertTrue(third.getElements().get(0) instanceof MapPolyline);
+  }
+
+  @Test
+  public void testLineIsSplitByClipping() throws IOException, VectorTileParseException {
+    VectorTileWriter writer = new VectorTileWriter(1, 1);
+    writer.setBuffer(0);
+    // Crosses from the western into the eastern half and back at zoom level 1.
+    writer.addElement(
+        "roads", createPolyline(new double[][] {{-20, 10}, {20, 10}, {20, 20}, {-20, 20}}), null);
+
+    final List<int[]> written = new ArrayList<>();
+    final List<byte[]> tiles = new ArrayList<>();
+    writer.writeTiles(
+        (zoom, x, y, tile) -> {
+          written.add(new int[] {zoom, x, y});
+          tiles.add(tile);
+        });
+    assertEquals(2, written.size());
+    assertTrue(Arrays.equals(new int[] {1, 0, 0}, written.get(0)));
+    assertTrue(Arrays.equals(new int[] {1, 1, 0}, written.get(1)));
+
+    // The western tile holds the start and the end of the line as two separate lines.
+    List<MapElement> west = parse(tiles.get(0), 1, 0, 0);
+    assertEquals(2, west.size());
+    assertPathEquals(new double[][] {{-20, 10}, {0, 10}}, ((MapPolyline) west.get(0)).getPath());
+    assertPathEquals(new double[][] {{0, 20}, {-20, 20}}, ((MapPolyline) west.get(1)).getPath());
+    List<MapElement> east = parse(tiles.get(1), 1, 1, 0);
+    assertEquals(1, east.size());
+    assertEquals(4, size(((MapPolyline) east.get(0)).getPath()));
+  }
+
+  @Test
+  public void testSimplificationDropsCollinearPoints() throws VectorTileParseException {
+    VectorTileWriter writer = new VectorTileWriter(2, 2);
+    writer.addElement(
+        "roads",
+        createPolyline(new double[][] {{10, 10}, {11, 10}, {12, 10.001}, {13, 10}, {14, 10}}),
+        null);
+    byte[] tile = writer.writeTile(2, 2, 1);
+    assertNotNull(tile);
+    List<MapElement> elements = parse(tile, 2, 2, 1);
+    assertEquals(1, elements.size());
+    assertPathEquals(
+        new double[][] {{10, 10}, {14, 10}}, ((MapPolyline) elements.get(0)).getPath());
+
+    writer.setTolerance(0);
+    elements = parse(writer.writeTile(2, 2, 1), 2, 2, 1);
+    assertEquals(5, size(((MapPolyline) elements.get(0)).getPath()));
+  }
+
+  @Test
+  public void testTileWithoutElementsIsNull() {
+    VectorTileWriter writer = new VectorTileWriter(1, 1);
+    writer.addElement("roads", createPolyline(new double[][] {{10, 10}, {20, 10}}), null);
+    assertNull(writer.writeTile(1, 0, 1));
+  }
+
+  @Test
+  public void testMalformedTileThrows() {
+    byte[][] tiles = {
+      // Layer whose length runs past the end of the tile.
+      {0x1a, 0x10, 0x28},
+      // Feature with a LineTo before any MoveTo.
+      {0x1a, 0x08, 0x12, 0x06, 0x18, 0x02, 0x22, 0x02, 0x0a, 0x02},
+      // Truncated varint.
+      {(byte) 0x80}
+    };
+    for (byte[] tile : tiles) {
+      try {
+        parse(tile, 0, 0, 0);
+        fail("Expected VectorTileParseException for " + Arrays.toString(tile));
+      } catch (VectorTileParseException e) {
+        // expected
+      }
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidZoomRangeThrows() {
+    new VectorTileWriter(5, 2);
+  }
+
+  @NonNull
+  private static List<MapElement> parse(@NonNull byte[] tile, int zoom, int x, int y)
+      throws VectorTileParseException {
+    MapElementLayer layer =
+        new VectorTileParser().internalParse(tile, zoom, x, y, MOCK_MAP_FACTORIES);
+    return ((MockMapElementCollection) layer.getElements()).getElements();
+  }
+
+  @NonNull
+  private static MapIcon createIcon(double latitude, double longitude) {
+    MapIcon icon = MOCK_MAP_FACTORIES.createMapIcon();
+    icon.setLocation(new Geopoint(new Geoposition(latitude, longitude)));
+    return icon;
+  }
+
+  @NonNull
+  private static MapPolyline createPolyline(@NonNull double[][] points) {
+    MapPolyline line = MOCK_MAP_FACTORIES.createMapPolyline();
+    line.setPath(createPath(points));
+    return line;
+  }
+
+  @NonNull
+  private static MapPolygon createPolygon(@NonNull double[][]... rings) {
+    ArrayList<Geopath> paths = new ArrayList<>();
+    for (double[][] ring : rings) {
+      paths.add(createPath(ring));
+    }
+    MapPolygon polygon = MOCK_MAP_FACTORIES.createMapPolygon();
+    polygon.setPaths(paths);
+    return polygon;
+  }
+
+  @NonNull
+  private static Geopath createPath(@NonNull double[][] points) {
+    ArrayList<Geoposition> positions = new ArrayList<>();
+    for (double[] point : points) {
+      positions.add(new Geoposition(point[1], point[0]));
+    }
+    return new Geopath(positions);
+  }
+
+  private static void assertPathEquals(@NonNull double[][] expected, @NonNull Geopath path) {
+    assertEquals(expected.length, size(path));
+    int index = 0;
+    for (Geoposition position : path) {
+      assertEquals(expected[index][0], position.getLongitude(), DELTA);
+      assertEquals(expected[index][1], position.getLatitude(), DELTA);
+      index++;
+    }
+  }
+
+  private static int size(@NonNull Geopath path) {
+    int size = 0;
+    for (Geoposition ignored : path) {
+      size++;
+    }
+    return size;
+  }
+}
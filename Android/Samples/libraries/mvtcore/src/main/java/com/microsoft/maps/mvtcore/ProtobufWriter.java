@@ -0,0 +1,119 @@
+// Copyright (c) Microsoft Corporation.
+// Licensed under the MIT license.
+
+package com.microsoft.maps.mvtcore;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import androidx.annotation.NonNull;
+import java.util.Arrays;
+
+/** Minimal protocol buffers encoder for the fields used by vector tiles. */
+class ProtobufWriter {
+
+  static final int WIRE_TYPE_VARINT = 0;
+  static final int WIRE_TYPE_FIXED64 = 1;
+  static final int WIRE_TYPE_LENGTH_DELIMITED = 2;
+  static final int WIRE_TYPE_FIXED32 = 5;
+
+  private byte[] mBuffer = new byte[256];
+  private int mSize;
+
+  void writeVarintField(int field, long value) {
+    writeTag(field, WIRE_TYPE_VARINT);
+    writeVarint(value);
+  }
+
+  void writeSignedVarintField(int field, long value) {
+    writeVarintField(field, (value << 1) ^ (value >> 63));
+  }
+
+  void writeDoubleField(int field, double value) {
+    writeTag(field, WIRE_TYPE_FIXED64);
+    long bits = Double.doubleToLongBits(value);
+    ensureCapacity(8);
+    for (int i = 0; i < 8; i++) {
+      mBuffer[mSize++] = (byte) (bits >>> (8 * i));
+    }
+  }
+
+  void writeStringField(int field, @NonNull String value) {
+    writeBytesField(field, value.getBytes(UTF_8));
+  }
+
+  void writeBytesField(int field, @NonNull byte[] value) {
+    writeBytesField(field, value, value.length);
+  }
+
+  void writeMessageField(int field, @NonNull ProtobufWriter message) {
+    writeBytesField(field, message.mBuffer, message.mSize);
+  }
+
+  /* Writes the first count values as a packed repeated uint32 field. */
+  void writePackedVarintField(int field, @NonNull int[] values, int count) {
+    if (count == 0) {
+      return;
+    }
+    int length = 0;
+    for (int i = 0; i < count; i++) {
+      length += varintSize(values[i] & 0xffffffffL);
+    }
+    writeTag(field, WIRE_TYPE_LENGTH_DELIMITED);
+    writeVarint(length);
+    for (int i = 0; i < count; i++) {
+      writeVarint(values[i] & 0xffffffffL);
+    }
+  }
+
+  /* Appends the encoded fields of another writer as is. */
+  void writeRaw(@NonNull ProtobufWriter fields) {
+    ensureCapacity(fields.mSize);
+    System.arraycopy(fields.mBuffer, 0, mBuffer, mSize, fields.mSize);
+    mSize += fields.mSize;
+  }
+
+  int size() {
+    return mSize;
+  }
+
+  @NonNull
+  byte[] toByteArray() {
+    return Arrays.copyOf(mBuffer, mSize);
+  }
+
+  private void writeBytesField(int field, @NonNull byte[] value, int length) {
+    writeTag(field, WIRE_TYPE_LENGTH_DELIMITED);
+    writeVarint(length);
+    ensureCapacity(length);
+    System.arraycopy(value, 0, mBuffer, mSize, length);
+    mSize += length;
+  }
+
+  private void writeTag(int field, int wireType) {
+    writeVarint((field << 3) | wireType);
+  }
+
+  private void writeVarint(long value) {
+    ensureCapacity(10);
+    while ((value & ~0x7fL) != 0) {
+      mBuffer[mSize++] = (byte) ((value & 0x7f) | 0x80);
+      value >>>= 7;
+    }
+    mBuffer[mSize++] = (byte) value;
+  }
+
+  private static int varintSize(long value) {
+    int size = 1;
+    while ((value & ~0x7fL) != 0) {
+      size++;
+      value >>>= 7;
+    }
+    return size;
+  }
+
+  private void ensureCapacity(int extra) {
+    if (mSize + extra > mBuffer.length) {
+      mBuffer = Arrays.copyOf(mBuffer, Math.max(mBuffer.length * 2, mSize + extra));
+    }
+  }
+}
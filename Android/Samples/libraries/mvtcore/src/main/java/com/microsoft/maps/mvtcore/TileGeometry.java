@@ -0,0 +1,349 @@
+// Copyright (c) Microsoft Corporation.
+// Licensed under the MIT license.
+
+package com.microsoft.maps.mvtcore;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Geometry operations on paths stored as interleaved x, y coordinates. Rings are stored open,
+ * without repeating the first point at the end.
+ */
+class TileGeometry {
+
+  private TileGeometry() {}
+
+  /**
+   * Douglas-Peucker simplification: keeps the points that deviate from the simplified path by more
+   * than tolerance. The first and last points are always kept. Iterative, so long paths do not
+   * overflow the stack.
+   */
+  @NonNull
+  static double[] simplify(@NonNull double[] path, double tolerance) {
+    int count = path.length / 2;
+    if (count <= 2 || tolerance <= 0) {
+      return path;
+    }
+    boolean[] keep = new boolean[count];
+    keep[0] = true;
+    keep[count - 1] = true;
+    double squaredTolerance = tolerance * tolerance;
+    int[] stack = new int[64];
+    int stackSize = 0;
+    stack[stackSize++] = 0;
+    stack[stackSize++] = count - 1;
+    while (stackSize > 0) {
+      int last = stack[--stackSize];
+      int first = stack[--stackSize];
+      double maxDistance = -1;
+      int farthest = -1;
+      for (int i = first + 1; i < last; i++) {
+        double distance =
+            squaredSegmentDistance(
+                path[2 * i],
+                path[2 * i + 1],
+                path[2 * first],
+                path[2 * first + 1],
+                path[2 * last],
+                path[2 * last + 1]);
+        if (distance > maxDistance) {
+          maxDistance = distance;
+          farthest = i;
+        }
+      }
+      if (maxDistance > squaredTolerance) {
+        keep[farthest] = true;
+        if (stackSize + 4 > stack.length) {
+          stack = Arrays.copyOf(stack, stack.length * 2);
+        }
+        stack[stackSize++] = first;
+        stack[stackSize++] = farthest;
+        stack[stackSize++] = farthest;
+        stack[stackSize++] = last;
+      }
+    }
+    int kept = 0;
+    for (boolean k : keep) {
+      if (k) {
+        kept++;
+      }
+    }
+    double[] simplified = new double[2 * kept];
+    int j = 0;
+    for (int i = 0; i < count; i++) {
+      if (keep[i]) {
+        simplified[j++] = path[2 * i];
+        simplified[j++] = path[2 * i + 1];
+      }
+    }
+    return simplified;
+  }
+
+  /** Simplifies a ring, returning null if fewer than three points remain. */
+  @Nullable
+  static double[] simplifyRing(@NonNull double[] ring, double tolerance) {
+    double[] closed = Arrays.copyOf(ring, ring.length + 2);
+    closed[ring.length] = ring[0];
+    closed[ring.length + 1] = ring[1];
+    double[] simplified = simplify(closed, tolerance);
+    if (simplified.length < 8) {
+      return null;
+    }
+    return Arrays.copyOf(simplified, simplified.length - 2);
+  }
+
+  /**
+   * Clips a path to the rectangle, returning the parts inside it. A path that leaves and re-enters
+   * the rectangle produces several parts.
+   */
+  @NonNull
+  static List<double[]> clipLine(
+      @NonNull double[] path, double minX, double minY, double maxX, double maxY) {
+    ArrayList<double[]> parts = new ArrayList<>();
+    CoordinateList part = new CoordinateList();
+    double[] segment = new double[4];
+    for (int i = 0; i + 3 < path.length; i += 2) {
+      segment[0] = path[i];
+      segment[1] = path[i + 1];
+      segment[2] = path[i + 2];
+      segment[3] = path[i + 3];
+      boolean startInside = isInside(segment[0], segment[1], minX, minY, maxX, maxY);
+      boolean endInside = isInside(segment[2], segment[3], minX, minY, maxX, maxY);
+      if (!clipSegment(segment, minX, minY, maxX, maxY)) {
+        continue;
+      }
+      if (part.isEmpty() || !startInside) {
+        if (part.size() >= 2) {
+          parts.add(part.toArray());
+        }
+        part = new CoordinateList();
+        part.add(segment[0], segment[1]);
+      }
+      part.add(segment[2], segment[3]);
+      if (!endInside) {
+        parts.add(part.toArray());
+        part = new CoordinateList();
+      }
+    }
+    if (part.size() >= 2) {
+      parts.add(part.toArray());
+    }
+    return parts;
+  }
+
+  /**
+   * Clips a ring to the rectangle with the Sutherland-Hodgman algorithm. Returns null if nothing of
+   * the ring is left inside the rectangle.
+   */
+  @Nullable
+  static double[] clipRing(
+      @NonNull double[] ring, double minX, double minY, double maxX, double maxY) {
+    double[] clipped = ring;
+    for (int edge = 0; edge < 4 && clipped.length >= 6; edge++) {
+      CoordinateList output = new CoordinateList();
+      int count = clipped.length / 2;
+      for (int i = 0; i < count; i++) {
+        double currentX = clipped[2 * i];
+        double currentY = clipped[2 * i + 1];
+        int previous = (i + count - 1) % count;
+        double previousX = clipped[2 * previous];
+        double previousY = clipped[2 * previous + 1];
+        boolean currentInside = isInsideEdge(currentX, currentY, edge, minX, minY, maxX, maxY);
+        boolean previousInside = isInsideEdge(previousX, previousY, edge, minX, minY, maxX, maxY);
+        if (currentInside != previousInside) {
+          double t =
+              edgeIntersection(
+                  previousX, previousY, currentX, currentY, edge, minX, minY, maxX, maxY);
+          output.add(
+              previousX + (currentX - previousX) * t, previousY + (currentY - previousY) * t);
+        }
+        if (currentInside) {
+          output.add(currentX, currentY);
+        }
+      }
+      clipped = output.toArray();
+    }
+    return clipped.length >= 6 ? clipped : null;
+  }
+
+  /**
+   * Rounds coordinates to integers and removes consecutive duplicates. For rings, a last point
+   * equal to the first is removed as well.
+   */
+  @NonNull
+  static int[] quantize(@NonNull double[] path, boolean isRing) {
+    int[] quantized = new int[path.length];
+    int size = 0;
+    for (int i = 0; i < path.length; i += 2) {
+      int x = (int) Math.round(path[i]);
+      int y = (int) Math.round(path[i + 1]);
+      if (size >= 2 && quantized[size - 2] == x && quantized[size - 1] == y) {
+        continue;
+      }
+      quantized[size++] = x;
+      quantized[size++] = y;
+    }
+    if (isRing
+        && size >= 4
+        && quantized[0] == quantized[size - 2]
+        && quantized[1] == quantized[size - 1]) {
+      size -= 2;
+    }
+    return Arrays.copyOf(quantized, size);
+  }
+
+  /**
+   * Twice the signed area of a ring by the shoelace formula. With y pointing down, as in tile
+   * coordinates, a positive area means the ring is clockwise on screen.
+   */
+  static long doubleSignedArea(@NonNull int[] ring) {
+    long area = 0;
+    int count = ring.length / 2;
+    for (int i = 0; i < count; i++) {
+      int next = (i + 1) % count;
+      area += (long) ring[2 * i] * ring[2 * next + 1] - (long) ring[2 * next] * ring[2 * i + 1];
+    }
+    return area;
+  }
+
+  /** Reverses the order of the points of a path in place. */
+  static void reverse(@NonNull int[] path) {
+    for (int i = 0, j = path.length - 2; i < j; i += 2, j -= 2) {
+      int x = path[i];
+      int y = path[i + 1];
+      path[i] = path[j];
+      path[i + 1] = path[j + 1];
+      path[j] = x;
+      path[j + 1] = y;
+    }
+  }
+
+  private static double squaredSegmentDistance(
+      double x, double y, double x1, double y1, double x2, double y2) {
+    double dx = x2 - x1;
+    double dy = y2 - y1;
+    if (dx != 0 || dy != 0) {
+      double t = ((x - x1) * dx + (y - y1) * dy) / (dx * dx + dy * dy);
+      if (t > 1) {
+        x1 = x2;
+        y1 = y2;
+      } else if (t > 0) {
+        x1 += dx * t;
+        y1 += dy * t;
+      }
+    }
+    dx = x - x1;
+    dy = y - y1;
+    return dx * dx + dy * dy;
+  }
+
+  private static boolean isInside(
+      double x, double y, double minX, double minY, double maxX, double maxY) {
+    return x >= minX && x <= maxX && y >= minY && y <= maxY;
+  }
+
+  /* Liang-Barsky clipping of the segment in place. Returns false if no part of the segment is
+   * inside the rectangle. */
+  private static boolean clipSegment(
+      @NonNull double[] segment, double minX, double minY, double maxX, double maxY) {
+    double x1 = segment[0];
+    double y1 = segment[1];
+    double dx = segment[2] - x1;
+    double dy = segment[3] - y1;
+    double[] p = {-dx, dx, -dy, dy};
+    double[] q = {x1 - minX, maxX - x1, y1 - minY, maxY - y1};
+    double t0 = 0;
+    double t1 = 1;
+    for (int i = 0; i < 4; i++) {
+      if (p[i] == 0) {
+        if (q[i] < 0) {
+          return false;
+        }
+      } else {
+        double t = q[i] / p[i];
+        if (p[i] < 0) {
+          t0 = Math.max(t0, t);
+        } else {
+          t1 = Math.min(t1, t);
+        }
+      }
+    }
+    if (t0 > t1) {
+      return false;
+    }
+    segment[0] = x1 + t0 * dx;
+    segment[1] = y1 + t0 * dy;
+    segment[2] = x1 + t1 * dx;
+    segment[3] = y1 + t1 * dy;
+    return true;
+  }
+
+  private static boolean isInsideEdge(
+      double x, double y, int edge, double minX, double minY, double maxX, double maxY) {
+    switch (edge) {
+      case 0:
+        return x >= minX;
+      case 1:
+        return x <= maxX;
+      case 2:
+        return y >= minY;
+      default:
+        return y <= maxY;
+    }
+  }
+
+  private static double edgeIntersection(
+      double x1,
+      double y1,
+      double x2,
+      double y2,
+      int edge,
+      double minX,
+      double minY,
+      double maxX,
+      double maxY) {
+    switch (edge) {
+      case 0:
+        return (minX - x1) / (x2 - x1);
+      case 1:
+        return (maxX - x1) / (x2 - x1);
+      case 2:
+        return (minY - y1) / (y2 - y1);
+      default:
+        return (maxY - y1) / (y2 - y1);
+    }
+  }
+
+  /** Growable list of interleaved coordinates. */
+  private static class CoordinateList {
+
+    private double[] mCoordinates = new double[16];
+    private int mSize;
+
+    void add(double x, double y) {
+      if (mSize + 2 > mCoordinates.length) {
+        mCoordinates = Arrays.copyOf(mCoordinates, mCoordinates.length * 2);
+      }
+      mCoordinates[mSize++] = x;
+      mCoordinates[mSize++] = y;
+    }
+
+    boolean isEmpty() {
+      return mSize == 0;
+    }
+
+    /* Number of points. */
+    int size() {
+      return mSize / 2;
+    }
+
+    @NonNull
+    double[] toArray() {
+      return Arrays.copyOf(mCoordinates, mSize);
+    }
+  }
+}
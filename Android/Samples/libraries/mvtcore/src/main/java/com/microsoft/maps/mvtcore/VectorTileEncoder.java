@@ -0,0 +1,526 @@
+// Copyright (c) Microsoft Corporation.
+// Licensed under the MIT license.
+
+package com.microsoft.maps.mvtcore;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Encodes Mapbox Vector Tiles (version 2.1) for a range of zoom levels from geographic coordinates
+ * and feature properties. It has no Android dependencies, so tiles can be built ahead of time on a
+ * desktop or server JVM. Coordinates are longitude, latitude pairs in degrees, projected to Web
+ * Mercator. Geometry is simplified per zoom level with the Douglas-Peucker algorithm and clipped to
+ * each tile plus a buffer. Tiles are written one zoom level at a time, in x then y order.
+ */
+public class VectorTileEncoder {
+
+  /** Receives each encoded tile. */
+  public interface TileSink {
+
+    void writeTile(int zoom, int x, int y, @NonNull byte[] tile) throws IOException;
+  }
+
+  public static final int DEFAULT_EXTENT = 4096;
+  public static final int DEFAULT_BUFFER = 64;
+  public static final double DEFAULT_TOLERANCE = 8;
+  public static final int MAX_ZOOM = 24;
+  public static final double MAX_LATITUDE = 85.05112878;
+
+  private static final int GEOM_TYPE_POINT = 1;
+  private static final int GEOM_TYPE_LINESTRING = 2;
+  private static final int GEOM_TYPE_POLYGON = 3;
+  private static final int COMMAND_MOVE_TO = 1;
+  private static final int COMMAND_LINE_TO = 2;
+  private static final int COMMAND_CLOSE_PATH = 7;
+
+  private final int mMinZoom;
+  private final int mMaxZoom;
+  private int mExtent = DEFAULT_EXTENT;
+  private int mBuffer = DEFAULT_BUFFER;
+  private double mTolerance = DEFAULT_TOLERANCE;
+  private final ArrayList<SourceFeature> mFeatures = new ArrayList<>();
+
+  public VectorTileEncoder(int minZoom, int maxZoom) {
+    if (minZoom < 0 || maxZoom > MAX_ZOOM || minZoom > maxZoom) {
+      throw new IllegalArgumentException(
+          "Zoom levels must satisfy 0 <= minZoom <= maxZoom <= "
+              + MAX_ZOOM
+              + ". Instead saw: "
+              + minZoom
+              + ", "
+              + maxZoom);
+    }
+    mMinZoom = minZoom;
+    mMaxZoom = maxZoom;
+  }
+
+  /** Sets the size of a tile in tile coordinates. The default is 4096. */
+  public void setExtent(int extent) {
+    if (extent < 1) {
+      throw new IllegalArgumentException("Extent must be at least 1. Instead saw: " + extent);
+    }
+    mExtent = extent;
+  }
+
+  /** Sets how far, in tile coordinates, geometry extends past the tile edges. The default is 64. */
+  public void setBuffer(int buffer) {
+    if (buffer < 0) {
+      throw new IllegalArgumentException("Buffer cannot be negative. Instead saw: " + buffer);
+    }
+    mBuffer = buffer;
+  }
+
+  /**
+   * Sets the simplification tolerance in tile coordinates. Points closer than this to the
+   * simplified geometry are dropped. The default is 8, half a pixel of a 256 pixel tile with the
+   * default extent. 0 turns simplification off.
+   */
+  public void setTolerance(double tolerance) {
+    if (tolerance < 0) {
+      throw new IllegalArgumentException("Tolerance cannot be negative. Instead saw: " + tolerance);
+    }
+    mTolerance = tolerance;
+  }
+
+  /**
+   * Adds a POINT feature to the named tile layer. String, boolean and numeric properties are
+   * written as feature attributes; other values are skipped.
+   */
+  public void addPoint(
+      @NonNull String layerName,
+      double longitude,
+      double latitude,
+      @Nullable Map<String, ?> properties) {
+    addFeature(
+        layerName,
+        GEOM_TYPE_POINT,
+        Collections.singletonList(project(new double[] {longitude, latitude}, false)),
+        properties);
+  }
+
+  /**
+   * Adds a LINESTRING feature to the named tile layer. The coordinates are longitude, latitude
+   * pairs. See addPoint for the properties.
+   */
+  public void addLineString(
+      @NonNull String layerName,
+      @NonNull double[] coordinates,
+      @Nullable Map<String, ?> properties) {
+    addFeature(
+        layerName,
+        GEOM_TYPE_LINESTRING,
+        Collections.singletonList(project(coordinates, false)),
+        properties);
+  }
+
+  /**
+   * Adds a POLYGON feature to the named tile layer. The first ring is the exterior ring and the
+   * others are holes. Each ring holds longitude, latitude pairs and may repeat its first point at
+   * the end. See addPoint for the properties.
+   */
+  public void addPolygon(
+      @NonNull String layerName,
+      @NonNull List<double[]> rings,
+      @Nullable Map<String, ?> properties) {
+    if (rings == null) {
+      throw new IllegalArgumentException("Rings cannot be null.");
+    }
+    ArrayList<double[]> parts = new ArrayList<>(rings.size());
+    for (double[] ring : rings) {
+      parts.add(project(ring, true));
+    }
+    addFeature(layerName, GEOM_TYPE_POLYGON, parts, properties);
+  }
+
+  /** Encodes every non-empty tile for the zoom range and hands it to the sink. */
+  public void writeTiles(@NonNull TileSink sink) throws IOException {
+    for (int zoom = mMinZoom; zoom <= mMaxZoom; zoom++) {
+      TreeMap<Long, TileBuilder> tiles = new TreeMap<>();
+      double scale = (double) mExtent * (1L << zoom);
+      int tileCount = 1 << zoom;
+      for (SourceFeature feature : mFeatures) {
+        List<double[]> parts = scaleAndSimplify(feature, scale);
+        if (parts == null) {
+          continue;
+        }
+        int minTileX = toTile(feature.mMinX * scale - mBuffer, tileCount);
+        int maxTileX = toTile(feature.mMaxX * scale + mBuffer, tileCount);
+        int minTileY = toTile(feature.mMinY * scale - mBuffer, tileCount);
+        int maxTileY = toTile(feature.mMaxY * scale + mBuffer, tileCount);
+        for (int x = minTileX; x <= maxTileX; x++) {
+          for (int y = minTileY; y <= maxTileY; y++) {
+            List<int[]> geometry = clip(feature.mType, parts, x, y);
+            if (geometry.isEmpty()) {
+              continue;
+            }
+            long key = ((long) x << 32) | y;
+            TileBuilder tile = tiles.get(key);
+            if (tile == null) {
+              tile = new TileBuilder();
+              tiles.put(key, tile);
+            }
+            tile.addFeature(feature, geometry, mExtent);
+          }
+        }
+      }
+      for (Map.Entry<Long, TileBuilder> entry : tiles.entrySet()) {
+        long key = entry.getKey();
+        sink.writeTile(zoom, (int) (key >>> 32), (int) key, entry.getValue().encode());
+      }
+    }
+  }
+
+  /** Encodes a single tile, or returns null if no feature falls into it. */
+  @Nullable
+  public byte[] writeTile(int zoom, int x, int y) {
+    double scale = (double) mExtent * (1L << zoom);
+    TileBuilder tile = new TileBuilder();
+    boolean isEmpty = true;
+    for (SourceFeature feature : mFeatures) {
+      if (feature.mMaxX * scale + mBuffer < (double) x * mExtent
+          || feature.mMinX * scale - mBuffer > (double) (x + 1) * mExtent
+          || feature.mMaxY * scale + mBuffer < (double) y * mExtent
+          || feature.mMinY * scale - mBuffer > (double) (y + 1) * mExtent) {
+        continue;
+      }
+      List<double[]> parts = scaleAndSimplify(feature, scale);
+      if (parts == null) {
+        continue;
+      }
+      List<int[]> geometry = clip(feature.mType, parts, x, y);
+      if (!geometry.isEmpty()) {
+        tile.addFeature(feature, geometry, mExtent);
+        isEmpty = false;
+      }
+    }
+    return isEmpty ? null : tile.encode();
+  }
+
+  private void addFeature(
+      @NonNull String layerName,
+      int type,
+      @NonNull List<double[]> parts,
+      @Nullable Map<String, ?> properties) {
+    if (layerName == null) {
+      throw new IllegalArgumentException("Layer name cannot be null.");
+    }
+    if (parts.isEmpty() || parts.get(0).length < 2) {
+      return;
+    }
+    mFeatures.add(
+        new SourceFeature(
+            layerName,
+            type,
+            parts,
+            properties == null
+                ? Collections.<String, Object>emptyMap()
+                : new LinkedHashMap<String, Object>(properties)));
+  }
+
+  /* Projects longitude, latitude pairs to normalized Web Mercator coordinates, which run from 0 to
+   * 1 west to east and north to south. For rings, a last point equal to the first is dropped. */
+  @NonNull
+  private static double[] project(@Nullable double[] coordinates, boolean isRing) {
+    if (coordinates == null) {
+      return new double[0];
+    }
+    if (coordinates.length % 2 != 0) {
+      throw new IllegalArgumentException(
+          "Coordinates must be longitude, latitude pairs. Instead saw "
+              + coordinates.length
+              + " values.");
+    }
+    int length = coordinates.length;
+    if (isRing
+        && length >= 4
+        && coordinates[0] == coordinates[length - 2]
+        && coordinates[1] == coordinates[length - 1]) {
+      length -= 2;
+    }
+    double[] projected = new double[length];
+    for (int i = 0; i < length; i += 2) {
+      projected[i] = (coordinates[i] + 180) / 360;
+      double latitude = Math.max(-MAX_LATITUDE, Math.min(MAX_LATITUDE, coordinates[i + 1]));
+      double sinLatitude = Math.sin(Math.toRadians(latitude));
+      projected[i + 1] = 0.5 - Math.log((1 + sinLatitude) / (1 - sinLatitude)) / (4 * Math.PI);
+    }
+    return projected;
+  }
+
+  /* Scales the feature to world coordinates at the zoom level and simplifies it. Returns null if
+   * the feature collapses at this zoom level. */
+  @Nullable
+  private List<double[]> scaleAndSimplify(@NonNull SourceFeature feature, double scale) {
+    ArrayList<double[]> scaled = new ArrayList<>(feature.mParts.size());
+    for (int i = 0; i < feature.mParts.size(); i++) {
+      double[] part = feature.mParts.get(i).clone();
+      for (int j = 0; j < part.length; j++) {
+        part[j] *= scale;
+      }
+      if (feature.mType == GEOM_TYPE_LINESTRING) {
+        part = TileGeometry.simplify(part, mTolerance);
+      } else if (feature.mType == GEOM_TYPE_POLYGON) {
+        part = part.length >= 6 ? TileGeometry.simplifyRing(part, mTolerance) : null;
+        if (part == null) {
+          if (i == 0) {
+            return null;
+          }
+          continue;
+        }
+      }
+      scaled.add(part);
+    }
+    return scaled;
+  }
+
+  /* Clips the scaled parts to the tile and its buffer and converts them to tile coordinates. For
+   * polygons, the exterior ring is oriented clockwise on screen and holes counterclockwise, as the
+   * specification requires. */
+  @NonNull
+  private List<int[]> clip(int type, @NonNull List<double[]> parts, int tileX, int tileY) {
+    double originX = (double) tileX * mExtent;
+    double originY = (double) tileY * mExtent;
+    double min = -mBuffer;
+    double max = mExtent + mBuffer;
+    ArrayList<int[]> geometry = new ArrayList<>();
+    for (int i = 0; i < parts.size(); i++) {
+      double[] part = parts.get(i).clone();
+      for (int j = 0; j < part.length; j += 2) {
+        part[j] -= originX;
+        part[j + 1] -= originY;
+      }
+      if (type == GEOM_TYPE_POINT) {
+        if (part[0] >= min && part[0] <= max && part[1] >= min && part[1] <= max) {
+          geometry.add(TileGeometry.quantize(part, false));
+        }
+      } else if (type == GEOM_TYPE_LINESTRING) {
+        for (double[] clipped : TileGeometry.clipLine(part, min, min, max, max)) {
+          int[] line = TileGeometry.quantize(clipped, false);
+          if (line.length >= 4) {
+            geometry.add(line);
+          }
+        }
+      } else {
+        double[] clipped = TileGeometry.clipRing(part, min, min, max, max);
+        int[] ring = clipped == null ? null : TileGeometry.quantize(clipped, true);
+        long area = ring == null || ring.length < 6 ? 0 : TileGeometry.doubleSignedArea(ring);
+        if (area == 0) {
+          if (i == 0) {
+            return Collections.emptyList();
+          }
+          continue;
+        }
+        boolean isExterior = i == 0;
+        if (isExterior != area > 0) {
+          TileGeometry.reverse(ring);
+        }
+        geometry.add(ring);
+      }
+    }
+    return geometry;
+  }
+
+  private int toTile(double worldCoordinate, int tileCount) {
+    return Math.max(0, Math.min(tileCount - 1, (int) Math.floor(worldCoordinate / mExtent)));
+  }
+
+  /** An added feature in normalized Web Mercator coordinates. */
+  private static class SourceFeature {
+
+    private final String mLayerName;
+    private final int mType;
+    private final List<double[]> mParts;
+    private final Map<String, Object> mProperties;
+    private double mMinX = Double.POSITIVE_INFINITY;
+    private double mMinY = Double.POSITIVE_INFINITY;
+    private double mMaxX = Double.NEGATIVE_INFINITY;
+    private double mMaxY = Double.NEGATIVE_INFINITY;
+
+    SourceFeature(
+        @NonNull String layerName,
+        int type,
+        @NonNull List<double[]> parts,
+        @NonNull Map<String, Object> properties) {
+      mLayerName = layerName;
+      mType = type;
+      mParts = parts;
+      mProperties = properties;
+      for (double[] part : parts) {
+        for (int i = 0; i + 1 < part.length; i += 2) {
+          mMinX = Math.min(mMinX, part[i]);
+          mMaxX = Math.max(mMaxX, part[i]);
+          mMinY = Math.min(mMinY, part[i + 1]);
+          mMaxY = Math.max(mMaxY, part[i + 1]);
+        }
+      }
+    }
+  }
+
+  /** Collects the features of one tile, grouped by layer. */
+  private static class TileBuilder {
+
+    private final LinkedHashMap<String, LayerBuilder> mLayers = new LinkedHashMap<>();
+
+    void addFeature(@NonNull SourceFeature feature, @NonNull List<int[]> geometry, int extent) {
+      LayerBuilder layer = mLayers.get(feature.mLayerName);
+      if (layer == null) {
+        layer = new LayerBuilder(feature.mLayerName, extent);
+        mLayers.put(feature.mLayerName, layer);
+      }
+      layer.addFeature(feature, geometry);
+    }
+
+    @NonNull
+    byte[] encode() {
+      ProtobufWriter tile = new ProtobufWriter();
+      for (LayerBuilder layer : mLayers.values()) {
+        tile.writeMessageField(3, layer.encode());
+      }
+      return tile.toByteArray();
+    }
+  }
+
+  /** Encodes one layer, sharing keys and values between its features. */
+  private static class LayerBuilder {
+
+    private final String mName;
+    private final int mExtent;
+    private final ProtobufWriter mFeatures = new ProtobufWriter();
+    private final HashMap<String, Integer> mKeys = new LinkedHashMap<>();
+    private final HashMap<Object, Integer> mValues = new LinkedHashMap<>();
+    private int[] mCommands = new int[64];
+    private int mCommandCount;
+
+    LayerBuilder(@NonNull String name, int extent) {
+      mName = name;
+      mExtent = extent;
+    }
+
+    void addFeature(@NonNull SourceFeature feature, @NonNull List<int[]> geometry) {
+      ProtobufWriter message = new ProtobufWriter();
+      mCommandCount = 0;
+      for (Map.Entry<String, Object> property : feature.mProperties.entrySet()) {
+        Object value = toTileValue(property.getValue());
+        if (value == null) {
+          continue;
+        }
+        addCommand(index(mKeys, property.getKey()));
+        addCommand(index(mValues, value));
+      }
+      message.writePackedVarintField(2, mCommands, mCommandCount);
+      message.writeVarintField(3, feature.mType);
+
+      mCommandCount = 0;
+      int cursorX = 0;
+      int cursorY = 0;
+      if (feature.mType == GEOM_TYPE_POINT) {
+        addCommand(command(COMMAND_MOVE_TO, geometry.size()));
+        for (int[] point : geometry) {
+          addCommand(zigZag(point[0] - cursorX));
+          addCommand(zigZag(point[1] - cursorY));
+          cursorX = point[0];
+          cursorY = point[1];
+        }
+      } else {
+        for (int[] path : geometry) {
+          int count = path.length / 2;
+          addCommand(command(COMMAND_MOVE_TO, 1));
+          for (int i = 0; i < count; i++) {
+            if (i == 1) {
+              addCommand(command(COMMAND_LINE_TO, count - 1));
+            }
+            addCommand(zigZag(path[2 * i] - cursorX));
+            addCommand(zigZag(path[2 * i + 1] - cursorY));
+            cursorX = path[2 * i];
+            cursorY = path[2 * i + 1];
+          }
+          if (feature.mType == GEOM_TYPE_POLYGON) {
+            addCommand(command(COMMAND_CLOSE_PATH, 1));
+          }
+        }
+      }
+      message.writePackedVarintField(4, mCommands, mCommandCount);
+      mFeatures.writeMessageField(2, message);
+    }
+
+    @NonNull
+    ProtobufWriter encode() {
+      ProtobufWriter layer = new ProtobufWriter();
+      layer.writeVarintField(15, 2);
+      layer.writeStringField(1, mName);
+      // The features were encoded as field 2 entries already and are copied as is.
+      layer.writeRaw(mFeatures);
+      for (String key : mKeys.keySet()) {
+        layer.writeStringField(3, key);
+      }
+      for (Object value : mValues.keySet()) {
+        ProtobufWriter message = new ProtobufWriter();
+        if (value instanceof String) {
+          message.writeStringField(1, (String) value);
+        } else if (value instanceof Double) {
+          message.writeDoubleField(3, (Double) value);
+        } else if (value instanceof Long) {
+          message.writeSignedVarintField(6, (Long) value);
+        } else {
+          message.writeVarintField(7, (Boolean) value ? 1 : 0);
+        }
+        layer.writeMessageField(4, message);
+      }
+      layer.writeVarintField(5, mExtent);
+      return layer;
+    }
+
+    private void addCommand(int value) {
+      if (mCommandCount == mCommands.length) {
+        mCommands = Arrays.copyOf(mCommands, mCommandCount * 2);
+      }
+      mCommands[mCommandCount++] = value;
+    }
+
+    private static <T> int index(@NonNull HashMap<T, Integer> map, @NonNull T value) {
+      Integer index = map.get(value);
+      if (index == null) {
+        index = map.size();
+        map.put(value, index);
+      }
+      return index;
+    }
+
+    /* Maps a property value to the Java type of the Value field it is written as, or null if it
+     * cannot be written. */
+    @Nullable
+    private static Object toTileValue(@Nullable Object value) {
+      if (value instanceof String || value instanceof Boolean) {
+        return value;
+      }
+      if (value instanceof Integer
+          || value instanceof Long
+          || value instanceof Short
+          || value instanceof Byte) {
+        return ((Number) value).longValue();
+      }
+      if (value instanceof Number) {
+        return ((Number) value).doubleValue();
+      }
+      return null;
+    }
+
+    private static int command(int id, int count) {
+      return (id & 0x7) | (count << 3);
+    }
+
+    private static int zigZag(int value) {
+      return (value << 1) ^ (value >> 31);
+    }
+  }
+}
@@ -0,0 +1,89 @@
+// Copyright (c) Microsoft Corporation.
+// Licensed under the MIT license.
+
+package com.microsoft.maps.mvtcore;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Test;
+
+/** Unit tests to check the VectorTileEncoder class. */
+public class VectorTileEncoderTest {
+
+  @Test
+  public void testPointIsWrittenToOneTilePerZoomLevel() throws IOException {
+    VectorTileEncoder encoder = new VectorTileEncoder(0, 2);
+    encoder.addPoint("places", 10, 10, null);
+    List<String> tiles = new ArrayList<>();
+    encoder.writeTiles((zoom, x, y, tile) -> tiles.add(zoom + "/" + x + "/" + y));
+    assertEquals(Arrays.asList("0/0/0", "1/1/0", "2/2/1"), tiles);
+  }
+
+  @Test
+  public void testPointTileEncoding() {
+    VectorTileEncoder encoder = new VectorTileEncoder(0, 0);
+    encoder.setExtent(256);
+    encoder.addPoint("p", 0, 0, Collections.singletonMap("n", 1));
+    byte[] tile = encoder.writeTile(0, 0, 0);
+    assertNotNull(tile);
+    // Layer message with version 2, name "p", one feature with tags [0, 0], type POINT and a
+    // MoveTo(1) command to (128, 128), key "n", value sint 1 and extent 256.
+    byte[] expected =
+        hex("1a1e 7802 0a0170 120d 12020000 1801 2205098002 8002 1a016e 22023002 288002");
+    assertArrayEquals(expected, tile);
+  }
+
+  @Test
+  public void testLineIsWrittenToEveryTileItCrosses() throws IOException {
+    VectorTileEncoder encoder = new VectorTileEncoder(1, 1);
+    encoder.setBuffer(0);
+    encoder.addLineString("roads", new double[] {-90, 45, 90, 45}, null);
+    List<String> tiles = new ArrayList<>();
+    encoder.writeTiles((zoom, x, y, tile) -> tiles.add(zoom + "/" + x + "/" + y));
+    assertEquals(Arrays.asList("1/0/0", "1/1/0"), tiles);
+  }
+
+  @Test
+  public void testPolygonCollapsedAtZoomLevelIsSkipped() {
+    VectorTileEncoder encoder = new VectorTileEncoder(0, 20);
+    List<double[]> rings =
+        Collections.singletonList(new double[] {10, 10, 10.0001, 10, 10.0001, 10.0001, 10, 10});
+    encoder.addPolygon("areas", rings, null);
+    assertNull(encoder.writeTile(0, 0, 0));
+    assertNotNull(encoder.writeTile(20, 553415, 495011));
+  }
+
+  @Test
+  public void testTileWithoutFeaturesIsNull() {
+    VectorTileEncoder encoder = new VectorTileEncoder(0, 1);
+    encoder.addPoint("places", 10, 10, null);
+    assertNull(encoder.writeTile(1, 0, 1));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testOddCoordinateCountThrows() {
+    new VectorTileEncoder(0, 1).addLineString("roads", new double[] {1, 2, 3}, null);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidZoomRangeThrows() {
+    new VectorTileEncoder(0, VectorTileEncoder.MAX_ZOOM + 1);
+  }
+
+  private static byte[] hex(String text) {
+    String digits = text.replace(" ", "");
+    byte[] bytes = new byte[digits.length() / 2];
+    for (int i = 0; i < bytes.length; i++) {
+      bytes[i] = (byte) Integer.parseInt(digits.substring(2 * i, 2 * i + 2), 16);
+    }
+    return bytes;
+  }
+}